@@ -17,17 +17,34 @@ package io.perfana.events.springboot.actuator;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import io.perfana.events.springboot.journal.Journal;
+import io.perfana.events.springboot.journal.JournalEventType;
+import io.perfana.events.springboot.objectstore.MultipartUploadOutputStream;
+import io.perfana.events.springboot.objectstore.S3Client;
+import io.perfana.events.springboot.threaddump.ThreadDumpArchive;
 import io.perfana.eventscheduler.api.EventLogger;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 public class ActuatorClient {
 
@@ -37,19 +54,107 @@ public class ActuatorClient {
 
     private final OkHttpClient okHttpClient;
 
+    private final OkHttpClient dumpOkHttpClient;
+
+    private final Duration dumpIdleTimeout;
+
     private final EventLogger logger;
 
+    private DownloadProgressListener progressListener = DownloadProgressListener.NONE;
+
+    private Duration progressInterval = Duration.ZERO;
+
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.CRC32C;
+
+    private Journal journal = Journal.NOOP;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final ThreadLocal<AtomicLong> threadRequestCount = ThreadLocal.withInitial(AtomicLong::new);
+
+    private volatile MetricListener metricListener = MetricListener.NONE;
+
+    private volatile ThreadDumpListener threadDumpListener = ThreadDumpListener.NONE;
+
     private static final int retries = 2;
     private static final List<Integer> retryCodes = List.of(408, 425 , 429, 500, 502, 503, 504);
 
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private static final String COMPRESSION_GZIP = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
 
     public ActuatorClient(String actuatorUrl, OkHttpClient okHttpClient, EventLogger logger) {
+        this(actuatorUrl, okHttpClient, okHttpClient, null, logger);
+    }
+
+    /**
+     * @param okHttpClient client for the fast endpoints, such as env and info
+     * @param dumpOkHttpClient client for the dump endpoints, with a long read timeout for the time to first byte
+     * @param dumpIdleTimeout max time without progress while streaming a dump, null to use the read timeout of dumpOkHttpClient
+     */
+    public ActuatorClient(String actuatorUrl, OkHttpClient okHttpClient, OkHttpClient dumpOkHttpClient, Duration dumpIdleTimeout, EventLogger logger) {
         this.baseUrl = actuatorUrl;
         this.okHttpClient = okHttpClient;
+        this.dumpOkHttpClient = dumpOkHttpClient;
+        this.dumpIdleTimeout = dumpIdleTimeout;
         this.logger = logger;
     }
 
+    /**
+     * Report progress of dump downloads to the listener, every interval and when done.
+     */
+    public void setProgressListener(DownloadProgressListener progressListener, Duration progressInterval) {
+        this.progressListener = progressListener;
+        this.progressInterval = progressInterval;
+    }
+
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * Record metric samples, retries and dumps in the journal.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Receive all metric samples, e.g. to summarize them at the end of the test. Use {@link MetricListener#NONE} to stop.
+     */
+    public void setMetricListener(MetricListener metricListener) {
+        this.metricListener = metricListener;
+    }
+
+    /**
+     * Receive the text of all text thread dumps, e.g. to analyze thread pools. Use {@link ThreadDumpListener#NONE} to stop.
+     */
+    public void setThreadDumpListener(ThreadDumpListener threadDumpListener) {
+        this.threadDumpListener = threadDumpListener;
+    }
+
+    /**
+     * @return number of requests to the actuator endpoints so far, including retries and excluding dumps
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of requests to the actuator endpoints made by the calling thread so far, including retries and excluding dumps
+     */
+    public long getThreadRequestCount() {
+        return threadRequestCount.get().get();
+    }
+
+    private void countRequest() {
+        requestCount.incrementAndGet();
+        threadRequestCount.get().incrementAndGet();
+    }
+
     public List<Variable> queryActuator(List<String> envKeys) {
 
         String totalUrl = baseUrl + "/env";
@@ -80,36 +185,173 @@ public class ActuatorClient {
         }
     }
 
+    /**
+     * Get a metric from the actuator metrics endpoint, e.g. jvm.gc.pause.
+     * @return the metric, or empty when the metric is not (yet) available
+     */
+    public Optional<Metric> metric(String metricName) {
+        return metric(metricName, Collections.emptyList());
+    }
+
+    /**
+     * Get a metric for the given tags only, e.g. jvm.memory.max with tag area:heap.
+     * @param tags tags in name:value format
+     * @return the metric, or empty when the metric is not (yet) available
+     */
+    public Optional<Metric> metric(String metricName, List<String> tags) {
+        try {
+            return fetchMetric(metricName, tags);
+        } catch (ActuatorClientException | JsonParseException ex) {
+            logger.warn("Cannot get metric " + metricUrl(metricName, tags) + ": " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Get a metric and tell a metric that is not registered apart from a failed call: Micrometer registers
+     * some meters lazily, e.g. jvm.gc.pause at the first GC.
+     * @return the metric, or empty when the metric is not registered (status 404)
+     * @throws ActuatorClientException when the call failed
+     */
+    public Optional<Metric> registeredMetric(String metricName) throws ActuatorClientException {
+        try {
+            return fetchMetric(metricName, Collections.emptyList());
+        } catch (ActuatorClientException e) {
+            if (e.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        } catch (JsonParseException e) {
+            throw new ActuatorClientException("Cannot parse metric " + metricName, e);
+        }
+    }
+
+    private Optional<Metric> fetchMetric(String metricName, List<String> tags) throws ActuatorClientException {
+        String result = remoteCall(metricUrl(metricName, tags));
+        Metric metric = gson.fromJson(result, Metric.class);
+        if (metric != null) {
+            journal.record(JournalEventType.SAMPLE, metricName + tagQuery(tags), String.valueOf(metric.measurements));
+            metricListener.onMetric(metricName, tags, metric);
+        }
+        return Optional.ofNullable(metric);
+    }
+
+    private String metricUrl(String metricName, List<String> tags) {
+        // http://localhost:8080/actuator/metrics/jvm.gc.pause?tag=area:heap
+        return baseUrl + "/metrics/" + metricName + tagQuery(tags);
+    }
+
+    private static String tagQuery(List<String> tags) {
+        return tags.isEmpty() ? "" : tags.stream().map(tag -> "tag=" + tag).collect(Collectors.joining("&", "?", ""));
+    }
+
+    /**
+     * @param loggerName e.g. ROOT or com.example
+     * @return the levels of the logger, empty when the logger or the loggers endpoint is not available
+     */
+    public Optional<LoggerLevels> loggerLevels(String loggerName) {
+        // http://localhost:8080/actuator/loggers/com.example
+        String totalUrl = baseUrl + "/loggers/" + loggerName;
+        try {
+            return Optional.ofNullable(gson.fromJson(remoteCall(totalUrl), LoggerLevels.class));
+        } catch (ActuatorClientException | JsonParseException ex) {
+            logger.warn("Cannot get logger levels " + totalUrl + ": " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Set the configured level of a logger on the target.
+     * @param level e.g. DEBUG, or null to remove the configured level and inherit the level of the parent logger
+     * @return true when the level is set
+     */
+    public boolean setLoggerLevel(String loggerName, String level) {
+        String totalUrl = baseUrl + "/loggers/" + loggerName;
+        JsonObject json = new JsonObject();
+        json.addProperty("configuredLevel", level);
+        Request request = new Request.Builder()
+                .url(totalUrl)
+                .post(RequestBody.create(JSON, json.toString()))
+                .build();
+        countRequest();
+        try {
+            Response response = okHttpClient.newCall(request).execute();
+            try {
+                if (response.code() != 204 && response.code() != 200) {
+                    logger.warn("Cannot set level of logger " + loggerName + " to " + level + ": status " + response.code() + " for " + totalUrl);
+                    return false;
+                }
+            } finally {
+                response.body().close();
+            }
+            journal.record(JournalEventType.LOG_LEVEL, loggerName, String.valueOf(level));
+            return true;
+        } catch (IOException e) {
+            logger.warn("Cannot set level of logger " + loggerName + " to " + level + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get an actuator endpoint and read the response body with the given reader,
+     * for instance to stream large responses such as beans or configprops.
+     * @param path path relative to the actuator base url, e.g. "/beans"
+     * @return the result of the reader, or empty when the call or reading failed
+     */
+    public <T> Optional<T> get(String path, ResponseReader<T> reader) {
+        String totalUrl = baseUrl + path;
+        try {
+            return Optional.ofNullable(remoteCall(totalUrl, reader));
+        } catch (ActuatorClientException | JsonParseException ex) {
+            logger.warn("Cannot get " + totalUrl + ": " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
     private String remoteCall(String url) throws ActuatorClientException {
+        return remoteCall(url, ResponseBody::string);
+    }
+
+    private <T> T remoteCall(String url, ResponseReader<T> reader) throws ActuatorClientException {
+        return remoteCall(url, Collections.emptyMap(), reader);
+    }
+
+    private <T> T remoteCall(String url, Map<String, String> headers, ResponseReader<T> reader) throws ActuatorClientException {
         int count = 0;
         while (true) {
             count++;
             try {
-                Request request = new Request.Builder()
+                Request.Builder requestBuilder = new Request.Builder()
                         .url(url)
-                        .get()
-                        .build();
+                        .get();
+                headers.forEach(requestBuilder::header);
+                Request request = requestBuilder.build();
 
+                countRequest();
                 Response response = okHttpClient.newCall(request).execute();
 
-                int code = response.code();
-                if (code != 200) {
-                    String message = "Unexpected status code (not 200): " + code + " for " + request.url() + ": " + response.message();
-                    if (count <= retries && retryCodes.contains(code)) {
-                        logger.warn("Retry (" + count + "/" + retries + ") for call: " + message);
-                        waitForRetry();
-                        continue;
-                    }
-                    else {
-                        throw new ActuatorClientException(message);
+                try (ResponseBody body = response.body()) {
+                    int code = response.code();
+                    if (code != 200) {
+                        String message = "Unexpected status code (not 200): " + code + " for " + request.url() + ": " + response.message();
+                        if (count <= retries && retryCodes.contains(code)) {
+                            logger.warn("Retry (" + count + "/" + retries + ") for call: " + message);
+                            journal.record(JournalEventType.RETRY, url, message);
+                            waitForRetry(url);
+                            continue;
+                        }
+                        else {
+                            throw new ActuatorClientException(message, code);
+                        }
                     }
+                    return reader.read(body);
                 }
-                return response.body().string();
             } catch (IOException e) {
                 String message = "Cannot get " + url;
                 if (count <= retries) {
                     logger.warn("Retry (" + count + "/" + retries + ") for call: " + message + " cause: " + e.getMessage());
-                    waitForRetry();
+                    journal.record(JournalEventType.RETRY, url, message + " cause: " + e.getMessage());
+                    waitForRetry(url);
                 }
                 else {
                     throw new ActuatorClientException(message, e);
@@ -118,51 +360,215 @@ public class ActuatorClient {
         }
     }
 
-    private void waitForRetry() {
+    private void waitForRetry(String url) throws ActuatorClientException {
         try {
             Thread.sleep(2000);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            // e.g. the deadline of a collector batch has passed, no use to retry
+            throw new ActuatorClientException("Interrupted while waiting to retry " + url, e);
+        }
+    }
+
+    public Optional<DumpManifest> heapdump(File path, String fileId) {
+        return heapdump(path, fileId, null);
+    }
+
+    /**
+     * @param live true to only dump live objects (forces a full GC on the target),
+     *             false to dump all objects, null to use the endpoint default
+     * @return manifest of the written dump, empty when the dump failed
+     */
+    public Optional<DumpManifest> heapdump(File path, String fileId, Boolean live) {
+        return heapdump(path, fileId, live, false);
+    }
+
+    /**
+     * @param compress true to gzip the dump while it is written, to a .hprof.gz file
+     */
+    public Optional<DumpManifest> heapdump(File path, String fileId, Boolean live, boolean compress) {
+        // http://localhost:8080/actuator/heapdump?live=false
+        String totalUrl = baseUrl + "/heapdump" + (live == null ? "" : "?live=" + live);
+        File file = new File(path, "heapdump-" + fileId + "-" + fileTimeStamp() + ".hprof" + (compress ? ".gz" : ""));
+        Optional<DumpManifest> manifest = downloadAndSave(file, totalUrl, Collections.emptyMap(), compress);
+        manifest.ifPresent(m -> logger.info("wrote heap dump to " + file + " " + m));
+        return manifest;
+    }
+
+    /**
+     * Stream the heap dump straight to the object store, without writing it to local disk.
+     * The manifest is stored next to the dump, as an object with suffix .manifest.json.
+     * @return manifest with the object key as file, empty when the dump or upload failed
+     */
+    public Optional<DumpManifest> heapdump(S3Client objectStore, String fileId, Boolean live) {
+        return heapdump(objectStore, fileId, live, false);
+    }
+
+    /**
+     * @param compress true to gzip the dump while it is uploaded, to a .hprof.gz object
+     */
+    public Optional<DumpManifest> heapdump(S3Client objectStore, String fileId, Boolean live, boolean compress) {
+        String totalUrl = baseUrl + "/heapdump" + (live == null ? "" : "?live=" + live);
+        String key = objectStore.getSettings().getPrefix() + "heapdump-" + fileId + "-" + fileTimeStamp() + ".hprof" + (compress ? ".gz" : "");
+        LocalDateTime startTime = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        journal.record(JournalEventType.DUMP_START, key, totalUrl);
+        MultipartUploadOutputStream upload = new MultipartUploadOutputStream(objectStore, key);
+        try {
+            // closes the upload, via the gzip stream when compressed
+            OutputStream outputStream = compress ? new GZIPOutputStream(upload, GZIP_BUFFER_SIZE) : upload;
+            BinaryFileWriter writer = new BinaryFileWriter(outputStream, checksumAlgorithm);
+            BinaryFileDownloader downloader = new BinaryFileDownloader(dumpOkHttpClient, writer, dumpIdleTimeout, progressListener, progressInterval);
+            long bytes = downloader.download(totalUrl, Collections.emptyMap(), key);
+            outputStream.close();
+
+            DumpManifest manifest = createManifest(key, totalUrl, bytes, writer.checksum(), startTime, startNanos);
+            manifest.compression = compress ? COMPRESSION_GZIP : null;
+            objectStore.putObject(key + ".manifest.json", gson.toJson(manifest).getBytes(StandardCharsets.UTF_8), JSON);
+            journal.record(JournalEventType.DUMP_END, key, "bytes=" + bytes + " durationMillis=" + manifest.durationMillis + " checksum=" + manifest.checksum);
+            logger.info("uploaded heap dump to " + objectStore.location(key) + " " + manifest);
+            return Optional.of(manifest);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Upload of " + totalUrl + " to " + objectStore.location(key) + " failed.", e);
+            journal.record(JournalEventType.DUMP_FAILED, key, String.valueOf(e.getMessage()));
+            try {
+                upload.abort();
+            } catch (IOException abortException) {
+                logger.warn("Cannot abort upload of " + key + ": " + abortException.getMessage());
+            }
+            return Optional.empty();
         }
     }
 
-    public void heapdump(File path, String fileId) {
-        // http://localhost:8080/actuator/heapdump
-        String totalUrl = baseUrl + "/heapdump";
-        File file = new File(path, "heapdump-" + fileId + "-" + fileTimeStamp() + ".hprof");
-        downloadAndSave(file, totalUrl);
-        logger.info("wrote heap dump to " + file);
+    private DumpManifest createManifest(String file, String url, long bytes, String checksum, LocalDateTime startTime, long startNanos) {
+        DumpManifest manifest = new DumpManifest();
+        manifest.file = file;
+        manifest.instance = baseUrl;
+        manifest.url = url;
+        manifest.sizeBytes = bytes;
+        manifest.checksumAlgorithm = checksumAlgorithm.name();
+        manifest.checksum = checksum;
+        manifest.startTime = startTime.toString();
+        manifest.endTime = LocalDateTime.now().toString();
+        manifest.durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        return manifest;
     }
 
     private String fileTimeStamp() {
         return DATE_TIME_FORMATTER.format(LocalDateTime.now());
     }
 
-    public void threaddump(File path, String filename) {
+    public Optional<DumpManifest> threaddump(File path, String filename) {
+        return threaddump(path, filename, ThreadDumpFormat.TEXT);
+    }
+
+    public Optional<DumpManifest> threaddump(File path, String filename, ThreadDumpFormat format) {
         // http://localhost:8080/actuator/threaddump
         String totalUrl = baseUrl + "/threaddump";
-        File file = new File(path, "threaddump-" + filename + "-" + fileTimeStamp() + ".txt");
+        File file = new File(path, "threaddump-" + filename + "-" + fileTimeStamp() + "." + format.getExtension());
         Map<String, String> headers = new HashMap<>();
-        headers.put("Accept", "text/plain");
-        downloadAndSave(file, totalUrl, headers);
-        logger.info("wrote thread dump to " + file);
+        headers.put("Accept", format.getMediaType());
+        long epochMillis = System.currentTimeMillis();
+        Optional<DumpManifest> manifest = downloadAndSave(file, totalUrl, headers, false);
+        manifest.ifPresent(m -> logger.info("wrote thread dump to " + file + " " + m));
+        ThreadDumpListener listener = threadDumpListener;
+        if (manifest.isPresent() && format == ThreadDumpFormat.TEXT && listener != ThreadDumpListener.NONE) {
+            try {
+                listener.onThreadDump(file.getName(), epochMillis, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                logger.warn("Cannot read thread dump " + file + ": " + e.getMessage());
+            }
+        }
+        return manifest;
     }
 
-    private void downloadAndSave(File file, String url) {
-        downloadAndSave(file, url, Collections.emptyMap());
+    /**
+     * Get a thread dump and append it to the archive instead of saving it to a file of its own.
+     * The dump is downloaded in memory with the dump client, its timeouts and progress reporting.
+     * @param label name of the dump in the archive
+     * @return manifest with the archive as file, the bytes added to the archive as size and the checksum
+     * of the downloaded dump, empty when the dump failed
+     */
+    public Optional<DumpManifest> threaddump(ThreadDumpArchive archive, String label) {
+        String totalUrl = baseUrl + "/threaddump";
+        String name = "threaddump-" + label + "-" + fileTimeStamp();
+        LocalDateTime startTime = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        journal.record(JournalEventType.DUMP_START, name, totalUrl);
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            BinaryFileWriter writer = new BinaryFileWriter(buffer, checksumAlgorithm);
+            BinaryFileDownloader downloader = new BinaryFileDownloader(dumpOkHttpClient, writer, dumpIdleTimeout, progressListener, progressInterval);
+            downloader.download(totalUrl, Map.of("Accept", ThreadDumpFormat.TEXT.getMediaType()), name);
+            String text = buffer.toString(StandardCharsets.UTF_8);
+            long epochMillis = System.currentTimeMillis();
+            long bytes = archive.append(name, epochMillis, text);
+            threadDumpListener.onThreadDump(name, epochMillis, text);
+
+            DumpManifest manifest = createManifest(archive.getFile().getName(), totalUrl, bytes, writer.checksum(), startTime, startNanos);
+            journal.record(JournalEventType.DUMP_END, name, "bytes=" + bytes + " durationMillis=" + manifest.durationMillis
+                    + " checksum=" + manifest.checksum + " archive=" + manifest.file);
+            logger.info("added thread dump " + name + " to " + archive);
+            return Optional.of(manifest);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Thread dump " + name + " to archive " + archive.getFile() + " failed.", e);
+            journal.record(JournalEventType.DUMP_FAILED, name, String.valueOf(e.getMessage()));
+            return Optional.empty();
+        }
     }
 
-    private void downloadAndSave(File file, String url, Map<String,String> headers) {
+    /**
+     * Download to a temporary .part file, calculate the checksum in the same pass and
+     * rename to the final name only when complete. A manifest is written next to the file.
+     * A failed download leaves no (partial) file behind.
+     * @param compress gzip the file, size and checksum in the manifest are of the uncompressed dump
+     */
+    private Optional<DumpManifest> downloadAndSave(File file, String url, Map<String,String> headers, boolean compress) {
+        File partFile = new File(file.getPath() + ".part");
+        LocalDateTime startTime = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        journal.record(JournalEventType.DUMP_START, file.getName(), url);
         try {
-            FileOutputStream fos = new FileOutputStream(file);
+            long bytes;
+            String checksum;
+            OutputStream fileStream = new FileOutputStream(partFile);
+            try (OutputStream outputStream = compress ? new GZIPOutputStream(fileStream, GZIP_BUFFER_SIZE) : new BufferedOutputStream(fileStream)) {
+                BinaryFileWriter writer = new BinaryFileWriter(outputStream, checksumAlgorithm);
+                BinaryFileDownloader downloader = new BinaryFileDownloader(dumpOkHttpClient, writer, dumpIdleTimeout, progressListener, progressInterval);
+                bytes = downloader.download(url, headers, file.getName());
+                checksum = writer.checksum();
+            }
+            moveAtomically(partFile, file);
 
-            try (OutputStream outputStream = new BufferedOutputStream(fos)) {
-                BinaryFileWriter writer = new BinaryFileWriter(outputStream);
-                BinaryFileDownloader downloader = new BinaryFileDownloader(okHttpClient, writer);
-                downloader.download(url, headers);
+            DumpManifest manifest = createManifest(file.getName(), url, bytes, checksum, startTime, startNanos);
+            manifest.compression = compress ? COMPRESSION_GZIP : null;
+            writeManifest(file, manifest);
+            journal.record(JournalEventType.DUMP_END, file.getName(), "bytes=" + bytes + " durationMillis=" + manifest.durationMillis + " checksum=" + checksum);
+            return Optional.of(manifest);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Download and save of " + url + " to " + file + " failed.", e);
+            journal.record(JournalEventType.DUMP_FAILED, file.getName(), String.valueOf(e.getMessage()));
+            try {
+                Files.deleteIfExists(partFile.toPath());
+            } catch (IOException deleteException) {
+                logger.warn("Cannot delete partial download " + partFile + ": " + deleteException.getMessage());
             }
-        } catch (IOException e) {
-            logger.error("Create heap dump and save heap dump failed.", e);
+            return Optional.empty();
+        }
+    }
+
+    private static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeManifest(File file, DumpManifest manifest) throws IOException {
+        File manifestFile = new File(file.getPath() + ".manifest.json");
+        try (Writer writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            gson.toJson(manifest, writer);
         }
     }
 
@@ -16,11 +16,27 @@
 package io.perfana.events.springboot.actuator;
 
 public class ActuatorClientException extends Exception {
+
+    private final int statusCode;
+
     public ActuatorClientException(String message) {
+        this(message, -1);
+    }
+
+    public ActuatorClientException(String message, int statusCode) {
         super(message);
+        this.statusCode = statusCode;
     }
 
     public ActuatorClientException(String message, Throwable throwable) {
         super(message, throwable);
+        this.statusCode = -1;
+    }
+
+    /**
+     * @return http status code of the response, -1 when there was no response
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
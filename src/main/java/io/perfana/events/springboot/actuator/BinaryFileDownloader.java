@@ -21,30 +21,75 @@ import com.squareup.okhttp.Response;
 import com.squareup.okhttp.ResponseBody;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class BinaryFileDownloader implements AutoCloseable {
 
     private final OkHttpClient client;
     private final BinaryFileWriter writer;
+    private final Duration idleTimeout;
+    private final DownloadProgressListener progressListener;
+    private final Duration progressInterval;
 
     public BinaryFileDownloader(OkHttpClient client, BinaryFileWriter writer) {
+        this(client, writer, null);
+    }
+
+    public BinaryFileDownloader(OkHttpClient client, BinaryFileWriter writer, Duration idleTimeout) {
+        this(client, writer, idleTimeout, DownloadProgressListener.NONE, Duration.ZERO);
+    }
+
+    /**
+     * @param idleTimeout max time between reads of the response body, null to keep the client read timeout
+     * @param progressListener receives progress updates every progressInterval, and when done
+     * @param progressInterval interval of progress updates, zero to only report when done
+     */
+    public BinaryFileDownloader(OkHttpClient client, BinaryFileWriter writer, Duration idleTimeout, DownloadProgressListener progressListener, Duration progressInterval) {
         this.client = client;
         this.writer = writer;
+        this.idleTimeout = idleTimeout;
+        this.progressListener = progressListener;
+        this.progressInterval = progressInterval;
     }
 
-    public void download(String url, Map<String, String> headers) throws IOException {
+    public long download(String url, Map<String, String> headers) throws IOException {
+        return download(url, headers, url);
+    }
+
+    /**
+     * @param name name of the download used in progress updates
+     * @return number of bytes written
+     * @throws IOException also for non 2xx responses and when less bytes than the Content-Length are received
+     */
+    public long download(String url, Map<String, String> headers, String name) throws IOException {
         Request.Builder requestBuilder = new Request.Builder().url(url);
         headers.forEach(requestBuilder::header);
         Request request = requestBuilder.build();
 
         Response response = client.newCall(request).execute();
         ResponseBody responseBody = response.body();
+        if (!response.isSuccessful()) {
+            if (responseBody != null) {
+                responseBody.close();
+            }
+            throw new IOException("Unexpected status code (not 2xx): " + response.code() + " for " + url + ": " + response.message());
+        }
         if (responseBody == null) {
             throw new IllegalStateException("Response doesn't contain a file");
         }
-        //double length = Double.parseDouble(Objects.requireNonNull(response.header("Content-Length", "1")));
-        writer.write(responseBody.byteStream());
+        if (idleTimeout != null) {
+            // the client read timeout covers the wait for the first byte, from here on only stalls count
+            responseBody.source().timeout().timeout(idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        long contentLength = responseBody.contentLength();
+        ProgressTracker tracker = new ProgressTracker(name, contentLength, progressInterval, progressListener);
+        long bytes = writer.write(responseBody.byteStream(), tracker);
+        if (contentLength >= 0 && bytes != contentLength) {
+            throw new IOException("Truncated download of " + url + ": received " + bytes + " of " + contentLength + " bytes");
+        }
+        return bytes;
     }
 
     @Override
@@ -22,15 +22,31 @@ import java.io.OutputStream;
 
 public class BinaryFileWriter implements AutoCloseable {
 
-    private static final int CHUNK_SIZE = 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
 
     private final OutputStream outputStream;
+    private final ChecksumAlgorithm.Hasher hasher;
 
     public BinaryFileWriter(OutputStream outputStream) {
+        this(outputStream, ChecksumAlgorithm.NONE);
+    }
+
+    /**
+     * @param checksumAlgorithm checksum calculated over all written bytes in the same pass
+     */
+    public BinaryFileWriter(OutputStream outputStream, ChecksumAlgorithm checksumAlgorithm) {
         this.outputStream = outputStream;
+        this.hasher = checksumAlgorithm.create();
     }
 
     public long write(InputStream inputStream) throws IOException {
+        return write(inputStream, null);
+    }
+
+    /**
+     * @param tracker receives the running total after each chunk, can be null
+     */
+    public long write(InputStream inputStream, ProgressTracker tracker) throws IOException {
         try (BufferedInputStream input = new BufferedInputStream(inputStream)) {
             byte[] dataBuffer = new byte[CHUNK_SIZE];
             int readBytes;
@@ -38,11 +54,25 @@ public class BinaryFileWriter implements AutoCloseable {
             while ((readBytes = input.read(dataBuffer)) != -1) {
                 totalBytes += readBytes;
                 outputStream.write(dataBuffer, 0, readBytes);
+                hasher.update(dataBuffer, 0, readBytes);
+                if (tracker != null) {
+                    tracker.update(totalBytes);
+                }
+            }
+            if (tracker != null) {
+                tracker.finish(totalBytes);
             }
             return totalBytes;
         }
     }
 
+    /**
+     * @return hex checksum of all bytes written, call after write
+     */
+    public String checksum() {
+        return hasher.hex();
+    }
+
     @Override
     public void close() throws Exception {
         outputStream.close();
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksum calculated while a dump is written, so multi-GB files are not read a second time.
+ */
+public enum ChecksumAlgorithm {
+    /** fast, hardware accelerated on most platforms, detects truncation and corruption */
+    CRC32C,
+    /** cryptographic hash, slower, for when the dump is shared or archived */
+    SHA256,
+    NONE;
+
+    public interface Hasher {
+        void update(byte[] bytes, int offset, int length);
+        String hex();
+    }
+
+    public Hasher create() {
+        switch (this) {
+            case CRC32C:
+                return new Hasher() {
+                    private final CRC32C crc = new CRC32C();
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        crc.update(bytes, offset, length);
+                    }
+                    @Override
+                    public String hex() {
+                        return String.format("%08x", crc.getValue());
+                    }
+                };
+            case SHA256:
+                MessageDigest digest = sha256();
+                return new Hasher() {
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        digest.update(bytes, offset, length);
+                    }
+                    @Override
+                    public String hex() {
+                        StringBuilder hex = new StringBuilder();
+                        for (byte b : digest.digest()) {
+                            hex.append(String.format("%02x", b));
+                        }
+                        return hex.toString();
+                    }
+                };
+            default:
+                return new Hasher() {
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        // no checksum
+                    }
+                    @Override
+                    public String hex() {
+                        return "";
+                    }
+                };
+        }
+    }
+
+    /**
+     * @return the algorithm, accepts names like "crc32c", "sha-256" and "none"
+     */
+    public static ChecksumAlgorithm parse(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return CRC32C;
+        }
+        return valueOf(name.trim().toUpperCase().replace("-", ""));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
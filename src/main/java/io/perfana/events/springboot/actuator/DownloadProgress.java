@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Snapshot of a running (or finished) download.
+ */
+public class DownloadProgress {
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final String name;
+    private final long bytes;
+    private final long contentLength;
+    private final Duration elapsed;
+    private final boolean done;
+
+    public DownloadProgress(String name, long bytes, long contentLength, Duration elapsed, boolean done) {
+        this.name = name;
+        this.bytes = bytes;
+        this.contentLength = contentLength;
+        this.elapsed = elapsed;
+        this.done = done;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return expected total bytes from Content-Length, -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return percentage done, -1 if unknown
+     */
+    public double getPercentage() {
+        return contentLength > 0 ? 100.0 * bytes / contentLength : -1;
+    }
+
+    public double getMegaBytesPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? 0 : (bytes / MB) / (millis / 1000.0);
+    }
+
+    /**
+     * @return estimated time to go, null if unknown
+     */
+    public Duration getEta() {
+        if (contentLength <= 0 || bytes == 0) {
+            return null;
+        }
+        long remaining = Math.max(0, contentLength - bytes);
+        return Duration.ofMillis((long) ((double) remaining * elapsed.toMillis() / bytes));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(name).append(": ")
+                .append(String.format(Locale.ROOT, "%.1f MB", bytes / MB));
+        if (contentLength > 0) {
+            text.append(String.format(Locale.ROOT, " of %.1f MB (%.0f%%)", contentLength / MB, getPercentage()));
+        }
+        text.append(String.format(Locale.ROOT, ", %.1f MB/s", getMegaBytesPerSecond()));
+        Duration eta = getEta();
+        if (!done && eta != null) {
+            text.append(", ETA ").append(eta.getSeconds()).append("s");
+        }
+        if (done) {
+            text.append(", done in ").append(elapsed.toMillis()).append(" ms");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+/**
+ * Integrity manifest written next to each dump file as {@code <dump file>.manifest.json}.
+ */
+public class DumpManifest {
+    public String file;
+    public String instance;
+    public String url;
+    public long sizeBytes;
+    public String checksumAlgorithm;
+    public String checksum;
+    public String startTime;
+    public String endTime;
+    public long durationMillis;
+    /** gzip when the dump is stored compressed, sizeBytes and checksum are of the uncompressed dump */
+    public String compression;
+
+    @Override
+    public String toString() {
+        return "DumpManifest{" +
+                "file='" + file + '\'' +
+                ", sizeBytes=" + sizeBytes +
+                ", checksum='" + checksumAlgorithm + ":" + checksum + '\'' +
+                ", durationMillis=" + durationMillis +
+                (compression == null ? "" : ", compression=" + compression) +
+                '}';
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+/**
+ * Levels of one logger from the loggers endpoint. The configured level is null
+ * when the level is inherited from a parent logger.
+ */
+public class LoggerLevels {
+    public String configuredLevel;
+    public String effectiveLevel;
+
+    @Override
+    public String toString() {
+        return "LoggerLevels{" +
+                "configuredLevel='" + configuredLevel + '\'' +
+                ", effectiveLevel='" + effectiveLevel + '\'' +
+                '}';
+    }
+}
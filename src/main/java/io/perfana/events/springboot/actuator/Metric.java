@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class Metric {
+    public String name;
+    public String description;
+    public String baseUnit;
+    public List<Measurement> measurements;
+    public List<AvailableTag> availableTags;
+
+    /**
+     * @param statistic e.g. COUNT, TOTAL_TIME, MAX or VALUE
+     * @return value of the measurement with given statistic, if present
+     */
+    public Optional<Double> measurement(String statistic) {
+        if (measurements == null) {
+            return Optional.empty();
+        }
+        return measurements.stream()
+                .filter(m -> statistic.equals(m.statistic) && m.value != null)
+                .map(m -> m.value)
+                .findFirst();
+    }
+
+    /**
+     * @param statistic e.g. TOTAL_TIME or MAX of a timer
+     * @return value of the measurement with given statistic converted from the base unit to the given unit, if present
+     */
+    public Optional<Double> timeMeasurement(String statistic, TimeUnit unit) {
+        double factor = (double) baseUnitNanos() / unit.toNanos(1);
+        return measurement(statistic).map(value -> value * factor);
+    }
+
+    private long baseUnitNanos() {
+        if ("milliseconds".equals(baseUnit)) {
+            return TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        if ("microseconds".equals(baseUnit)) {
+            return TimeUnit.MICROSECONDS.toNanos(1);
+        }
+        if ("nanoseconds".equals(baseUnit)) {
+            return 1;
+        }
+        // Spring Boot uses seconds as base unit for timers
+        return TimeUnit.SECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return "Metric{" +
+                "name='" + name + '\'' +
+                ", baseUnit='" + baseUnit + '\'' +
+                ", measurements=" + measurements +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Receives every metric sample that is successfully fetched from the metrics endpoint.
+ */
+public interface MetricListener {
+
+    MetricListener NONE = (metricName, tags, metric) -> {};
+
+    /**
+     * @param tags the tags of the request, in name:value format
+     */
+    void onMetric(String metricName, List<String> tags, Metric metric);
+
+    /**
+     * @return listener that calls this listener and then the next one
+     */
+    default MetricListener andThen(MetricListener next) {
+        if (next == NONE) {
+            return this;
+        }
+        if (this == NONE) {
+            return next;
+        }
+        return (metricName, tags, metric) -> {
+            onMetric(metricName, tags, metric);
+            next.onMetric(metricName, tags, metric);
+        };
+    }
+
+    /**
+     * @return the metric name with the sorted tags, e.g. {@code http.server.requests(status:200,uri:/api)}
+     */
+    static String seriesKey(String metricName, List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return metricName;
+        }
+        List<String> sorted = new ArrayList<>(tags);
+        Collections.sort(sorted);
+        return metricName + "(" + String.join(",", sorted) + ")";
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.util.List;
+
+/**
+ * Fetches the given metrics on each run, for the {@link MetricListener} of the client.
+ * Schedule with a fixed delay in a SafeRunnable.
+ */
+public class MetricSampler implements Runnable {
+
+    private final ActuatorClient client;
+    private final List<String> metricNames;
+
+    public MetricSampler(ActuatorClient client, List<String> metricNames) {
+        this.client = client;
+        this.metricNames = List.copyOf(metricNames);
+    }
+
+    @Override
+    public void run() {
+        metricNames.forEach(client::metric);
+    }
+
+    @Override
+    public String toString() {
+        return "MetricSampler{" +
+                "metricNames=" + metricNames +
+                '}';
+    }
+}
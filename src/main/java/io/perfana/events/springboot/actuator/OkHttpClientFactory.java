@@ -24,9 +24,17 @@ public class OkHttpClientFactory {
     private OkHttpClientFactory() {}
 
     public static OkHttpClient instance() {
+        return instance(TimeoutProfile.FAST);
+    }
+
+    /**
+     * The read timeout of the client is the time to first byte of the profile, the
+     * idle timeout is applied per response body, see {@link BinaryFileDownloader}.
+     */
+    public static OkHttpClient instance(TimeoutProfile timeoutProfile) {
         OkHttpClient okHttpClient = new OkHttpClient();
-        okHttpClient.setConnectTimeout(2000, TimeUnit.MILLISECONDS);
-        okHttpClient.setReadTimeout(5000, TimeUnit.MILLISECONDS);
+        okHttpClient.setConnectTimeout(timeoutProfile.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        okHttpClient.setReadTimeout(timeoutProfile.getTimeToFirstByte().toMillis(), TimeUnit.MILLISECONDS);
         okHttpClient.setWriteTimeout(5000, TimeUnit.MILLISECONDS);
         return okHttpClient;
     }
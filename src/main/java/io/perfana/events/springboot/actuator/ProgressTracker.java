@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Reports download progress to a listener, at most once per interval.
+ */
+public class ProgressTracker {
+
+    private final String name;
+    private final long contentLength;
+    private final long intervalNanos;
+    private final DownloadProgressListener listener;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private long lastReportNanos;
+
+    public ProgressTracker(String name, long contentLength, Duration interval, DownloadProgressListener listener) {
+        this(name, contentLength, interval, listener, System::nanoTime);
+    }
+
+    ProgressTracker(String name, long contentLength, Duration interval, DownloadProgressListener listener, LongSupplier nanoClock) {
+        this.name = name;
+        this.contentLength = contentLength;
+        this.intervalNanos = interval.toNanos();
+        this.listener = listener;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.lastReportNanos = startNanos;
+    }
+
+    public void update(long totalBytes) {
+        long now = nanoClock.getAsLong();
+        if (intervalNanos > 0 && now - lastReportNanos >= intervalNanos) {
+            lastReportNanos = now;
+            listener.onProgress(new DownloadProgress(name, totalBytes, contentLength, Duration.ofNanos(now - startNanos), false));
+        }
+    }
+
+    public void finish(long totalBytes) {
+        listener.onProgress(new DownloadProgress(name, totalBytes, contentLength, Duration.ofNanos(nanoClock.getAsLong() - startNanos), true));
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+/**
+ * Receives the text of every thread dump that is successfully saved or archived.
+ */
+public interface ThreadDumpListener {
+
+    ThreadDumpListener NONE = (name, epochMillis, text) -> {};
+
+    /**
+     * @param name name of the dump file or the label in the archive
+     */
+    void onThreadDump(String name, long epochMillis, String text);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import java.time.Duration;
+
+/**
+ * Timeouts for a class of actuator endpoints.
+ * <p>
+ * Fast endpoints (env, info, health, metrics) use short timeouts. Dump endpoints
+ * (heapdump, threaddump) can take a long time before the first byte arrives, because the
+ * target first creates the dump, so these use a long time-to-first-byte. Once the body
+ * streams, the idle timeout applies to each read: a stalled transfer aborts quickly,
+ * a slow but progressing one completes.
+ */
+public class TimeoutProfile {
+
+    public static final TimeoutProfile FAST = new TimeoutProfile(Duration.ofSeconds(2), Duration.ofSeconds(5), null);
+
+    private final Duration connectTimeout;
+    private final Duration timeToFirstByte;
+    private final Duration idleTimeout;
+
+    private TimeoutProfile(Duration connectTimeout, Duration timeToFirstByte, Duration idleTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.timeToFirstByte = timeToFirstByte;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static TimeoutProfile streaming(Duration timeToFirstByte, Duration idleTimeout) {
+        return new TimeoutProfile(FAST.connectTimeout, timeToFirstByte, idleTimeout);
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return max time to wait for the response headers, also the read timeout when there is no idle timeout
+     */
+    public Duration getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * @return max time without progress while reading the response body, null if not applicable
+     */
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeoutProfile{" +
+                "connectTimeout=" + connectTimeout +
+                ", timeToFirstByte=" + timeToFirstByte +
+                ", idleTimeout=" + idleTimeout +
+                '}';
+    }
+}
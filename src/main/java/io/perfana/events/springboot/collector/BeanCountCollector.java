@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import com.google.gson.stream.JsonReader;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the beans of the beans or configprops endpoint, e.g. "beans.count".
+ */
+public class BeanCountCollector implements EndpointCollector {
+
+    private final String endpoint;
+
+    /**
+     * @param endpoint "beans" or "configprops"
+     */
+    public BeanCountCollector(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public String name() {
+        return endpoint;
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        return client.get("/" + endpoint, body -> {
+                    AtomicLong count = new AtomicLong();
+                    try (JsonReader reader = new JsonReader(body.charStream())) {
+                        ContextBeans.forEachBean(reader, (context, beanName, beanReader) -> {
+                            count.incrementAndGet();
+                            beanReader.skipValue();
+                        });
+                    }
+                    return List.of(new Variable(endpoint + ".count", String.valueOf(count.get())));
+                })
+                .orElse(List.of());
+    }
+}
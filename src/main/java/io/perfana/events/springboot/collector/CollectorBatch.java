@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.events.springboot.journal.Journal;
+import io.perfana.events.springboot.journal.JournalEventType;
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs endpoint collectors in parallel with one overall deadline, so adding collectors
+ * does not add up their (retry) delays. Collectors that do not finish in time are
+ * cancelled and logged, the results of the others are used.
+ */
+public class CollectorBatch {
+
+    private static final int MAX_THREADS = 8;
+
+    private final List<EndpointCollector> collectors;
+    private final Duration deadline;
+    private final EventLogger logger;
+    private final Journal journal;
+
+    public CollectorBatch(List<EndpointCollector> collectors, Duration deadline, EventLogger logger) {
+        this(collectors, deadline, logger, Journal.NOOP);
+    }
+
+    public CollectorBatch(List<EndpointCollector> collectors, Duration deadline, EventLogger logger, Journal journal) {
+        this.collectors = List.copyOf(collectors);
+        this.deadline = deadline;
+        this.logger = logger;
+        this.journal = journal;
+    }
+
+    /**
+     * @return the variables of all collectors that finished in time, in collector order
+     */
+    public List<Variable> collect(ActuatorClient client) {
+        if (collectors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(collectors.size(), MAX_THREADS), new CollectorThreadFactory());
+        List<Variable> variables = new ArrayList<>();
+        try {
+            List<Callable<List<Variable>>> tasks = collectors.stream()
+                    .map(collector -> (Callable<List<Variable>>) () -> collectAndRecord(collector, client))
+                    .collect(Collectors.toList());
+            long startNanos = System.nanoTime();
+            List<Future<List<Variable>>> futures = executor.invokeAll(tasks, deadline.toMillis(), TimeUnit.MILLISECONDS);
+            logger.debug("Collectors finished in " + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+
+            for (int i = 0; i < futures.size(); i++) {
+                Future<List<Variable>> future = futures.get(i);
+                String name = collectors.get(i).name();
+                if (future.isCancelled()) {
+                    logger.warn("Collector " + name + " did not finish within " + deadline + ", skipped");
+                    journal.record(JournalEventType.COLLECT, name, "skipped, deadline " + deadline);
+                    continue;
+                }
+                try {
+                    variables.addAll(future.get());
+                } catch (ExecutionException e) {
+                    logger.error("Collector " + name + " failed", e.getCause());
+                    journal.record(JournalEventType.COLLECT, name, "failed: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while collecting actuator values");
+        } finally {
+            executor.shutdownNow();
+        }
+        return variables;
+    }
+
+    private List<Variable> collectAndRecord(EndpointCollector collector, ActuatorClient client) {
+        long startNanos = System.nanoTime();
+        List<Variable> variables = collector.collect(client);
+        journal.record(JournalEventType.COLLECT, collector.name(),
+                "variables=" + variables.size() + " durationMillis=" + (System.nanoTime() - startNanos) / 1_000_000);
+        return variables;
+    }
+
+    private static class CollectorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "actuator-collector-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
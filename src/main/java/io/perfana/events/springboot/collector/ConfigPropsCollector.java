@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import com.google.gson.stream.JsonReader;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Collects the effective values of @ConfigurationProperties beans from the configprops endpoint,
+ * for the requested prefixes, e.g. "spring.datasource.hikari" gives
+ * "configprops.spring.datasource.hikari.maximumPoolSize". Unlike the env endpoint this
+ * includes the default values. Also reports the number of beans as "configprops.count".
+ * <p>
+ * The response is streamed, only the properties of one bean are kept in memory at a time.
+ */
+public class ConfigPropsCollector implements EndpointCollector {
+
+    private static final String VARIABLE_PREFIX = "configprops.";
+
+    // value of sanitized properties such as passwords
+    private static final String SANITIZED = "******";
+
+    private final List<String> prefixes;
+
+    public ConfigPropsCollector(List<String> prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    @Override
+    public String name() {
+        return "configprops";
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        return client.get("/configprops", body -> {
+                    try (JsonReader reader = new JsonReader(body.charStream())) {
+                        return read(reader);
+                    }
+                })
+                .orElse(List.of());
+    }
+
+    List<Variable> read(JsonReader reader) throws IOException {
+        // same bean can be present in parent and child contexts, first one wins
+        Map<String, String> values = new LinkedHashMap<>();
+        long[] count = new long[1];
+        ContextBeans.forEachBean(reader, (context, beanName, beanReader) -> {
+            count[0]++;
+            readBean(beanReader).forEach(values::putIfAbsent);
+        });
+
+        List<Variable> variables = new ArrayList<>();
+        variables.add(new Variable(VARIABLE_PREFIX + "count", String.valueOf(count[0])));
+        values.forEach((name, value) -> variables.add(new Variable(VARIABLE_PREFIX + name, value)));
+        return variables;
+    }
+
+    /**
+     * @return flattened properties of the bean that match one of the prefixes
+     */
+    private Map<String, String> readBean(JsonReader reader) throws IOException {
+        String beanPrefix = null;
+        Map<String, String> properties = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("prefix".equals(name)) {
+                beanPrefix = reader.nextString();
+            } else if ("properties".equals(name)) {
+                flatten(reader, "", properties);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (beanPrefix == null || properties.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> matching = new LinkedHashMap<>();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String key = beanPrefix + "." + property.getKey();
+            if (matchesPrefix(key) && !SANITIZED.equals(property.getValue())) {
+                matching.put(key, property.getValue());
+            }
+        }
+        return matching;
+    }
+
+    private boolean matchesPrefix(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix + ".") || key.startsWith(prefix + "[")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void flatten(JsonReader reader, String path, Map<String, String> properties) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    flatten(reader, path.isEmpty() ? name : path + "." + name, properties);
+                }
+                reader.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                int index = 0;
+                while (reader.hasNext()) {
+                    flatten(reader, path + "[" + index++ + "]", properties);
+                }
+                reader.endArray();
+                break;
+            case BOOLEAN:
+                properties.put(path, String.valueOf(reader.nextBoolean()));
+                break;
+            case NULL:
+                reader.nextNull();
+                break;
+            default:
+                // strings and numbers, numbers keep their literal form
+                properties.put(path, reader.nextString());
+        }
+    }
+}
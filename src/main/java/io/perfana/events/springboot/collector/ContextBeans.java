@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Streams the beans of the beans and configprops endpoints, which share the layout
+ * {@code {"contexts":{"<context>":{"beans":{"<bean>":{...}},"parentId":...}}}}.
+ * These responses can be large, so they are not parsed into a tree.
+ */
+final class ContextBeans {
+
+    @FunctionalInterface
+    interface BeanVisitor {
+        /**
+         * Called for each bean, the visitor must consume the bean value from the reader.
+         */
+        void visit(String context, String beanName, JsonReader reader) throws IOException;
+    }
+
+    private ContextBeans() {
+    }
+
+    static void forEachBean(JsonReader reader, BeanVisitor visitor) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"contexts".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String context = reader.nextName();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!"beans".equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        visitor.visit(context, reader.nextName(), reader);
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+
+import java.util.List;
+
+/**
+ * Collects the requested properties from the env endpoint.
+ */
+public class EnvCollector implements EndpointCollector {
+
+    private final List<String> envProperties;
+
+    public EnvCollector(List<String> envProperties) {
+        this.envProperties = envProperties;
+    }
+
+    @Override
+    public String name() {
+        return "env";
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        return client.queryActuator(envProperties);
+    }
+}
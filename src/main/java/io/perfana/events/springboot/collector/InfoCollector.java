@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the build version from the info endpoint.
+ */
+public class InfoCollector implements EndpointCollector {
+
+    private final Gson gson = new Gson();
+
+    private final EventLogger logger;
+
+    public InfoCollector(EventLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public String name() {
+        return "info";
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        String info = client.info();
+        logger.debug("Application info: " + info);
+
+        if (info.contains("version")) {
+            try {
+                Type type = new TypeToken<Map<String, Object>>() {}.getType();
+                Map<String, Object> infoMap = gson.fromJson(info, type);
+                Map<String, Object> build = (Map<String, Object>) infoMap.get("build");
+                String version = (String) build.get("version");
+                return List.of(new Variable("version", version));
+            } catch (Exception e) {
+                logger.warn("cannot retrieve version from info object: " + info);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
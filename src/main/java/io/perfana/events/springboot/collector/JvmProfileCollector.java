@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.actuator.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Collects a normalized profile of the effective JVM settings, so runs with different
+ * garbage collectors or heap settings are directly comparable. Combines the java options
+ * from the env endpoint (JAVA_TOOL_OPTIONS, JDK_JAVA_OPTIONS, JAVA_OPTS) with the values
+ * the JVM actually uses according to the metrics endpoint, which include ergonomics and
+ * container limits.
+ * <p>
+ * Keys: jvm.gc.collector, jvm.gc.names, jvm.heap.max.bytes, jvm.heap.max.source,
+ * jvm.heap.initial, jvm.cpu.count, jvm.cpu.count.source, jvm.version, jvm.vendor, jvm.runtime.
+ * Only keys with a known value are reported.
+ */
+public class JvmProfileCollector implements EndpointCollector {
+
+    // in order of precedence, last one wins: options on the command line override the tool options
+    private static final List<String> JAVA_OPTIONS_PROPERTIES = List.of("JAVA_TOOL_OPTIONS", "JDK_JAVA_OPTIONS", "JAVA_OPTS");
+
+    private static final Map<String, String> GC_FLAGS = Map.of(
+            "UseG1GC", "G1",
+            "UseZGC", "ZGC",
+            "UseShenandoahGC", "Shenandoah",
+            "UseParallelGC", "Parallel",
+            "UseSerialGC", "Serial",
+            "UseConcMarkSweepGC", "CMS",
+            "UseEpsilonGC", "Epsilon");
+
+    @Override
+    public String name() {
+        return "jvm";
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        Map<String, String> options = javaOptions(client.queryActuator(JAVA_OPTIONS_PROPERTIES));
+
+        Map<String, String> profile = new LinkedHashMap<>();
+
+        List<String> gcNames = client.metric("jvm.gc.pause")
+                .map(m -> tagValues(m, "gc"))
+                .orElse(Collections.emptyList());
+        String collector = collectorFromGcNames(gcNames);
+        if (collector == null) {
+            collector = collectorFromOptions(options);
+        }
+        putIfNotNull(profile, "jvm.gc.collector", collector);
+        if (!gcNames.isEmpty()) {
+            profile.put("jvm.gc.names", String.join(",", gcNames));
+        }
+
+        heapMaxBytes(client).ifPresent(bytes -> profile.put("jvm.heap.max.bytes", String.valueOf(bytes)));
+        profile.put("jvm.heap.max.source", heapMaxSource(options));
+        putIfNotNull(profile, "jvm.heap.initial", options.get("Xms"));
+
+        client.metric("system.cpu.count")
+                .flatMap(m -> m.measurement("VALUE"))
+                .ifPresent(count -> profile.put("jvm.cpu.count", String.valueOf(count.longValue())));
+        profile.put("jvm.cpu.count.source", options.containsKey("ActiveProcessorCount") ? "ActiveProcessorCount" : "detected");
+
+        // jvm.info is available from Micrometer 1.10
+        client.metric("jvm.info").ifPresent(info -> {
+            tagValues(info, "version").stream().findFirst().ifPresent(v -> profile.put("jvm.version", v));
+            tagValues(info, "vendor").stream().findFirst().ifPresent(v -> profile.put("jvm.vendor", v));
+            tagValues(info, "runtime").stream().findFirst().ifPresent(v -> profile.put("jvm.runtime", v));
+        });
+
+        return profile.entrySet().stream()
+                .map(e -> new Variable(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sum of the max of all heap pools. Pools without a max report -1, e.g. the G1 eden and survivor
+     * spaces, so the pools are requested one by one instead of summed by the metrics endpoint.
+     */
+    private static Optional<Long> heapMaxBytes(ActuatorClient client) {
+        List<String> heapTag = List.of("area:heap");
+        Optional<Metric> heap = client.metric("jvm.memory.max", heapTag);
+        if (heap.isEmpty()) {
+            return Optional.empty();
+        }
+        long total = 0;
+        for (String pool : tagValues(heap.get(), "id")) {
+            Optional<Double> max = client.metric("jvm.memory.max", List.of("area:heap", "id:" + pool))
+                    .flatMap(m -> m.measurement("VALUE"));
+            if (max.isPresent() && max.get() > 0) {
+                total += max.get().longValue();
+            }
+        }
+        return total > 0 ? Optional.of(total) : Optional.empty();
+    }
+
+    /**
+     * @return java options by name without dashes and +/- prefix, e.g. Xmx, MaxRAMPercentage, UseG1GC
+     * (value "true" or "false"), later options override earlier ones just like the JVM does
+     */
+    static Map<String, String> javaOptions(List<Variable> envVariables) {
+        Map<String, String> options = new HashMap<>();
+        for (String property : JAVA_OPTIONS_PROPERTIES) {
+            envVariables.stream()
+                    .filter(v -> v.getName().equals(property) || v.getName().endsWith(":" + property))
+                    .map(Variable::getValue)
+                    .filter(Objects::nonNull)
+                    .forEach(value -> parseOptions(value, options));
+        }
+        return options;
+    }
+
+    private static void parseOptions(String value, Map<String, String> options) {
+        for (String option : value.trim().split("\\s+")) {
+            if (option.startsWith("-XX:+") || option.startsWith("-XX:-")) {
+                options.put(option.substring(5), String.valueOf(option.charAt(4) == '+'));
+            } else if (option.startsWith("-XX:") && option.contains("=")) {
+                int equals = option.indexOf('=');
+                options.put(option.substring(4, equals), option.substring(equals + 1));
+            } else if (option.startsWith("-Xmx") || option.startsWith("-Xms") || option.startsWith("-Xss")) {
+                options.put(option.substring(1, 4), option.substring(4));
+            }
+        }
+    }
+
+    static String collectorFromGcNames(List<String> gcNames) {
+        for (String gcName : gcNames) {
+            if (gcName.startsWith("G1 ")) return "G1";
+            if (gcName.startsWith("ZGC")) return "ZGC";
+            if (gcName.startsWith("Shenandoah")) return "Shenandoah";
+            if (gcName.startsWith("PS ")) return "Parallel";
+            if (gcName.equals("Copy") || gcName.equals("MarkSweepCompact")) return "Serial";
+            if (gcName.equals("ParNew") || gcName.equals("ConcurrentMarkSweep")) return "CMS";
+        }
+        return null;
+    }
+
+    private static String collectorFromOptions(Map<String, String> options) {
+        return GC_FLAGS.entrySet().stream()
+                .filter(e -> "true".equals(options.get(e.getKey())))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String heapMaxSource(Map<String, String> options) {
+        if (options.containsKey("Xmx")) return "Xmx";
+        if (options.containsKey("MaxHeapSize")) return "MaxHeapSize";
+        if (options.containsKey("MaxRAMPercentage")) return "MaxRAMPercentage";
+        if (options.containsKey("MaxRAM")) return "MaxRAM";
+        return "ergonomics";
+    }
+
+    private static List<String> tagValues(Metric metric, String tagName) {
+        if (metric.availableTags == null) {
+            return Collections.emptyList();
+        }
+        return metric.availableTags.stream()
+                .filter(t -> tagName.equals(t.tag) && t.values != null)
+                .flatMap(t -> t.values.stream())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static void putIfNotNull(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+}
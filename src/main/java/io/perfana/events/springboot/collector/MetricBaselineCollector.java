@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.actuator.Variable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Collects the value of a metric at the start of the test, one variable per statistic,
+ * e.g. "metrics.jvm.memory.used.value".
+ */
+public class MetricBaselineCollector implements EndpointCollector {
+
+    private final String metricName;
+
+    public MetricBaselineCollector(String metricName) {
+        this.metricName = metricName;
+    }
+
+    @Override
+    public String name() {
+        return "metrics/" + metricName;
+    }
+
+    @Override
+    public List<Variable> collect(ActuatorClient client) {
+        Optional<Metric> metric = client.metric(metricName);
+        List<Variable> variables = new ArrayList<>();
+        if (metric.isPresent() && metric.get().measurements != null) {
+            for (Measurement measurement : metric.get().measurements) {
+                if (measurement.statistic != null && measurement.value != null) {
+                    String name = "metrics." + metricName + "." + measurement.statistic.toLowerCase(Locale.ROOT);
+                    variables.add(new Variable(name, plain(measurement.value)));
+                }
+            }
+        }
+        return variables;
+    }
+
+    static String plain(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
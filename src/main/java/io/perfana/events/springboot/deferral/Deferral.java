@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.deferral;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of waiting at the {@link LoadGate}: when the capture was requested, when it is allowed and why.
+ */
+@Immutable
+public class Deferral {
+
+    public enum Reason {
+        /** the gate is disabled */
+        NOT_DEFERRED,
+        LOW_LOAD,
+        PHASE_BOUNDARY,
+        MAX_DELAY,
+        NO_LOAD_METRICS,
+        /** the wait was interrupted, do not capture */
+        INTERRUPTED
+    }
+
+    private final Instant requestedAt;
+    private final Duration delay;
+    private final Reason reason;
+    private final double cpuUsage;
+    private final double requestsPerSecond;
+    private final Instant capturedAt;
+
+    public Deferral(Instant requestedAt, Duration delay, Reason reason, double cpuUsage, double requestsPerSecond) {
+        this(requestedAt, delay, reason, cpuUsage, requestsPerSecond, null);
+    }
+
+    private Deferral(Instant requestedAt, Duration delay, Reason reason, double cpuUsage, double requestsPerSecond, Instant capturedAt) {
+        this.requestedAt = requestedAt;
+        this.delay = delay;
+        this.reason = reason;
+        this.cpuUsage = cpuUsage;
+        this.requestsPerSecond = requestsPerSecond;
+        this.capturedAt = capturedAt;
+    }
+
+    public static Deferral notDeferred(Instant now) {
+        return new Deferral(now, Duration.ZERO, Reason.NOT_DEFERRED, Double.NaN, Double.NaN);
+    }
+
+    public Instant getRequestedAt() {
+        return requestedAt;
+    }
+
+    /**
+     * @return this deferral with the time the capture actually started, after waiting for a running dump
+     */
+    public Deferral capturedAt(Instant capturedAt) {
+        return new Deferral(requestedAt, delay, reason, cpuUsage, requestsPerSecond, capturedAt);
+    }
+
+    /**
+     * @return time the capture started, null when not captured (yet)
+     */
+    public Instant getCapturedAt() {
+        return capturedAt;
+    }
+
+    public Duration getDelay() {
+        return delay;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public boolean isCapture() {
+        return reason != Reason.INTERRUPTED;
+    }
+
+    /**
+     * @return true when the capture waited at the gate or is skipped, only then the deferral is reported
+     */
+    public boolean isDeferred() {
+        return !delay.isZero() || !isCapture();
+    }
+
+    /**
+     * @return last sampled process.cpu.usage, NaN when not available
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    /**
+     * @return last sampled rate of http.server.requests, NaN when not available
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public Map<String, String> toKeyValues(String prefix) {
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        keyValues.put(prefix + "requestedAt", requestedAt.toString());
+        if (capturedAt != null) {
+            keyValues.put(prefix + "capturedAt", capturedAt.toString());
+        }
+        keyValues.put(prefix + "deferralMillis", String.valueOf(delay.toMillis()));
+        keyValues.put(prefix + "deferralReason", reason.name().toLowerCase(Locale.ROOT));
+        if (!Double.isNaN(cpuUsage)) {
+            keyValues.put(prefix + "cpuUsage", String.format(Locale.ROOT, "%.3f", cpuUsage));
+        }
+        if (!Double.isNaN(requestsPerSecond)) {
+            keyValues.put(prefix + "requestsPerSecond", String.format(Locale.ROOT, "%.1f", requestsPerSecond));
+        }
+        return keyValues;
+    }
+
+    @Override
+    public String toString() {
+        return "Deferral{" +
+                "requestedAt=" + requestedAt +
+                ", delay=" + delay +
+                ", reason=" + reason +
+                ", cpuUsage=" + cpuUsage +
+                ", requestsPerSecond=" + requestsPerSecond +
+                ", capturedAt=" + capturedAt +
+                '}';
+    }
+}
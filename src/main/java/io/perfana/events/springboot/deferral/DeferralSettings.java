@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.deferral;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link LoadGate}. Thresholds of zero are disabled.
+ */
+@Immutable
+public class DeferralSettings {
+
+    public static final DeferralSettings DISABLED = new DeferralSettings(false, 0, 0, Duration.ZERO, Duration.ofSeconds(5));
+
+    private final boolean enabled;
+    private final double maxCpuUsage;
+    private final double maxRequestsPerSecond;
+    private final Duration maxDelay;
+    private final Duration pollInterval;
+
+    public DeferralSettings(boolean enabled, double maxCpuUsage, double maxRequestsPerSecond, Duration maxDelay, Duration pollInterval) {
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("pollInterval should be positive: " + pollInterval);
+        }
+        this.enabled = enabled;
+        this.maxCpuUsage = maxCpuUsage;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxDelay = maxDelay;
+        this.pollInterval = pollInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return defer while process.cpu.usage (0 to 1) is above this value, 0 to disable
+     */
+    public double getMaxCpuUsage() {
+        return maxCpuUsage;
+    }
+
+    /**
+     * @return defer while the rate of http.server.requests is above this value, 0 to disable
+     */
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "DeferralSettings{" +
+                "enabled=" + enabled +
+                ", maxCpuUsage=" + maxCpuUsage +
+                ", maxRequestsPerSecond=" + maxRequestsPerSecond +
+                ", maxDelay=" + maxDelay +
+                ", pollInterval=" + pollInterval +
+                '}';
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.deferral;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.sampling.TestPhase;
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds back a disturbing capture, such as a heap dump, while the application is busy. Polls process.cpu.usage and
+ * the rate of http.server.requests until both are at or below their thresholds, the test phase changes or the
+ * maximum delay has passed, whichever comes first.
+ * <p>
+ * The request rate needs two samples, with a request threshold the first decision is made after one poll interval.
+ * Blocks the calling thread.
+ */
+public class LoadGate {
+
+    static final String CPU_METRIC = "process.cpu.usage";
+    static final String REQUESTS_METRIC = "http.server.requests";
+
+    private final ActuatorClient client;
+    private final DeferralSettings settings;
+    private final Supplier<TestPhase> phase;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+    private final EventLogger logger;
+
+    /**
+     * @param phase current test phase, null when unknown
+     */
+    public LoadGate(ActuatorClient client, DeferralSettings settings, Supplier<TestPhase> phase, EventLogger logger) {
+        this(client, settings, phase, System::nanoTime, d -> Thread.sleep(d.toMillis()), logger);
+    }
+
+    LoadGate(ActuatorClient client, DeferralSettings settings, Supplier<TestPhase> phase, LongSupplier nanoClock, Sleeper sleeper, EventLogger logger) {
+        this.client = client;
+        this.settings = settings;
+        this.phase = phase;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.logger = logger;
+    }
+
+    /**
+     * Wait until the capture is allowed.
+     */
+    public Deferral await() {
+        Instant requestedAt = Instant.now();
+        if (!settings.isEnabled()) {
+            return Deferral.notDeferred(requestedAt);
+        }
+        long startNanos = nanoClock.getAsLong();
+        TestPhase startPhase = phase.get();
+        boolean checkCpu = settings.getMaxCpuUsage() > 0;
+        boolean checkRequests = settings.getMaxRequestsPerSecond() > 0;
+        double previousCount = Double.NaN;
+        long previousNanos = 0;
+        while (true) {
+            long nanos = nanoClock.getAsLong();
+            Duration delay = Duration.ofNanos(nanos - startNanos);
+            double cpu = checkCpu ? client.metric(CPU_METRIC).flatMap(m -> m.measurement("VALUE")).orElse(Double.NaN) : Double.NaN;
+            double count = checkRequests ? client.metric(REQUESTS_METRIC).flatMap(m -> m.measurement("COUNT")).orElse(Double.NaN) : Double.NaN;
+            // a lower count means the application restarted, wait for the next sample
+            double rate = !Double.isNaN(previousCount) && count >= previousCount && nanos > previousNanos
+                    ? (count - previousCount) * 1_000_000_000.0 / (nanos - previousNanos) : Double.NaN;
+
+            Deferral.Reason reason = null;
+            if ((!checkCpu || Double.isNaN(cpu)) && (!checkRequests || Double.isNaN(count))) {
+                reason = Deferral.Reason.NO_LOAD_METRICS;
+            } else if ((!checkCpu || Double.isNaN(cpu) || cpu <= settings.getMaxCpuUsage())
+                    && (!checkRequests || Double.isNaN(count) || (!Double.isNaN(rate) && rate <= settings.getMaxRequestsPerSecond()))) {
+                reason = Deferral.Reason.LOW_LOAD;
+            } else if (startPhase != null && startPhase != phase.get()) {
+                reason = Deferral.Reason.PHASE_BOUNDARY;
+            } else if (delay.compareTo(settings.getMaxDelay()) >= 0) {
+                reason = Deferral.Reason.MAX_DELAY;
+            }
+            if (reason != null) {
+                return new Deferral(requestedAt, delay, reason, cpu, rate);
+            }
+            if (!Double.isNaN(count)) {
+                previousCount = count;
+                previousNanos = nanos;
+            }
+            Duration remaining = settings.getMaxDelay().minus(delay);
+            Duration wait = remaining.compareTo(settings.getPollInterval()) < 0 ? remaining : settings.getPollInterval();
+            logger.debug("Defer capture: cpu usage " + cpu + ", requests per second " + rate + ", wait " + wait);
+            try {
+                sleeper.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Deferral(requestedAt, Duration.ofNanos(nanoClock.getAsLong() - startNanos), Deferral.Reason.INTERRUPTED, cpu, rate);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LoadGate{" +
+                "settings=" + settings +
+                '}';
+    }
+
+    interface Sleeper {
+        void sleep(Duration duration) throws InterruptedException;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.ThreadDumpFormat;
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Options of one heapdump or threaddump event, from the settings of the schedule line,
+ * e.g. {@code PT1M|threaddump|count=10;interval=PT1S;format=json}.
+ */
+@Immutable
+public class DumpOptions {
+
+    public static final DumpOptions DEFAULTS = new DumpOptions(null, false, 1, 1, null, ThreadDumpFormat.TEXT, Collections.emptySet());
+
+    private static final Set<String> KEYS = Set.of("live", "compress", "instances", "count", "interval", "format");
+
+    private final Boolean live;
+    private final boolean compress;
+    private final int instances;
+    private final int count;
+    private final Duration interval;
+    private final ThreadDumpFormat format;
+    private final Set<String> unknownKeys;
+
+    DumpOptions(Boolean live, boolean compress, int instances, int count, Duration interval, ThreadDumpFormat format, Set<String> unknownKeys) {
+        this.live = live;
+        this.compress = compress;
+        this.instances = instances;
+        this.count = count;
+        this.interval = interval;
+        this.format = format;
+        this.unknownKeys = Collections.unmodifiableSet(unknownKeys);
+    }
+
+    /**
+     * @param settings as parsed by {@link SpringBootEvent#parseSettings(String)}
+     * @throws IllegalArgumentException for invalid values
+     */
+    public static DumpOptions parse(Map<String, String> settings) {
+        Set<String> unknownKeys = new TreeSet<>(settings.keySet());
+        unknownKeys.removeAll(KEYS);
+        return new DumpOptions(
+                settings.containsKey("live") ? parseBoolean("live", settings.get("live")) : null,
+                settings.containsKey("compress") && parseBoolean("compress", settings.get("compress")),
+                settings.containsKey("instances") ? parsePositive("instances", settings.get("instances")) : 1,
+                settings.containsKey("count") ? parsePositive("count", settings.get("count")) : 1,
+                settings.containsKey("interval") ? parseDuration("interval", settings.get("interval")) : null,
+                settings.containsKey("format") ? parseFormat(settings.get("format")) : ThreadDumpFormat.TEXT,
+                unknownKeys);
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("Invalid " + key + ", use true or false: " + value);
+    }
+
+    private static int parsePositive(String key, String value) {
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid " + key + ", use a positive number: " + value);
+    }
+
+    private static Duration parseDuration(String key, String value) {
+        try {
+            Duration duration = Duration.parse(value.trim());
+            if (!duration.isNegative()) {
+                return duration;
+            }
+        } catch (DateTimeParseException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid " + key + ", use an ISO-8601 duration such as PT1S: " + value);
+    }
+
+    private static ThreadDumpFormat parseFormat(String value) {
+        try {
+            return ThreadDumpFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid format, use text or json: " + value, e);
+        }
+    }
+
+    /**
+     * @return true to only dump live objects, false for all objects, null to use the event config
+     */
+    public Boolean getLive() {
+        return live;
+    }
+
+    /**
+     * @return true to gzip the heap dump while it is written
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * @return requested number of instances to dump, an event dumps its one actuatorBaseUrl
+     */
+    public int getInstances() {
+        return instances;
+    }
+
+    /**
+     * @return number of thread dumps to take
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return time between thread dumps, null to use the event config
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public ThreadDumpFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return setting keys that are not dump options
+     */
+    public Set<String> getUnknownKeys() {
+        return unknownKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "DumpOptions{" +
+                "live=" + live +
+                ", compress=" + compress +
+                ", instances=" + instances +
+                ", count=" + count +
+                ", interval=" + interval +
+                ", format=" + format +
+                '}';
+    }
+}
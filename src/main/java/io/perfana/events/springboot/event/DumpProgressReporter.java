@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.DownloadProgress;
+import io.perfana.events.springboot.actuator.DownloadProgressListener;
+import io.perfana.eventscheduler.api.EventLogger;
+import io.perfana.eventscheduler.api.message.EventMessage;
+import io.perfana.eventscheduler.api.message.EventMessageBus;
+
+import java.util.Locale;
+
+/**
+ * Reports dump download progress to the event logger and as message on the event message bus,
+ * so long running dumps can be followed and correlated with the load test results.
+ */
+class DumpProgressReporter implements DownloadProgressListener {
+
+    static final String PROGRESS_MESSAGE = "dump-progress";
+
+    private final String pluginName;
+    private final EventMessageBus messageBus;
+    private final EventLogger logger;
+
+    DumpProgressReporter(String pluginName, EventMessageBus messageBus, EventLogger logger) {
+        this.pluginName = pluginName;
+        this.messageBus = messageBus;
+        this.logger = logger;
+    }
+
+    @Override
+    public void onProgress(DownloadProgress progress) {
+        logger.info("Download " + progress);
+
+        EventMessage.EventMessageBuilder message = EventMessage.builder()
+                .pluginName(pluginName)
+                .message(PROGRESS_MESSAGE)
+                .variable("file", progress.getName())
+                .variable("bytes", String.valueOf(progress.getBytes()))
+                .variable("elapsedMillis", String.valueOf(progress.getElapsed().toMillis()))
+                .variable("megaBytesPerSecond", String.format(Locale.ROOT, "%.2f", progress.getMegaBytesPerSecond()))
+                .variable("done", String.valueOf(progress.isDone()));
+        if (progress.getContentLength() > 0) {
+            message.variable("contentLength", String.valueOf(progress.getContentLength()))
+                    .variable("percentage", String.format(Locale.ROOT, "%.1f", progress.getPercentage()));
+        }
+        if (progress.getEta() != null && !progress.isDone()) {
+            message.variable("etaMillis", String.valueOf(progress.getEta().toMillis()));
+        }
+        messageBus.send(message.build());
+    }
+}
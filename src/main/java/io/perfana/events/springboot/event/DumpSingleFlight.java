@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Tracks in-flight dumps per instance and dump type, so at most one dump of a type
+ * runs against an instance at any time, regardless of how the schedule is written.
+ */
+@ThreadSafe
+class DumpSingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Optional<DumpManifest>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run the dump, unless a dump for the same instance and type is running: then
+     * coalesce into or reject this request, depending on the policy.
+     *
+     * @return the manifest of the dump, for a coalesced request the manifest of the running dump
+     */
+    Optional<DumpManifest> execute(String instance, String dumpType, OverlappingDumpPolicy policy, Supplier<Optional<DumpManifest>> dump, EventLogger logger) {
+        String key = dumpType + "@" + instance;
+        CompletableFuture<Optional<DumpManifest>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<DumpManifest>> running = inFlight.putIfAbsent(key, mine);
+
+        if (running != null) {
+            if (policy == OverlappingDumpPolicy.REJECT) {
+                logger.warn("Rejected " + dumpType + " for " + instance + ": previous " + dumpType + " still running");
+                return Optional.empty();
+            }
+            logger.info("Coalesced " + dumpType + " for " + instance + " into running " + dumpType);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                logger.warn("Running " + dumpType + " for " + instance + " failed: " + e.getCause());
+                return Optional.empty();
+            }
+        }
+
+        try {
+            Optional<DumpManifest> result = dump.get();
+            mine.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // also an Error, e.g. OutOfMemoryError, so coalesced requests do not wait forever
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
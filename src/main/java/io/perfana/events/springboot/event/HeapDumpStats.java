@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.Metric;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disturbance of a heap dump on the system under test: the dump duration and
+ * the GC pauses on the target (from jvm.gc.pause) between start and end of the dump.
+ * Micrometer registers jvm.gc.pause at the first GC, use {@link #noGcPausesYet()} for a metric that
+ * is not registered yet. The pause count and time are left out when jvm.gc.pause could not be read
+ * before or after the dump.
+ */
+class HeapDumpStats {
+
+    private static final String GC_PAUSE_METRIC = "jvm.gc.pause";
+
+    private final Boolean live;
+    private final long durationMillis;
+    private final Optional<Metric> gcPauseBefore;
+    private final Optional<Metric> gcPauseAfter;
+
+    HeapDumpStats(Boolean live, long durationMillis, Optional<Metric> gcPauseBefore, Optional<Metric> gcPauseAfter) {
+        this.live = live;
+        this.durationMillis = durationMillis;
+        this.gcPauseBefore = gcPauseBefore;
+        this.gcPauseAfter = gcPauseAfter;
+    }
+
+    static String gcPauseMetricName() {
+        return GC_PAUSE_METRIC;
+    }
+
+    /**
+     * @return reading of a jvm.gc.pause metric that is not registered yet: no pauses
+     */
+    static Metric noGcPausesYet() {
+        Metric metric = new Metric();
+        metric.name = GC_PAUSE_METRIC;
+        metric.measurements = List.of(zero("COUNT"), zero("TOTAL_TIME"));
+        return metric;
+    }
+
+    private static Measurement zero(String statistic) {
+        Measurement measurement = new Measurement();
+        measurement.statistic = statistic;
+        measurement.value = 0.0;
+        return measurement;
+    }
+
+    Map<String, String> toKeyValues(String prefix) {
+        Map<String, String> keyValues = new HashMap<>();
+        keyValues.put(prefix + "live", live == null ? "default" : String.valueOf(live));
+        keyValues.put(prefix + "durationMillis", String.valueOf(durationMillis));
+        delta("COUNT", false).ifPresent(count -> keyValues.put(prefix + "gcPauseCount", format(count)));
+        delta("TOTAL_TIME", true).ifPresent(millis -> keyValues.put(prefix + "gcPauseTimeMillis", format(millis)));
+        // the max of Micrometer decays over a couple of minutes, it can be a pause from before the dump
+        value(gcPauseAfter, "MAX", true).ifPresent(max -> keyValues.put(prefix + "gcPauseRecentMaxMillis", format(max)));
+        return keyValues;
+    }
+
+    private Optional<Double> delta(String statistic, boolean time) {
+        Optional<Double> before = value(gcPauseBefore, statistic, time);
+        Optional<Double> after = value(gcPauseAfter, statistic, time);
+        return before.flatMap(b -> after.map(a -> Math.max(0, a - b)));
+    }
+
+    private static Optional<Double> value(Optional<Metric> metric, String statistic, boolean time) {
+        return metric.flatMap(m -> time ? m.timeMeasurement(statistic, TimeUnit.MILLISECONDS) : m.measurement(statistic));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    @Override
+    public String toString() {
+        return "HeapDumpStats{" +
+                "live=" + live +
+                ", durationMillis=" + durationMillis +
+                ", gcPauseCount=" + delta("COUNT", false).map(HeapDumpStats::format).orElse("unknown") +
+                ", gcPauseTimeMillis=" + delta("TOTAL_TIME", true).map(HeapDumpStats::format).orElse("unknown") +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+/**
+ * What to do with a dump request while a dump of the same type for the same instance is still running.
+ */
+public enum OverlappingDumpPolicy {
+    /** wait for the running dump and share its result, no second dump is made */
+    COALESCE,
+    /** skip the new request with a warning */
+    REJECT
+}
@@ -15,12 +15,53 @@
  */
 package io.perfana.events.springboot.event;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.OkHttpClient;
 import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.ActuatorClientException;
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.actuator.MetricListener;
+import io.perfana.events.springboot.actuator.MetricSampler;
 import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.actuator.ThreadDumpFormat;
+import io.perfana.events.springboot.actuator.ThreadDumpListener;
+import io.perfana.events.springboot.actuator.TimeoutProfile;
 import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.events.springboot.collector.*;
+import io.perfana.events.springboot.deferral.Deferral;
+import io.perfana.events.springboot.deferral.LoadGate;
+import io.perfana.events.springboot.export.ExportSettings;
+import io.perfana.events.springboot.export.ExportTarget;
+import io.perfana.events.springboot.export.HttpPushTarget;
+import io.perfana.events.springboot.export.RotatingFileTarget;
+import io.perfana.events.springboot.export.TelemetryExporter;
+import io.perfana.events.springboot.gc.GcAnalyzer;
+import io.perfana.events.springboot.journal.Journal;
+import io.perfana.events.springboot.journal.JournalEventType;
+import io.perfana.events.springboot.journal.JournalSettings;
+import io.perfana.events.springboot.journal.MappedJournal;
+import io.perfana.events.springboot.loggers.LoggerLevelSwitcher;
+import io.perfana.events.springboot.objectstore.ObjectStoreSettings;
+import io.perfana.events.springboot.objectstore.S3Client;
+import io.perfana.events.springboot.replay.RecordingInterceptor;
+import io.perfana.events.springboot.replay.ReplayInterceptor;
+import io.perfana.events.springboot.replay.ResponseArchive;
+import io.perfana.events.springboot.threaddump.ThreadDumpArchive;
+import io.perfana.events.springboot.threaddump.ThreadPoolMatcher;
+import io.perfana.events.springboot.threaddump.ThreadPoolUtilization;
+import io.perfana.events.springboot.sampling.AdaptiveSampler;
+import io.perfana.events.springboot.sampling.SafeRunnable;
+import io.perfana.events.springboot.sampling.SamplingSchedule;
+import io.perfana.events.springboot.sampling.SamplingSettings;
+import io.perfana.events.springboot.sampling.TestPhase;
+import io.perfana.events.springboot.summary.MetricSummary;
+import io.perfana.events.springboot.timeseries.TimeSeriesSettings;
+import io.perfana.events.springboot.timeseries.TimeSeriesStore;
+import io.perfana.events.springboot.trigger.LatencySpikeTrigger;
+import io.perfana.events.springboot.trigger.LatencyTriggerSettings;
+import io.perfana.events.springboot.trigger.PoolSaturationWatchdog;
+import io.perfana.events.springboot.trigger.Threshold;
 import io.perfana.eventscheduler.api.CustomEvent;
 import io.perfana.eventscheduler.api.EventAdapter;
 import io.perfana.eventscheduler.api.EventLogger;
@@ -32,8 +73,22 @@ import io.perfana.eventscheduler.util.JavaArgsParser;
 import io.perfana.eventscheduler.util.TestRunConfigUtil;
 
 import java.io.File;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,12 +99,49 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
     public static final String ACTUATOR_TAG = "actuator";
     private ActuatorClient actuatorClient;
 
-    private final Gson gson = new Gson();
-
     private OkHttpClient okHttpClient = OkHttpClientFactory.instance();
 
+    private OkHttpClient dumpOkHttpClient;
+
+    private final AtomicInteger heapDumpCounter = new AtomicInteger();
+
+    private ScheduledExecutorService triggerScheduler;
+
+    private ExecutorService captureExecutor;
+
+    private volatile AdaptiveSampler sampler;
+
+    private volatile long testStartNanos;
+
+    private MetricSummary metricSummary;
+
+    private TimeSeriesStore timeSeriesStore;
+
+    private GcAnalyzer gcAnalyzer;
+
+    private ThreadPoolUtilization threadPoolUtilization;
+
+    private LoggerLevelSwitcher loggerLevelSwitcher;
+
+    // written by the event thread, read by the trigger and sampling threads
+    private volatile MappedJournal journal;
+
+    private volatile TelemetryExporter exporter;
+
+    // the journal and the exporter together, built once per test run
+    private volatile Journal eventJournal = Journal.NOOP;
+
+    private ThreadDumpArchive threadDumpArchive;
+
+    private final S3Client objectStore;
+
+    // shared by all events, event configs can point to the same actuator
+    private static final DumpSingleFlight dumpSingleFlight = new DumpSingleFlight();
+
+    private static final Duration EXPORT_TIMEOUT = Duration.ofSeconds(30);
+
     enum AllowedCustomEvents {
-        heapdump("heapdump"), threaddump("threaddump");
+        heapdump("heapdump"), threaddump("threaddump"), loglevel("loglevel");
 
         private final String eventName;
 
@@ -78,14 +170,41 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
     // for test only
     void injectOkHttpClient(OkHttpClient okHttpClient) {
         this.okHttpClient = okHttpClient;
+        this.dumpOkHttpClient = okHttpClient;
     }
 
     public SpringBootEvent(SpringBootEventContext eventContext, TestContext testContext, EventMessageBus messageBus, EventLogger logger) {
         super(eventContext, testContext, messageBus, logger);
+        this.dumpOkHttpClient = OkHttpClientFactory.instance(eventContext.getDumpTimeoutProfile());
+        setupRecordOrReplay();
+        ObjectStoreSettings objectStoreSettings = eventContext.getObjectStore();
+        this.objectStore = objectStoreSettings.isEnabled()
+                ? new S3Client(OkHttpClientFactory.instance(eventContext.getDumpTimeoutProfile()), objectStoreSettings)
+                : null;
 
         this.eventMessageBus.addReceiver(m -> logger.debug("Received message: " + m));
     }
 
+    private void setupRecordOrReplay() {
+        String replayPath = eventContext.getActuatorReplayPath();
+        String recordPath = eventContext.getActuatorRecordPath();
+        try {
+            if (replayPath != null) {
+                logger.info("Replay actuator responses from " + replayPath + " at speed " + eventContext.getActuatorReplaySpeed());
+                OkHttpClient replayClient = ReplayInterceptor.replayClient(new File(replayPath), eventContext.getActuatorReplaySpeed());
+                this.okHttpClient = replayClient;
+                this.dumpOkHttpClient = replayClient;
+            } else if (recordPath != null) {
+                logger.info("Record actuator responses in " + recordPath);
+                RecordingInterceptor recorder = new RecordingInterceptor(ResponseArchive.create(new File(recordPath)), logger);
+                okHttpClient.interceptors().add(recorder);
+                dumpOkHttpClient.interceptors().add(recorder);
+            }
+        } catch (IOException e) {
+            throw new EventSchedulerRuntimeException("Cannot open actuator response archive: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public Collection<String> allowedCustomEvents() {
         return allowedCustomEvents;
@@ -95,7 +214,7 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
     public void beforeTest() {
         logger.info("Fetching actuator values for [" + testContext.getTestRunId() + "]");
 
-        String pluginName = SpringBootEvent.class.getSimpleName() + "-" + eventContext.getName();
+        String pluginName = pluginName();
         String tags = filterAndCombineTagsForTestRunConfigCall();
 
         Map<String, String> keyValues = createTestRunKeyValues();
@@ -111,12 +230,435 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
         }
     }
 
+    @Override
+    public void startTest() {
+        if (actuatorClient == null) {
+            return;
+        }
+        testStartNanos = System.nanoTime();
+        SamplingSettings samplingSettings = eventContext.getSampling();
+        if (samplingSettings.isEnabled()) {
+            SamplingSchedule schedule = new SamplingSchedule(testContext.getRampupTime(), testContext.getConstantLoadTime(), samplingSettings);
+            sampler = new AdaptiveSampler(schedule, samplingSettings, actuatorClient::getThreadRequestCount, logger);
+        }
+        List<Threshold> thresholds = eventContext.getPoolWatchdogThresholds();
+        if (!thresholds.isEmpty()) {
+            logger.info("Start pool saturation watchdog for " + thresholds);
+            PoolSaturationWatchdog watchdog = new PoolSaturationWatchdog(actuatorClient, thresholds, eventContext.getPoolWatchdogCooldown(), this::captureOnTrigger, logger);
+            scheduleSampling("Pool saturation watchdog sample", watchdog, eventContext.getPoolWatchdogInterval());
+        }
+        LatencyTriggerSettings latencyTrigger = eventContext.getLatencyTrigger();
+        if (latencyTrigger.isEnabled()) {
+            logger.info("Start latency spike trigger with " + latencyTrigger);
+            LatencySpikeTrigger trigger = new LatencySpikeTrigger(actuatorClient, latencyTrigger, this::captureOnTrigger, logger);
+            scheduleSampling("Latency spike trigger sample", trigger, latencyTrigger.getInterval());
+        }
+        MetricListener metricListener = MetricListener.NONE;
+        if (eventContext.isMetricSummaryEnabled()) {
+            metricSummary = new MetricSummary(actuatorClient, eventContext.getMetricSummaryMetrics(), logger);
+            metricListener = metricListener.andThen(metricSummary);
+            scheduleSampling("Metric summary sample", metricSummary, eventContext.getMetricSummaryInterval());
+        }
+        TimeSeriesSettings timeSeries = eventContext.getTimeSeries();
+        if (timeSeries.isEnabled()) {
+            timeSeriesStore = new TimeSeriesStore(timeSeries.getRawRetention(), timeSeries.getDownsampleInterval(), logger);
+            metricListener = metricListener.andThen(timeSeriesStore.listener(instanceName()));
+            // the store also receives the readings of the summary, no need to fetch those metrics twice
+            List<String> storeMetrics = new ArrayList<>(timeSeries.getMetrics());
+            if (metricSummary != null) {
+                storeMetrics.removeAll(eventContext.getMetricSummaryMetrics());
+            }
+            if (!storeMetrics.isEmpty()) {
+                scheduleSampling("Time series sample", new MetricSampler(actuatorClient, storeMetrics), timeSeries.getInterval());
+            }
+        }
+        TelemetryExporter currentExporter = exporter;
+        if (currentExporter != null) {
+            metricListener = metricListener.andThen(currentExporter.listener(instanceName()));
+        }
+        actuatorClient.setMetricListener(metricListener);
+        if (eventContext.isGcAnalysisEnabled()) {
+            gcAnalyzer = new GcAnalyzer(actuatorClient, testContext.getRampupTime(), testContext.getConstantLoadTime(), logger);
+            scheduleSampling("GC analyzer sample", gcAnalyzer, eventContext.getGcAnalysisInterval());
+        }
+        if (eventContext.isThreadPoolUtilizationEnabled()) {
+            threadPoolUtilization = new ThreadPoolUtilization(new ThreadPoolMatcher(eventContext.getThreadPoolPatterns()));
+            actuatorClient.setThreadDumpListener(threadPoolUtilization);
+        }
+        if (sampler != null) {
+            logger.info("Start adaptive sampling with " + sampler);
+            sampler.start(triggerScheduler());
+        }
+    }
+
+    /**
+     * Run the task with the adaptive sampler when enabled, with a fixed interval otherwise.
+     */
+    private void scheduleSampling(String name, Runnable sample, Duration fixedInterval) {
+        Runnable task = new SafeRunnable(name, sample, logger);
+        if (sampler != null) {
+            sampler.add(task);
+        } else {
+            long interval = fixedInterval.toMillis();
+            triggerScheduler().scheduleWithFixedDelay(task, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void afterTest() {
+        stopTriggers();
+        stopMetricListeners();
+        sendMetricSummary();
+        saveTimeSeries();
+        sendGcAnalysis();
+        sendThreadPoolUtilization();
+        restoreLoggerLevels();
+        closeThreadDumpArchive();
+        closeJournal();
+        closeExporter();
+    }
+
+    @Override
+    public void abortTest() {
+        stopTriggers();
+        stopMetricListeners();
+        metricSummary = null;
+        timeSeriesStore = null;
+        gcAnalyzer = null;
+        stopThreadPoolUtilization();
+        restoreLoggerLevels();
+        closeThreadDumpArchive();
+        closeJournal();
+        closeExporter();
+    }
+
+    private void stopMetricListeners() {
+        if (actuatorClient != null) {
+            actuatorClient.setMetricListener(MetricListener.NONE);
+        }
+    }
+
+    private void sendMetricSummary() {
+        MetricSummary summary = metricSummary;
+        metricSummary = null;
+        if (summary == null) {
+            return;
+        }
+        Map<String, String> keyValues = summary.toKeyValues("event." + eventContext.getName() + ".summary.");
+        logger.info("Send summary of " + summary.getSeriesCount() + " metric series");
+        if (!keyValues.isEmpty()) {
+            eventMessageBus.send(TestRunConfigUtil.createTestRunConfigMessageKeys(pluginName(), keyValues, filterAndCombineTagsForTestRunConfigCall()));
+        }
+    }
+
+    /**
+     * Save the stored time series as csv in the dump path.
+     */
+    private void saveTimeSeries() {
+        TimeSeriesStore store = timeSeriesStore;
+        timeSeriesStore = null;
+        if (store == null) {
+            return;
+        }
+        long points = store.getPointCount();
+        long bytes = store.getSizeInBytes();
+        logger.info(String.format(Locale.ROOT, "Time series store: %d series, %d points in %d bytes (%.2f bytes per point)",
+                store.getSeriesCount(), points, bytes, points == 0 ? 0.0 : (double) bytes / points));
+        if (points > 0) {
+            writeTimeSeries("timeseries", store::writeCsv);
+        }
+    }
+
+    /**
+     * @return host and port of the actuator, as instance of the stored time series
+     */
+    private String instanceName() {
+        HttpUrl url = HttpUrl.parse(eventContext.getActuatorBaseUrl());
+        return url == null ? eventContext.getName() : url.host() + ":" + url.port();
+    }
+
+    /**
+     * Send the averages and peaks per phase and save the time series as csv in the dump path.
+     */
+    private void sendGcAnalysis() {
+        GcAnalyzer analyzer = gcAnalyzer;
+        gcAnalyzer = null;
+        if (analyzer == null) {
+            return;
+        }
+        Map<String, String> keyValues = analyzer.toKeyValues("event." + eventContext.getName() + ".gc.");
+        logger.info("GC analysis: " + keyValues);
+        if (!keyValues.isEmpty()) {
+            eventMessageBus.send(TestRunConfigUtil.createTestRunConfigMessageKeys(pluginName(), keyValues, filterAndCombineTagsForTestRunConfigCall()));
+        }
+        writeTimeSeries("gc", analyzer::writeCsv);
+    }
+
+    /**
+     * Send the utilization per pool and save the time series as csv in the dump path.
+     */
+    private void sendThreadPoolUtilization() {
+        ThreadPoolUtilization utilization = stopThreadPoolUtilization();
+        if (utilization == null) {
+            return;
+        }
+        logger.info("Thread pool utilization: " + utilization);
+        Map<String, String> keyValues = utilization.toKeyValues("event." + eventContext.getName() + ".threadpool.");
+        if (!keyValues.isEmpty()) {
+            eventMessageBus.send(TestRunConfigUtil.createTestRunConfigMessageKeys(pluginName(), keyValues, filterAndCombineTagsForTestRunConfigCall()));
+        }
+        if (utilization.getDumpCount() > 0) {
+            writeTimeSeries("threadpools", utilization::writeCsv);
+        }
+    }
+
+    private ThreadPoolUtilization stopThreadPoolUtilization() {
+        ThreadPoolUtilization utilization = threadPoolUtilization;
+        if (utilization != null) {
+            actuatorClient.setThreadDumpListener(ThreadDumpListener.NONE);
+            threadPoolUtilization = null;
+        }
+        return utilization;
+    }
+
+    private void writeTimeSeries(String name, Consumer<PrintWriter> writer) {
+        String filename = name + "-" + uniqueFileNameFromTags() + "-" + System.currentTimeMillis() + ".csv";
+        try {
+            File file = new File(sanityPath(eventContext.getDumpPath()), filename);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+                writer.accept(out);
+            }
+            logger.info("Wrote " + name + " time series to " + file);
+        } catch (IOException | EventSchedulerRuntimeException e) {
+            logger.error("Cannot write " + name + " time series " + filename, e);
+        }
+    }
+
+    private Journal openJournal() {
+        closeJournal();
+        JournalSettings settings = eventContext.getJournal();
+        if (!settings.isEnabled()) {
+            return Journal.NOOP;
+        }
+        String filename = "journal-" + uniqueFileNameFromTags() + "-" + System.currentTimeMillis() + ".pfj";
+        try {
+            File file = new File(sanityPath(eventContext.getDumpPath()), filename);
+            journal = MappedJournal.create(file, settings);
+            logger.info("Recording journal in " + file + " with " + settings);
+            return journal;
+        } catch (IOException | EventSchedulerRuntimeException e) {
+            logger.error("Cannot create journal " + filename + ", continue without journal", e);
+            return Journal.NOOP;
+        }
+    }
+
+    private Journal journal() {
+        return eventJournal;
+    }
+
+    private void closeJournal() {
+        MappedJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        eventJournal = Journal.NOOP;
+        journal = null;
+        try {
+            current.close();
+            if (current.getFailure() != null) {
+                logger.warn("Journal " + current.getFile() + " is incomplete: " + current.getFailure().getMessage());
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot close journal " + current.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return journal that exports the plugin events, a no-op when export is disabled
+     */
+    private Journal openExporter() {
+        closeExporter();
+        ExportSettings settings = eventContext.getTelemetryExport();
+        if (!settings.isEnabled()) {
+            return Journal.NOOP;
+        }
+        ExportTarget target = settings.getUrl() != null
+                ? new HttpPushTarget(exportOkHttpClient(), settings.getUrl(), settings.getFormat().getContentType())
+                : new RotatingFileTarget(sanityPath(eventContext.getDumpPath()), "telemetry-" + uniqueFileNameFromTags() + "-" + System.currentTimeMillis(),
+                        settings.getFormat().getExtension(), settings.getFileMaxBytes(), settings.getFileMaxFiles());
+        TelemetryExporter current = new TelemetryExporter(settings, target, logger);
+        exporter = current;
+        logger.info("Export telemetry to " + target + " with " + settings);
+        return current.journal(instanceName());
+    }
+
+    /**
+     * Client of its own for the export target: the actuator clients can record or replay, and have short timeouts.
+     */
+    private static OkHttpClient exportOkHttpClient() {
+        return OkHttpClientFactory.instance(TimeoutProfile.streaming(EXPORT_TIMEOUT, null));
+    }
+
+    private void closeExporter() {
+        TelemetryExporter current = exporter;
+        eventJournal = Journal.NOOP;
+        exporter = null;
+        if (current != null) {
+            current.close();
+            logger.info("Closed " + current);
+        }
+    }
+
+    /**
+     * Thread dump to a text file of its own, or appended to the archive of this test run.
+     */
+    private Optional<DumpManifest> threadDump(File dumpPath, String filename, ThreadDumpFormat format) {
+        // the archive only holds text dumps
+        if (!eventContext.isThreadDumpArchiveEnabled() || format != ThreadDumpFormat.TEXT) {
+            return actuatorClient.threaddump(dumpPath, filename, format);
+        }
+        try {
+            return actuatorClient.threaddump(threadDumpArchive(dumpPath), filename);
+        } catch (IOException e) {
+            logger.error("Cannot create thread dump archive, save thread dump as text file", e);
+            return actuatorClient.threaddump(dumpPath, filename, format);
+        }
+    }
+
+    private synchronized ThreadDumpArchive threadDumpArchive(File dumpPath) throws IOException {
+        if (threadDumpArchive == null) {
+            File file = new File(dumpPath, "threaddumps-" + uniqueFileNameFromTags() + "-" + System.currentTimeMillis() + ".pftd");
+            threadDumpArchive = ThreadDumpArchive.create(file);
+            logger.info("Archive thread dumps in " + file);
+        }
+        return threadDumpArchive;
+    }
+
+    private synchronized void closeThreadDumpArchive() {
+        if (threadDumpArchive == null) {
+            return;
+        }
+        try {
+            threadDumpArchive.close();
+            logger.info("Closed " + threadDumpArchive);
+        } catch (IOException e) {
+            logger.warn("Cannot close thread dump archive " + threadDumpArchive.getFile() + ": " + e.getMessage());
+        }
+        threadDumpArchive = null;
+    }
+
+    private ScheduledExecutorService triggerScheduler() {
+        if (triggerScheduler == null) {
+            triggerScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "triggers-" + eventContext.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return triggerScheduler;
+    }
+
+    private void stopTriggers() {
+        if (sampler != null) {
+            sampler.stop();
+            logger.info("Stopped " + sampler);
+            sampler = null;
+        }
+        if (triggerScheduler != null) {
+            triggerScheduler.shutdownNow();
+            triggerScheduler = null;
+        }
+        stopCaptures();
+    }
+
+    private synchronized void stopCaptures() {
+        if (captureExecutor != null) {
+            // a running capture completes in the background
+            captureExecutor.shutdown();
+            captureExecutor = null;
+        }
+    }
+
+    /**
+     * One capture at a time, off the trigger thread: the dumps take seconds to minutes and would hold up all sampling.
+     */
+    private synchronized ExecutorService captureExecutor() {
+        if (captureExecutor == null) {
+            captureExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "captures-" + eventContext.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return captureExecutor;
+    }
+
+    /**
+     * Capture a burst of thread dumps, and optionally a heap dump, for a fired trigger. Called on the trigger thread,
+     * the dumps are taken on the capture thread. A trigger that fires while the previous capture is still running is skipped.
+     */
+    private void captureOnTrigger(String trigger, String reason, boolean heapDump) {
+        journal().record(JournalEventType.TRIGGER, trigger, reason);
+        AdaptiveSampler activeSampler = sampler;
+        if (activeSampler != null) {
+            // follow the development closely
+            activeSampler.boost(eventContext.getSampling().getTransitionWindow());
+        }
+        eventMessageBus.send(EventMessage.builder()
+                .pluginName(pluginName())
+                .message(trigger)
+                .variable("reason", reason)
+                .variable("heapDump", String.valueOf(heapDump))
+                .build());
+
+        try {
+            captureExecutor().execute(new SafeRunnable("Capture for " + trigger, () -> captureDumps(trigger, heapDump), logger));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Skip dumps for " + trigger + ": the previous capture is still running");
+        }
+    }
+
+    private void captureDumps(String trigger, boolean heapDump) {
+        File dumpPath = sanityPath(eventContext.getDumpPath());
+        String filename = uniqueFileNameFromTags() + "-" + trigger;
+        int count = eventContext.getThreadDumpBurstCount();
+        for (int i = 1; i <= count; i++) {
+            String burstFilename = filename + "-" + i;
+            dumpSingleFlight.execute(eventContext.getActuatorBaseUrl(), threaddump.getEventName(), eventContext.getOverlappingDumpPolicy(),
+                    () -> threadDump(dumpPath, burstFilename, ThreadDumpFormat.TEXT), logger);
+            if (i < count && !sleep(eventContext.getThreadDumpBurstInterval())) {
+                return;
+            }
+        }
+        if (heapDump) {
+            dumpSingleFlight.execute(eventContext.getActuatorBaseUrl(), heapdump.getEventName(), eventContext.getOverlappingDumpPolicy(),
+                    () -> heapDumpWithStats(dumpPath, filename, DumpOptions.DEFAULTS, Deferral.notDeferred(Instant.now())), logger);
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String pluginName() {
+        return SpringBootEvent.class.getSimpleName() + "-" + eventContext.getName();
+    }
+
     private Map<String, String> createTestRunKeyValues() {
         String prefix = "event." + eventContext.getName() + ".";
         Map<String, String> keyValues = new HashMap<>();
         keyValues.put(prefix + "dumpPath", eventContext.getDumpPath());
         keyValues.put(prefix + "actuatorEnvProperties", String.join(TestRunConfigUtil.VALUE_LIST_DELIMITER, eventContext.getActuatorEnvProperties()));
         keyValues.put(prefix + "actuatorBaseUrl", eventContext.getActuatorBaseUrl());
+        if (eventContext.getHeapDumpLive() != null) {
+            keyValues.put(prefix + "heapDumpLive", String.valueOf(eventContext.getHeapDumpLive()));
+        }
         return keyValues;
     }
 
@@ -125,32 +667,50 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
 
         List<Variable> variables = new ArrayList<>();
         if (actuatorBaseUrl != null) {
-            actuatorClient = new ActuatorClient(actuatorBaseUrl, okHttpClient, logger);
-            List<String> actuatorEnvProperties = eventContext.getActuatorEnvProperties();
-            logger.debug("Requested actuatorEnvProperties: " + actuatorEnvProperties);
-            List<Variable> actuatorKeyValues = actuatorClient.queryActuator(actuatorEnvProperties);
+            actuatorClient = new ActuatorClient(actuatorBaseUrl, okHttpClient, dumpOkHttpClient, eventContext.getDumpTimeoutProfile().getIdleTimeout(), logger);
+            actuatorClient.setProgressListener(new DumpProgressReporter(pluginName(), eventMessageBus, logger), eventContext.getDumpProgressInterval());
+            actuatorClient.setChecksumAlgorithm(eventContext.getDumpChecksumAlgorithm());
+            eventJournal = openJournal().andThen(openExporter());
+            actuatorClient.setJournal(eventJournal);
+            logger.debug("Requested actuatorEnvProperties: " + eventContext.getActuatorEnvProperties());
+            List<Variable> actuatorKeyValues = new CollectorBatch(createCollectors(), eventContext.getCollectTimeout(), logger, journal()).collect(actuatorClient);
             logger.debug("Found actuator values: " + actuatorKeyValues);
             List<Variable> processedVariables = processJavaArgsLikeOptions(actuatorKeyValues);
             variables.addAll(processedVariables);
-            String info = actuatorClient.info();
-            logger.debug("Application info: " + info);
-
-            if (info.contains("version")) {
-                try {
-                    Type type = new TypeToken<Map<String, Object>>() {}.getType();
-                    Map<String, Object> infoMap = gson.fromJson(info, type);
-                    Map<String, Object> build = (Map<String, Object>) infoMap.get("build");
-                    String version = (String) build.get("version");
-                    variables.add(new Variable("version", version));
-                } catch (Exception e) {
-                    logger.warn("cannot retrieve version from info object: " + info);
-                }
-            }
         }
         logger.debug("All processed actuator values: " + variables);
         return variables;
     }
 
+    private List<EndpointCollector> createCollectors() {
+        List<EndpointCollector> collectors = new ArrayList<>();
+        for (String name : eventContext.getActuatorCollectors()) {
+            switch (name) {
+                case "env":
+                    collectors.add(new EnvCollector(eventContext.getActuatorEnvProperties()));
+                    break;
+                case "info":
+                    collectors.add(new InfoCollector(logger));
+                    break;
+                case "configprops":
+                    collectors.add(new ConfigPropsCollector(eventContext.getActuatorConfigPropsPrefixes()));
+                    break;
+                case "beans":
+                    collectors.add(new BeanCountCollector(name));
+                    break;
+                case "jvm":
+                    collectors.add(new JvmProfileCollector());
+                    break;
+                case "metrics":
+                    eventContext.getActuatorBaselineMetrics().forEach(metric -> collectors.add(new MetricBaselineCollector(metric)));
+                    break;
+                default:
+                    logger.warn("ignoring unknown actuator collector [" + name + "]");
+            }
+        }
+        return collectors;
+    }
+
      static List<Variable> processJavaArgsLikeOptions(List<Variable> actuatorKeyValues) {
         List<Variable> clonedVariables = new ArrayList<>(actuatorKeyValues);
 
@@ -200,6 +760,8 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
                 threadDumpEvent(scheduleEvent);
             } else if (heapdump.hasEventName(eventName)) {
                 heapDumpEvent(scheduleEvent);
+            } else if (loglevel.hasEventName(eventName)) {
+                logLevelEvent(scheduleEvent);
             } else {
                 logger.warn("ignoring unknown event [" + eventName + "]");
             }
@@ -210,10 +772,127 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
 
     private void heapDumpEvent(CustomEvent scheduleEvent) {
         logger.info("Start " + scheduleEvent);
+        DumpOptions options = dumpOptions(scheduleEvent);
         File dumpPath = sanityPath(eventContext.getDumpPath());
         String filename = uniqueFileNameFromTags();
-        logger.info("Heap dump for " + filename);
-        actuatorClient.heapdump(dumpPath, filename);
+        logger.info("Heap dump for " + filename + " with " + options);
+
+        Deferral deferral = new LoadGate(actuatorClient, eventContext.getHeapDumpDeferral(), this::currentPhase, logger).await();
+        if (deferral.isDeferred()) {
+            logger.info("Heap dump for " + filename + " after " + deferral);
+            journal().record(JournalEventType.DUMP_DEFERRED, heapdump.getEventName(), deferral.toString());
+            EventMessage.EventMessageBuilder message = EventMessage.builder()
+                    .pluginName(pluginName())
+                    .message(heapdump.getEventName() + "-deferred");
+            deferral.toKeyValues("").forEach(message::variable);
+            eventMessageBus.send(message.build());
+        }
+        if (!deferral.isCapture()) {
+            logger.warn("Skip heap dump for " + filename + ": " + deferral);
+            return;
+        }
+        dumpSingleFlight.execute(eventContext.getActuatorBaseUrl(), heapdump.getEventName(), eventContext.getOverlappingDumpPolicy(),
+                () -> heapDumpWithStats(dumpPath, filename, options, deferral), logger);
+    }
+
+    /**
+     * @return phase of the running test, null before the start
+     */
+    private TestPhase currentPhase() {
+        long start = testStartNanos;
+        if (start == 0) {
+            return null;
+        }
+        return TestPhase.at(Duration.ofNanos(System.nanoTime() - start), testContext.getRampupTime(), testContext.getConstantLoadTime());
+    }
+
+    /**
+     * Switch logger levels, e.g. {@code com.example=DEBUG;ROOT=WARN}, or restore the original levels with {@code restore}.
+     */
+    private void logLevelEvent(CustomEvent scheduleEvent) {
+        logger.info("Start " + scheduleEvent);
+        Map<String, String> settings = parseSettings(scheduleEvent.getSettings());
+        LoggerLevelSwitcher switcher = loggerLevelSwitcher();
+        Map<String, String> levels;
+        if (settings.containsKey("restore")) {
+            if (settings.size() > 1) {
+                logger.warn("ignoring logger levels " + settings + " of " + scheduleEvent.getName() + " with restore");
+            }
+            levels = switcher.restore();
+        } else {
+            levels = switcher.apply(settings);
+        }
+        EventMessage.EventMessageBuilder message = EventMessage.builder()
+                .pluginName(pluginName())
+                .message(loglevel.getEventName());
+        levels.forEach(message::variable);
+        eventMessageBus.send(message.build());
+    }
+
+    private synchronized LoggerLevelSwitcher loggerLevelSwitcher() {
+        if (loggerLevelSwitcher == null) {
+            loggerLevelSwitcher = new LoggerLevelSwitcher(actuatorClient, logger);
+        }
+        return loggerLevelSwitcher;
+    }
+
+    private synchronized void restoreLoggerLevels() {
+        if (loggerLevelSwitcher != null) {
+            loggerLevelSwitcher.restore();
+            loggerLevelSwitcher = null;
+        }
+    }
+
+    private DumpOptions dumpOptions(CustomEvent scheduleEvent) {
+        DumpOptions options = DumpOptions.parse(parseSettings(scheduleEvent.getSettings()));
+        if (!options.getUnknownKeys().isEmpty()) {
+            logger.warn("ignoring unknown settings " + options.getUnknownKeys() + " of " + scheduleEvent.getName());
+        }
+        if (options.getInstances() > 1) {
+            logger.warn("ignoring instances=" + options.getInstances() + ": this event dumps the one instance at "
+                    + eventContext.getActuatorBaseUrl() + ", configure an event per instance to dump more instances");
+        }
+        return options;
+    }
+
+    private Optional<DumpManifest> heapDumpWithStats(File dumpPath, String filename, DumpOptions options, Deferral deferral) {
+        Instant capturedAt = Instant.now();
+        Boolean live = options.getLive() != null ? options.getLive() : eventContext.getHeapDumpLive();
+        Optional<Metric> gcPauseBefore = gcPauses();
+        long startNanos = System.nanoTime();
+        Optional<DumpManifest> manifest = objectStore == null
+                ? actuatorClient.heapdump(dumpPath, filename, live, options.isCompress())
+                : actuatorClient.heapdump(objectStore, filename, live, options.isCompress());
+        long durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        if (manifest.isEmpty()) {
+            logger.warn("Heap dump " + filename + " failed, no heap dump stats sent");
+            return manifest;
+        }
+        Optional<Metric> gcPauseAfter = gcPauses();
+
+        HeapDumpStats stats = new HeapDumpStats(live, durationMillis, gcPauseBefore, gcPauseAfter);
+        logger.info("Heap dump stats for " + filename + ": " + stats);
+
+        String prefix = "event." + eventContext.getName() + ".heapdump." + heapDumpCounter.incrementAndGet() + ".";
+        Map<String, String> keyValues = stats.toKeyValues(prefix);
+        if (deferral.isDeferred()) {
+            keyValues.putAll(deferral.capturedAt(capturedAt).toKeyValues(prefix));
+        }
+        eventMessageBus.send(TestRunConfigUtil.createTestRunConfigMessageKeys(pluginName(), keyValues, filterAndCombineTagsForTestRunConfigCall()));
+        return manifest;
+    }
+
+    /**
+     * @return the GC pauses, no pauses when jvm.gc.pause is not registered because there was no GC yet,
+     * empty when the metric could not be read
+     */
+    private Optional<Metric> gcPauses() {
+        try {
+            return Optional.of(actuatorClient.registeredMetric(HeapDumpStats.gcPauseMetricName()).orElseGet(HeapDumpStats::noGcPausesYet));
+        } catch (ActuatorClientException e) {
+            logger.warn("Cannot get metric " + HeapDumpStats.gcPauseMetricName() + ": " + e.getMessage());
+            return Optional.empty();
+        }
     }
 
     private String uniqueFileNameFromTags() {
@@ -233,10 +912,20 @@ public class SpringBootEvent extends EventAdapter<SpringBootEventContext> {
 
     private void threadDumpEvent(CustomEvent scheduleEvent) {
         logger.info("Start " + scheduleEvent);
+        DumpOptions options = dumpOptions(scheduleEvent);
         File dumpPath = sanityPath(eventContext.getDumpPath());
         String filename = uniqueFileNameFromTags();
-        logger.info("stack dump event for test [" + filename + "]");
-        actuatorClient.threaddump(dumpPath, filename);
+        logger.info("stack dump event for test [" + filename + "] with " + options);
+        int count = options.getCount();
+        Duration interval = options.getInterval() != null ? options.getInterval() : eventContext.getThreadDumpBurstInterval();
+        for (int i = 1; i <= count; i++) {
+            String dumpFilename = count == 1 ? filename : filename + "-" + i;
+            dumpSingleFlight.execute(eventContext.getActuatorBaseUrl(), threaddump.getEventName(), eventContext.getOverlappingDumpPolicy(),
+                    () -> threadDump(dumpPath, dumpFilename, options.getFormat()), logger);
+            if (i < count && !sleep(interval)) {
+                return;
+            }
+        }
     }
 
     private File sanityPath(String dumpPath) {
@@ -15,9 +15,21 @@
  */
 package io.perfana.events.springboot.event;
 
+import io.perfana.events.springboot.actuator.ChecksumAlgorithm;
+import io.perfana.events.springboot.actuator.TimeoutProfile;
+import io.perfana.events.springboot.deferral.DeferralSettings;
+import io.perfana.events.springboot.export.ExportFormat;
+import io.perfana.events.springboot.export.ExportSettings;
+import io.perfana.events.springboot.journal.JournalSettings;
+import io.perfana.events.springboot.objectstore.ObjectStoreSettings;
+import io.perfana.events.springboot.sampling.SamplingSettings;
+import io.perfana.events.springboot.timeseries.TimeSeriesSettings;
+import io.perfana.events.springboot.trigger.LatencyTriggerSettings;
+import io.perfana.events.springboot.trigger.Threshold;
 import io.perfana.eventscheduler.api.config.EventConfig;
 import net.jcip.annotations.NotThreadSafe;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -31,6 +43,78 @@ public class SpringBootEventConfig extends EventConfig {
     private String actuatorBaseUrl;
     private String actuatorEnvProperties;
     private String dumpPath;
+    private Boolean heapDumpLive;
+    private int dumpTimeToFirstByteSeconds = 600;
+    private int dumpIdleTimeoutSeconds = 30;
+    private int dumpProgressIntervalSeconds = 10;
+    private String dumpChecksumAlgorithm = ChecksumAlgorithm.CRC32C.name();
+    private String overlappingDumpPolicy = OverlappingDumpPolicy.COALESCE.name();
+    private String actuatorCollectors = "env,info";
+    private String actuatorBaselineMetrics = "jvm.memory.used,jvm.memory.max,jvm.threads.live,jvm.classes.loaded,process.uptime";
+    private int collectTimeoutSeconds = 20;
+    private String actuatorConfigPropsPrefixes = "spring.datasource.hikari,server.tomcat,spring.task.execution";
+    private String poolWatchdogThresholds;
+    private int poolWatchdogIntervalSeconds = 5;
+    private int poolWatchdogCooldownSeconds = 120;
+    private int threadDumpBurstCount = 3;
+    private int threadDumpBurstIntervalSeconds = 2;
+    private boolean latencyTriggerEnabled = false;
+    private String latencyTriggerUris;
+    private long latencyTriggerMaxMillis = 0;
+    private long latencyTriggerMeanMillis = 0;
+    private double latencyTriggerBaselineFactor = 3.0;
+    private int latencyTriggerBaselineSamples = 12;
+    private int latencyTriggerIntervalSeconds = 5;
+    private int latencyTriggerCooldownSeconds = 120;
+    private int latencyTriggerBudget = 3;
+    private boolean latencyTriggerHeapDump = false;
+    private boolean journalEnabled = false;
+    private int journalMaxFileSizeMb = 64;
+    private int journalMaxFiles = 4;
+    private String actuatorRecordPath;
+    private String actuatorReplayPath;
+    private double actuatorReplaySpeed = 1.0;
+    private boolean threadDumpArchiveEnabled = false;
+    private String objectStoreEndpoint;
+    private String objectStoreBucket;
+    private String objectStoreRegion = "us-east-1";
+    private String objectStoreAccessKey;
+    private String objectStoreSecretKey;
+    private String objectStorePrefix = "";
+    private int objectStorePartSizeMb = 8;
+    private int objectStoreParallelUploads = 4;
+    private boolean adaptiveSamplingEnabled = false;
+    private int samplingTransitionIntervalSeconds = 2;
+    private int samplingRampupIntervalSeconds = 5;
+    private int samplingSteadyIntervalSeconds = 30;
+    private int samplingRampdownIntervalSeconds = 10;
+    private int samplingTransitionWindowSeconds = 30;
+    private double samplingBudgetRequestsPerSecond = 2.0;
+    private boolean metricSummaryEnabled = false;
+    private String metricSummaryMetrics = "jvm.memory.used,jvm.threads.live,process.cpu.usage,system.load.average.1m,http.server.requests";
+    private int metricSummaryIntervalSeconds = 10;
+    private boolean gcAnalysisEnabled = false;
+    private int gcAnalysisIntervalSeconds = 5;
+    private boolean threadPoolUtilizationEnabled = false;
+    private String threadPoolPatterns = "http-nio-*-exec-*,task-*,HikariPool-*";
+    private boolean timeSeriesStoreEnabled = false;
+    private String timeSeriesMetrics = "jvm.memory.used,jvm.threads.live,process.cpu.usage,http.server.requests";
+    private int timeSeriesIntervalSeconds = 10;
+    private int timeSeriesRawRetentionMinutes = 60;
+    private int timeSeriesDownsampleSeconds = 60;
+    private boolean heapDumpDeferralEnabled = false;
+    private double heapDumpDeferralMaxCpuUsage = 0.7;
+    private double heapDumpDeferralMaxRequestsPerSecond = 0;
+    private int heapDumpDeferralMaxDelaySeconds = 300;
+    private int heapDumpDeferralPollSeconds = 5;
+    private boolean telemetryExportEnabled = false;
+    private String telemetryExportFormat = ExportFormat.INFLUX.name();
+    private String telemetryExportUrl;
+    private int telemetryExportBatchSize = 500;
+    private int telemetryExportFlushIntervalSeconds = 5;
+    private int telemetryExportQueueCapacity = 10000;
+    private int telemetryExportFileMaxMegabytes = 64;
+    private int telemetryExportFileMaxFiles = 4;
 
     public void setTags(String tags) {
         this.tags = tags;
@@ -42,10 +126,71 @@ public class SpringBootEventConfig extends EventConfig {
                 : Arrays.stream(actuatorEnvProperties.split(",")).map(String::trim).collect(Collectors.toList());
     }
 
+    private static List<String> createList(String commaSeparated) {
+        return commaSeparated == null
+                ? Collections.emptyList()
+                : Arrays.stream(commaSeparated.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+    }
+
+    private TimeoutProfile createDumpTimeoutProfile() {
+        return TimeoutProfile.streaming(Duration.ofSeconds(dumpTimeToFirstByteSeconds), Duration.ofSeconds(dumpIdleTimeoutSeconds));
+    }
+
+    private LatencyTriggerSettings createLatencyTriggerSettings() {
+        return new LatencyTriggerSettings(latencyTriggerEnabled, createList(latencyTriggerUris), latencyTriggerMaxMillis, latencyTriggerMeanMillis,
+                latencyTriggerBaselineFactor, latencyTriggerBaselineSamples, Duration.ofSeconds(latencyTriggerIntervalSeconds),
+                Duration.ofSeconds(latencyTriggerCooldownSeconds), latencyTriggerBudget, latencyTriggerHeapDump);
+    }
+
+    private JournalSettings createJournalSettings() {
+        return new JournalSettings(journalEnabled, journalMaxFileSizeMb * 1024L * 1024L, journalMaxFiles);
+    }
+
+    private TimeSeriesSettings createTimeSeriesSettings() {
+        return new TimeSeriesSettings(timeSeriesStoreEnabled, createList(timeSeriesMetrics), Duration.ofSeconds(timeSeriesIntervalSeconds),
+                Duration.ofMinutes(timeSeriesRawRetentionMinutes), Duration.ofSeconds(timeSeriesDownsampleSeconds));
+    }
+
+    private DeferralSettings createHeapDumpDeferralSettings() {
+        return new DeferralSettings(heapDumpDeferralEnabled, heapDumpDeferralMaxCpuUsage, heapDumpDeferralMaxRequestsPerSecond,
+                Duration.ofSeconds(heapDumpDeferralMaxDelaySeconds), Duration.ofSeconds(heapDumpDeferralPollSeconds));
+    }
+
+    private ExportSettings createTelemetryExportSettings() {
+        return new ExportSettings(telemetryExportEnabled, ExportFormat.parse(telemetryExportFormat), telemetryExportUrl, telemetryExportBatchSize,
+                Duration.ofSeconds(telemetryExportFlushIntervalSeconds), telemetryExportQueueCapacity, telemetryExportFileMaxMegabytes * 1024L * 1024L,
+                telemetryExportFileMaxFiles);
+    }
+
+    private ObjectStoreSettings createObjectStoreSettings() {
+        if (objectStoreEndpoint == null || objectStoreEndpoint.trim().isEmpty()) {
+            return ObjectStoreSettings.DISABLED;
+        }
+        return new ObjectStoreSettings(objectStoreEndpoint.trim(), objectStoreBucket, objectStoreRegion, objectStoreAccessKey, objectStoreSecretKey,
+                objectStorePrefix, objectStorePartSizeMb * 1024 * 1024, objectStoreParallelUploads);
+    }
+
+    private SamplingSettings createSamplingSettings() {
+        return new SamplingSettings(adaptiveSamplingEnabled, Duration.ofSeconds(samplingTransitionIntervalSeconds),
+                Duration.ofSeconds(samplingRampupIntervalSeconds), Duration.ofSeconds(samplingSteadyIntervalSeconds),
+                Duration.ofSeconds(samplingRampdownIntervalSeconds), Duration.ofSeconds(samplingTransitionWindowSeconds),
+                samplingBudgetRequestsPerSecond);
+    }
+
     @Override
     public SpringBootEventContext toContext() {
         List<String> envProps = createEnvProps();
-        return new SpringBootEventContext(super.toContext(),  tags, actuatorPropPrefix, actuatorBaseUrl, envProps, dumpPath);
+        return new SpringBootEventContext(super.toContext(),  tags, actuatorPropPrefix, actuatorBaseUrl, envProps, dumpPath,
+                heapDumpLive, createDumpTimeoutProfile(), Duration.ofSeconds(dumpProgressIntervalSeconds),
+                ChecksumAlgorithm.parse(dumpChecksumAlgorithm), OverlappingDumpPolicy.valueOf(overlappingDumpPolicy.trim().toUpperCase()),
+                createList(actuatorCollectors), createList(actuatorBaselineMetrics), Duration.ofSeconds(collectTimeoutSeconds),
+                createList(actuatorConfigPropsPrefixes), Threshold.parse(poolWatchdogThresholds), Duration.ofSeconds(poolWatchdogIntervalSeconds),
+                Duration.ofSeconds(poolWatchdogCooldownSeconds), threadDumpBurstCount, Duration.ofSeconds(threadDumpBurstIntervalSeconds),
+                createLatencyTriggerSettings(), createJournalSettings(), actuatorRecordPath, actuatorReplayPath, actuatorReplaySpeed, threadDumpArchiveEnabled,
+                createObjectStoreSettings(), createSamplingSettings(), metricSummaryEnabled, createList(metricSummaryMetrics),
+                Duration.ofSeconds(metricSummaryIntervalSeconds), gcAnalysisEnabled, Duration.ofSeconds(gcAnalysisIntervalSeconds),
+                threadPoolUtilizationEnabled, createList(threadPoolPatterns), createTimeSeriesSettings(), createHeapDumpDeferralSettings(),
+                createTelemetryExportSettings());
     }
 
 
@@ -57,6 +202,78 @@ public class SpringBootEventConfig extends EventConfig {
             ", actuatorBaseUrl='" + actuatorBaseUrl + '\'' +
             ", actuatorEnvProperties='" + actuatorEnvProperties + '\'' +
             ", dumpPath='" + dumpPath + '\'' +
+            ", heapDumpLive=" + heapDumpLive +
+            ", dumpTimeToFirstByteSeconds=" + dumpTimeToFirstByteSeconds +
+            ", dumpIdleTimeoutSeconds=" + dumpIdleTimeoutSeconds +
+            ", dumpProgressIntervalSeconds=" + dumpProgressIntervalSeconds +
+            ", dumpChecksumAlgorithm='" + dumpChecksumAlgorithm + '\'' +
+            ", overlappingDumpPolicy='" + overlappingDumpPolicy + '\'' +
+            ", actuatorCollectors='" + actuatorCollectors + '\'' +
+            ", actuatorBaselineMetrics='" + actuatorBaselineMetrics + '\'' +
+            ", collectTimeoutSeconds=" + collectTimeoutSeconds +
+            ", actuatorConfigPropsPrefixes='" + actuatorConfigPropsPrefixes + '\'' +
+            ", poolWatchdogThresholds='" + poolWatchdogThresholds + '\'' +
+            ", poolWatchdogIntervalSeconds=" + poolWatchdogIntervalSeconds +
+            ", poolWatchdogCooldownSeconds=" + poolWatchdogCooldownSeconds +
+            ", threadDumpBurstCount=" + threadDumpBurstCount +
+            ", threadDumpBurstIntervalSeconds=" + threadDumpBurstIntervalSeconds +
+            ", latencyTriggerEnabled=" + latencyTriggerEnabled +
+            ", latencyTriggerUris='" + latencyTriggerUris + '\'' +
+            ", latencyTriggerMaxMillis=" + latencyTriggerMaxMillis +
+            ", latencyTriggerMeanMillis=" + latencyTriggerMeanMillis +
+            ", latencyTriggerBaselineFactor=" + latencyTriggerBaselineFactor +
+            ", latencyTriggerBaselineSamples=" + latencyTriggerBaselineSamples +
+            ", latencyTriggerIntervalSeconds=" + latencyTriggerIntervalSeconds +
+            ", latencyTriggerCooldownSeconds=" + latencyTriggerCooldownSeconds +
+            ", latencyTriggerBudget=" + latencyTriggerBudget +
+            ", latencyTriggerHeapDump=" + latencyTriggerHeapDump +
+            ", journalEnabled=" + journalEnabled +
+            ", journalMaxFileSizeMb=" + journalMaxFileSizeMb +
+            ", journalMaxFiles=" + journalMaxFiles +
+            ", actuatorRecordPath='" + actuatorRecordPath + '\'' +
+            ", actuatorReplayPath='" + actuatorReplayPath + '\'' +
+            ", actuatorReplaySpeed=" + actuatorReplaySpeed +
+            ", threadDumpArchiveEnabled=" + threadDumpArchiveEnabled +
+            ", objectStoreEndpoint='" + objectStoreEndpoint + '\'' +
+            ", objectStoreBucket='" + objectStoreBucket + '\'' +
+            ", objectStoreRegion='" + objectStoreRegion + '\'' +
+            ", objectStoreAccessKey='" + objectStoreAccessKey + '\'' +
+            ", objectStoreSecretKey='" + (objectStoreSecretKey == null ? null : "******") + '\'' +
+            ", objectStorePrefix='" + objectStorePrefix + '\'' +
+            ", objectStorePartSizeMb=" + objectStorePartSizeMb +
+            ", objectStoreParallelUploads=" + objectStoreParallelUploads +
+            ", adaptiveSamplingEnabled=" + adaptiveSamplingEnabled +
+            ", samplingTransitionIntervalSeconds=" + samplingTransitionIntervalSeconds +
+            ", samplingRampupIntervalSeconds=" + samplingRampupIntervalSeconds +
+            ", samplingSteadyIntervalSeconds=" + samplingSteadyIntervalSeconds +
+            ", samplingRampdownIntervalSeconds=" + samplingRampdownIntervalSeconds +
+            ", samplingTransitionWindowSeconds=" + samplingTransitionWindowSeconds +
+            ", samplingBudgetRequestsPerSecond=" + samplingBudgetRequestsPerSecond +
+            ", metricSummaryEnabled=" + metricSummaryEnabled +
+            ", metricSummaryMetrics='" + metricSummaryMetrics + '\'' +
+            ", metricSummaryIntervalSeconds=" + metricSummaryIntervalSeconds +
+            ", gcAnalysisEnabled=" + gcAnalysisEnabled +
+            ", gcAnalysisIntervalSeconds=" + gcAnalysisIntervalSeconds +
+            ", threadPoolUtilizationEnabled=" + threadPoolUtilizationEnabled +
+            ", threadPoolPatterns='" + threadPoolPatterns + '\'' +
+            ", timeSeriesStoreEnabled=" + timeSeriesStoreEnabled +
+            ", timeSeriesMetrics='" + timeSeriesMetrics + '\'' +
+            ", timeSeriesIntervalSeconds=" + timeSeriesIntervalSeconds +
+            ", timeSeriesRawRetentionMinutes=" + timeSeriesRawRetentionMinutes +
+            ", timeSeriesDownsampleSeconds=" + timeSeriesDownsampleSeconds +
+            ", heapDumpDeferralEnabled=" + heapDumpDeferralEnabled +
+            ", heapDumpDeferralMaxCpuUsage=" + heapDumpDeferralMaxCpuUsage +
+            ", heapDumpDeferralMaxRequestsPerSecond=" + heapDumpDeferralMaxRequestsPerSecond +
+            ", heapDumpDeferralMaxDelaySeconds=" + heapDumpDeferralMaxDelaySeconds +
+            ", heapDumpDeferralPollSeconds=" + heapDumpDeferralPollSeconds +
+            ", telemetryExportEnabled=" + telemetryExportEnabled +
+            ", telemetryExportFormat='" + telemetryExportFormat + '\'' +
+            ", telemetryExportUrl='" + telemetryExportUrl + '\'' +
+            ", telemetryExportBatchSize=" + telemetryExportBatchSize +
+            ", telemetryExportFlushIntervalSeconds=" + telemetryExportFlushIntervalSeconds +
+            ", telemetryExportQueueCapacity=" + telemetryExportQueueCapacity +
+            ", telemetryExportFileMaxMegabytes=" + telemetryExportFileMaxMegabytes +
+            ", telemetryExportFileMaxFiles=" + telemetryExportFileMaxFiles +
             "} " + super.toString();
     }
 
@@ -102,4 +319,580 @@ public class SpringBootEventConfig extends EventConfig {
     public void setDumpPath(String dumpPath) {
         this.dumpPath = dumpPath;
     }
+
+    public Boolean getHeapDumpLive() {
+        return heapDumpLive;
+    }
+
+    public void setHeapDumpLive(Boolean heapDumpLive) {
+        this.heapDumpLive = heapDumpLive;
+    }
+
+    public int getDumpTimeToFirstByteSeconds() {
+        return dumpTimeToFirstByteSeconds;
+    }
+
+    public void setDumpTimeToFirstByteSeconds(int dumpTimeToFirstByteSeconds) {
+        this.dumpTimeToFirstByteSeconds = dumpTimeToFirstByteSeconds;
+    }
+
+    public int getDumpIdleTimeoutSeconds() {
+        return dumpIdleTimeoutSeconds;
+    }
+
+    public void setDumpIdleTimeoutSeconds(int dumpIdleTimeoutSeconds) {
+        this.dumpIdleTimeoutSeconds = dumpIdleTimeoutSeconds;
+    }
+
+    public int getDumpProgressIntervalSeconds() {
+        return dumpProgressIntervalSeconds;
+    }
+
+    public void setDumpProgressIntervalSeconds(int dumpProgressIntervalSeconds) {
+        this.dumpProgressIntervalSeconds = dumpProgressIntervalSeconds;
+    }
+
+    public String getDumpChecksumAlgorithm() {
+        return dumpChecksumAlgorithm;
+    }
+
+    public void setDumpChecksumAlgorithm(String dumpChecksumAlgorithm) {
+        this.dumpChecksumAlgorithm = dumpChecksumAlgorithm;
+    }
+
+    public String getOverlappingDumpPolicy() {
+        return overlappingDumpPolicy;
+    }
+
+    public void setOverlappingDumpPolicy(String overlappingDumpPolicy) {
+        this.overlappingDumpPolicy = overlappingDumpPolicy;
+    }
+
+    public String getActuatorCollectors() {
+        return actuatorCollectors;
+    }
+
+    public void setActuatorCollectors(String actuatorCollectors) {
+        this.actuatorCollectors = actuatorCollectors;
+    }
+
+    public String getActuatorBaselineMetrics() {
+        return actuatorBaselineMetrics;
+    }
+
+    public void setActuatorBaselineMetrics(String actuatorBaselineMetrics) {
+        this.actuatorBaselineMetrics = actuatorBaselineMetrics;
+    }
+
+    public int getCollectTimeoutSeconds() {
+        return collectTimeoutSeconds;
+    }
+
+    public void setCollectTimeoutSeconds(int collectTimeoutSeconds) {
+        this.collectTimeoutSeconds = collectTimeoutSeconds;
+    }
+
+    public String getActuatorConfigPropsPrefixes() {
+        return actuatorConfigPropsPrefixes;
+    }
+
+    public void setActuatorConfigPropsPrefixes(String actuatorConfigPropsPrefixes) {
+        this.actuatorConfigPropsPrefixes = actuatorConfigPropsPrefixes;
+    }
+
+    public String getPoolWatchdogThresholds() {
+        return poolWatchdogThresholds;
+    }
+
+    public void setPoolWatchdogThresholds(String poolWatchdogThresholds) {
+        this.poolWatchdogThresholds = poolWatchdogThresholds;
+    }
+
+    public int getPoolWatchdogIntervalSeconds() {
+        return poolWatchdogIntervalSeconds;
+    }
+
+    public void setPoolWatchdogIntervalSeconds(int poolWatchdogIntervalSeconds) {
+        this.poolWatchdogIntervalSeconds = poolWatchdogIntervalSeconds;
+    }
+
+    public int getPoolWatchdogCooldownSeconds() {
+        return poolWatchdogCooldownSeconds;
+    }
+
+    public void setPoolWatchdogCooldownSeconds(int poolWatchdogCooldownSeconds) {
+        this.poolWatchdogCooldownSeconds = poolWatchdogCooldownSeconds;
+    }
+
+    public int getThreadDumpBurstCount() {
+        return threadDumpBurstCount;
+    }
+
+    public void setThreadDumpBurstCount(int threadDumpBurstCount) {
+        this.threadDumpBurstCount = threadDumpBurstCount;
+    }
+
+    public int getThreadDumpBurstIntervalSeconds() {
+        return threadDumpBurstIntervalSeconds;
+    }
+
+    public void setThreadDumpBurstIntervalSeconds(int threadDumpBurstIntervalSeconds) {
+        this.threadDumpBurstIntervalSeconds = threadDumpBurstIntervalSeconds;
+    }
+
+    public boolean isLatencyTriggerEnabled() {
+        return latencyTriggerEnabled;
+    }
+
+    public void setLatencyTriggerEnabled(boolean latencyTriggerEnabled) {
+        this.latencyTriggerEnabled = latencyTriggerEnabled;
+    }
+
+    public String getLatencyTriggerUris() {
+        return latencyTriggerUris;
+    }
+
+    public void setLatencyTriggerUris(String latencyTriggerUris) {
+        this.latencyTriggerUris = latencyTriggerUris;
+    }
+
+    public long getLatencyTriggerMaxMillis() {
+        return latencyTriggerMaxMillis;
+    }
+
+    public void setLatencyTriggerMaxMillis(long latencyTriggerMaxMillis) {
+        this.latencyTriggerMaxMillis = latencyTriggerMaxMillis;
+    }
+
+    public long getLatencyTriggerMeanMillis() {
+        return latencyTriggerMeanMillis;
+    }
+
+    public void setLatencyTriggerMeanMillis(long latencyTriggerMeanMillis) {
+        this.latencyTriggerMeanMillis = latencyTriggerMeanMillis;
+    }
+
+    public double getLatencyTriggerBaselineFactor() {
+        return latencyTriggerBaselineFactor;
+    }
+
+    public void setLatencyTriggerBaselineFactor(double latencyTriggerBaselineFactor) {
+        this.latencyTriggerBaselineFactor = latencyTriggerBaselineFactor;
+    }
+
+    public int getLatencyTriggerBaselineSamples() {
+        return latencyTriggerBaselineSamples;
+    }
+
+    public void setLatencyTriggerBaselineSamples(int latencyTriggerBaselineSamples) {
+        this.latencyTriggerBaselineSamples = latencyTriggerBaselineSamples;
+    }
+
+    public int getLatencyTriggerIntervalSeconds() {
+        return latencyTriggerIntervalSeconds;
+    }
+
+    public void setLatencyTriggerIntervalSeconds(int latencyTriggerIntervalSeconds) {
+        this.latencyTriggerIntervalSeconds = latencyTriggerIntervalSeconds;
+    }
+
+    public int getLatencyTriggerCooldownSeconds() {
+        return latencyTriggerCooldownSeconds;
+    }
+
+    public void setLatencyTriggerCooldownSeconds(int latencyTriggerCooldownSeconds) {
+        this.latencyTriggerCooldownSeconds = latencyTriggerCooldownSeconds;
+    }
+
+    public int getLatencyTriggerBudget() {
+        return latencyTriggerBudget;
+    }
+
+    public void setLatencyTriggerBudget(int latencyTriggerBudget) {
+        this.latencyTriggerBudget = latencyTriggerBudget;
+    }
+
+    public boolean isLatencyTriggerHeapDump() {
+        return latencyTriggerHeapDump;
+    }
+
+    public void setLatencyTriggerHeapDump(boolean latencyTriggerHeapDump) {
+        this.latencyTriggerHeapDump = latencyTriggerHeapDump;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public int getJournalMaxFileSizeMb() {
+        return journalMaxFileSizeMb;
+    }
+
+    public void setJournalMaxFileSizeMb(int journalMaxFileSizeMb) {
+        this.journalMaxFileSizeMb = journalMaxFileSizeMb;
+    }
+
+    public int getJournalMaxFiles() {
+        return journalMaxFiles;
+    }
+
+    public void setJournalMaxFiles(int journalMaxFiles) {
+        this.journalMaxFiles = journalMaxFiles;
+    }
+
+    public String getActuatorRecordPath() {
+        return actuatorRecordPath;
+    }
+
+    public void setActuatorRecordPath(String actuatorRecordPath) {
+        this.actuatorRecordPath = actuatorRecordPath;
+    }
+
+    public String getActuatorReplayPath() {
+        return actuatorReplayPath;
+    }
+
+    public void setActuatorReplayPath(String actuatorReplayPath) {
+        this.actuatorReplayPath = actuatorReplayPath;
+    }
+
+    public double getActuatorReplaySpeed() {
+        return actuatorReplaySpeed;
+    }
+
+    public void setActuatorReplaySpeed(double actuatorReplaySpeed) {
+        this.actuatorReplaySpeed = actuatorReplaySpeed;
+    }
+
+    public boolean isThreadDumpArchiveEnabled() {
+        return threadDumpArchiveEnabled;
+    }
+
+    public void setThreadDumpArchiveEnabled(boolean threadDumpArchiveEnabled) {
+        this.threadDumpArchiveEnabled = threadDumpArchiveEnabled;
+    }
+
+    public String getObjectStoreEndpoint() {
+        return objectStoreEndpoint;
+    }
+
+    public void setObjectStoreEndpoint(String objectStoreEndpoint) {
+        this.objectStoreEndpoint = objectStoreEndpoint;
+    }
+
+    public String getObjectStoreBucket() {
+        return objectStoreBucket;
+    }
+
+    public void setObjectStoreBucket(String objectStoreBucket) {
+        this.objectStoreBucket = objectStoreBucket;
+    }
+
+    public String getObjectStoreRegion() {
+        return objectStoreRegion;
+    }
+
+    public void setObjectStoreRegion(String objectStoreRegion) {
+        this.objectStoreRegion = objectStoreRegion;
+    }
+
+    public String getObjectStoreAccessKey() {
+        return objectStoreAccessKey;
+    }
+
+    public void setObjectStoreAccessKey(String objectStoreAccessKey) {
+        this.objectStoreAccessKey = objectStoreAccessKey;
+    }
+
+    public String getObjectStoreSecretKey() {
+        return objectStoreSecretKey;
+    }
+
+    public void setObjectStoreSecretKey(String objectStoreSecretKey) {
+        this.objectStoreSecretKey = objectStoreSecretKey;
+    }
+
+    public String getObjectStorePrefix() {
+        return objectStorePrefix;
+    }
+
+    public void setObjectStorePrefix(String objectStorePrefix) {
+        this.objectStorePrefix = objectStorePrefix;
+    }
+
+    public int getObjectStorePartSizeMb() {
+        return objectStorePartSizeMb;
+    }
+
+    public void setObjectStorePartSizeMb(int objectStorePartSizeMb) {
+        this.objectStorePartSizeMb = objectStorePartSizeMb;
+    }
+
+    public int getObjectStoreParallelUploads() {
+        return objectStoreParallelUploads;
+    }
+
+    public void setObjectStoreParallelUploads(int objectStoreParallelUploads) {
+        this.objectStoreParallelUploads = objectStoreParallelUploads;
+    }
+
+    public boolean isAdaptiveSamplingEnabled() {
+        return adaptiveSamplingEnabled;
+    }
+
+    public void setAdaptiveSamplingEnabled(boolean adaptiveSamplingEnabled) {
+        this.adaptiveSamplingEnabled = adaptiveSamplingEnabled;
+    }
+
+    public int getSamplingTransitionIntervalSeconds() {
+        return samplingTransitionIntervalSeconds;
+    }
+
+    public void setSamplingTransitionIntervalSeconds(int samplingTransitionIntervalSeconds) {
+        this.samplingTransitionIntervalSeconds = samplingTransitionIntervalSeconds;
+    }
+
+    public int getSamplingRampupIntervalSeconds() {
+        return samplingRampupIntervalSeconds;
+    }
+
+    public void setSamplingRampupIntervalSeconds(int samplingRampupIntervalSeconds) {
+        this.samplingRampupIntervalSeconds = samplingRampupIntervalSeconds;
+    }
+
+    public int getSamplingSteadyIntervalSeconds() {
+        return samplingSteadyIntervalSeconds;
+    }
+
+    public void setSamplingSteadyIntervalSeconds(int samplingSteadyIntervalSeconds) {
+        this.samplingSteadyIntervalSeconds = samplingSteadyIntervalSeconds;
+    }
+
+    public int getSamplingRampdownIntervalSeconds() {
+        return samplingRampdownIntervalSeconds;
+    }
+
+    public void setSamplingRampdownIntervalSeconds(int samplingRampdownIntervalSeconds) {
+        this.samplingRampdownIntervalSeconds = samplingRampdownIntervalSeconds;
+    }
+
+    public int getSamplingTransitionWindowSeconds() {
+        return samplingTransitionWindowSeconds;
+    }
+
+    public void setSamplingTransitionWindowSeconds(int samplingTransitionWindowSeconds) {
+        this.samplingTransitionWindowSeconds = samplingTransitionWindowSeconds;
+    }
+
+    public double getSamplingBudgetRequestsPerSecond() {
+        return samplingBudgetRequestsPerSecond;
+    }
+
+    public void setSamplingBudgetRequestsPerSecond(double samplingBudgetRequestsPerSecond) {
+        this.samplingBudgetRequestsPerSecond = samplingBudgetRequestsPerSecond;
+    }
+
+    public boolean isMetricSummaryEnabled() {
+        return metricSummaryEnabled;
+    }
+
+    public void setMetricSummaryEnabled(boolean metricSummaryEnabled) {
+        this.metricSummaryEnabled = metricSummaryEnabled;
+    }
+
+    public String getMetricSummaryMetrics() {
+        return metricSummaryMetrics;
+    }
+
+    public void setMetricSummaryMetrics(String metricSummaryMetrics) {
+        this.metricSummaryMetrics = metricSummaryMetrics;
+    }
+
+    public int getMetricSummaryIntervalSeconds() {
+        return metricSummaryIntervalSeconds;
+    }
+
+    public void setMetricSummaryIntervalSeconds(int metricSummaryIntervalSeconds) {
+        this.metricSummaryIntervalSeconds = metricSummaryIntervalSeconds;
+    }
+
+    public boolean isGcAnalysisEnabled() {
+        return gcAnalysisEnabled;
+    }
+
+    public void setGcAnalysisEnabled(boolean gcAnalysisEnabled) {
+        this.gcAnalysisEnabled = gcAnalysisEnabled;
+    }
+
+    public int getGcAnalysisIntervalSeconds() {
+        return gcAnalysisIntervalSeconds;
+    }
+
+    public void setGcAnalysisIntervalSeconds(int gcAnalysisIntervalSeconds) {
+        this.gcAnalysisIntervalSeconds = gcAnalysisIntervalSeconds;
+    }
+
+    public boolean isThreadPoolUtilizationEnabled() {
+        return threadPoolUtilizationEnabled;
+    }
+
+    public void setThreadPoolUtilizationEnabled(boolean threadPoolUtilizationEnabled) {
+        this.threadPoolUtilizationEnabled = threadPoolUtilizationEnabled;
+    }
+
+    public String getThreadPoolPatterns() {
+        return threadPoolPatterns;
+    }
+
+    public void setThreadPoolPatterns(String threadPoolPatterns) {
+        this.threadPoolPatterns = threadPoolPatterns;
+    }
+
+    public boolean isTimeSeriesStoreEnabled() {
+        return timeSeriesStoreEnabled;
+    }
+
+    public void setTimeSeriesStoreEnabled(boolean timeSeriesStoreEnabled) {
+        this.timeSeriesStoreEnabled = timeSeriesStoreEnabled;
+    }
+
+    public String getTimeSeriesMetrics() {
+        return timeSeriesMetrics;
+    }
+
+    public void setTimeSeriesMetrics(String timeSeriesMetrics) {
+        this.timeSeriesMetrics = timeSeriesMetrics;
+    }
+
+    public int getTimeSeriesIntervalSeconds() {
+        return timeSeriesIntervalSeconds;
+    }
+
+    public void setTimeSeriesIntervalSeconds(int timeSeriesIntervalSeconds) {
+        this.timeSeriesIntervalSeconds = timeSeriesIntervalSeconds;
+    }
+
+    public int getTimeSeriesRawRetentionMinutes() {
+        return timeSeriesRawRetentionMinutes;
+    }
+
+    public void setTimeSeriesRawRetentionMinutes(int timeSeriesRawRetentionMinutes) {
+        this.timeSeriesRawRetentionMinutes = timeSeriesRawRetentionMinutes;
+    }
+
+    public int getTimeSeriesDownsampleSeconds() {
+        return timeSeriesDownsampleSeconds;
+    }
+
+    public void setTimeSeriesDownsampleSeconds(int timeSeriesDownsampleSeconds) {
+        this.timeSeriesDownsampleSeconds = timeSeriesDownsampleSeconds;
+    }
+
+    public boolean isHeapDumpDeferralEnabled() {
+        return heapDumpDeferralEnabled;
+    }
+
+    public void setHeapDumpDeferralEnabled(boolean heapDumpDeferralEnabled) {
+        this.heapDumpDeferralEnabled = heapDumpDeferralEnabled;
+    }
+
+    public double getHeapDumpDeferralMaxCpuUsage() {
+        return heapDumpDeferralMaxCpuUsage;
+    }
+
+    public void setHeapDumpDeferralMaxCpuUsage(double heapDumpDeferralMaxCpuUsage) {
+        this.heapDumpDeferralMaxCpuUsage = heapDumpDeferralMaxCpuUsage;
+    }
+
+    public double getHeapDumpDeferralMaxRequestsPerSecond() {
+        return heapDumpDeferralMaxRequestsPerSecond;
+    }
+
+    public void setHeapDumpDeferralMaxRequestsPerSecond(double heapDumpDeferralMaxRequestsPerSecond) {
+        this.heapDumpDeferralMaxRequestsPerSecond = heapDumpDeferralMaxRequestsPerSecond;
+    }
+
+    public int getHeapDumpDeferralMaxDelaySeconds() {
+        return heapDumpDeferralMaxDelaySeconds;
+    }
+
+    public void setHeapDumpDeferralMaxDelaySeconds(int heapDumpDeferralMaxDelaySeconds) {
+        this.heapDumpDeferralMaxDelaySeconds = heapDumpDeferralMaxDelaySeconds;
+    }
+
+    public int getHeapDumpDeferralPollSeconds() {
+        return heapDumpDeferralPollSeconds;
+    }
+
+    public void setHeapDumpDeferralPollSeconds(int heapDumpDeferralPollSeconds) {
+        this.heapDumpDeferralPollSeconds = heapDumpDeferralPollSeconds;
+    }
+
+    public boolean isTelemetryExportEnabled() {
+        return telemetryExportEnabled;
+    }
+
+    public void setTelemetryExportEnabled(boolean telemetryExportEnabled) {
+        this.telemetryExportEnabled = telemetryExportEnabled;
+    }
+
+    public String getTelemetryExportFormat() {
+        return telemetryExportFormat;
+    }
+
+    public void setTelemetryExportFormat(String telemetryExportFormat) {
+        this.telemetryExportFormat = telemetryExportFormat;
+    }
+
+    public String getTelemetryExportUrl() {
+        return telemetryExportUrl;
+    }
+
+    public void setTelemetryExportUrl(String telemetryExportUrl) {
+        this.telemetryExportUrl = telemetryExportUrl;
+    }
+
+    public int getTelemetryExportBatchSize() {
+        return telemetryExportBatchSize;
+    }
+
+    public void setTelemetryExportBatchSize(int telemetryExportBatchSize) {
+        this.telemetryExportBatchSize = telemetryExportBatchSize;
+    }
+
+    public int getTelemetryExportFlushIntervalSeconds() {
+        return telemetryExportFlushIntervalSeconds;
+    }
+
+    public void setTelemetryExportFlushIntervalSeconds(int telemetryExportFlushIntervalSeconds) {
+        this.telemetryExportFlushIntervalSeconds = telemetryExportFlushIntervalSeconds;
+    }
+
+    public int getTelemetryExportQueueCapacity() {
+        return telemetryExportQueueCapacity;
+    }
+
+    public void setTelemetryExportQueueCapacity(int telemetryExportQueueCapacity) {
+        this.telemetryExportQueueCapacity = telemetryExportQueueCapacity;
+    }
+
+    public int getTelemetryExportFileMaxMegabytes() {
+        return telemetryExportFileMaxMegabytes;
+    }
+
+    public void setTelemetryExportFileMaxMegabytes(int telemetryExportFileMaxMegabytes) {
+        this.telemetryExportFileMaxMegabytes = telemetryExportFileMaxMegabytes;
+    }
+
+    public int getTelemetryExportFileMaxFiles() {
+        return telemetryExportFileMaxFiles;
+    }
+
+    public void setTelemetryExportFileMaxFiles(int telemetryExportFileMaxFiles) {
+        this.telemetryExportFileMaxFiles = telemetryExportFileMaxFiles;
+    }
 }
@@ -15,9 +15,20 @@
  */
 package io.perfana.events.springboot.event;
 
+import io.perfana.events.springboot.actuator.ChecksumAlgorithm;
+import io.perfana.events.springboot.actuator.TimeoutProfile;
+import io.perfana.events.springboot.deferral.DeferralSettings;
+import io.perfana.events.springboot.export.ExportSettings;
+import io.perfana.events.springboot.journal.JournalSettings;
+import io.perfana.events.springboot.objectstore.ObjectStoreSettings;
+import io.perfana.events.springboot.sampling.SamplingSettings;
+import io.perfana.events.springboot.timeseries.TimeSeriesSettings;
+import io.perfana.events.springboot.trigger.LatencyTriggerSettings;
+import io.perfana.events.springboot.trigger.Threshold;
 import io.perfana.eventscheduler.api.config.EventContext;
 import net.jcip.annotations.Immutable;
 
+import java.time.Duration;
 import java.util.List;
 
 @Immutable
@@ -28,16 +39,92 @@ public class SpringBootEventContext extends EventContext {
     private final String actuatorBaseUrl;
 
     private final String dumpPath;
+    private final Boolean heapDumpLive;
+    private final TimeoutProfile dumpTimeoutProfile;
+    private final Duration dumpProgressInterval;
+    private final ChecksumAlgorithm dumpChecksumAlgorithm;
+    private final OverlappingDumpPolicy overlappingDumpPolicy;
+    private final List<String> actuatorCollectors;
+    private final List<String> actuatorBaselineMetrics;
+    private final Duration collectTimeout;
+    private final List<String> actuatorConfigPropsPrefixes;
+    private final List<Threshold> poolWatchdogThresholds;
+    private final Duration poolWatchdogInterval;
+    private final Duration poolWatchdogCooldown;
+    private final int threadDumpBurstCount;
+    private final Duration threadDumpBurstInterval;
+    private final LatencyTriggerSettings latencyTrigger;
+    private final JournalSettings journal;
+    private final String actuatorRecordPath;
+    private final String actuatorReplayPath;
+    private final double actuatorReplaySpeed;
+    private final boolean threadDumpArchiveEnabled;
+    private final ObjectStoreSettings objectStore;
+    private final SamplingSettings sampling;
+    private final boolean metricSummaryEnabled;
+    private final List<String> metricSummaryMetrics;
+    private final Duration metricSummaryInterval;
+    private final boolean gcAnalysisEnabled;
+    private final Duration gcAnalysisInterval;
+    private final boolean threadPoolUtilizationEnabled;
+    private final List<String> threadPoolPatterns;
+    private final TimeSeriesSettings timeSeries;
+    private final DeferralSettings heapDumpDeferral;
+    private final ExportSettings telemetryExport;
 
     private final List<String> actuatorEnvProps;
 
-    protected SpringBootEventContext(EventContext context, String tags, String actuatorPropPrefix, String actuatorBaseUrl, List<String> actuatorEnvProps, String dumpPath) {
+    protected SpringBootEventContext(EventContext context, String tags, String actuatorPropPrefix, String actuatorBaseUrl, List<String> actuatorEnvProps, String dumpPath,
+                                     Boolean heapDumpLive, TimeoutProfile dumpTimeoutProfile, Duration dumpProgressInterval,
+                                     ChecksumAlgorithm dumpChecksumAlgorithm, OverlappingDumpPolicy overlappingDumpPolicy,
+                                     List<String> actuatorCollectors, List<String> actuatorBaselineMetrics, Duration collectTimeout,
+                                     List<String> actuatorConfigPropsPrefixes, List<Threshold> poolWatchdogThresholds, Duration poolWatchdogInterval,
+                                     Duration poolWatchdogCooldown, int threadDumpBurstCount, Duration threadDumpBurstInterval,
+                                     LatencyTriggerSettings latencyTrigger, JournalSettings journal,
+                                     String actuatorRecordPath, String actuatorReplayPath, double actuatorReplaySpeed,
+                                     boolean threadDumpArchiveEnabled, ObjectStoreSettings objectStore, SamplingSettings sampling,
+                                     boolean metricSummaryEnabled, List<String> metricSummaryMetrics, Duration metricSummaryInterval,
+                                     boolean gcAnalysisEnabled, Duration gcAnalysisInterval, boolean threadPoolUtilizationEnabled,
+                                     List<String> threadPoolPatterns, TimeSeriesSettings timeSeries,
+                                     DeferralSettings heapDumpDeferral, ExportSettings telemetryExport) {
         super(context, SpringBootEventFactory.class.getName(), true);
         this.tags = tags;
         this.actuatorPropPrefix = actuatorPropPrefix;
         this.actuatorBaseUrl = actuatorBaseUrl;
         this.actuatorEnvProps = actuatorEnvProps;
         this.dumpPath = dumpPath;
+        this.heapDumpLive = heapDumpLive;
+        this.dumpTimeoutProfile = dumpTimeoutProfile;
+        this.dumpProgressInterval = dumpProgressInterval;
+        this.dumpChecksumAlgorithm = dumpChecksumAlgorithm;
+        this.overlappingDumpPolicy = overlappingDumpPolicy;
+        this.actuatorCollectors = actuatorCollectors;
+        this.actuatorBaselineMetrics = actuatorBaselineMetrics;
+        this.collectTimeout = collectTimeout;
+        this.actuatorConfigPropsPrefixes = actuatorConfigPropsPrefixes;
+        this.poolWatchdogThresholds = poolWatchdogThresholds;
+        this.poolWatchdogInterval = poolWatchdogInterval;
+        this.poolWatchdogCooldown = poolWatchdogCooldown;
+        this.threadDumpBurstCount = threadDumpBurstCount;
+        this.threadDumpBurstInterval = threadDumpBurstInterval;
+        this.latencyTrigger = latencyTrigger;
+        this.journal = journal;
+        this.actuatorRecordPath = actuatorRecordPath;
+        this.actuatorReplayPath = actuatorReplayPath;
+        this.actuatorReplaySpeed = actuatorReplaySpeed;
+        this.threadDumpArchiveEnabled = threadDumpArchiveEnabled;
+        this.objectStore = objectStore;
+        this.sampling = sampling;
+        this.metricSummaryEnabled = metricSummaryEnabled;
+        this.metricSummaryMetrics = metricSummaryMetrics;
+        this.metricSummaryInterval = metricSummaryInterval;
+        this.gcAnalysisEnabled = gcAnalysisEnabled;
+        this.gcAnalysisInterval = gcAnalysisInterval;
+        this.threadPoolUtilizationEnabled = threadPoolUtilizationEnabled;
+        this.threadPoolPatterns = threadPoolPatterns;
+        this.timeSeries = timeSeries;
+        this.heapDumpDeferral = heapDumpDeferral;
+        this.telemetryExport = telemetryExport;
     }
 
     public String getTags() {
@@ -65,6 +152,206 @@ public class SpringBootEventContext extends EventContext {
         return dumpPath;
     }
 
+    /**
+     * @return true or false for the heapdump endpoint live parameter, null for endpoint default
+     */
+    public Boolean getHeapDumpLive() {
+        return heapDumpLive;
+    }
+
+    public TimeoutProfile getDumpTimeoutProfile() {
+        return dumpTimeoutProfile;
+    }
+
+    /**
+     * @return interval for dump download progress updates, zero for only a final update
+     */
+    public Duration getDumpProgressInterval() {
+        return dumpProgressInterval;
+    }
+
+    public ChecksumAlgorithm getDumpChecksumAlgorithm() {
+        return dumpChecksumAlgorithm;
+    }
+
+    public OverlappingDumpPolicy getOverlappingDumpPolicy() {
+        return overlappingDumpPolicy;
+    }
+
+    /**
+     * @return names of the collectors to run in beforeTest, e.g. env, info, configprops, beans, metrics
+     */
+    public List<String> getActuatorCollectors() {
+        return actuatorCollectors;
+    }
+
+    public List<String> getActuatorBaselineMetrics() {
+        return actuatorBaselineMetrics;
+    }
+
+    /**
+     * @return overall deadline for all collectors in beforeTest
+     */
+    public Duration getCollectTimeout() {
+        return collectTimeout;
+    }
+
+    /**
+     * @return prefixes of the configuration properties to collect, e.g. spring.datasource.hikari
+     */
+    public List<String> getActuatorConfigPropsPrefixes() {
+        return actuatorConfigPropsPrefixes;
+    }
+
+    /**
+     * @return thresholds of the pool saturation watchdog, empty when the watchdog is disabled
+     */
+    public List<Threshold> getPoolWatchdogThresholds() {
+        return poolWatchdogThresholds;
+    }
+
+    public Duration getPoolWatchdogInterval() {
+        return poolWatchdogInterval;
+    }
+
+    public Duration getPoolWatchdogCooldown() {
+        return poolWatchdogCooldown;
+    }
+
+    /**
+     * @return number of thread dumps captured when a trigger fires
+     */
+    public int getThreadDumpBurstCount() {
+        return threadDumpBurstCount;
+    }
+
+    public Duration getThreadDumpBurstInterval() {
+        return threadDumpBurstInterval;
+    }
+
+    public LatencyTriggerSettings getLatencyTrigger() {
+        return latencyTrigger;
+    }
+
+    /**
+     * @return record collections, samples, retries, dumps and triggers in a journal file in the dump path, see {@link JournalSettings#isEnabled()}
+     */
+    public JournalSettings getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return directory to record all actuator responses in, null for no recording
+     */
+    public String getActuatorRecordPath() {
+        return actuatorRecordPath;
+    }
+
+    /**
+     * @return directory with recorded actuator responses to replay instead of calling the actuator, null for no replay
+     */
+    public String getActuatorReplayPath() {
+        return actuatorReplayPath;
+    }
+
+    /**
+     * @return replay speed: 1.0 is recorded speed, higher is faster, 0 is without delays
+     */
+    public double getActuatorReplaySpeed() {
+        return actuatorReplaySpeed;
+    }
+
+    /**
+     * @return append thread dumps to one deduplicating archive file per test run instead of a text file per dump
+     */
+    public boolean isThreadDumpArchiveEnabled() {
+        return threadDumpArchiveEnabled;
+    }
+
+    /**
+     * @return S3-compatible object store to upload heap dumps to instead of the dump path, see {@link ObjectStoreSettings#isEnabled()}
+     */
+    public ObjectStoreSettings getObjectStore() {
+        return objectStore;
+    }
+
+    /**
+     * @return phase-aware sampling of the watchdog and latency trigger, instead of their fixed intervals
+     */
+    public SamplingSettings getSampling() {
+        return sampling;
+    }
+
+    /**
+     * @return true when sampled metrics are summarized as percentiles at the end of the test
+     */
+    public boolean isMetricSummaryEnabled() {
+        return metricSummaryEnabled;
+    }
+
+    /**
+     * @return metrics sampled for the end of test summary, next to the metrics sampled by the triggers
+     */
+    public List<String> getMetricSummaryMetrics() {
+        return metricSummaryMetrics;
+    }
+
+    /**
+     * @return interval to sample the summary metrics, when adaptive sampling is disabled
+     */
+    public Duration getMetricSummaryInterval() {
+        return metricSummaryInterval;
+    }
+
+    /**
+     * @return true to analyze allocation rate, promotion rate and GC time per test phase
+     */
+    public boolean isGcAnalysisEnabled() {
+        return gcAnalysisEnabled;
+    }
+
+    /**
+     * @return interval to sample the GC meters, when adaptive sampling is disabled
+     */
+    public Duration getGcAnalysisInterval() {
+        return gcAnalysisInterval;
+    }
+
+    /**
+     * @return true to track thread pool utilization from the text thread dumps
+     */
+    public boolean isThreadPoolUtilizationEnabled() {
+        return threadPoolUtilizationEnabled;
+    }
+
+    /**
+     * @return thread name patterns with * wildcards that group threads in pools
+     */
+    public List<String> getThreadPoolPatterns() {
+        return threadPoolPatterns;
+    }
+
+    /**
+     * @return compressed in-memory store of all metric samples, see {@link TimeSeriesSettings#isEnabled()}
+     */
+    public TimeSeriesSettings getTimeSeries() {
+        return timeSeries;
+    }
+
+    /**
+     * @return deferral of scheduled heap dumps while the application is busy, see {@link DeferralSettings#isEnabled()}
+     */
+    public DeferralSettings getHeapDumpDeferral() {
+        return heapDumpDeferral;
+    }
+
+    /**
+     * @return export of samples and events in batches to files or a time series database, see {@link ExportSettings#isEnabled()}
+     */
+    public ExportSettings getTelemetryExport() {
+        return telemetryExport;
+    }
+
     @Override
     public String toString() {
         return "SpringBootEventConfig{" +
@@ -73,6 +360,38 @@ public class SpringBootEventContext extends EventContext {
             ", actuatorBaseUrl='" + actuatorBaseUrl + '\'' +
             ", actuatorEnvProperties='" + actuatorEnvProps + '\'' +
             ", dumpPath='" + dumpPath + '\'' +
+            ", heapDumpLive=" + heapDumpLive +
+            ", dumpTimeoutProfile=" + dumpTimeoutProfile +
+            ", dumpProgressInterval=" + dumpProgressInterval +
+            ", dumpChecksumAlgorithm=" + dumpChecksumAlgorithm +
+            ", overlappingDumpPolicy=" + overlappingDumpPolicy +
+            ", actuatorCollectors=" + actuatorCollectors +
+            ", actuatorBaselineMetrics=" + actuatorBaselineMetrics +
+            ", collectTimeout=" + collectTimeout +
+            ", actuatorConfigPropsPrefixes=" + actuatorConfigPropsPrefixes +
+            ", poolWatchdogThresholds=" + poolWatchdogThresholds +
+            ", poolWatchdogInterval=" + poolWatchdogInterval +
+            ", poolWatchdogCooldown=" + poolWatchdogCooldown +
+            ", threadDumpBurstCount=" + threadDumpBurstCount +
+            ", threadDumpBurstInterval=" + threadDumpBurstInterval +
+            ", latencyTrigger=" + latencyTrigger +
+            ", journal=" + journal +
+            ", actuatorRecordPath='" + actuatorRecordPath + '\'' +
+            ", actuatorReplayPath='" + actuatorReplayPath + '\'' +
+            ", actuatorReplaySpeed=" + actuatorReplaySpeed +
+            ", threadDumpArchiveEnabled=" + threadDumpArchiveEnabled +
+            ", objectStore=" + objectStore +
+            ", sampling=" + sampling +
+            ", metricSummaryEnabled=" + metricSummaryEnabled +
+            ", metricSummaryMetrics=" + metricSummaryMetrics +
+            ", metricSummaryInterval=" + metricSummaryInterval +
+            ", gcAnalysisEnabled=" + gcAnalysisEnabled +
+            ", gcAnalysisInterval=" + gcAnalysisInterval +
+            ", threadPoolUtilizationEnabled=" + threadPoolUtilizationEnabled +
+            ", threadPoolPatterns=" + threadPoolPatterns +
+            ", timeSeries=" + timeSeries +
+            ", heapDumpDeferral=" + heapDumpDeferral +
+            ", telemetryExport=" + telemetryExport +
             "} " + super.toString();
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text formats of an export batch.
+ */
+public enum ExportFormat {
+
+    /**
+     * InfluxDB line protocol, nanosecond timestamps. Fields that are not finite are left out.
+     */
+    INFLUX("text/plain; charset=utf-8", "lp") {
+        @Override
+        public String render(List<ExportPoint> points) {
+            StringBuilder out = new StringBuilder();
+            for (ExportPoint point : points) {
+                StringBuilder fields = new StringBuilder();
+                point.getFields().forEach((name, value) -> {
+                    if (Double.isFinite(value)) {
+                        fields.append(fields.length() == 0 ? "" : ",").append(escapeInflux(name, true)).append('=').append(value);
+                    }
+                });
+                if (fields.length() == 0) {
+                    continue;
+                }
+                out.append(escapeInflux(point.getMeasurement(), false));
+                point.getTags().forEach((name, value) -> {
+                    if (!value.isEmpty()) {
+                        out.append(',').append(escapeInflux(name, true)).append('=').append(escapeInflux(value, true));
+                    }
+                });
+                out.append(' ').append(fields).append(' ').append(point.getEpochMillis() * 1_000_000).append('\n');
+            }
+            return out.toString();
+        }
+    },
+
+    /**
+     * OpenMetrics text, a sample per field named {@code <measurement>_<field>}, grouped per metric family of
+     * type unknown. Each batch is a complete exposition ending with {@code # EOF}.
+     */
+    OPENMETRICS("application/openmetrics-text; version=1.0.0; charset=utf-8", "om") {
+        @Override
+        public String render(List<ExportPoint> points) {
+            // samples of a family must be together, in order of arrival
+            Map<String, List<String>> families = new LinkedHashMap<>();
+            for (ExportPoint point : points) {
+                StringBuilder labels = new StringBuilder();
+                point.getTags().forEach((name, value) -> labels.append(labels.length() == 0 ? "{" : ",")
+                        .append(metricName(name, false)).append("=\"").append(escapeLabelValue(value)).append('"'));
+                if (labels.length() > 0) {
+                    labels.append('}');
+                }
+                String timestamp = String.format(Locale.ROOT, "%d.%03d", Math.floorDiv(point.getEpochMillis(), 1000), Math.floorMod(point.getEpochMillis(), 1000));
+                point.getFields().forEach((field, value) -> {
+                    String name = metricName(point.getMeasurement() + "_" + field, true);
+                    families.computeIfAbsent(name, n -> new ArrayList<>()).add(name + labels + " " + openMetricsValue(value) + " " + timestamp);
+                });
+            }
+            if (families.isEmpty()) {
+                return "";
+            }
+            StringBuilder out = new StringBuilder();
+            families.forEach((name, samples) -> {
+                out.append("# TYPE ").append(name).append(" unknown\n");
+                samples.forEach(sample -> out.append(sample).append('\n'));
+            });
+            return out.append("# EOF\n").toString();
+        }
+    };
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * @return the points as text, empty when there is nothing to export
+     */
+    public abstract String render(List<ExportPoint> points);
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ExportFormat parse(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return INFLUX;
+        }
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Escape commas and spaces, and equal signs in keys and tag values.
+     */
+    static String escapeInflux(String text, boolean escapeEquals) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            // a line break would end the line
+            char ch = c == '\n' ? ' ' : c;
+            if (ch == ',' || ch == ' ' || (escapeEquals && ch == '=')) {
+                out.append('\\');
+            }
+            out.append(ch);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Replace characters that are not allowed in metric (with colons) or label names by underscores.
+     */
+    static String metricName(String name, boolean allowColon) {
+        StringBuilder out = new StringBuilder(name.length() + 1);
+        for (char c : name.toCharArray()) {
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || (allowColon && c == ':');
+            out.append(valid ? c : '_');
+        }
+        if (out.length() == 0 || Character.isDigit(out.charAt(0))) {
+            out.insert(0, '_');
+        }
+        return out.toString();
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String openMetricsValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One measurement with tags and numeric fields at a point in time, e.g. a metric sample with a field per statistic.
+ */
+@Immutable
+public class ExportPoint {
+
+    private final String measurement;
+    private final Map<String, String> tags;
+    private final Map<String, Double> fields;
+    private final long epochMillis;
+
+    public ExportPoint(String measurement, Map<String, String> tags, Map<String, Double> fields, long epochMillis) {
+        this.measurement = measurement;
+        this.tags = Collections.unmodifiableMap(new TreeMap<>(tags));
+        this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+        this.epochMillis = epochMillis;
+    }
+
+    public String getMeasurement() {
+        return measurement;
+    }
+
+    /**
+     * @return tags sorted by name
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Map<String, Double> getFields() {
+        return fields;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportPoint{" +
+                "measurement='" + measurement + '\'' +
+                ", tags=" + tags +
+                ", fields=" + fields +
+                ", epochMillis=" + epochMillis +
+                '}';
+    }
+}
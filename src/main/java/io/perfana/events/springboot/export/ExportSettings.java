@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link TelemetryExporter}.
+ */
+@Immutable
+public class ExportSettings {
+
+    public static final ExportSettings DISABLED = new ExportSettings(false, ExportFormat.INFLUX, null, 500, Duration.ofSeconds(5), 10_000, 64L * 1024 * 1024, 4);
+
+    private final boolean enabled;
+    private final ExportFormat format;
+    private final String url;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final int queueCapacity;
+    private final long fileMaxBytes;
+    private final int fileMaxFiles;
+
+    public ExportSettings(boolean enabled, ExportFormat format, String url, int batchSize, Duration flushInterval, int queueCapacity,
+                          long fileMaxBytes, int fileMaxFiles) {
+        if (batchSize < 1 || queueCapacity < 1 || fileMaxFiles < 1) {
+            throw new IllegalArgumentException("batchSize, queueCapacity and fileMaxFiles should be at least 1: "
+                    + batchSize + ", " + queueCapacity + ", " + fileMaxFiles);
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval should be positive: " + flushInterval);
+        }
+        this.url = url == null || url.trim().isEmpty() ? null : url.trim();
+        if (enabled && format == ExportFormat.OPENMETRICS && this.url == null) {
+            // each batch is a complete exposition, batches appended to a file are not valid OpenMetrics
+            throw new IllegalArgumentException("OPENMETRICS export needs a url, use INFLUX to export to files");
+        }
+        this.enabled = enabled;
+        this.format = format;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queueCapacity = queueCapacity;
+        this.fileMaxBytes = fileMaxBytes;
+        this.fileMaxFiles = fileMaxFiles;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return url to push the batches to, null to write files
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return max time a point waits for its batch to fill up
+     */
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @return max number of points waiting for export, more are dropped
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getFileMaxBytes() {
+        return fileMaxBytes;
+    }
+
+    /**
+     * @return number of export files to keep, older files are deleted
+     */
+    public int getFileMaxFiles() {
+        return fileMaxFiles;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportSettings{" +
+                "enabled=" + enabled +
+                ", format=" + format +
+                ", url='" + url + '\'' +
+                ", batchSize=" + batchSize +
+                ", flushInterval=" + flushInterval +
+                ", queueCapacity=" + queueCapacity +
+                ", fileMaxBytes=" + fileMaxBytes +
+                ", fileMaxFiles=" + fileMaxFiles +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * Posts each batch to the write endpoint of a time series database, e.g. {@code http://localhost:8086/api/v2/write?bucket=perf}
+ * for InfluxDB or {@code http://localhost:8428/api/v1/import/prometheus} for VictoriaMetrics.
+ */
+public class HttpPushTarget implements ExportTarget {
+
+    private final OkHttpClient client;
+    private final String url;
+    private final MediaType mediaType;
+
+    public HttpPushTarget(OkHttpClient client, String url, String contentType) {
+        this.client = client;
+        this.url = url;
+        this.mediaType = MediaType.parse(contentType);
+    }
+
+    @Override
+    public void write(String batch) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(mediaType, batch))
+                .build();
+        Response response = client.newCall(request).execute();
+        try {
+            if (!response.isSuccessful()) {
+                throw new IOException("Export to " + url + " failed with status " + response.code() + ": " + response.body().string());
+            }
+        } finally {
+            response.body().close();
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the client is shared
+    }
+
+    @Override
+    public String toString() {
+        return "HttpPushTarget{" +
+                "url='" + url + '\'' +
+                ", mediaType=" + mediaType +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Appends batches to {@code <prefix>-<n>.<extension>} files, a new file is started when the current file
+ * has reached the max size. Batches are never split over files. Only the newest max files are kept.
+ */
+public class RotatingFileTarget implements ExportTarget {
+
+    private final File dir;
+    private final String prefix;
+    private final String extension;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    private final List<File> files = new ArrayList<>();
+    private OutputStream out;
+    private long bytes;
+    private int fileCount;
+
+    public RotatingFileTarget(File dir, String prefix, String extension, long maxBytes, int maxFiles) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.extension = extension;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public void write(String batch) throws IOException {
+        if (out == null || bytes >= maxBytes) {
+            rotate();
+        }
+        byte[] content = batch.getBytes(StandardCharsets.UTF_8);
+        out.write(content);
+        out.flush();
+        bytes += content.length;
+    }
+
+    private void rotate() throws IOException {
+        close();
+        File file = new File(dir, prefix + "-" + (++fileCount) + "." + extension);
+        out = Files.newOutputStream(file.toPath());
+        files.add(file);
+        bytes = 0;
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.remove(0).toPath());
+        }
+    }
+
+    /**
+     * @return the files that are kept, in order
+     */
+    public List<File> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RotatingFileTarget{" +
+                "dir=" + dir +
+                ", prefix='" + prefix + '\'' +
+                ", extension='" + extension + '\'' +
+                ", maxBytes=" + maxBytes +
+                ", maxFiles=" + maxFiles +
+                ", files=" + fileCount +
+                '}';
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.MetricListener;
+import io.perfana.events.springboot.journal.Journal;
+import io.perfana.events.springboot.journal.JournalEventType;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports metric samples and plugin events (dumps, triggers, log level changes, ...) in batches to an
+ * {@link ExportTarget}, in InfluxDB line protocol or OpenMetrics text.
+ * <p>
+ * Points are handed over in a bounded queue and rendered and written on an exporter thread of its own, so
+ * sampling never waits for the target. When the queue is full, because the target is slow or down, new points
+ * are dropped and counted instead of blocking the sampling thread. A batch is written when it is full or
+ * when its first point has waited for the flush interval. A batch that fails is dropped and counted.
+ */
+@ThreadSafe
+public class TelemetryExporter implements AutoCloseable {
+
+    static final String EVENT_MEASUREMENT = "springboot_event";
+
+    private static final long POLL_MILLIS = 250;
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ExportSettings settings;
+    private final ExportTarget target;
+    private final EventLogger logger;
+    private final BlockingQueue<ExportPoint> queue;
+    private final Thread thread;
+
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile boolean closed;
+
+    public TelemetryExporter(ExportSettings settings, ExportTarget target, EventLogger logger) {
+        this.settings = settings;
+        this.target = target;
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.thread = new Thread(this::exportLoop, "telemetry-exporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Never blocks.
+     * @return false when the point is dropped, because the queue is full or the exporter is closed
+     */
+    public boolean offer(ExportPoint point) {
+        if (closed) {
+            return false;
+        }
+        if (queue.offer(point)) {
+            return true;
+        }
+        if (dropped.getAndIncrement() == 0) {
+            logger.warn("Export queue of " + settings.getQueueCapacity() + " points is full, dropping points until " + target + " catches up");
+        }
+        return false;
+    }
+
+    /**
+     * @return listener that exports each metric sample as a point with a field per statistic, tagged with the instance
+     */
+    public MetricListener listener(String instance) {
+        return (metricName, tags, metric) -> {
+            if (metric.measurements == null) {
+                return;
+            }
+            Map<String, Double> fields = new LinkedHashMap<>();
+            for (Measurement measurement : metric.measurements) {
+                if (measurement.statistic != null && measurement.value != null) {
+                    fields.put(measurement.statistic.toLowerCase(Locale.ROOT), measurement.value);
+                }
+            }
+            if (fields.isEmpty()) {
+                return;
+            }
+            Map<String, String> pointTags = new HashMap<>();
+            for (String tag : tags) {
+                int colon = tag.indexOf(':');
+                if (colon > 0) {
+                    pointTags.put(tag.substring(0, colon), tag.substring(colon + 1));
+                }
+            }
+            pointTags.put("instance", instance);
+            offer(new ExportPoint(metricName, pointTags, fields, System.currentTimeMillis()));
+        };
+    }
+
+    /**
+     * @return journal that exports all records except the metric samples, as {@value #EVENT_MEASUREMENT} points
+     * tagged with type and name, with a count field and the numeric key=value pairs of the detail as fields,
+     * e.g. bytes and durationMillis of a dump
+     */
+    public Journal journal(String instance) {
+        return (type, name, detail) -> {
+            if (type == JournalEventType.SAMPLE) {
+                return;
+            }
+            Map<String, String> tags = new HashMap<>();
+            tags.put("instance", instance);
+            tags.put("type", type.name().toLowerCase(Locale.ROOT));
+            tags.put("name", name);
+            Map<String, Double> fields = new LinkedHashMap<>();
+            fields.put("count", 1.0);
+            fields.putAll(numericDetails(detail));
+            offer(new ExportPoint(EVENT_MEASUREMENT, tags, fields, System.currentTimeMillis()));
+        };
+    }
+
+    static Map<String, Double> numericDetails(String detail) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        if (detail == null) {
+            return values;
+        }
+        for (String part : detail.split("\\s+")) {
+            int equals = part.indexOf('=');
+            if (equals > 0) {
+                try {
+                    values.put(part.substring(0, equals), Double.parseDouble(part.substring(equals + 1)));
+                } catch (NumberFormatException e) {
+                    // not a number, such as a checksum
+                }
+            }
+        }
+        return values;
+    }
+
+    private void exportLoop() {
+        List<ExportPoint> batch = new ArrayList<>(settings.getBatchSize());
+        long flushNanos = settings.getFlushInterval().toNanos();
+        long deadline = 0;
+        while (!closed || !queue.isEmpty() || !batch.isEmpty()) {
+            ExportPoint point;
+            try {
+                point = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // close timed out
+                break;
+            }
+            if (point != null) {
+                if (batch.isEmpty()) {
+                    deadline = System.nanoTime() + flushNanos;
+                }
+                batch.add(point);
+                queue.drainTo(batch, settings.getBatchSize() - batch.size());
+            }
+            if (batch.size() >= settings.getBatchSize() || (!batch.isEmpty() && (closed || System.nanoTime() - deadline >= 0))) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<ExportPoint> batch) {
+        try {
+            String text = settings.getFormat().render(batch);
+            if (!text.isEmpty()) {
+                target.write(text);
+            }
+            exported.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            // an exception would end the export thread
+            failedBatches.incrementAndGet();
+            logger.warn("Export of " + batch.size() + " points to " + target + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the points that are still queued and close the target.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            thread.join(CLOSE_TIMEOUT.toMillis());
+            if (thread.isAlive()) {
+                logger.warn("Export did not finish within " + CLOSE_TIMEOUT + ", " + queue.size() + " points are not exported");
+                thread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            thread.interrupt();
+        }
+        try {
+            target.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close " + target + ": " + e.getMessage());
+        }
+    }
+
+    public long getExportedCount() {
+        return exported.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetryExporter{" +
+                "target=" + target +
+                ", format=" + settings.getFormat() +
+                ", exported=" + exported.get() +
+                ", dropped=" + dropped.get() +
+                ", failedBatches=" + failedBatches.get() +
+                '}';
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.gc;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.sampling.TestPhase;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Derives allocation rate, promotion rate and the percentage of wall time in GC pauses from the
+ * Micrometer JVM GC meters, per sample interval, and aggregates them per test phase.
+ * <p>
+ * Rates come from the deltas of the cumulative jvm.gc.memory.allocated, jvm.gc.memory.promoted and
+ * jvm.gc.pause total time between two samples, averages per phase are weighted by time. A lower
+ * counter means the application restarted, that interval is skipped. A counter that could not be read
+ * on either side of an interval leaves that rate out for the interval.
+ * Schedule with a fixed delay in a SafeRunnable, each run takes one sample.
+ */
+@ThreadSafe
+public class GcAnalyzer implements Runnable {
+
+    static final String PAUSE_METRIC = "jvm.gc.pause";
+    static final String ALLOCATED_METRIC = "jvm.gc.memory.allocated";
+    static final String PROMOTED_METRIC = "jvm.gc.memory.promoted";
+    static final String LIVE_DATA_METRIC = "jvm.gc.live.data.size";
+
+    private static final double MB = 1024.0 * 1024.0;
+    private static final String ALL_PHASES = "all";
+
+    private final ActuatorClient client;
+    private final Duration rampupTime;
+    private final Duration constantLoadTime;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final EventLogger logger;
+
+    private final List<GcSample> samples = new ArrayList<>();
+    private final Map<String, PhaseStats> phaseStats = new LinkedHashMap<>();
+    private Reading previous;
+    private boolean pauseSeen;
+
+    public GcAnalyzer(ActuatorClient client, Duration rampupTime, Duration constantLoadTime, EventLogger logger) {
+        this(client, rampupTime, constantLoadTime, System::nanoTime, logger);
+    }
+
+    GcAnalyzer(ActuatorClient client, Duration rampupTime, Duration constantLoadTime, LongSupplier nanoClock, EventLogger logger) {
+        this.client = client;
+        this.rampupTime = rampupTime;
+        this.constantLoadTime = constantLoadTime;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.logger = logger;
+        phaseStats.put(ALL_PHASES, new PhaseStats());
+        for (TestPhase phase : TestPhase.values()) {
+            phaseStats.put(phase.name().toLowerCase(Locale.ROOT), new PhaseStats());
+        }
+    }
+
+    @Override
+    public void run() {
+        Optional<Metric> pause = client.metric(PAUSE_METRIC);
+        Reading reading = new Reading(nanoClock.getAsLong(),
+                pause.flatMap(m -> m.timeMeasurement("TOTAL_TIME", TimeUnit.SECONDS)).orElse(Double.NaN),
+                client.metric(ALLOCATED_METRIC).flatMap(m -> m.measurement("COUNT")).orElse(Double.NaN),
+                client.metric(PROMOTED_METRIC).flatMap(m -> m.measurement("COUNT")).orElse(Double.NaN),
+                client.metric(LIVE_DATA_METRIC).flatMap(m -> m.measurement("VALUE")).orElse(Double.NaN));
+        add(reading);
+    }
+
+    synchronized void add(Reading reading) {
+        Reading last = previous;
+        previous = reading;
+        // no jvm.gc.pause at all yet means no GC has happened yet: count as zero, also for the last
+        // reading when the pause meter appears in this interval
+        boolean noPausesBefore = !pauseSeen;
+        pauseSeen |= !Double.isNaN(reading.pauseSeconds);
+        if (last == null || reading.nanos <= last.nanos) {
+            return;
+        }
+        if (reading.isRestartOf(last)) {
+            logger.info("GC counters decreased, the application restarted: skip interval");
+            return;
+        }
+        double seconds = (reading.nanos - last.nanos) / 1_000_000_000.0;
+        // NaN when a reading is missing, also for a failed fetch: the whole total would land in one interval otherwise
+        double allocated = reading.allocatedBytes - last.allocatedBytes;
+        double promoted = reading.promotedBytes - last.promotedBytes;
+        double pauseSeconds = (pauseSeen ? reading.pauseSeconds : 0) - (noPausesBefore ? 0 : last.pauseSeconds);
+
+        Duration elapsed = Duration.ofNanos(reading.nanos - startNanos);
+        TestPhase phase = TestPhase.at(elapsed, rampupTime, constantLoadTime);
+        GcSample sample = new GcSample(elapsed, phase, allocated / seconds, promoted / seconds, 100.0 * pauseSeconds / seconds, reading.liveDataBytes);
+        samples.add(sample);
+        for (PhaseStats stats : List.of(phaseStats.get(ALL_PHASES), phaseStats.get(phase.name().toLowerCase(Locale.ROOT)))) {
+            stats.allocationRate.add(allocated / MB, seconds);
+            stats.promotionRate.add(promoted / MB, seconds);
+            stats.gcTime.add(100.0 * pauseSeconds, seconds);
+            stats.liveDataSize.add(reading.liveDataBytes / MB, 1);
+        }
+    }
+
+    public synchronized List<GcSample> getSamples() {
+        return List.copyOf(samples);
+    }
+
+    /**
+     * @return average and peak per phase (rampup, steady, rampdown and all), e.g. {@code <prefix>steady.allocationRateMBps.peak},
+     * for phases and meters with samples only
+     */
+    public synchronized Map<String, String> toKeyValues(String prefix) {
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        phaseStats.forEach((phase, stats) -> {
+            String phasePrefix = prefix + phase + ".";
+            stats.allocationRate.put(keyValues, phasePrefix + "allocationRateMBps", "%.1f");
+            stats.promotionRate.put(keyValues, phasePrefix + "promotionRateMBps", "%.1f");
+            stats.gcTime.put(keyValues, phasePrefix + "gcTimePercentage", "%.2f");
+            stats.liveDataSize.put(keyValues, phasePrefix + "liveDataSizeMB", "%.1f");
+        });
+        return keyValues;
+    }
+
+    /**
+     * Write the time series as csv, rates in bytes per second.
+     */
+    public synchronized void writeCsv(PrintWriter out) {
+        out.println("elapsedSeconds,phase,allocationRateBytesPerSecond,promotionRateBytesPerSecond,gcTimePercentage,liveDataSizeBytes");
+        for (GcSample sample : samples) {
+            out.println(String.format(Locale.ROOT, "%.3f,%s,%s,%s,%s,%s", sample.getElapsed().toMillis() / 1000.0, sample.getPhase(),
+                    csv(sample.getAllocationRate(), "%.0f"), csv(sample.getPromotionRate(), "%.0f"),
+                    csv(sample.getGcTimePercentage(), "%.3f"), csv(sample.getLiveDataSize(), "%.0f")));
+        }
+        out.flush();
+    }
+
+    private static String csv(double value, String format) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, format, value);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GcAnalyzer{" +
+                "samples=" + samples.size() +
+                ", rampupTime=" + rampupTime +
+                ", constantLoadTime=" + constantLoadTime +
+                '}';
+    }
+
+    static class Reading {
+        private final long nanos;
+        private final double pauseSeconds;
+        private final double allocatedBytes;
+        private final double promotedBytes;
+        private final double liveDataBytes;
+
+        Reading(long nanos, double pauseSeconds, double allocatedBytes, double promotedBytes, double liveDataBytes) {
+            this.nanos = nanos;
+            this.pauseSeconds = pauseSeconds;
+            this.allocatedBytes = allocatedBytes;
+            this.promotedBytes = promotedBytes;
+            this.liveDataBytes = liveDataBytes;
+        }
+
+        boolean isRestartOf(Reading other) {
+            // comparisons with NaN are false
+            return pauseSeconds < other.pauseSeconds || allocatedBytes < other.allocatedBytes || promotedBytes < other.promotedBytes;
+        }
+    }
+
+    private static class PhaseStats {
+        private final Aggregate allocationRate = new Aggregate();
+        private final Aggregate promotionRate = new Aggregate();
+        private final Aggregate gcTime = new Aggregate();
+        private final Aggregate liveDataSize = new Aggregate();
+    }
+
+    /**
+     * Weighted average and peak of amount per weight, NaN amounts are skipped.
+     */
+    private static class Aggregate {
+        private double amount;
+        private double weight;
+        private double peak = Double.NaN;
+
+        void add(double amount, double weight) {
+            if (Double.isNaN(amount)) {
+                return;
+            }
+            this.amount += amount;
+            this.weight += weight;
+            double value = amount / weight;
+            peak = Double.isNaN(peak) ? value : Math.max(peak, value);
+        }
+
+        void put(Map<String, String> keyValues, String key, String format) {
+            if (weight > 0) {
+                keyValues.put(key + ".avg", String.format(Locale.ROOT, format, amount / weight));
+                keyValues.put(key + ".peak", String.format(Locale.ROOT, format, peak));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.gc;
+
+import io.perfana.events.springboot.sampling.TestPhase;
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+
+/**
+ * GC behaviour of the system under test over one sample interval. Values are NaN when the
+ * meter is not available, e.g. jvm.gc.memory.promoted for collectors without an old generation.
+ */
+@Immutable
+public class GcSample {
+
+    private final Duration elapsed;
+    private final TestPhase phase;
+    private final double allocationRate;
+    private final double promotionRate;
+    private final double gcTimePercentage;
+    private final double liveDataSize;
+
+    GcSample(Duration elapsed, TestPhase phase, double allocationRate, double promotionRate, double gcTimePercentage, double liveDataSize) {
+        this.elapsed = elapsed;
+        this.phase = phase;
+        this.allocationRate = allocationRate;
+        this.promotionRate = promotionRate;
+        this.gcTimePercentage = gcTimePercentage;
+        this.liveDataSize = liveDataSize;
+    }
+
+    /**
+     * @return time since the start of the test at the end of the interval
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public TestPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return bytes allocated in the young generation per second
+     */
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    /**
+     * @return bytes promoted to the old generation per second
+     */
+    public double getPromotionRate() {
+        return promotionRate;
+    }
+
+    /**
+     * @return percentage of wall time in GC pauses
+     */
+    public double getGcTimePercentage() {
+        return gcTimePercentage;
+    }
+
+    /**
+     * @return size of the old generation after the last full GC, in bytes
+     */
+    public double getLiveDataSize() {
+        return liveDataSize;
+    }
+
+    @Override
+    public String toString() {
+        return "GcSample{" +
+                "elapsed=" + elapsed +
+                ", phase=" + phase +
+                ", allocationRate=" + allocationRate +
+                ", promotionRate=" + promotionRate +
+                ", gcTimePercentage=" + gcTimePercentage +
+                ", liveDataSize=" + liveDataSize +
+                '}';
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dominator tree and retained sizes of a {@link HeapIndex}, computed with the
+ * Lengauer-Tarjan algorithm (path compression variant). All per-node state is kept
+ * in mapped arrays and all graph walks are iterative, so deep reference chains
+ * do not blow the stack.
+ */
+public class DominatorTree {
+
+    private static final int NONE = -1;
+
+    private final HeapIndex index;
+    private final MappedArrays.IntArray idom;
+    private final MappedArrays.LongArray retained;
+    private final MappedArrays.IntArray shortestPathParent;
+    private int reachableCount;
+
+    private DominatorTree(HeapIndex index) throws IOException {
+        this.index = index;
+        MappedArrays arrays = index.arrays();
+        int nodeCount = index.nodeCount();
+        this.idom = arrays.ints(nodeCount);
+        this.retained = arrays.longs(nodeCount);
+        this.shortestPathParent = arrays.ints(nodeCount);
+    }
+
+    public static DominatorTree compute(HeapIndex index) throws IOException {
+        DominatorTree tree = new DominatorTree(index);
+        MappedArrays.IntArray vertex = tree.computeDominators();
+        tree.computeRetainedSizes(vertex);
+        tree.computeShortestPaths();
+        return tree;
+    }
+
+    public int immediateDominator(int node) {
+        return idom.get(node);
+    }
+
+    public long retainedSize(int node) {
+        return retained.get(node);
+    }
+
+    public boolean isReachable(int node) {
+        return node == index.rootNode() || idom.get(node) != NONE;
+    }
+
+    public int reachableCount() {
+        return reachableCount;
+    }
+
+    public long totalReachableSize() {
+        return retained.get(index.rootNode());
+    }
+
+    /**
+     * @return shortest reference chain from node up to (but excluding) the artificial root node,
+     * the last element is a GC root
+     */
+    public List<Integer> pathToGcRoot(int node, int maxLength) {
+        List<Integer> path = new ArrayList<>();
+        int current = node;
+        while (current != NONE && current != index.rootNode() && path.size() < maxLength) {
+            path.add(current);
+            current = shortestPathParent.get(current);
+        }
+        return path;
+    }
+
+    private MappedArrays.IntArray computeDominators() throws IOException {
+        MappedArrays arrays = index.arrays();
+        int nodeCount = index.nodeCount();
+        int root = index.rootNode();
+
+        MappedArrays.IntArray dfnum = arrays.ints(nodeCount);
+        MappedArrays.IntArray vertex = arrays.ints(nodeCount);
+        MappedArrays.IntArray parent = arrays.ints(nodeCount);
+        MappedArrays.IntArray semi = arrays.ints(nodeCount);
+        MappedArrays.IntArray ancestor = arrays.ints(nodeCount);
+        MappedArrays.IntArray best = arrays.ints(nodeCount);
+        MappedArrays.IntArray sameDom = arrays.ints(nodeCount);
+        MappedArrays.IntArray bucketHead = arrays.ints(nodeCount);
+        MappedArrays.IntArray bucketNext = arrays.ints(nodeCount);
+        MappedArrays.IntArray stack = arrays.ints(nodeCount);
+        ancestor.fill(NONE);
+        sameDom.fill(NONE);
+        bucketHead.fill(NONE);
+        idom.fill(NONE);
+
+        // depth first numbering, dfnum 0 means not reachable
+        MappedArrays.LongArray cursor = arrays.longs(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.set(node, index.edgeStart(node));
+        }
+        int count = 0;
+        int top = 0;
+        stack.set(top++, root);
+        dfnum.set(root, ++count);
+        vertex.set(0, root);
+        parent.set(root, NONE);
+        while (top > 0) {
+            int v = stack.get(top - 1L);
+            long edge = cursor.get(v);
+            if (edge < index.edgeEnd(v)) {
+                cursor.set(v, edge + 1);
+                int w = index.edge(edge);
+                if (dfnum.get(w) == 0) {
+                    dfnum.set(w, ++count);
+                    vertex.set(count - 1L, w);
+                    parent.set(w, v);
+                    stack.set(top++, w);
+                }
+            } else {
+                top--;
+            }
+        }
+        reachableCount = count;
+
+        for (int i = count - 1; i > 0; i--) {
+            int n = vertex.get(i);
+            int p = parent.get(n);
+            int s = p;
+            for (long e = index.predecessorStart(n); e < index.predecessorEnd(n); e++) {
+                int v = index.predecessor(e);
+                if (dfnum.get(v) == 0) {
+                    continue;
+                }
+                int candidate = dfnum.get(v) <= dfnum.get(n) ? v : semi.get(eval(v, ancestor, best, semi, dfnum, stack));
+                if (dfnum.get(candidate) < dfnum.get(s)) {
+                    s = candidate;
+                }
+            }
+            semi.set(n, s);
+            bucketNext.set(n, bucketHead.get(s));
+            bucketHead.set(s, n);
+
+            ancestor.set(n, p);
+            best.set(n, n);
+
+            int v = bucketHead.get(p);
+            while (v != NONE) {
+                int y = eval(v, ancestor, best, semi, dfnum, stack);
+                if (semi.get(y) == semi.get(v)) {
+                    idom.set(v, p);
+                } else {
+                    sameDom.set(v, y);
+                }
+                v = bucketNext.get(v);
+            }
+            bucketHead.set(p, NONE);
+        }
+        for (int i = 1; i < count; i++) {
+            int n = vertex.get(i);
+            if (sameDom.get(n) != NONE) {
+                idom.set(n, idom.get(sameDom.get(n)));
+            }
+        }
+        idom.set(root, NONE);
+        return vertex;
+    }
+
+    /**
+     * Ancestor with lowest semi dominator, with path compression. Iterative version of
+     * the recursive textbook variant: first walk up the ancestor chain, then compress top down.
+     */
+    private static int eval(int v, MappedArrays.IntArray ancestor, MappedArrays.IntArray best,
+                            MappedArrays.IntArray semi, MappedArrays.IntArray dfnum, MappedArrays.IntArray stack) {
+        int top = 0;
+        int x = v;
+        while (ancestor.get(x) != NONE && ancestor.get(ancestor.get(x)) != NONE) {
+            stack.set(top++, x);
+            x = ancestor.get(x);
+        }
+        while (top > 0) {
+            int u = stack.get(--top);
+            int a = ancestor.get(u);
+            int b = best.get(a);
+            ancestor.set(u, ancestor.get(a));
+            if (dfnum.get(semi.get(b)) < dfnum.get(semi.get(best.get(u)))) {
+                best.set(u, b);
+            }
+        }
+        return best.get(v);
+    }
+
+    private void computeRetainedSizes(MappedArrays.IntArray vertex) {
+        // children always come after their dominator in depth first order
+        for (int i = reachableCount - 1; i > 0; i--) {
+            int node = vertex.get(i);
+            retained.add(node, index.shallowSize(node));
+            retained.add(idom.get(node), retained.get(node));
+        }
+    }
+
+    private void computeShortestPaths() throws IOException {
+        int nodeCount = index.nodeCount();
+        int root = index.rootNode();
+        MappedArrays.IntArray queue = index.arrays().ints(nodeCount);
+        shortestPathParent.fill(NONE);
+
+        long head = 0;
+        long tail = 0;
+        queue.set(tail++, root);
+        shortestPathParent.set(root, root);
+        while (head < tail) {
+            int v = queue.get(head++);
+            for (long e = index.edgeStart(v); e < index.edgeEnd(v); e++) {
+                int w = index.edge(e);
+                if (shortestPathParent.get(w) == NONE) {
+                    shortestPathParent.set(w, v);
+                    queue.set(tail++, w);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Object graph of a hprof heap dump, indexed in a few passes over the mapped file.
+ * <p>
+ * Objects get a dense index (0..objectCount-1) in file order, one extra node
+ * (the root node, index objectCount) points to all GC roots. References are stored
+ * as forward and reverse edges in compressed sparse row format in mapped arrays,
+ * so the java heap only holds the class table and the GC root ids.
+ */
+public class HeapIndex {
+
+    static final int TAG_STRING = 0x01;
+    static final int TAG_LOAD_CLASS = 0x02;
+    static final int TAG_HEAP_DUMP = 0x0C;
+    static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+    static final int ROOT_UNKNOWN = 0xFF;
+    static final int ROOT_JNI_GLOBAL = 0x01;
+    static final int ROOT_JNI_LOCAL = 0x02;
+    static final int ROOT_JAVA_FRAME = 0x03;
+    static final int ROOT_NATIVE_STACK = 0x04;
+    static final int ROOT_STICKY_CLASS = 0x05;
+    static final int ROOT_THREAD_BLOCK = 0x06;
+    static final int ROOT_MONITOR_USED = 0x07;
+    static final int ROOT_THREAD_OBJECT = 0x08;
+    static final int CLASS_DUMP = 0x20;
+    static final int INSTANCE_DUMP = 0x21;
+    static final int OBJECT_ARRAY_DUMP = 0x22;
+    static final int PRIMITIVE_ARRAY_DUMP = 0x23;
+
+    static final int TYPE_OBJECT = 2;
+
+    private final HprofBuffer hprof;
+    private final MappedArrays arrays;
+    private final int idSize;
+    private final long recordsStart;
+
+    private final Map<Long, ClassInfo> classes = new HashMap<>();
+    private final List<long[]> heapSegments = new ArrayList<>();
+    private long[] rootIds = new long[1024];
+    private int rootIdCount;
+
+    private int objectCount;
+    private ObjectIdMap idMap;
+    private MappedArrays.LongArray offsets;
+    private MappedArrays.LongArray shallowSizes;
+    private MappedArrays.LongArray edgeStart;
+    private MappedArrays.IntArray edges;
+    private MappedArrays.LongArray predecessorStart;
+    private MappedArrays.IntArray predecessors;
+
+    private HeapIndex(HprofBuffer hprof, MappedArrays arrays) throws IOException {
+        this.hprof = hprof;
+        this.arrays = arrays;
+        String format = hprof.cString(0, 64);
+        if (!format.startsWith("JAVA PROFILE")) {
+            throw new IOException("Not a hprof file, header: " + format);
+        }
+        long pos = format.length() + 1L;
+        hprof.idSize(hprof.u4(pos));
+        this.idSize = hprof.idSize();
+        this.recordsStart = pos + 4 + 8;
+    }
+
+    public static HeapIndex build(File hprofFile, MappedArrays arrays) throws IOException {
+        HeapIndex index = new HeapIndex(HprofBuffer.open(hprofFile), arrays);
+        index.readTopLevelRecords();
+        index.readClassesAndRoots();
+        index.assignObjectIndexes();
+        index.buildEdges();
+        index.buildPredecessors();
+        return index;
+    }
+
+    public int objectCount() {
+        return objectCount;
+    }
+
+    /**
+     * @return total number of nodes: all objects plus the artificial root node
+     */
+    public int nodeCount() {
+        return objectCount + 1;
+    }
+
+    public int rootNode() {
+        return objectCount;
+    }
+
+    public long edgeStart(int node) {
+        return edgeStart.get(node);
+    }
+
+    public long edgeEnd(int node) {
+        return edgeStart.get(node + 1L);
+    }
+
+    public int edge(long edgeIndex) {
+        return edges.get(edgeIndex);
+    }
+
+    public long predecessorStart(int node) {
+        return predecessorStart.get(node);
+    }
+
+    public long predecessorEnd(int node) {
+        return predecessorStart.get(node + 1L);
+    }
+
+    public int predecessor(long index) {
+        return predecessors.get(index);
+    }
+
+    public long shallowSize(int node) {
+        return node == rootNode() ? 0 : shallowSizes.get(node);
+    }
+
+    public long objectId(int node) {
+        return node == rootNode() ? 0 : hprof.id(offsets.get(node) + 1);
+    }
+
+    public MappedArrays arrays() {
+        return arrays;
+    }
+
+    public String className(int node) {
+        if (node == rootNode()) {
+            return "<GC roots>";
+        }
+        long pos = offsets.get(node);
+        long p = pos + 1;
+        switch (hprof.u1(pos)) {
+            case CLASS_DUMP:
+                return "class " + classNameOf(hprof.id(p));
+            case INSTANCE_DUMP:
+                return classNameOf(hprof.id(p + idSize + 4));
+            case OBJECT_ARRAY_DUMP:
+                return classNameOf(hprof.id(p + idSize + 8));
+            case PRIMITIVE_ARRAY_DUMP:
+                return primitiveName(hprof.u1(p + idSize + 8)) + "[]";
+            default:
+                return "<unknown>";
+        }
+    }
+
+    private String classNameOf(long classId) {
+        ClassInfo info = classes.get(classId);
+        return info == null || info.name == null ? "0x" + Long.toHexString(classId) : info.name;
+    }
+
+    private void readTopLevelRecords() throws IOException {
+        Map<Long, Long> classNameIds = new HashMap<>();
+        long pos = recordsStart;
+        while (pos + 9 <= hprof.size()) {
+            int tag = hprof.u1(pos);
+            long body = pos + 9;
+            long length = hprof.u4Unsigned(pos + 5);
+            if (body + length > hprof.size()) {
+                throw new IOException("Truncated hprof: record at " + pos + " ends after end of file");
+            }
+            if (tag == TAG_LOAD_CLASS) {
+                classNameIds.put(hprof.id(body + 4), hprof.id(body + 8 + idSize));
+            } else if (tag == TAG_HEAP_DUMP || tag == TAG_HEAP_DUMP_SEGMENT) {
+                heapSegments.add(new long[] { body, body + length });
+            }
+            pos = body + length;
+        }
+
+        Set<Long> nameIds = new HashSet<>(classNameIds.values());
+        Map<Long, String> names = new HashMap<>();
+        pos = recordsStart;
+        while (pos + 9 <= hprof.size()) {
+            long body = pos + 9;
+            long length = hprof.u4Unsigned(pos + 5);
+            if (hprof.u1(pos) == TAG_STRING) {
+                long id = hprof.id(body);
+                if (nameIds.contains(id)) {
+                    names.put(id, hprof.utf8(body + idSize, (int) (length - idSize)));
+                }
+            }
+            pos = body + length;
+        }
+        classNameIds.forEach((classId, nameId) -> classes.put(classId, new ClassInfo(prettyClassName(names.get(nameId)))));
+    }
+
+    private void readClassesAndRoots() throws IOException {
+        for (long[] segment : heapSegments) {
+            long pos = segment[0];
+            while (pos < segment[1]) {
+                int tag = hprof.u1(pos);
+                long p = pos + 1;
+                switch (tag) {
+                    case ROOT_UNKNOWN:
+                    case ROOT_JNI_GLOBAL:
+                    case ROOT_JNI_LOCAL:
+                    case ROOT_JAVA_FRAME:
+                    case ROOT_NATIVE_STACK:
+                    case ROOT_STICKY_CLASS:
+                    case ROOT_THREAD_BLOCK:
+                    case ROOT_MONITOR_USED:
+                    case ROOT_THREAD_OBJECT:
+                        addRootId(hprof.id(p));
+                        break;
+                    case CLASS_DUMP:
+                        parseClass(p);
+                        objectCount++;
+                        break;
+                    case INSTANCE_DUMP:
+                    case OBJECT_ARRAY_DUMP:
+                    case PRIMITIVE_ARRAY_DUMP:
+                        objectCount++;
+                        break;
+                    default:
+                        // skip below throws for unknown tags
+                }
+                pos = nextSubRecord(pos);
+            }
+        }
+    }
+
+    private void assignObjectIndexes() throws IOException {
+        idMap = new ObjectIdMap(arrays, objectCount);
+        offsets = arrays.longs(objectCount);
+        shallowSizes = arrays.longs(objectCount);
+        int headerSize = 2 * idSize;
+
+        int index = 0;
+        for (long[] segment : heapSegments) {
+            long pos = segment[0];
+            while (pos < segment[1]) {
+                int tag = hprof.u1(pos);
+                long p = pos + 1;
+                long shallow = -1;
+                switch (tag) {
+                    case CLASS_DUMP:
+                        shallow = headerSize + classes.get(hprof.id(p)).staticBytes;
+                        break;
+                    case INSTANCE_DUMP:
+                        shallow = headerSize + hprof.u4Unsigned(p + 2L * idSize + 4);
+                        break;
+                    case OBJECT_ARRAY_DUMP:
+                        shallow = headerSize + 4 + hprof.u4Unsigned(p + idSize + 4) * idSize;
+                        break;
+                    case PRIMITIVE_ARRAY_DUMP:
+                        shallow = headerSize + 4 + hprof.u4Unsigned(p + idSize + 4) * typeSize(hprof.u1(p + idSize + 8));
+                        break;
+                    default:
+                }
+                if (shallow >= 0) {
+                    idMap.put(hprof.id(p), index);
+                    offsets.set(index, pos);
+                    shallowSizes.set(index, align8(shallow));
+                    index++;
+                }
+                pos = nextSubRecord(pos);
+            }
+        }
+    }
+
+    private void buildEdges() throws IOException {
+        int rootNode = rootNode();
+        long[] roots = uniqueRootIds();
+
+        edgeStart = arrays.longs(nodeCount() + 1L);
+        long[] counter = new long[1];
+        for (int node = 0; node < objectCount; node++) {
+            counter[0] = 0;
+            visitReferences(node, target -> counter[0]++);
+            edgeStart.set(node + 1L, edgeStart.get(node) + counter[0]);
+        }
+        long rootEdges = Arrays.stream(roots).filter(id -> idMap.get(id) != ObjectIdMap.NOT_FOUND).count();
+        edgeStart.set(rootNode + 1L, edgeStart.get(rootNode) + rootEdges);
+
+        edges = arrays.ints(edgeStart.get(rootNode + 1L));
+        long[] cursor = new long[1];
+        for (int node = 0; node < objectCount; node++) {
+            cursor[0] = edgeStart.get(node);
+            visitReferences(node, target -> edges.set(cursor[0]++, target));
+        }
+        long p = edgeStart.get(rootNode);
+        for (long id : roots) {
+            int target = idMap.get(id);
+            if (target != ObjectIdMap.NOT_FOUND) {
+                edges.set(p++, target);
+            }
+        }
+        rootIds = null;
+    }
+
+    private void buildPredecessors() throws IOException {
+        int nodeCount = nodeCount();
+        predecessorStart = arrays.longs(nodeCount + 1L);
+        for (int node = 0; node < nodeCount; node++) {
+            for (long p = edgeStart(node); p < edgeEnd(node); p++) {
+                predecessorStart.add(edges.get(p) + 1L, 1);
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            predecessorStart.add(node + 1L, predecessorStart.get(node));
+        }
+        MappedArrays.LongArray cursor = arrays.longs(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.set(node, predecessorStart.get(node));
+        }
+        predecessors = arrays.ints(predecessorStart.get(nodeCount));
+        for (int node = 0; node < nodeCount; node++) {
+            for (long p = edgeStart(node); p < edgeEnd(node); p++) {
+                int target = edges.get(p);
+                long slot = cursor.get(target);
+                predecessors.set(slot, node);
+                cursor.set(target, slot + 1);
+            }
+        }
+    }
+
+    interface ReferenceVisitor {
+        void reference(int target);
+    }
+
+    private void visitReferences(int node, ReferenceVisitor visitor) {
+        long pos = offsets.get(node);
+        long p = pos + 1;
+        switch (hprof.u1(pos)) {
+            case CLASS_DUMP: {
+                ClassInfo info = classes.get(hprof.id(p));
+                visitId(info.superId, visitor);
+                visitId(info.loaderId, visitor);
+                for (long id : info.staticReferences) {
+                    visitId(id, visitor);
+                }
+                break;
+            }
+            case INSTANCE_DUMP: {
+                long classId = hprof.id(p + idSize + 4);
+                visitId(classId, visitor);
+                long data = p + 2L * idSize + 8;
+                for (int offset : referenceOffsets(classId)) {
+                    visitId(hprof.id(data + offset), visitor);
+                }
+                break;
+            }
+            case OBJECT_ARRAY_DUMP: {
+                long length = hprof.u4Unsigned(p + idSize + 4);
+                visitId(hprof.id(p + idSize + 8), visitor);
+                long data = p + 2L * idSize + 8;
+                for (long i = 0; i < length; i++) {
+                    visitId(hprof.id(data + i * idSize), visitor);
+                }
+                break;
+            }
+            default:
+                // primitive arrays hold no references
+        }
+    }
+
+    private void visitId(long id, ReferenceVisitor visitor) {
+        int target = idMap.get(id);
+        if (target != ObjectIdMap.NOT_FOUND) {
+            visitor.reference(target);
+        }
+    }
+
+    private int[] referenceOffsets(long classId) {
+        ClassInfo info = classes.get(classId);
+        if (info == null) {
+            return new int[0];
+        }
+        if (info.referenceOffsets == null) {
+            List<Integer> refOffsets = new ArrayList<>();
+            int offset = 0;
+            ClassInfo current = info;
+            while (current != null) {
+                for (byte type : current.fieldTypes) {
+                    if (type == TYPE_OBJECT) {
+                        refOffsets.add(offset);
+                    }
+                    offset += typeSize(type);
+                }
+                current = classes.get(current.superId);
+            }
+            info.referenceOffsets = refOffsets.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return info.referenceOffsets;
+    }
+
+    private void parseClass(long p) {
+        long classId = hprof.id(p);
+        ClassInfo info = classes.computeIfAbsent(classId, id -> new ClassInfo(null));
+        long q = p + idSize + 4;
+        info.superId = hprof.id(q);
+        info.loaderId = hprof.id(q + idSize);
+        q += 6L * idSize + 4;
+
+        int constantPoolSize = hprof.u2(q);
+        q += 2;
+        for (int i = 0; i < constantPoolSize; i++) {
+            q += 2;
+            q += 1 + typeSize(hprof.u1(q));
+        }
+
+        int staticCount = hprof.u2(q);
+        q += 2;
+        List<Long> staticRefs = new ArrayList<>();
+        for (int i = 0; i < staticCount; i++) {
+            q += idSize;
+            int type = hprof.u1(q);
+            q++;
+            if (type == TYPE_OBJECT) {
+                staticRefs.add(hprof.id(q));
+            }
+            info.staticBytes += typeSize(type);
+            q += typeSize(type);
+        }
+        info.staticReferences = staticRefs.stream().mapToLong(Long::longValue).toArray();
+
+        int fieldCount = hprof.u2(q);
+        q += 2;
+        info.fieldTypes = new byte[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            q += idSize;
+            info.fieldTypes[i] = (byte) hprof.u1(q);
+            q++;
+        }
+    }
+
+    private long nextSubRecord(long pos) throws IOException {
+        int tag = hprof.u1(pos);
+        long p = pos + 1;
+        switch (tag) {
+            case ROOT_UNKNOWN:
+            case ROOT_STICKY_CLASS:
+            case ROOT_MONITOR_USED:
+                return p + idSize;
+            case ROOT_JNI_GLOBAL:
+                return p + 2L * idSize;
+            case ROOT_NATIVE_STACK:
+            case ROOT_THREAD_BLOCK:
+                return p + idSize + 4;
+            case ROOT_JNI_LOCAL:
+            case ROOT_JAVA_FRAME:
+            case ROOT_THREAD_OBJECT:
+                return p + idSize + 8;
+            case CLASS_DUMP:
+                return classRecordEnd(p);
+            case INSTANCE_DUMP:
+                return p + 2L * idSize + 8 + hprof.u4Unsigned(p + 2L * idSize + 4);
+            case OBJECT_ARRAY_DUMP:
+                return p + 2L * idSize + 8 + hprof.u4Unsigned(p + idSize + 4) * idSize;
+            case PRIMITIVE_ARRAY_DUMP:
+                return p + idSize + 9 + hprof.u4Unsigned(p + idSize + 4) * typeSize(hprof.u1(p + idSize + 8));
+            default:
+                throw new IOException("Unsupported heap dump sub-record tag 0x" + Integer.toHexString(tag) + " at " + pos);
+        }
+    }
+
+    private long classRecordEnd(long p) {
+        long q = p + 7L * idSize + 8;
+        int constantPoolSize = hprof.u2(q);
+        q += 2;
+        for (int i = 0; i < constantPoolSize; i++) {
+            q += 3 + typeSize(hprof.u1(q + 2));
+        }
+        int staticCount = hprof.u2(q);
+        q += 2;
+        for (int i = 0; i < staticCount; i++) {
+            q += idSize + 1 + typeSize(hprof.u1(q + idSize));
+        }
+        int fieldCount = hprof.u2(q);
+        return q + 2 + (long) fieldCount * (idSize + 1);
+    }
+
+    private void addRootId(long id) {
+        if (rootIdCount == rootIds.length) {
+            rootIds = Arrays.copyOf(rootIds, rootIds.length * 2);
+        }
+        rootIds[rootIdCount++] = id;
+    }
+
+    private long[] uniqueRootIds() {
+        long[] sorted = Arrays.copyOf(rootIds, rootIdCount);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+
+    int typeSize(int type) {
+        switch (type) {
+            case TYPE_OBJECT:
+                return idSize;
+            case 4: // boolean
+            case 8: // byte
+                return 1;
+            case 5: // char
+            case 9: // short
+                return 2;
+            case 6: // float
+            case 10: // int
+                return 4;
+            case 7: // double
+            case 11: // long
+                return 8;
+            default:
+                throw new IllegalStateException("Unknown hprof basic type: " + type);
+        }
+    }
+
+    static String primitiveName(int type) {
+        switch (type) {
+            case 4: return "boolean";
+            case 5: return "char";
+            case 6: return "float";
+            case 7: return "double";
+            case 8: return "byte";
+            case 9: return "short";
+            case 10: return "int";
+            case 11: return "long";
+            default: return "<type " + type + ">";
+        }
+    }
+
+    static String prettyClassName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String dotted = name.replace('/', '.');
+        int dimensions = 0;
+        while (dimensions < dotted.length() && dotted.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions == 0) {
+            return dotted;
+        }
+        String element = dotted.substring(dimensions);
+        if (element.startsWith("L") && element.endsWith(";")) {
+            element = element.substring(1, element.length() - 1);
+        }
+        StringBuilder pretty = new StringBuilder(element);
+        for (int i = 0; i < dimensions; i++) {
+            pretty.append("[]");
+        }
+        return pretty.toString();
+    }
+
+    private static long align8(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static final class ClassInfo {
+        private final String name;
+        private long superId;
+        private long loaderId;
+        private long staticBytes;
+        private long[] staticReferences = new long[0];
+        private byte[] fieldTypes = new byte[0];
+        private int[] referenceOffsets;
+
+        private ClassInfo(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Offline leak suspect analysis of hprof files, for instance the heap dumps
+ * downloaded by the heapdump event.
+ * <p>
+ * Usage: {@code java -cp test-events-springboot.jar io.perfana.events.springboot.hprof.HprofAnalyzer
+ * <file.hprof> [topCount] [suspectThresholdPercentage] [workDir]}
+ * <p>
+ * The dump itself is memory-mapped and the index is stored in memory-mapped temp files
+ * in workDir (defaults to the directory of the dump), so dumps larger than the heap of
+ * the analyzing JVM can be processed, given enough free disk space.
+ */
+public class HprofAnalyzer {
+
+    private static final int MAX_PATH_LENGTH = 32;
+
+    private final File workDir;
+    private final int topCount;
+    private final double suspectThresholdPercentage;
+
+    public HprofAnalyzer(File workDir, int topCount, double suspectThresholdPercentage) {
+        this.workDir = workDir;
+        this.topCount = topCount;
+        this.suspectThresholdPercentage = suspectThresholdPercentage;
+    }
+
+    public LeakSuspectReport analyze(File hprofFile) throws IOException {
+        File dir = workDir != null ? workDir : hprofFile.getAbsoluteFile().getParentFile();
+        HeapIndex index = HeapIndex.build(hprofFile, new MappedArrays(dir));
+        DominatorTree tree = DominatorTree.compute(index);
+        return LeakSuspectReport.create(hprofFile.getName(), index, tree, topCount, suspectThresholdPercentage, MAX_PATH_LENGTH);
+    }
+
+    /**
+     * Analyze and write the report next to the dump.
+     * @return the report file
+     */
+    public File analyzeAndWrite(File hprofFile) throws IOException {
+        LeakSuspectReport report = analyze(hprofFile);
+        File reportFile = new File(hprofFile.getAbsoluteFile().getParentFile(), hprofFile.getName() + ".leak-suspects.txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8))) {
+            report.write(out);
+        }
+        return reportFile;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: HprofAnalyzer <file.hprof> [topCount] [suspectThresholdPercentage] [workDir]");
+            System.exit(1);
+        }
+        File hprofFile = new File(args[0]);
+        int topCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        File workDir = args.length > 3 ? new File(args[3]) : null;
+
+        File reportFile = new HprofAnalyzer(workDir, topCount, threshold).analyzeAndWrite(hprofFile);
+        System.out.println("Wrote leak suspect report to " + reportFile);
+    }
+}
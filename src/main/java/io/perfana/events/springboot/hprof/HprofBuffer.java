@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view on a memory-mapped hprof file. The file is mapped in chunks of 1 GB,
+ * so dumps larger than 2 GB (and larger than the analyzing JVM's heap) can be read.
+ */
+public class HprofBuffer {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+    private int idSize = 8;
+
+    private HprofBuffer(ByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static HprofBuffer open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            int chunkCount = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return new HprofBuffer(chunks, size);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int idSize() {
+        return idSize;
+    }
+
+    void idSize(int idSize) {
+        if (idSize != 4 && idSize != 8) {
+            throw new IllegalArgumentException("Unsupported identifier size: " + idSize);
+        }
+        this.idSize = idSize;
+    }
+
+    public int u1(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].get((int) (pos & CHUNK_MASK)) & 0xFF;
+    }
+
+    public int u2(long pos) {
+        if (fits(pos, 2)) {
+            return chunks[(int) (pos >>> CHUNK_SHIFT)].getShort((int) (pos & CHUNK_MASK)) & 0xFFFF;
+        }
+        return (u1(pos) << 8) | u1(pos + 1);
+    }
+
+    public int u4(long pos) {
+        if (fits(pos, 4)) {
+            return chunks[(int) (pos >>> CHUNK_SHIFT)].getInt((int) (pos & CHUNK_MASK));
+        }
+        return (u2(pos) << 16) | u2(pos + 2);
+    }
+
+    public long u4Unsigned(long pos) {
+        return u4(pos) & 0xFFFFFFFFL;
+    }
+
+    public long u8(long pos) {
+        if (fits(pos, 8)) {
+            return chunks[(int) (pos >>> CHUNK_SHIFT)].getLong((int) (pos & CHUNK_MASK));
+        }
+        return (u4Unsigned(pos) << 32) | u4Unsigned(pos + 4);
+    }
+
+    public long id(long pos) {
+        return idSize == 4 ? u4Unsigned(pos) : u8(pos);
+    }
+
+    public String utf8(long pos, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) u1(pos + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the zero terminated string at pos (without the terminator)
+     */
+    public String cString(long pos, int maxLength) {
+        int length = 0;
+        while (length < maxLength && pos + length < size && u1(pos + length) != 0) {
+            length++;
+        }
+        return utf8(pos, length);
+    }
+
+    private static boolean fits(long pos, int width) {
+        return (pos & CHUNK_MASK) + width <= CHUNK_SIZE;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public class LeakSuspectReport {
+
+    private final String source;
+    private final int objectCount;
+    private final int reachableCount;
+    private final long totalReachableSize;
+    private final double suspectThresholdPercentage;
+    private final List<Entry> topRetained;
+
+    LeakSuspectReport(String source, int objectCount, int reachableCount, long totalReachableSize, double suspectThresholdPercentage, List<Entry> topRetained) {
+        this.source = source;
+        this.objectCount = objectCount;
+        this.reachableCount = reachableCount;
+        this.totalReachableSize = totalReachableSize;
+        this.suspectThresholdPercentage = suspectThresholdPercentage;
+        this.topRetained = Collections.unmodifiableList(topRetained);
+    }
+
+    static LeakSuspectReport create(String source, HeapIndex index, DominatorTree tree, int topCount, double suspectThresholdPercentage, int maxPathLength) {
+        // min heap of the largest retained sizes on primitive arrays, the graph can be huge
+        int[] heapNodes = new int[topCount];
+        long[] heapSizes = new long[topCount];
+        int size = 0;
+        for (int node = 0; node < index.objectCount(); node++) {
+            if (!tree.isReachable(node)) {
+                continue;
+            }
+            long retained = tree.retainedSize(node);
+            if (size < topCount) {
+                heapNodes[size] = node;
+                heapSizes[size] = retained;
+                siftUp(heapNodes, heapSizes, size++);
+            } else if (topCount > 0 && retained > heapSizes[0]) {
+                heapNodes[0] = node;
+                heapSizes[0] = retained;
+                siftDown(heapNodes, heapSizes, size);
+            }
+        }
+
+        long total = tree.totalReachableSize();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int node = heapNodes[i];
+            List<String> path = new ArrayList<>();
+            for (int step : tree.pathToGcRoot(node, maxPathLength)) {
+                path.add(describe(index, step));
+            }
+            double percentage = total == 0 ? 0 : 100.0 * heapSizes[i] / total;
+            entries.add(new Entry(index.objectId(node), index.className(node), index.shallowSize(node), heapSizes[i],
+                    percentage, percentage >= suspectThresholdPercentage, path));
+        }
+        entries.sort((a, b) -> Long.compare(b.retainedSize, a.retainedSize));
+        return new LeakSuspectReport(source, index.objectCount(), tree.reachableCount() - 1, total, suspectThresholdPercentage, entries);
+    }
+
+    private static String describe(HeapIndex index, int node) {
+        return index.className(node) + " @ 0x" + Long.toHexString(index.objectId(node));
+    }
+
+    private static void siftUp(int[] nodes, long[] sizes, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (sizes[parent] <= sizes[i]) {
+                return;
+            }
+            swap(nodes, sizes, parent, i);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] nodes, long[] sizes, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && sizes[left] < sizes[smallest]) {
+                smallest = left;
+            }
+            if (right < size && sizes[right] < sizes[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(nodes, sizes, smallest, i);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] nodes, long[] sizes, int a, int b) {
+        int node = nodes[a];
+        nodes[a] = nodes[b];
+        nodes[b] = node;
+        long size = sizes[a];
+        sizes[a] = sizes[b];
+        sizes[b] = size;
+    }
+
+    public List<Entry> getTopRetained() {
+        return topRetained;
+    }
+
+    public long getTotalReachableSize() {
+        return totalReachableSize;
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    public int getReachableCount() {
+        return reachableCount;
+    }
+
+    public void write(PrintWriter out) {
+        out.println("Leak suspect report for " + source);
+        out.println("Objects: " + objectCount + ", reachable: " + reachableCount + ", reachable size: " + totalReachableSize + " bytes");
+        out.println();
+
+        List<Entry> suspects = new ArrayList<>();
+        topRetained.stream().filter(e -> e.suspect).forEach(suspects::add);
+        out.println(String.format(Locale.ROOT, "Leak suspects (retaining >= %.1f%% of reachable heap): %d", suspectThresholdPercentage, suspects.size()));
+        for (int i = 0; i < suspects.size(); i++) {
+            Entry suspect = suspects.get(i);
+            out.println();
+            out.println("Suspect " + (i + 1) + ": " + suspect.headline());
+            out.println("  Path to GC root:");
+            for (String step : suspect.pathToGcRoot) {
+                out.println("    " + step);
+            }
+        }
+
+        out.println();
+        out.println("Top " + topRetained.size() + " objects by retained size:");
+        for (Entry entry : topRetained) {
+            out.println("  " + entry.headline());
+        }
+        out.flush();
+    }
+
+    public static class Entry {
+        private final long objectId;
+        private final String className;
+        private final long shallowSize;
+        private final long retainedSize;
+        private final double retainedPercentage;
+        private final boolean suspect;
+        private final List<String> pathToGcRoot;
+
+        Entry(long objectId, String className, long shallowSize, long retainedSize, double retainedPercentage, boolean suspect, List<String> pathToGcRoot) {
+            this.objectId = objectId;
+            this.className = className;
+            this.shallowSize = shallowSize;
+            this.retainedSize = retainedSize;
+            this.retainedPercentage = retainedPercentage;
+            this.suspect = suspect;
+            this.pathToGcRoot = Collections.unmodifiableList(pathToGcRoot);
+        }
+
+        public long getObjectId() {
+            return objectId;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public long getShallowSize() {
+            return shallowSize;
+        }
+
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+
+        public double getRetainedPercentage() {
+            return retainedPercentage;
+        }
+
+        public boolean isSuspect() {
+            return suspect;
+        }
+
+        public List<String> getPathToGcRoot() {
+            return pathToGcRoot;
+        }
+
+        private String headline() {
+            return String.format(Locale.ROOT, "%s @ 0x%x retains %d bytes (%.2f%%), shallow %d bytes",
+                    className, objectId, retainedSize, retainedPercentage, shallowSize);
+        }
+    }
+}
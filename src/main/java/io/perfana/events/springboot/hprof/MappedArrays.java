@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Primitive arrays that live outside the java heap, backed by memory-mapped temp files.
+ * The temp files are removed directly after mapping, the OS reclaims the space when
+ * the mappings are garbage collected.
+ */
+public class MappedArrays {
+
+    private static final int CHUNK_BYTES_SHIFT = 30;
+
+    private final File workDir;
+
+    public MappedArrays(File workDir) {
+        this.workDir = workDir;
+    }
+
+    public LongArray longs(long length) throws IOException {
+        return new LongArray(map(length, 3), length);
+    }
+
+    public IntArray ints(long length) throws IOException {
+        return new IntArray(map(length, 2), length);
+    }
+
+    private ByteBuffer[] map(long length, int elementShift) throws IOException {
+        long bytes = Math.max(1, length) << elementShift;
+        long chunkBytes = 1L << CHUNK_BYTES_SHIFT;
+        int chunkCount = (int) ((bytes + chunkBytes - 1) >>> CHUNK_BYTES_SHIFT);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+
+        File file = File.createTempFile("hprof-index-", ".bin", workDir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(bytes);
+            for (int i = 0; i < chunkCount; i++) {
+                long start = (long) i << CHUNK_BYTES_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(chunkBytes, bytes - start));
+            }
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        return chunks;
+    }
+
+    public static final class LongArray {
+        private static final int SHIFT = CHUNK_BYTES_SHIFT - 3;
+        private static final long MASK = (1L << SHIFT) - 1;
+
+        private final LongBuffer[] chunks;
+        private final long length;
+
+        private LongArray(ByteBuffer[] buffers, long length) {
+            this.chunks = new LongBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; i++) {
+                this.chunks[i] = buffers[i].asLongBuffer();
+            }
+            this.length = length;
+        }
+
+        public long get(long index) {
+            return chunks[(int) (index >>> SHIFT)].get((int) (index & MASK));
+        }
+
+        public void set(long index, long value) {
+            chunks[(int) (index >>> SHIFT)].put((int) (index & MASK), value);
+        }
+
+        public void add(long index, long delta) {
+            set(index, get(index) + delta);
+        }
+
+        public void fill(long value) {
+            for (long i = 0; i < length; i++) {
+                set(i, value);
+            }
+        }
+
+        public long length() {
+            return length;
+        }
+    }
+
+    public static final class IntArray {
+        private static final int SHIFT = CHUNK_BYTES_SHIFT - 2;
+        private static final long MASK = (1L << SHIFT) - 1;
+
+        private final IntBuffer[] chunks;
+        private final long length;
+
+        private IntArray(ByteBuffer[] buffers, long length) {
+            this.chunks = new IntBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; i++) {
+                this.chunks[i] = buffers[i].asIntBuffer();
+            }
+            this.length = length;
+        }
+
+        public int get(long index) {
+            return chunks[(int) (index >>> SHIFT)].get((int) (index & MASK));
+        }
+
+        public void set(long index, int value) {
+            chunks[(int) (index >>> SHIFT)].put((int) (index & MASK), value);
+        }
+
+        public void fill(int value) {
+            for (long i = 0; i < length; i++) {
+                set(i, value);
+            }
+        }
+
+        public long length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.IOException;
+
+/**
+ * Open addressing hash map from hprof object id to object index, stored in mapped arrays.
+ * Object id 0 is the null reference in hprof and is used as the empty slot marker.
+ */
+public class ObjectIdMap {
+
+    public static final int NOT_FOUND = -1;
+
+    private final MappedArrays.LongArray keys;
+    private final MappedArrays.IntArray values;
+    private final long mask;
+
+    public ObjectIdMap(MappedArrays arrays, long expectedSize) throws IOException {
+        long capacity = Long.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.keys = arrays.longs(capacity);
+        this.values = arrays.ints(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void put(long id, int index) {
+        long slot = slot(id);
+        while (true) {
+            long key = keys.get(slot);
+            if (key == 0 || key == id) {
+                keys.set(slot, id);
+                values.set(slot, index);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int get(long id) {
+        if (id == 0) {
+            return NOT_FOUND;
+        }
+        long slot = slot(id);
+        while (true) {
+            long key = keys.get(slot);
+            if (key == id) {
+                return values.get(slot);
+            }
+            if (key == 0) {
+                return NOT_FOUND;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private long slot(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+/**
+ * Records plugin actions with a nanosecond timestamp, to correlate dumps, samples and
+ * triggers with the results of the load test tool.
+ */
+@FunctionalInterface
+public interface Journal {
+
+    Journal NOOP = (type, name, detail) -> {};
+
+    /**
+     * Should be cheap and never throw, it is called on the sampling and download paths.
+     * @param name e.g. the collector, metric or file name
+     * @param detail free format details, can be empty
+     */
+    void record(JournalEventType type, String name, String detail);
+
+    /**
+     * @return journal that records in this journal and then in the next one
+     */
+    default Journal andThen(Journal next) {
+        if (next == NOOP) {
+            return this;
+        }
+        if (this == NOOP) {
+            return next;
+        }
+        return (type, name, detail) -> {
+            record(type, name, detail);
+            next.record(type, name, detail);
+        };
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Exports a journal to CSV or JSON, the given file and its rotated files in order.
+ * <p>
+ * Usage: {@code java -cp test-events-springboot.jar io.perfana.events.springboot.journal.JournalExporter
+ * <journal file> [csv|json]}, writes to standard out.
+ */
+public class JournalExporter {
+
+    private JournalExporter() {
+    }
+
+    public static void writeCsv(List<JournalRecord> records, Writer writer) throws IOException {
+        writer.write("timestamp,epochNanos,type,name,detail\n");
+        for (JournalRecord record : records) {
+            writer.write(record.getTimestamp().toString());
+            writer.write(',');
+            writer.write(String.valueOf(record.getEpochNanos()));
+            writer.write(',');
+            writer.write(record.getType().name());
+            writer.write(',');
+            writer.write(csvField(record.getName()));
+            writer.write(',');
+            writer.write(csvField(record.getDetail()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static void writeJson(List<JournalRecord> records, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginArray();
+        for (JournalRecord record : records) {
+            json.beginObject()
+                    .name("timestamp").value(record.getTimestamp().toString())
+                    .name("epochNanos").value(record.getEpochNanos())
+                    .name("type").value(record.getType().name())
+                    .name("name").value(record.getName())
+                    .name("detail").value(record.getDetail())
+                    .endObject();
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalExporter <journal file> [csv|json]");
+            System.exit(1);
+        }
+        List<JournalRecord> records = JournalReader.readSequence(new File(args[0]));
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        if (args.length > 1 && "json".equalsIgnoreCase(args[1])) {
+            writeJson(records, out);
+        } else {
+            writeCsv(records, out);
+        }
+    }
+}
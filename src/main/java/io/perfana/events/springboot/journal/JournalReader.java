@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a {@link MappedJournal} file, also of a journal that is still
+ * being written or of which the writer crashed: reading stops at the first incomplete record.
+ * Use {@link #readSequence(File)} to read a journal that rotated into numbered files.
+ */
+public class JournalReader {
+
+    private static final Pattern SEQUENCE_SUFFIX = Pattern.compile("(.*)\\.\\d+");
+
+    private JournalReader() {
+    }
+
+    public static List<JournalRecord> readAll(File file) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        read(file, records::add);
+        return records;
+    }
+
+    /**
+     * Read all files of a journal in order, e.g. journal.pfj, journal.1.pfj and journal.2.pfj.
+     * @param file the first file of the journal or any of its rotated files, the first file can be deleted by the rotation
+     */
+    public static List<JournalRecord> readSequence(File file) throws IOException {
+        List<File> files = sequence(file);
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No journal files for " + file);
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        for (File part : files) {
+            read(part, records::add);
+        }
+        return records;
+    }
+
+    /**
+     * @return the existing files of the journal of the given file, in order
+     */
+    public static List<File> sequence(File file) {
+        String name = file.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        String extension = extensionIndex < 0 ? "" : name.substring(extensionIndex);
+        String stem = extensionIndex < 0 ? name : name.substring(0, extensionIndex);
+        Matcher rotated = SEQUENCE_SUFFIX.matcher(stem);
+        if (rotated.matches()) {
+            stem = rotated.group(1);
+        }
+        Pattern member = Pattern.compile(Pattern.quote(stem) + "(?:\\.(\\d+))?" + Pattern.quote(extension));
+        File[] candidates = file.getAbsoluteFile().getParentFile().listFiles();
+        TreeMap<Long, File> files = new TreeMap<>();
+        for (File candidate : candidates == null ? new File[0] : candidates) {
+            Matcher matcher = member.matcher(candidate.getName());
+            if (matcher.matches()) {
+                files.put(matcher.group(1) == null ? 0 : Long.parseLong(matcher.group(1)), candidate);
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * @return number of records read
+     */
+    public static long read(File file, Consumer<JournalRecord> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MappedJournal.MAGIC) {
+                throw new IOException("Not a journal file: " + file);
+            }
+            int version = in.readInt();
+            if (version != MappedJournal.VERSION) {
+                throw new IOException("Unsupported journal version " + version + ": " + file);
+            }
+            in.readLong(); // start time
+
+            CRC32 crc = new CRC32();
+            long count = 0;
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return count;
+                }
+                if (length <= 4) {
+                    return count;
+                }
+                byte[] bytes = new byte[length];
+                try {
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    return count;
+                }
+                ByteBuffer record = ByteBuffer.wrap(bytes);
+                crc.reset();
+                crc.update(bytes, 0, length - 4);
+                if (record.getInt(length - 4) != (int) crc.getValue()) {
+                    return count;
+                }
+                long epochNanos = record.getLong();
+                JournalEventType type = JournalEventType.fromCode(record.get());
+                String name = string(record);
+                String detail = string(record);
+                consumer.accept(new JournalRecord(epochNanos, type, name, detail));
+                count++;
+            }
+        }
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Instant;
+
+@Immutable
+public class JournalRecord {
+
+    private final long epochNanos;
+    private final JournalEventType type;
+    private final String name;
+    private final String detail;
+
+    JournalRecord(long epochNanos, JournalEventType type, String name, String detail) {
+        this.epochNanos = epochNanos;
+        this.type = type;
+        this.name = name;
+        this.detail = detail;
+    }
+
+    /**
+     * @return nanoseconds since the epoch
+     */
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    public Instant getTimestamp() {
+        return Instant.ofEpochSecond(0, epochNanos);
+    }
+
+    public JournalEventType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return getTimestamp() + " " + type + " " + name + (detail.isEmpty() ? "" : " " + detail);
+    }
+}
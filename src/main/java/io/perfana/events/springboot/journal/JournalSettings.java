@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Settings of the {@link MappedJournal}: the journal rotates to a new file at the max file size
+ * and keeps the newest files only, so a long soak test cannot fill the disk.
+ */
+@Immutable
+public class JournalSettings {
+
+    public static final JournalSettings DISABLED = new JournalSettings(false, 64L * 1024 * 1024, 4);
+
+    private final boolean enabled;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    public JournalSettings(boolean enabled, long maxFileSize, int maxFiles) {
+        if (maxFileSize < MappedJournal.MIN_FILE_SIZE || maxFiles < 1) {
+            throw new IllegalArgumentException("maxFileSize should be at least " + MappedJournal.MIN_FILE_SIZE + " bytes and maxFiles at least 1: "
+                    + maxFileSize + ", " + maxFiles);
+        }
+        this.enabled = enabled;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return size in bytes at which the journal continues in a new file
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * @return number of journal files to keep, older files are deleted
+     */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalSettings{" +
+                "enabled=" + enabled +
+                ", maxFileSize=" + maxFileSize +
+                ", maxFiles=" + maxFiles +
+                '}';
+    }
+}
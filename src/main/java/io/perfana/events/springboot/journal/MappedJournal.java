@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal backed by a memory-mapped file. Records are written to the
+ * page cache directly, without a system call per record, so it can stay on during high
+ * frequency sampling. The written records survive a crash of the JVM.
+ * <p>
+ * File layout: magic (u4), version (u4), start time in epoch nanos (u8), followed by records:
+ * length (u4) of the rest of the record, epoch nanos (u8), type (u1), name length (u2), name (utf-8),
+ * detail length (u2), detail (utf-8), crc32 (u4) of the bytes after the length field.
+ * The length is written last, so a reader stops at the first incomplete record (length zero)
+ * or at a record with a wrong crc. The file grows in regions that are zero filled.
+ * <p>
+ * At the max file size the journal continues in a new file with a sequence number, e.g.
+ * {@code journal.1.pfj}, and only the newest max files are kept.
+ */
+@ThreadSafe
+public class MappedJournal implements Journal, Closeable {
+
+    static final int MAGIC = 0x50464A31; // PFJ1
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final long MIN_FILE_SIZE = 4096;
+
+    private static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final File firstFile;
+    private final int regionSize;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private final CRC32 crc = new CRC32();
+    private final Deque<File> files = new ArrayDeque<>();
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int fileCount;
+    private boolean closed;
+    private IOException failure;
+
+    private MappedJournal(File file, int regionSize, long maxFileSize, int maxFiles) throws IOException {
+        this.firstFile = file;
+        this.regionSize = regionSize;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        Instant now = Instant.now();
+        this.startNanoTime = System.nanoTime();
+        this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        open(file);
+    }
+
+    /**
+     * @return journal without a max file size
+     */
+    public static MappedJournal create(File file) throws IOException {
+        return create(file, DEFAULT_REGION_SIZE, Long.MAX_VALUE, 1);
+    }
+
+    public static MappedJournal create(File file, JournalSettings settings) throws IOException {
+        return create(file, DEFAULT_REGION_SIZE, settings.getMaxFileSize(), settings.getMaxFiles());
+    }
+
+    static MappedJournal create(File file, int regionSize) throws IOException {
+        return create(file, regionSize, Long.MAX_VALUE, 1);
+    }
+
+    static MappedJournal create(File file, int regionSize, long maxFileSize, int maxFiles) throws IOException {
+        return new MappedJournal(file, regionSize, maxFileSize, maxFiles);
+    }
+
+    /**
+     * @return the file that is written now
+     */
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the files that are kept, oldest first
+     */
+    public synchronized List<File> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * @return the first write failure, after which nothing is recorded anymore, or null
+     */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public synchronized void record(JournalEventType type, String name, String detail) {
+        if (closed) {
+            return;
+        }
+        long epochNanos = epochNanos();
+        byte[] nameBytes = utf8(name);
+        byte[] detailBytes = utf8(detail);
+        int length = 8 + 1 + 2 + nameBytes.length + 2 + detailBytes.length + 4;
+        try {
+            ensureCapacity(4 + length);
+        } catch (IOException e) {
+            failure = e;
+            closed = true;
+            return;
+        }
+
+        int start = region.position();
+        region.position(start + 4);
+        region.putLong(epochNanos)
+                .put(type.code())
+                .putShort((short) nameBytes.length)
+                .put(nameBytes)
+                .putShort((short) detailBytes.length)
+                .put(detailBytes);
+
+        ByteBuffer body = region.duplicate();
+        body.position(start + 4).limit(region.position());
+        crc.reset();
+        crc.update(body);
+        region.putInt((int) crc.getValue());
+        // commit
+        region.putInt(start, length);
+    }
+
+    private void ensureCapacity(int recordSize) throws IOException {
+        // keep room for the zero length that marks the end
+        int needed = recordSize + 4;
+        if (region.remaining() >= needed) {
+            return;
+        }
+        long written = regionStart + region.position();
+        if (written > HEADER_SIZE && written + needed > maxFileSize) {
+            rotate();
+            if (region.remaining() >= needed) {
+                return;
+            }
+        }
+        regionStart += region.position();
+        region.force();
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(Math.min(regionSize, maxFileSize - regionStart), needed));
+    }
+
+    private void open(File next) throws IOException {
+        RandomAccessFile opened = new RandomAccessFile(next, "rw");
+        try {
+            region = opened.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.min(regionSize, maxFileSize));
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        randomAccessFile = opened;
+        channel = opened.getChannel();
+        file = next;
+        regionStart = 0;
+        fileCount++;
+        files.addLast(next);
+        region.putInt(MAGIC).putInt(VERSION).putLong(epochNanos());
+    }
+
+    private void rotate() throws IOException {
+        region.force();
+        region = null;
+        randomAccessFile.close();
+        open(sequenceFile(fileCount));
+        while (files.size() > maxFiles) {
+            // best effort, a file that cannot be deleted should not stop the journal
+            files.removeFirst().delete();
+        }
+    }
+
+    /**
+     * @return e.g. journal.1.pfj for journal.pfj
+     */
+    private File sequenceFile(int sequence) {
+        String name = firstFile.getName();
+        int extension = name.lastIndexOf('.');
+        String sequenceName = extension < 0
+                ? name + "." + sequence
+                : name.substring(0, extension) + "." + sequence + name.substring(extension);
+        return new File(firstFile.getParentFile(), sequenceName);
+    }
+
+    private long epochNanos() {
+        return startEpochNanos + (System.nanoTime() - startNanoTime);
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_STRING_BYTES) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_STRING_BYTES];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_STRING_BYTES);
+        return truncated;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed && region == null) {
+            return;
+        }
+        closed = true;
+        try {
+            region.force();
+        } finally {
+            region = null;
+            randomAccessFile.close();
+        }
+    }
+}
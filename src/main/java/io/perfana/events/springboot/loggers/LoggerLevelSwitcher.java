@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.loggers;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.LoggerLevels;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.*;
+
+/**
+ * Switches logger levels on the target via the loggers endpoint and remembers the original configured
+ * level of each logger the first time it is switched, to restore all of them at the end of the test.
+ * A logger whose original level cannot be read is not switched, it could not be restored.
+ */
+@ThreadSafe
+public class LoggerLevelSwitcher {
+
+    /** level value to remove the configured level, the logger then inherits the level of its parent */
+    public static final String INHERIT = "INHERIT";
+
+    private static final Set<String> LEVELS = Set.of("TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL", "OFF", INHERIT);
+
+    private final ActuatorClient client;
+    private final EventLogger logger;
+
+    // original configured levels, null values for inherited levels
+    private final Map<String, String> originals = new LinkedHashMap<>();
+
+    public LoggerLevelSwitcher(ActuatorClient client, EventLogger logger) {
+        this.client = client;
+        this.logger = logger;
+    }
+
+    /**
+     * @param levels logger name to level, e.g. com.example to DEBUG, or {@link #INHERIT}
+     * @return the loggers that are switched, with their new level
+     * @throws IllegalArgumentException for unknown levels, before any logger is switched
+     */
+    public synchronized Map<String, String> apply(Map<String, String> levels) {
+        Map<String, String> normalized = new LinkedHashMap<>();
+        levels.forEach((name, level) -> normalized.put(name.trim(), normalize(level)));
+
+        Map<String, String> switched = new LinkedHashMap<>();
+        normalized.forEach((name, level) -> {
+            if (!originals.containsKey(name)) {
+                Optional<LoggerLevels> current = client.loggerLevels(name);
+                if (current.isEmpty()) {
+                    logger.warn("Cannot read the level of logger " + name + ", not switching it");
+                    return;
+                }
+                originals.put(name, current.get().configuredLevel);
+            }
+            if (client.setLoggerLevel(name, INHERIT.equals(level) ? null : level)) {
+                logger.info("Switched logger " + name + " to " + level + " (original: " + describe(originals.get(name)) + ")");
+                switched.put(name, level);
+            }
+        });
+        return switched;
+    }
+
+    private static String normalize(String level) {
+        String upper = level == null || level.trim().isEmpty() ? INHERIT : level.trim().toUpperCase(Locale.ROOT);
+        if (!LEVELS.contains(upper)) {
+            throw new IllegalArgumentException("Unknown log level, use one of " + new TreeSet<>(LEVELS) + ": " + level);
+        }
+        return upper;
+    }
+
+    /**
+     * Restore the original configured levels of all switched loggers.
+     * @return the loggers that are restored, with their restored level
+     */
+    public synchronized Map<String, String> restore() {
+        Map<String, String> restored = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, String>> originalLevels = originals.entrySet().iterator();
+        while (originalLevels.hasNext()) {
+            Map.Entry<String, String> original = originalLevels.next();
+            if (client.setLoggerLevel(original.getKey(), original.getValue())) {
+                restored.put(original.getKey(), describe(original.getValue()));
+                originalLevels.remove();
+            } else {
+                logger.error("Cannot restore logger " + original.getKey() + " to " + describe(original.getValue()) + ", restore it by hand");
+            }
+        }
+        if (!restored.isEmpty()) {
+            logger.info("Restored loggers " + restored);
+        }
+        return restored;
+    }
+
+    /**
+     * @return original configured levels of the loggers that are switched and not restored yet
+     */
+    public synchronized Map<String, String> getOriginals() {
+        return new LinkedHashMap<>(originals);
+    }
+
+    private static String describe(String level) {
+        return level == null ? INHERIT : level;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LoggerLevelSwitcher{" +
+                "switched=" + originals.keySet() +
+                '}';
+    }
+}
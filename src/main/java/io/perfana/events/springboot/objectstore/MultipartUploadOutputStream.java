@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.objectstore;
+
+import com.squareup.okhttp.MediaType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads everything written to it as one object, in parts that are uploaded in parallel while
+ * writing continues. At most parallelUploads + 1 part buffers exist: when all buffers are in flight,
+ * write blocks until a part upload finishes, so a fast producer is slowed down to the upload speed
+ * instead of filling memory.
+ * <p>
+ * Objects smaller than one part are uploaded with a single put. Call {@link #close()} to finish
+ * the upload, or {@link #abort()} to discard it, e.g. when the source of the data failed.
+ */
+public class MultipartUploadOutputStream extends OutputStream {
+
+    private static final int PART_RETRIES = 2;
+    private static final Duration PART_RETRY_DELAY = Duration.ofMillis(500);
+
+    private final S3Client client;
+    private final String key;
+    private final int partSize;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final ExecutorService uploader;
+    private final List<Future<String>> parts = new ArrayList<>();
+    private final Duration retryDelay;
+
+    private int allocatedBuffers;
+    private final int maxBuffers;
+    private byte[] buffer;
+    private int position;
+    private long bytesWritten;
+    private String uploadId;
+    private boolean closed;
+
+    public MultipartUploadOutputStream(S3Client client, String key) {
+        this(client, key, PART_RETRY_DELAY);
+    }
+
+    /**
+     * @param retryDelay delay before the first retry of a failed part, doubled for each next retry
+     */
+    MultipartUploadOutputStream(S3Client client, String key, Duration retryDelay) {
+        this.client = client;
+        this.retryDelay = retryDelay;
+        this.key = key;
+        ObjectStoreSettings settings = client.getSettings();
+        this.partSize = settings.getPartSize();
+        this.maxBuffers = settings.getParallelUploads() + 1;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        this.uploader = Executors.newFixedThreadPool(settings.getParallelUploads(), runnable -> {
+            Thread thread = new Thread(runnable, "upload-" + key);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Upload of " + key + " is closed");
+        }
+        int remaining = length;
+        int from = offset;
+        while (remaining > 0) {
+            if (buffer == null) {
+                buffer = nextBuffer();
+            }
+            int chunk = Math.min(remaining, partSize - position);
+            System.arraycopy(bytes, from, buffer, position, chunk);
+            position += chunk;
+            from += chunk;
+            remaining -= chunk;
+            bytesWritten += chunk;
+            if (position == partSize) {
+                submitPart();
+            }
+        }
+    }
+
+    private byte[] nextBuffer() throws IOException {
+        byte[] free = freeBuffers.poll();
+        if (free != null) {
+            return free;
+        }
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[partSize];
+        }
+        checkFailedParts();
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free part buffer of " + key);
+        }
+    }
+
+    private void submitPart() throws IOException {
+        if (uploadId == null) {
+            uploadId = client.initiateMultipartUpload(key);
+        }
+        checkFailedParts();
+        byte[] part = buffer;
+        int length = position;
+        int partNumber = parts.size() + 1;
+        buffer = null;
+        position = 0;
+        String id = uploadId;
+        parts.add(uploader.submit(() -> {
+            try {
+                return uploadPart(id, partNumber, part, length);
+            } finally {
+                freeBuffers.add(part);
+            }
+        }));
+    }
+
+    private String uploadPart(String id, int partNumber, byte[] part, int length) throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                return client.uploadPart(key, id, partNumber, part, length);
+            } catch (IOException e) {
+                if (++attempt > PART_RETRIES || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                waitForRetry(partNumber, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Back off exponentially, so a struggling object store gets some room before the next attempt.
+     */
+    private void waitForRetry(int partNumber, int attempt, IOException failure) throws IOException {
+        try {
+            Thread.sleep(retryDelay.toMillis() << (attempt - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting to retry part " + partNumber + " of " + key);
+            interrupted.addSuppressed(failure);
+            throw interrupted;
+        }
+    }
+
+    /**
+     * Fail fast: do not keep reading the source when a part already failed.
+     */
+    private void checkFailedParts() throws IOException {
+        for (Future<String> part : parts) {
+            if (part.isDone()) {
+                etag(part);
+            }
+        }
+    }
+
+    private static String etag(Future<String> part) throws IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for part upload");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Part upload failed", cause);
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Upload the last part and complete the upload. When the upload fails, it is aborted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (uploadId == null) {
+                byte[] content = new byte[position];
+                if (buffer != null) {
+                    System.arraycopy(buffer, 0, content, 0, position);
+                }
+                client.putObject(key, content, MediaType.parse("application/octet-stream"));
+                return;
+            }
+            if (position > 0) {
+                submitPart();
+            }
+            List<String> etags = new ArrayList<>();
+            for (Future<String> part : parts) {
+                etags.add(etag(part));
+            }
+            client.completeMultipartUpload(key, uploadId, etags);
+        } catch (IOException | RuntimeException e) {
+            try {
+                abortUpload();
+            } catch (IOException abortException) {
+                e.addSuppressed(abortException);
+            }
+            throw e;
+        } finally {
+            uploader.shutdownNow();
+            buffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    /**
+     * Discard the upload: stop uploading parts and abort the multipart upload.
+     */
+    public void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            abortUpload();
+        } finally {
+            uploader.shutdownNow();
+            buffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    private void abortUpload() throws IOException {
+        parts.forEach(part -> part.cancel(true));
+        if (uploadId != null) {
+            client.abortMultipartUpload(key, uploadId);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.objectstore;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Settings of the S3-compatible object store that heap dumps are uploaded to. Disabled without an endpoint.
+ */
+@Immutable
+public class ObjectStoreSettings {
+
+    /**
+     * S3 does not accept parts smaller than 5 MiB, except for the last part.
+     */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    public static final ObjectStoreSettings DISABLED = new ObjectStoreSettings(null, null, "us-east-1", null, null, "", MIN_PART_SIZE, 1);
+
+    private final String endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final String prefix;
+    private final int partSize;
+    private final int parallelUploads;
+
+    public ObjectStoreSettings(String endpoint, String bucket, String region, String accessKey, String secretKey, String prefix,
+                               int partSize, int parallelUploads) {
+        if (endpoint != null && bucket == null) {
+            throw new IllegalArgumentException("objectStoreBucket is required with an objectStoreEndpoint");
+        }
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("part size should be at least " + MIN_PART_SIZE + " bytes: " + partSize);
+        }
+        if (parallelUploads < 1) {
+            throw new IllegalArgumentException("parallel uploads should be at least 1: " + parallelUploads);
+        }
+        this.endpoint = endpoint == null ? null : endpoint.replaceAll("/+$", "");
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.prefix = prefix == null ? "" : prefix;
+        this.partSize = partSize;
+        this.parallelUploads = parallelUploads;
+    }
+
+    public boolean isEnabled() {
+        return endpoint != null;
+    }
+
+    /**
+     * @return base url of the object store, e.g. http://minio:9000, buckets are addressed path style
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    /**
+     * @return prefix of the object keys, e.g. "dumps/"
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @return max number of parts uploaded at the same time, (parallelUploads + 1) * partSize bytes are buffered at most
+     */
+    public int getParallelUploads() {
+        return parallelUploads;
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectStoreSettings{" +
+                "endpoint='" + endpoint + '\'' +
+                ", bucket='" + bucket + '\'' +
+                ", region='" + region + '\'' +
+                ", accessKey='" + accessKey + '\'' +
+                ", secretKey='" + (secretKey == null ? null : "******") + '\'' +
+                ", prefix='" + prefix + '\'' +
+                ", partSize=" + partSize +
+                ", parallelUploads=" + parallelUploads +
+                '}';
+    }
+}
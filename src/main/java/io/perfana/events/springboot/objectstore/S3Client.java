@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.objectstore;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal client for the S3 calls needed to upload objects, signed with signature version 4.
+ * Buckets are addressed path style ({endpoint}/{bucket}/{key}), as MinIO and most S3-compatible stores support.
+ */
+public class S3Client {
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+    private static final MediaType XML = MediaType.parse("application/xml");
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final OkHttpClient client;
+    private final ObjectStoreSettings settings;
+    private final SigV4Signer signer;
+    private final String host;
+
+    public S3Client(OkHttpClient client, ObjectStoreSettings settings) {
+        if (!settings.isEnabled()) {
+            throw new IllegalArgumentException("object store is not enabled: " + settings);
+        }
+        this.client = client;
+        this.settings = settings;
+        this.signer = new SigV4Signer(settings.getAccessKey(), settings.getSecretKey(), settings.getRegion());
+        this.host = hostHeader(settings.getEndpoint());
+    }
+
+    public ObjectStoreSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return location of the object, for logging and manifests
+     */
+    public String location(String key) {
+        return settings.getEndpoint() + canonicalUri(key);
+    }
+
+    public void putObject(String key, byte[] content, MediaType contentType) throws IOException {
+        call("PUT", key, Collections.emptyMap(), content, content.length, contentType).body().close();
+    }
+
+    /**
+     * @return the upload id
+     */
+    public String initiateMultipartUpload(String key) throws IOException {
+        String body = bodyOf(call("POST", key, Map.of("uploads", ""), new byte[0], 0, OCTET_STREAM).body());
+        Matcher matcher = UPLOAD_ID.matcher(body);
+        if (!matcher.find()) {
+            throw new IOException("No UploadId in response for " + location(key) + ": " + body);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * @param partNumber part number, 1 to 10000
+     * @return the ETag of the part
+     */
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] content, int length) throws IOException {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("partNumber", String.valueOf(partNumber));
+        query.put("uploadId", uploadId);
+        Response response = call("PUT", key, query, content, length, OCTET_STREAM);
+        response.body().close();
+        String etag = response.header("ETag");
+        if (etag == null) {
+            throw new IOException("No ETag for part " + partNumber + " of " + location(key));
+        }
+        return etag;
+    }
+
+    /**
+     * @param etags ETags of parts 1 to n, in order
+     */
+    public void completeMultipartUpload(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(escapeXml(etags.get(i))).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] content = xml.toString().getBytes(StandardCharsets.UTF_8);
+        String body = bodyOf(call("POST", key, Map.of("uploadId", uploadId), content, content.length, XML).body());
+        // the status is sent before the parts are combined, so an error can still follow in the body
+        if (body.contains("<Error>")) {
+            throw new IOException("Complete multipart upload of " + location(key) + " failed: " + body);
+        }
+    }
+
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        call("DELETE", key, Map.of("uploadId", uploadId), null, 0, null).body().close();
+    }
+
+    /**
+     * @return the successful response, the caller closes the body
+     */
+    private Response call(String method, String key, Map<String, String> query, byte[] content, int length, MediaType contentType) throws IOException {
+        String canonicalUri = canonicalUri(key);
+        String payloadHash = content == null ? SigV4Signer.EMPTY_PAYLOAD_SHA256 : SigV4Signer.sha256Hex(content, 0, length);
+
+        Map<String, String> signedHeaders = new LinkedHashMap<>();
+        signedHeaders.put("host", host);
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", SigV4Signer.amzDate(ZonedDateTime.now()));
+        String authorization = signer.authorization(method, canonicalUri, query, signedHeaders, payloadHash);
+
+        String queryString = query.isEmpty() ? "" : "?" + query.entrySet().stream()
+                .map(e -> SigV4Signer.uriEncode(e.getKey(), true) + (e.getValue().isEmpty() ? "" : "=" + SigV4Signer.uriEncode(e.getValue(), true)))
+                .collect(Collectors.joining("&"));
+        Request.Builder builder = new Request.Builder()
+                .url(settings.getEndpoint() + canonicalUri + queryString)
+                .method(method, content == null ? null : RequestBody.create(contentType, content, 0, length))
+                .header("Authorization", authorization);
+        signedHeaders.forEach(builder::header);
+
+        Response response = client.newCall(builder.build()).execute();
+        if (!response.isSuccessful()) {
+            String body = bodyOf(response.body());
+            throw new IOException(method + " " + location(key) + " failed: " + response.code() + " " + response.message() + " " + body);
+        }
+        return response;
+    }
+
+    private String canonicalUri(String key) {
+        return "/" + SigV4Signer.uriEncode(settings.getBucket(), true) + "/" + SigV4Signer.uriEncode(key, false);
+    }
+
+    private static String bodyOf(ResponseBody body) throws IOException {
+        try (ResponseBody closeable = body) {
+            return closeable == null ? "" : closeable.string();
+        }
+    }
+
+    private static String hostHeader(String endpoint) {
+        try {
+            URL url = new URL(endpoint);
+            return url.getPort() == -1 || url.getPort() == url.getDefaultPort() ? url.getHost() : url.getHost() + ":" + url.getPort();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid object store endpoint: " + endpoint, e);
+        }
+    }
+
+    private static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.replay;
+
+import java.util.List;
+
+/**
+ * One recorded request and response, a line in the index of a {@link ResponseArchive}.
+ * The body is stored in a separate file.
+ */
+public class RecordedExchange {
+    public int sequence;
+    public String startTime;
+    public String method;
+    public String url;
+    public int code;
+    public String message;
+    /** response headers as "name: value" */
+    public List<String> headers;
+    public long timeToFirstByteMillis;
+    public String bodyFile;
+    public long bodyLength;
+    /** false when the client closed the body before the end */
+    public boolean bodyComplete;
+    /** body progress samples: bytes read at millis after the start of the body */
+    public long[] timingBytes;
+    public long[] timingMillis;
+
+    @Override
+    public String toString() {
+        return "RecordedExchange{" +
+                "sequence=" + sequence +
+                ", method='" + method + '\'' +
+                ", url='" + url + '\'' +
+                ", code=" + code +
+                ", bodyLength=" + bodyLength +
+                ", bodyComplete=" + bodyComplete +
+                '}';
+    }
+}
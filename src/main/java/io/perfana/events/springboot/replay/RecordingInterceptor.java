@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.replay;
+
+import com.squareup.okhttp.*;
+import io.perfana.eventscheduler.api.EventLogger;
+import okio.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records all responses, with headers and timing, in a {@link ResponseArchive}. The body is
+ * written to the archive while the caller reads it. The exchange is added to the index when
+ * the body is fully read or closed.
+ * <p>
+ * Add to {@link OkHttpClient#interceptors()}, replay with {@link ReplayInterceptor}.
+ */
+public class RecordingInterceptor implements Interceptor {
+
+    private static final long TIMING_SAMPLE_BYTES = 1024 * 1024;
+    private static final long TIMING_SAMPLE_NANOS = 100_000_000L;
+
+    private final ResponseArchive archive;
+    private final EventLogger logger;
+
+    public RecordingInterceptor(ResponseArchive archive, EventLogger logger) {
+        this.archive = archive;
+        this.logger = logger;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String startTime = LocalDateTime.now().toString();
+        long startNanos = System.nanoTime();
+        Response response = chain.proceed(request);
+
+        RecordedExchange exchange = new RecordedExchange();
+        exchange.sequence = archive.nextSequence();
+        exchange.startTime = startTime;
+        exchange.method = request.method();
+        exchange.url = request.urlString();
+        exchange.code = response.code();
+        exchange.message = response.message();
+        exchange.headers = new ArrayList<>();
+        Headers headers = response.headers();
+        for (int i = 0; i < headers.size(); i++) {
+            exchange.headers.add(headers.name(i) + ": " + headers.value(i));
+        }
+        exchange.timeToFirstByteMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        exchange.bodyFile = ResponseArchive.bodyFileName(exchange.sequence);
+
+        ResponseBody body = response.body();
+        OutputStream out = new FileOutputStream(archive.bodyFile(exchange.bodyFile));
+        RecordingSource recordingSource = new RecordingSource(body.source(), Okio.sink(out), exchange);
+        BufferedSource bufferedSource = Okio.buffer(recordingSource);
+        return response.newBuilder()
+                .body(new ResponseBody() {
+                    @Override
+                    public MediaType contentType() {
+                        return body.contentType();
+                    }
+
+                    @Override
+                    public long contentLength() throws IOException {
+                        return body.contentLength();
+                    }
+
+                    @Override
+                    public BufferedSource source() {
+                        return bufferedSource;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Copies everything read to the sink and samples the progress over time.
+     */
+    private class RecordingSource extends ForwardingSource {
+        private final Sink copy;
+        private final RecordedExchange exchange;
+        private final long startNanos = System.nanoTime();
+        private final List<Long> timingBytes = new ArrayList<>();
+        private final List<Long> timingMillis = new ArrayList<>();
+        private long bytes;
+        private long lastSampleBytes;
+        private long lastSampleNanos = startNanos;
+        private boolean done;
+
+        RecordingSource(Source delegate, Sink copy, RecordedExchange exchange) {
+            super(delegate);
+            this.copy = copy;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+                finish(true);
+                return -1;
+            }
+            Buffer chunk = new Buffer();
+            sink.copyTo(chunk, sink.size() - read, read);
+            copy.write(chunk, read);
+            bytes += read;
+
+            long now = System.nanoTime();
+            if (bytes - lastSampleBytes >= TIMING_SAMPLE_BYTES || now - lastSampleNanos >= TIMING_SAMPLE_NANOS) {
+                sample(now);
+            }
+            return read;
+        }
+
+        private void sample(long now) {
+            timingBytes.add(bytes);
+            timingMillis.add((now - startNanos) / 1_000_000);
+            lastSampleBytes = bytes;
+            lastSampleNanos = now;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish(false);
+            }
+        }
+
+        private void finish(boolean complete) throws IOException {
+            if (done) {
+                return;
+            }
+            done = true;
+            sample(System.nanoTime());
+            copy.close();
+            exchange.bodyLength = bytes;
+            exchange.bodyComplete = complete;
+            exchange.timingBytes = timingBytes.stream().mapToLong(Long::longValue).toArray();
+            exchange.timingMillis = timingMillis.stream().mapToLong(Long::longValue).toArray();
+            try {
+                archive.append(exchange);
+            } catch (IOException e) {
+                logger.warn("Cannot record " + exchange + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.replay;
+
+import com.squareup.okhttp.*;
+import okio.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+
+/**
+ * Serves the responses of a {@link ResponseArchive} instead of calling the network, at the
+ * recorded speed (time to first byte and body throughput), accelerated, or as fast as possible.
+ * Requests are matched on method and url. Responses of the same request are served in recorded
+ * order, the last one is repeated when the recording runs out. Requests that are not in the
+ * archive get a 404.
+ */
+public class ReplayInterceptor implements Interceptor {
+
+    private final ResponseArchive archive;
+    private final double speed;
+    private final Map<String, List<RecordedExchange>> exchanges = new HashMap<>();
+    private final Map<String, Integer> served = new HashMap<>();
+
+    /**
+     * @param speed 1.0 for recorded speed, e.g. 10.0 for ten times faster, 0 for no delays at all
+     */
+    public ReplayInterceptor(ResponseArchive archive, double speed) throws IOException {
+        this.archive = archive;
+        this.speed = speed;
+        for (RecordedExchange exchange : archive.exchanges()) {
+            exchanges.computeIfAbsent(key(exchange.method, exchange.url), k -> new ArrayList<>()).add(exchange);
+        }
+    }
+
+    /**
+     * @return client that only replays from the archive in the given directory
+     */
+    public static OkHttpClient replayClient(File archiveDir, double speed) throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        client.interceptors().add(new ReplayInterceptor(ResponseArchive.open(archiveDir), speed));
+        return client;
+    }
+
+    private static String key(String method, String url) {
+        return method + " " + url;
+    }
+
+    private synchronized Optional<RecordedExchange> next(Request request) {
+        String key = key(request.method(), request.urlString());
+        List<RecordedExchange> recorded = exchanges.get(key);
+        if (recorded == null) {
+            return Optional.empty();
+        }
+        int index = served.merge(key, 1, Integer::sum) - 1;
+        return Optional.of(recorded.get(Math.min(index, recorded.size() - 1)));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Optional<RecordedExchange> recorded = next(request);
+        if (recorded.isEmpty()) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(404).message("Not in recording")
+                    .body(ResponseBody.create(MediaType.parse("text/plain"), ""))
+                    .build();
+        }
+        RecordedExchange exchange = recorded.get();
+        delay(exchange.timeToFirstByteMillis);
+
+        Headers.Builder headers = new Headers.Builder();
+        exchange.headers.forEach(headers::add);
+        Headers responseHeaders = headers.build();
+        String contentType = responseHeaders.get("Content-Type");
+
+        Source bodySource = Okio.source(archive.bodyFile(exchange.bodyFile));
+        BufferedSource source = Okio.buffer(speed > 0 ? new ThrottledSource(bodySource, exchange, speed) : bodySource);
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(exchange.code).message(exchange.message)
+                .headers(responseHeaders)
+                .body(new ResponseBody() {
+                    @Override
+                    public MediaType contentType() {
+                        return contentType == null ? null : MediaType.parse(contentType);
+                    }
+
+                    @Override
+                    public long contentLength() {
+                        return exchange.bodyComplete ? exchange.bodyLength : -1;
+                    }
+
+                    @Override
+                    public BufferedSource source() {
+                        return source;
+                    }
+                })
+                .build();
+    }
+
+    private void delay(long recordedMillis) throws IOException {
+        if (speed <= 0 || recordedMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep((long) (recordedMillis / speed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during replay delay");
+        }
+    }
+
+    /**
+     * Delays reads so the body progresses as recorded, by interpolating the recorded timing samples.
+     */
+    private static class ThrottledSource extends ForwardingSource {
+        private final RecordedExchange exchange;
+        private final double speed;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        ThrottledSource(Source delegate, RecordedExchange exchange, double speed) {
+            super(delegate);
+            this.exchange = exchange;
+            this.speed = speed;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                bytes += read;
+                long targetNanos = (long) (recordedMillisAt(bytes) * 1_000_000 / speed);
+                long waitNanos = targetNanos - (System.nanoTime() - startNanos);
+                if (waitNanos > 0) {
+                    try {
+                        Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted during replay");
+                    }
+                }
+            }
+            return read;
+        }
+
+        private double recordedMillisAt(long offset) {
+            long[] timingBytes = exchange.timingBytes;
+            long[] timingMillis = exchange.timingMillis;
+            if (timingBytes == null || timingBytes.length == 0) {
+                return 0;
+            }
+            long previousBytes = 0;
+            long previousMillis = 0;
+            for (int i = 0; i < timingBytes.length; i++) {
+                if (offset <= timingBytes[i]) {
+                    long spanBytes = timingBytes[i] - previousBytes;
+                    double fraction = spanBytes == 0 ? 1.0 : (double) (offset - previousBytes) / spanBytes;
+                    return previousMillis + fraction * (timingMillis[i] - previousMillis);
+                }
+                previousBytes = timingBytes[i];
+                previousMillis = timingMillis[i];
+            }
+            return previousMillis;
+        }
+    }
+}
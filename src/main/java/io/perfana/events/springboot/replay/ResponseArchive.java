@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.replay;
+
+import com.google.gson.Gson;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * On-disk archive of actuator responses: an index.jsonl file with one {@link RecordedExchange}
+ * per line and one file per response body in the bodies directory. Bodies are streamed to
+ * disk as they are read, so multi-GB dumps are never held in memory. Multiple recordings can
+ * be appended to the same archive.
+ */
+@ThreadSafe
+public class ResponseArchive {
+
+    static final String INDEX_FILE = "index.jsonl";
+    static final String BODIES_DIR = "bodies";
+
+    private final Gson gson = new Gson();
+    private final File dir;
+    private int sequence;
+
+    private ResponseArchive(File dir, int sequence) {
+        this.dir = dir;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Open an archive for recording, creates the directory if needed.
+     */
+    public static ResponseArchive create(File dir) throws IOException {
+        Files.createDirectories(new File(dir, BODIES_DIR).toPath());
+        ResponseArchive archive = new ResponseArchive(dir, 0);
+        archive.sequence = archive.exchanges().stream().mapToInt(e -> e.sequence).max().orElse(0);
+        return archive;
+    }
+
+    /**
+     * Open an existing archive for replay.
+     */
+    public static ResponseArchive open(File dir) throws IOException {
+        if (!new File(dir, INDEX_FILE).isFile()) {
+            throw new FileNotFoundException("No " + INDEX_FILE + " in " + dir);
+        }
+        return new ResponseArchive(dir, 0);
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    synchronized int nextSequence() {
+        return ++sequence;
+    }
+
+    File bodyFile(String name) {
+        return new File(new File(dir, BODIES_DIR), name);
+    }
+
+    static String bodyFileName(int sequence) {
+        return String.format(Locale.ROOT, "%08d.bin", sequence);
+    }
+
+    synchronized void append(RecordedExchange exchange) throws IOException {
+        String line = gson.toJson(exchange) + "\n";
+        Files.write(new File(dir, INDEX_FILE).toPath(), line.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return the recorded exchanges in order of recording
+     */
+    public synchronized List<RecordedExchange> exchanges() throws IOException {
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) {
+            return exchanges;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(index.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    exchanges.add(gson.fromJson(line, RecordedExchange.class));
+                }
+            }
+        }
+        exchanges.sort((a, b) -> Integer.compare(a.sequence, b.sequence));
+        return exchanges;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs sampling tasks, such as the pool saturation watchdog and the latency spike trigger, with an
+ * interval that follows the {@link SamplingSchedule} of the test phases. All tasks run in one round
+ * per tick. The actuator requests the tasks make in a round are counted, and the next interval is
+ * stretched so the average stays within the requests per second budget. Requests of other threads,
+ * such as dump downloads, do not count against the budget.
+ * <p>
+ * A {@link #boost(Duration)}, e.g. after a trigger fired, samples with the transition interval for a while.
+ */
+public class AdaptiveSampler {
+
+    private final SamplingSchedule schedule;
+    private final SamplingSettings settings;
+    private final LongSupplier requestCounter;
+    private final LongSupplier nanoClock;
+    private final EventLogger logger;
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private ScheduledExecutorService executor;
+    private long startNanos;
+    private volatile long boostUntilNanos;
+    private volatile boolean stopped;
+    private TestPhase lastPhase;
+    private long rounds;
+    private long requests;
+
+    /**
+     * @param requestCounter number of actuator requests made so far by the calling thread, e.g. {@code ActuatorClient::getThreadRequestCount}
+     */
+    public AdaptiveSampler(SamplingSchedule schedule, SamplingSettings settings, LongSupplier requestCounter, EventLogger logger) {
+        this(schedule, settings, requestCounter, System::nanoTime, logger);
+    }
+
+    AdaptiveSampler(SamplingSchedule schedule, SamplingSettings settings, LongSupplier requestCounter, LongSupplier nanoClock, EventLogger logger) {
+        this.schedule = schedule;
+        this.settings = settings;
+        this.requestCounter = requestCounter;
+        this.nanoClock = nanoClock;
+        this.logger = logger;
+    }
+
+    /**
+     * Add a task before {@link #start}, a task should not throw.
+     */
+    public void add(Runnable task) {
+        tasks.add(task);
+    }
+
+    public synchronized void start(ScheduledExecutorService executor) {
+        this.executor = executor;
+        this.startNanos = nanoClock.getAsLong();
+        schedule(schedule.interval(Duration.ZERO));
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Sample with the transition interval for the given duration, starting now.
+     */
+    public void boost(Duration duration) {
+        boostUntilNanos = nanoClock.getAsLong() + duration.toNanos();
+    }
+
+    private void schedule(Duration delay) {
+        if (stopped) {
+            return;
+        }
+        try {
+            executor.schedule(this::round, delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // executor is shut down at the end of the test
+            stopped = true;
+        }
+    }
+
+    private void round() {
+        if (stopped) {
+            return;
+        }
+        long before = requestCounter.getAsLong();
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Sampling task failed", e);
+            }
+        }
+        long used = requestCounter.getAsLong() - before;
+        Duration elapsed = Duration.ofNanos(nanoClock.getAsLong() - startNanos);
+        synchronized (this) {
+            rounds++;
+            requests += used;
+            TestPhase phase = schedule.phase(elapsed);
+            if (phase != lastPhase) {
+                logger.info("Sampling in phase " + phase + " after " + elapsed);
+                lastPhase = phase;
+            }
+        }
+        schedule(nextInterval(elapsed, used));
+    }
+
+    /**
+     * @param used number of actuator requests of the last round
+     */
+    Duration nextInterval(Duration elapsed, long used) {
+        Duration interval = nanoClock.getAsLong() < boostUntilNanos
+                ? settings.getTransitionInterval()
+                : schedule.interval(elapsed);
+        Duration budgetInterval = Duration.ofMillis((long) Math.ceil(used * 1000.0 / settings.getBudgetRequestsPerSecond()));
+        return budgetInterval.compareTo(interval) > 0 ? budgetInterval : interval;
+    }
+
+    public synchronized long getRounds() {
+        return rounds;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSampler{" +
+                "schedule=" + schedule +
+                ", tasks=" + tasks.size() +
+                ", rounds=" + getRounds() +
+                ", requests=" + getRequests() +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import io.perfana.eventscheduler.api.EventLogger;
+
+/**
+ * Logs the exceptions of a scheduled task instead of passing them on:
+ * an exception would cancel the next runs of the task.
+ */
+public class SafeRunnable implements Runnable {
+
+    private final String name;
+    private final Runnable task;
+    private final EventLogger logger;
+
+    /**
+     * @param name used in the log message, e.g. "GC analyzer sample"
+     */
+    public SafeRunnable(String name, Runnable task, EventLogger logger) {
+        this.name = name;
+        this.task = task;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error(name + " failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SafeRunnable{" +
+                "name='" + name + '\'' +
+                ", task=" + task +
+                '}';
+    }
+}
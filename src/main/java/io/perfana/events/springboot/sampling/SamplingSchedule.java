@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sample interval as function of the time since the start of the test: dense within the window around
+ * the phase transitions (start, end of rampup, end of constant load), the phase interval otherwise.
+ * An interval never jumps over the start of a transition window.
+ */
+@Immutable
+public class SamplingSchedule {
+
+    private final Duration rampupTime;
+    private final Duration steadyEnd;
+    private final List<Duration> transitions;
+    private final SamplingSettings settings;
+
+    public SamplingSchedule(Duration rampupTime, Duration constantLoadTime, SamplingSettings settings) {
+        this.rampupTime = rampupTime == null ? Duration.ZERO : rampupTime;
+        this.steadyEnd = this.rampupTime.plus(constantLoadTime == null ? Duration.ZERO : constantLoadTime);
+        this.transitions = List.of(Duration.ZERO, this.rampupTime, steadyEnd);
+        this.settings = settings;
+    }
+
+    public TestPhase phase(Duration elapsed) {
+        return TestPhase.at(elapsed, rampupTime, steadyEnd.minus(rampupTime));
+    }
+
+    public boolean isTransition(Duration elapsed) {
+        Duration window = settings.getTransitionWindow();
+        return transitions.stream().anyMatch(t -> elapsed.minus(t).abs().compareTo(window) <= 0);
+    }
+
+    public Duration interval(Duration elapsed) {
+        if (isTransition(elapsed)) {
+            return settings.getTransitionInterval();
+        }
+        Duration interval = phaseInterval(phase(elapsed));
+        for (Duration transition : transitions) {
+            Duration untilWindow = transition.minus(settings.getTransitionWindow()).minus(elapsed);
+            if (!untilWindow.isNegative() && untilWindow.compareTo(interval) < 0) {
+                interval = untilWindow.isZero() ? settings.getTransitionInterval() : untilWindow;
+            }
+        }
+        return interval;
+    }
+
+    private Duration phaseInterval(TestPhase phase) {
+        switch (phase) {
+            case RAMPUP:
+                return settings.getRampupInterval();
+            case STEADY:
+                return settings.getSteadyInterval();
+            default:
+                return settings.getRampdownInterval();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SamplingSchedule{" +
+                "rampupTime=" + rampupTime +
+                ", steadyEnd=" + steadyEnd +
+                ", settings=" + settings +
+                '}';
+    }
+}
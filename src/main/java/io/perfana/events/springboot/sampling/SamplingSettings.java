@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link AdaptiveSampler}: sample interval per test phase, dense around the phase transitions,
+ * and a budget for the number of actuator requests per second.
+ */
+@Immutable
+public class SamplingSettings {
+
+    public static final SamplingSettings DISABLED = new SamplingSettings(false, Duration.ofSeconds(2), Duration.ofSeconds(5),
+            Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofSeconds(30), 2.0);
+
+    private final boolean enabled;
+    private final Duration transitionInterval;
+    private final Duration rampupInterval;
+    private final Duration steadyInterval;
+    private final Duration rampdownInterval;
+    private final Duration transitionWindow;
+    private final double budgetRequestsPerSecond;
+
+    public SamplingSettings(boolean enabled, Duration transitionInterval, Duration rampupInterval, Duration steadyInterval,
+                            Duration rampdownInterval, Duration transitionWindow, double budgetRequestsPerSecond) {
+        if (budgetRequestsPerSecond <= 0) {
+            throw new IllegalArgumentException("sampling budget should be more than 0 requests per second: " + budgetRequestsPerSecond);
+        }
+        this.enabled = enabled;
+        this.transitionInterval = positive(transitionInterval, "transition interval");
+        this.rampupInterval = positive(rampupInterval, "rampup interval");
+        this.steadyInterval = positive(steadyInterval, "steady interval");
+        this.rampdownInterval = positive(rampdownInterval, "rampdown interval");
+        this.transitionWindow = transitionWindow;
+        this.budgetRequestsPerSecond = budgetRequestsPerSecond;
+    }
+
+    private static Duration positive(Duration duration, String name) {
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException(name + " should be positive: " + duration);
+        }
+        return duration;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return interval within the transition window around the start of the test, the end of the rampup
+     * and the end of the constant load, and after a boost
+     */
+    public Duration getTransitionInterval() {
+        return transitionInterval;
+    }
+
+    public Duration getRampupInterval() {
+        return rampupInterval;
+    }
+
+    public Duration getSteadyInterval() {
+        return steadyInterval;
+    }
+
+    public Duration getRampdownInterval() {
+        return rampdownInterval;
+    }
+
+    /**
+     * @return time before and after a phase transition to sample with the transition interval
+     */
+    public Duration getTransitionWindow() {
+        return transitionWindow;
+    }
+
+    /**
+     * @return max average number of actuator requests per second, the interval is stretched when sampling costs more
+     */
+    public double getBudgetRequestsPerSecond() {
+        return budgetRequestsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "SamplingSettings{" +
+                "enabled=" + enabled +
+                ", transitionInterval=" + transitionInterval +
+                ", rampupInterval=" + rampupInterval +
+                ", steadyInterval=" + steadyInterval +
+                ", rampdownInterval=" + rampdownInterval +
+                ", transitionWindow=" + transitionWindow +
+                ", budgetRequestsPerSecond=" + budgetRequestsPerSecond +
+                '}';
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import java.time.Duration;
+
+/**
+ * Phase of the load test, from the rampup and constant load times of the test context.
+ */
+public enum TestPhase {
+    RAMPUP, STEADY, RAMPDOWN;
+
+    /**
+     * @param elapsed time since the start of the test
+     * @param rampupTime null for no rampup
+     * @param constantLoadTime null for no constant load
+     */
+    public static TestPhase at(Duration elapsed, Duration rampupTime, Duration constantLoadTime) {
+        Duration rampup = rampupTime == null ? Duration.ZERO : rampupTime;
+        if (elapsed.compareTo(rampup) < 0) {
+            return RAMPUP;
+        }
+        Duration steadyEnd = rampup.plus(constantLoadTime == null ? Duration.ZERO : constantLoadTime);
+        return elapsed.compareTo(steadyEnd) < 0 ? STEADY : RAMPDOWN;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.summary;
+
+import io.perfana.events.springboot.util.Varints;
+
+import java.io.*;
+import java.util.Base64;
+
+/**
+ * Fixed memory histogram of double values, in the spirit of HdrHistogram: each power of two
+ * is split in {@value #SUB_BUCKETS} linear sub-buckets, which bounds the relative error of a
+ * percentile to about 3%. Values from 2^{@value #MIN_EXPONENT} to 2^{@value #MAX_EXPONENT} have
+ * buckets of their own, smaller and larger values end up in the first and the last bucket.
+ * Min and max are exact. Values of zero or less are counted in a separate zero bucket.
+ * <p>
+ * Not thread safe.
+ */
+public class LogLinearHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MIN_EXPONENT = -24;
+    static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+    private static final byte ENCODING_VERSION = 1;
+
+    private final int[] counts = new int[BUCKETS];
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public void record(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            counts[bucketIndex(value)]++;
+        }
+        count++;
+        sum += value;
+        min = count == 1 ? value : Math.min(min, value);
+        max = count == 1 ? value : Math.max(max, value);
+    }
+
+    static int bucketIndex(double value) {
+        int exponent = Math.getExponent(value);
+        if (exponent < MIN_EXPONENT) {
+            return 0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (Double.doubleToRawLongBits(value) >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    static double bucketUpperBound(int index) {
+        int exponent = index / SUB_BUCKETS + MIN_EXPONENT;
+        int subBucket = index % SUB_BUCKETS;
+        return Math.scalb(1.0 + (subBucket + 1) / (double) SUB_BUCKETS, exponent);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket that contains the value at the percentile, capped by min and max,
+     * min for percentile 0, NaN when nothing is recorded
+     */
+    public double percentile(double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (percentile <= 0) {
+            return min;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        double value = max;
+        long seen = zeroCount;
+        if (seen >= rank) {
+            value = 0;
+        } else {
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // the last bucket has no upper bound of its own
+                    value = i == BUCKETS - 1 ? max : bucketUpperBound(i);
+                    break;
+                }
+            }
+        }
+        return Math.min(Math.max(value, min), max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Compact URL safe base64 encoding: min, max and sum, followed by varint gaps and counts of the non-empty buckets.
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENCODING_VERSION);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeDouble(sum);
+            Varints.write(out, zeroCount);
+            int previous = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] != 0) {
+                    Varints.write(out, i - previous);
+                    Varints.write(out, counts[i]);
+                    previous = i;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode histogram in memory", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    public static LogLinearHistogram decode(String encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(encoded)))) {
+            if (in.readByte() != ENCODING_VERSION) {
+                throw new IllegalArgumentException("Unknown histogram encoding version");
+            }
+            LogLinearHistogram histogram = new LogLinearHistogram();
+            histogram.min = in.readDouble();
+            histogram.max = in.readDouble();
+            histogram.sum = in.readDouble();
+            histogram.zeroCount = Varints.read(in);
+            histogram.count = histogram.zeroCount;
+            int index = -1;
+            while (in.available() > 0) {
+                index += Varints.readInt(in);
+                if (index >= BUCKETS) {
+                    throw new IllegalArgumentException("Histogram bucket out of range: " + index);
+                }
+                histogram.counts[index] = Varints.readInt(in);
+                histogram.count += histogram.counts[index];
+            }
+            return histogram;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed histogram encoding", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogLinearHistogram{" +
+                "count=" + count +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.summary;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.actuator.MetricListener;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Accumulates all metric samples of a test run in fixed memory histograms, one per meter, tags and
+ * statistic, to send a percentile summary at the end of the test.
+ * <p>
+ * Gauge like statistics (VALUE, MAX, ACTIVE_TASKS, ...) are recorded as sampled. Cumulative statistics are
+ * recorded per interval between two samples: COUNT as rate per second, and TOTAL_TIME or TOTAL as mean
+ * per counted event. A lower count means the application restarted and starts a new interval.
+ * <p>
+ * As runnable it samples the configured metrics, schedule it with a fixed delay in a SafeRunnable. Metrics sampled
+ * by others, such as the triggers, are recorded as well when registered as {@link MetricListener}.
+ */
+@ThreadSafe
+public class MetricSummary implements MetricListener, Runnable {
+
+    static final int MAX_SERIES = 100;
+
+    private static final MathContext SIGNIFICANT_DIGITS = new MathContext(4);
+
+    private final ActuatorClient client;
+    private final List<String> metricNames;
+    private final LongSupplier nanoClock;
+    private final EventLogger logger;
+
+    private final Map<String, Series> series = new TreeMap<>();
+    private boolean seriesLimitLogged;
+
+    public MetricSummary(ActuatorClient client, List<String> metricNames, EventLogger logger) {
+        this(client, metricNames, System::nanoTime, logger);
+    }
+
+    MetricSummary(ActuatorClient client, List<String> metricNames, LongSupplier nanoClock, EventLogger logger) {
+        this.client = client;
+        this.metricNames = List.copyOf(metricNames);
+        this.nanoClock = nanoClock;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        // recorded via the metric listener
+        metricNames.forEach(client::metric);
+    }
+
+    @Override
+    public synchronized void onMetric(String metricName, List<String> tags, Metric metric) {
+        if (metric.measurements == null) {
+            return;
+        }
+        String key = MetricListener.seriesKey(metricName, tags);
+        Series current = series.get(key);
+        if (current == null) {
+            if (series.size() >= MAX_SERIES) {
+                if (!seriesLimitLogged) {
+                    logger.warn("Metric summary is limited to " + MAX_SERIES + " series, ignoring " + key + " and others");
+                    seriesLimitLogged = true;
+                }
+                return;
+            }
+            current = new Series();
+            series.put(key, current);
+        }
+        current.update(metric, nanoClock.getAsLong());
+    }
+
+    /**
+     * @return p50, p90, p99, max, count and the encoded histogram per series and statistic, e.g.
+     * {@code <prefix>jvm.threads.live.value.p99}
+     */
+    public synchronized Map<String, String> toKeyValues(String prefix) {
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        series.forEach((key, s) -> s.histograms.forEach((statistic, histogram) -> {
+            if (histogram.getCount() == 0) {
+                return;
+            }
+            String statisticPrefix = prefix + key + "." + statistic + ".";
+            keyValues.put(statisticPrefix + "p50", format(histogram.percentile(50)));
+            keyValues.put(statisticPrefix + "p90", format(histogram.percentile(90)));
+            keyValues.put(statisticPrefix + "p99", format(histogram.percentile(99)));
+            keyValues.put(statisticPrefix + "max", format(histogram.getMax()));
+            keyValues.put(statisticPrefix + "count", String.valueOf(histogram.getCount()));
+            keyValues.put(statisticPrefix + "histogram", histogram.encode());
+        }));
+        return keyValues;
+    }
+
+    public synchronized int getSeriesCount() {
+        return series.size();
+    }
+
+    static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        return BigDecimal.valueOf(value).round(SIGNIFICANT_DIGITS).stripTrailingZeros().toPlainString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MetricSummary{" +
+                "metricNames=" + metricNames +
+                ", series=" + series.size() +
+                '}';
+    }
+
+    private static class Series {
+        private final Map<String, LogLinearHistogram> histograms = new TreeMap<>();
+        private long previousNanos;
+        private double previousCount = -1;
+        private double previousTotal;
+
+        void update(Metric metric, long nanos) {
+            Optional<Double> count = metric.measurement("COUNT");
+            Optional<Double> total = metric.measurement("TOTAL_TIME").or(() -> metric.measurement("TOTAL"));
+            for (Measurement measurement : metric.measurements) {
+                if (measurement.statistic == null || measurement.value == null) {
+                    continue;
+                }
+                switch (measurement.statistic) {
+                    case "COUNT":
+                    case "TOTAL_TIME":
+                    case "TOTAL":
+                        break;
+                    default:
+                        histogram(measurement.statistic.toLowerCase(Locale.ROOT)).record(measurement.value);
+                }
+            }
+            if (count.isPresent()) {
+                if (previousCount >= 0 && count.get() >= previousCount && nanos > previousNanos) {
+                    double deltaCount = count.get() - previousCount;
+                    histogram("rate").record(deltaCount * 1_000_000_000.0 / (nanos - previousNanos));
+                    if (total.isPresent() && deltaCount > 0) {
+                        histogram("mean").record((total.get() - previousTotal) / deltaCount);
+                    }
+                }
+                previousCount = count.get();
+                previousTotal = total.orElse(0.0);
+                previousNanos = nanos;
+            }
+        }
+
+        private LogLinearHistogram histogram(String statistic) {
+            return histograms.computeIfAbsent(statistic, s -> new LogLinearHistogram());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import java.util.List;
+
+/**
+ * Splits a line in a template without digits and the numbers in it, so lines that only differ
+ * in numbers share the template, e.g. thread headers with cpu and elapsed times. Numbers are
+ * runs of at most {@link #MAX_DIGITS} digits, encoded with their leading zeros so the line
+ * can be restored exactly.
+ */
+final class NumberTemplate {
+
+    static final char PLACEHOLDER = '\u0001';
+    private static final int MAX_DIGITS = 12;
+
+    private NumberTemplate() {}
+
+    /**
+     * @return false when the line contains the placeholder and cannot be templated
+     */
+    static boolean split(String line, StringBuilder template, List<Long> numbers) {
+        if (line.indexOf(PLACEHOLDER) >= 0) {
+            return false;
+        }
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (isDigit(c)) {
+                int end = i;
+                while (end < line.length() && end - i < MAX_DIGITS && isDigit(line.charAt(end))) {
+                    end++;
+                }
+                numbers.add(encode(line, i, end));
+                template.append(PLACEHOLDER);
+                i = end;
+            } else {
+                template.append(c);
+                i++;
+            }
+        }
+        return true;
+    }
+
+    static int placeholderCount(String template) {
+        int count = 0;
+        for (int i = 0; i < template.length(); i++) {
+            if (template.charAt(i) == PLACEHOLDER) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static String join(String template, long[] numbers) {
+        StringBuilder line = new StringBuilder(template.length() + numbers.length * 4);
+        int next = 0;
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == PLACEHOLDER) {
+                decode(numbers[next++], line);
+            } else {
+                line.append(c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Value shifted left 4 bits, with the number of leading zeros in the low 4 bits.
+     */
+    private static long encode(String line, int start, int end) {
+        long value = Long.parseLong(line.substring(start, end));
+        return value << 4 | (end - start - Long.toString(value).length());
+    }
+
+    private static void decode(long number, StringBuilder line) {
+        int leadingZeros = (int) (number & 0xF);
+        for (int i = 0; i < leadingZeros; i++) {
+            line.append('0');
+        }
+        line.append(number >>> 4);
+    }
+}
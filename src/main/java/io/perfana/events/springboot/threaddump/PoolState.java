@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Thread states of one pool in one thread dump.
+ */
+@Immutable
+public class PoolState {
+
+    static final PoolState EMPTY = new PoolState(0, 0, 0, 0, 0);
+
+    private final int runnable;
+    private final int blocked;
+    private final int waiting;
+    private final int timedWaiting;
+    private final int other;
+
+    PoolState(int runnable, int blocked, int waiting, int timedWaiting, int other) {
+        this.runnable = runnable;
+        this.blocked = blocked;
+        this.waiting = waiting;
+        this.timedWaiting = timedWaiting;
+        this.other = other;
+    }
+
+    PoolState plus(String state) {
+        switch (state) {
+            case "RUNNABLE":
+                return new PoolState(runnable + 1, blocked, waiting, timedWaiting, other);
+            case "BLOCKED":
+                return new PoolState(runnable, blocked + 1, waiting, timedWaiting, other);
+            case "WAITING":
+                return new PoolState(runnable, blocked, waiting + 1, timedWaiting, other);
+            case "TIMED_WAITING":
+                return new PoolState(runnable, blocked, waiting, timedWaiting + 1, other);
+            default:
+                return new PoolState(runnable, blocked, waiting, timedWaiting, other + 1);
+        }
+    }
+
+    PoolState plus(PoolState state) {
+        return new PoolState(runnable + state.runnable, blocked + state.blocked, waiting + state.waiting,
+                timedWaiting + state.timedWaiting, other + state.other);
+    }
+
+    public int getThreads() {
+        return runnable + blocked + waiting + timedWaiting + other;
+    }
+
+    public int getRunnable() {
+        return runnable;
+    }
+
+    public int getBlocked() {
+        return blocked;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public int getTimedWaiting() {
+        return timedWaiting;
+    }
+
+    /**
+     * Busy threads are RUNNABLE or BLOCKED, idle pool threads wait for work in WAITING or TIMED_WAITING.
+     * Busy threads that wait, e.g. for a connection or a remote call in Object.wait, count as idle.
+     * @return percentage of busy threads
+     */
+    public double getUtilization() {
+        int threads = getThreads();
+        return threads == 0 ? 0 : 100.0 * (runnable + blocked) / threads;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolState{" +
+                "runnable=" + runnable +
+                ", blocked=" + blocked +
+                ", waiting=" + waiting +
+                ", timedWaiting=" + timedWaiting +
+                ", other=" + other +
+                '}';
+    }
+}
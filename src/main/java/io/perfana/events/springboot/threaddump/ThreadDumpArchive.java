@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import io.perfana.events.springboot.util.Varints;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only archive of a series of thread dumps, one file per test run.
+ * <p>
+ * Most stacks repeat from dump to dump, so dumps are dictionary encoded: each distinct line
+ * (a frame, lock or state line) is stored once, each distinct stack (the lines of a thread
+ * below its header line) is stored once as a list of line ids, and a dump is a list of
+ * (header, stack id) pairs. Header lines contain changing numbers, such as cpu and elapsed time, so
+ * a header is stored as a template line id plus the numbers, see {@link NumberTemplate}. Dictionary entries are written just before the first dump
+ * that uses them, so the file can be read sequentially and every complete dump can be
+ * reconstructed exactly, see {@link ThreadDumpArchiveReader}.
+ * <p>
+ * File layout: magic (u4), version (u1), then records of a tag (u1) followed by:
+ * <ul>
+ *     <li>LINE: varint length, utf-8 bytes; ids are assigned in order, from 0</li>
+ *     <li>STACK: varint line count, varint line ids; ids are assigned in order, from 0</li>
+ *     <li>DUMP: varint epoch millis, varint label line id, varint block count, then per block: varint header,
+ *     the numbers of the header template, varint stack id. The header is the line id shifted left 1,
+ *     with the low bit set when the line is not a template and has no numbers</li>
+ * </ul>
+ * A block is a header line and the following lines up to and including the next empty line.
+ * The archive is flushed after each dump: after a crash all dumps but the last are readable.
+ */
+@ThreadSafe
+public class ThreadDumpArchive implements Closeable {
+
+    static final int MAGIC = 0x50465444;
+    static final int VERSION = 1;
+
+    static final int TAG_LINE = 1;
+    static final int TAG_STACK = 2;
+    static final int TAG_DUMP = 3;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final Map<String, Integer> lineIds = new HashMap<>();
+    private final Map<Stack, Integer> stackIds = new HashMap<>();
+
+    private long rawBytes;
+    private long writtenBytes;
+    private int dumpCount;
+
+    private ThreadDumpArchive(File file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.flush();
+        writtenBytes = 5;
+    }
+
+    public static ThreadDumpArchive create(File file) throws IOException {
+        if (file.exists()) {
+            throw new IOException("Thread dump archive already exists: " + file);
+        }
+        return new ThreadDumpArchive(file);
+    }
+
+    /**
+     * Append a thread dump as returned by the threaddump endpoint in text/plain format.
+     * @param label name of the dump, e.g. the file name it would otherwise be saved as
+     * @return number of bytes added to the archive
+     */
+    public synchronized long append(String label, long epochMillis, String threadDump) throws IOException {
+        long before = writtenBytes;
+        String[] lines = threadDump.split("\n", -1);
+        List<int[]> blocks = new ArrayList<>();
+        List<List<Long>> headerNumbers = new ArrayList<>();
+        int start = 0;
+        while (start < lines.length) {
+            int end = start + 1;
+            while (end < lines.length && !lines[end - 1].isEmpty()) {
+                end++;
+            }
+            StringBuilder template = new StringBuilder();
+            List<Long> numbers = new ArrayList<>();
+            int header = NumberTemplate.split(lines[start], template, numbers)
+                    ? lineId(template.toString()) << 1
+                    : lineId(lines[start]) << 1 | 1;
+            headerNumbers.add(numbers);
+            int[] body = new int[end - start - 1];
+            for (int i = 0; i < body.length; i++) {
+                body[i] = lineId(lines[start + 1 + i]);
+            }
+            blocks.add(new int[] { header, stackId(body) });
+            start = end;
+        }
+        int labelId = lineId(label);
+
+        out.writeByte(TAG_DUMP);
+        writtenBytes += 1;
+        writtenBytes += Varints.write(out, epochMillis);
+        writtenBytes += Varints.write(out, labelId);
+        writtenBytes += Varints.write(out, blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            writtenBytes += Varints.write(out, blocks.get(i)[0]);
+            for (long number : headerNumbers.get(i)) {
+                writtenBytes += Varints.write(out, number);
+            }
+            writtenBytes += Varints.write(out, blocks.get(i)[1]);
+        }
+        out.flush();
+        rawBytes += threadDump.getBytes(StandardCharsets.UTF_8).length;
+        dumpCount++;
+        return writtenBytes - before;
+    }
+
+    private int lineId(String line) throws IOException {
+        Integer id = lineIds.get(line);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(TAG_LINE);
+        writtenBytes += 1 + Varints.write(out, bytes.length) + bytes.length;
+        out.write(bytes);
+        int newId = lineIds.size();
+        lineIds.put(line, newId);
+        return newId;
+    }
+
+    private int stackId(int[] lines) throws IOException {
+        Stack stack = new Stack(lines);
+        Integer id = stackIds.get(stack);
+        if (id != null) {
+            return id;
+        }
+        out.writeByte(TAG_STACK);
+        writtenBytes += 1 + Varints.write(out, lines.length);
+        for (int line : lines) {
+            writtenBytes += Varints.write(out, line);
+        }
+        int newId = stackIds.size();
+        stackIds.put(stack, newId);
+        return newId;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized int getDumpCount() {
+        return dumpCount;
+    }
+
+    /**
+     * @return size of the appended dumps as text
+     */
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * @return size of the archive file
+     */
+    public synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadDumpArchive{" +
+                "file=" + file +
+                ", dumpCount=" + getDumpCount() +
+                ", rawBytes=" + getRawBytes() +
+                ", writtenBytes=" + getWrittenBytes() +
+                '}';
+    }
+
+    private static final class Stack {
+        private final int[] lines;
+        private final int hash;
+
+        Stack(int[] lines) {
+            this.lines = lines;
+            this.hash = Arrays.hashCode(lines);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Stack && Arrays.equals(lines, ((Stack) o).lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import io.perfana.events.springboot.util.Varints;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a {@link ThreadDumpArchive} and reconstructs the individual thread dumps.
+ * A truncated last record, e.g. after a crash while writing, is ignored.
+ * <p>
+ * Usage: {@code java -cp test-events-springboot.jar io.perfana.events.springboot.threaddump.ThreadDumpArchiveReader
+ * <archive.pftd> [outDir]}, lists the dumps, or writes each dump as a .txt file to outDir.
+ */
+public class ThreadDumpArchiveReader {
+
+    private final List<String> lines = new ArrayList<>();
+    private final Map<Integer, Integer> placeholderCounts = new HashMap<>();
+    private final List<int[]> stacks = new ArrayList<>();
+    private final List<Entry> dumps = new ArrayList<>();
+
+    private ThreadDumpArchiveReader() {}
+
+    public static ThreadDumpArchiveReader read(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            return read(in);
+        }
+    }
+
+    static ThreadDumpArchiveReader read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != ThreadDumpArchive.MAGIC) {
+            throw new IOException("Not a thread dump archive");
+        }
+        int version = in.readUnsignedByte();
+        if (version != ThreadDumpArchive.VERSION) {
+            throw new IOException("Unsupported thread dump archive version: " + version);
+        }
+        ThreadDumpArchiveReader reader = new ThreadDumpArchiveReader();
+        try {
+            int tag;
+            while ((tag = in.read()) != -1) {
+                reader.readRecord(in, tag);
+            }
+        } catch (EOFException e) {
+            // incomplete last record
+        }
+        return reader;
+    }
+
+    private void readRecord(DataInputStream in, int tag) throws IOException {
+        switch (tag) {
+            case ThreadDumpArchive.TAG_LINE: {
+                byte[] bytes = new byte[Varints.readInt(in)];
+                in.readFully(bytes);
+                lines.add(new String(bytes, StandardCharsets.UTF_8));
+                break;
+            }
+            case ThreadDumpArchive.TAG_STACK: {
+                int[] stack = new int[Varints.readInt(in)];
+                for (int i = 0; i < stack.length; i++) {
+                    stack[i] = checkLine(Varints.readInt(in));
+                }
+                stacks.add(stack);
+                break;
+            }
+            case ThreadDumpArchive.TAG_DUMP: {
+                long epochMillis = Varints.read(in);
+                String label = lines.get(checkLine(Varints.readInt(in)));
+                int blockCount = Varints.readInt(in);
+                String[] headers = new String[blockCount];
+                int[] blockStacks = new int[blockCount];
+                for (int i = 0; i < blockCount; i++) {
+                    headers[i] = readHeader(in);
+                    int stack = Varints.readInt(in);
+                    if (stack >= stacks.size()) {
+                        throw new IOException("Unknown stack id " + stack);
+                    }
+                    blockStacks[i] = stack;
+                }
+                dumps.add(new Entry(dumps.size(), label, epochMillis, headers, blockStacks));
+                break;
+            }
+            default:
+                throw new IOException("Unknown record tag " + tag);
+        }
+    }
+
+    private String readHeader(DataInputStream in) throws IOException {
+        int header = Varints.readInt(in);
+        int line = checkLine(header >>> 1);
+        if ((header & 1) == 1) {
+            return lines.get(line);
+        }
+        String template = lines.get(line);
+        long[] numbers = new long[placeholderCounts.computeIfAbsent(line, id -> NumberTemplate.placeholderCount(template))];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Varints.read(in);
+        }
+        return NumberTemplate.join(template, numbers);
+    }
+
+    private int checkLine(int id) throws IOException {
+        if (id >= lines.size()) {
+            throw new IOException("Unknown line id " + id);
+        }
+        return id;
+    }
+
+    public List<Entry> dumps() {
+        return Collections.unmodifiableList(dumps);
+    }
+
+    public int distinctLineCount() {
+        return lines.size();
+    }
+
+    public int distinctStackCount() {
+        return stacks.size();
+    }
+
+    /**
+     * @return the thread dump text exactly as it was appended
+     */
+    public String dump(int index) {
+        Entry entry = dumps.get(index);
+        StringBuilder text = new StringBuilder();
+        boolean first = true;
+        for (int i = 0; i < entry.headers.length; i++) {
+            first = appendLine(text, entry.headers[i], first);
+            for (int line : stacks.get(entry.stacks[i])) {
+                first = appendLine(text, lines.get(line), first);
+            }
+        }
+        return text.toString();
+    }
+
+    private static boolean appendLine(StringBuilder text, String line, boolean first) {
+        if (!first) {
+            text.append('\n');
+        }
+        text.append(line);
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ThreadDumpArchiveReader <archive.pftd> [outDir]");
+            System.exit(1);
+        }
+        ThreadDumpArchiveReader reader = read(new File(args[0]));
+        File outDir = args.length > 1 ? new File(args[1]) : null;
+        for (Entry entry : reader.dumps()) {
+            if (outDir == null) {
+                System.out.println(entry);
+            } else {
+                File file = new File(outDir, entry.getLabel() + ".txt");
+                Files.write(file.toPath(), reader.dump(entry.getIndex()).getBytes(StandardCharsets.UTF_8));
+                System.out.println("Wrote " + file);
+            }
+        }
+        System.out.println(reader.dumps().size() + " dumps, " + reader.distinctStackCount() + " distinct stacks, "
+                + reader.distinctLineCount() + " distinct lines");
+    }
+
+    public static class Entry {
+        private final int index;
+        private final String label;
+        private final long epochMillis;
+        private final String[] headers;
+        private final int[] stacks;
+
+        Entry(int index, String label, long epochMillis, String[] headers, int[] stacks) {
+            this.index = index;
+            this.label = label;
+            this.epochMillis = epochMillis;
+            this.headers = headers;
+            this.stacks = stacks;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+
+        @Override
+        public String toString() {
+            return index + " " + Instant.ofEpochMilli(epochMillis) + " " + label + " (" + headers.length + " blocks)";
+        }
+    }
+}
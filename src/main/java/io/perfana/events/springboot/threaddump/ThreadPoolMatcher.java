@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Groups threads in pools by name patterns with {@code *} wildcards, such as {@code http-nio-*-exec-*},
+ * {@code task-*} or {@code HikariPool-*}. The pool name is the thread name up to the match of the
+ * last wildcard, without trailing separators: {@code http-nio-8080-exec-12} is in pool {@code http-nio-8080-exec}.
+ * The first matching pattern wins.
+ */
+@Immutable
+public class ThreadPoolMatcher {
+
+    private final List<String> globs;
+    private final List<Pattern> patterns;
+
+    public ThreadPoolMatcher(List<String> globs) {
+        List<Pattern> compiled = new ArrayList<>();
+        for (String glob : globs) {
+            compiled.add(compile(glob.trim()));
+        }
+        this.globs = List.copyOf(globs);
+        this.patterns = Collections.unmodifiableList(compiled);
+    }
+
+    private static Pattern compile(String glob) {
+        if (glob.isEmpty()) {
+            throw new IllegalArgumentException("Empty thread pool pattern");
+        }
+        int last = glob.lastIndexOf('*');
+        String head = last < 0 ? glob : glob.substring(0, last);
+        String tail = last < 0 ? "" : glob.substring(last + 1);
+        String regex = "(" + toRegex(head) + ")" + (last < 0 ? "" : ".*") + toRegex(tail);
+        return Pattern.compile(regex);
+    }
+
+    private static String toRegex(String glob) {
+        return Arrays.stream(glob.split("\\*", -1))
+                .map(part -> part.isEmpty() ? "" : Pattern.quote(part))
+                .collect(Collectors.joining(".*"));
+    }
+
+    /**
+     * @return name of the pool of the thread, null when no pattern matches
+     */
+    public String poolOf(String threadName) {
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(threadName);
+            if (matcher.matches()) {
+                String pool = matcher.group(1).replaceAll("[-_ #.]+$", "");
+                return pool.isEmpty() ? threadName : pool;
+            }
+        }
+        return null;
+    }
+
+    public List<String> getGlobs() {
+        return globs;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadPoolMatcher{" +
+                "globs=" + globs +
+                '}';
+    }
+}
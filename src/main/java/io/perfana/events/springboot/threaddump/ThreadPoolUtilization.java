@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import io.perfana.events.springboot.actuator.ThreadDumpListener;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Time series of the utilization of thread pools, from the thread states in text thread dumps.
+ * Works with both the jstack like format and the Spring Boot plain text format of the threaddump endpoint:
+ * a line that starts with the quoted thread name, followed by a {@code java.lang.Thread.State:} line.
+ */
+@ThreadSafe
+public class ThreadPoolUtilization implements ThreadDumpListener {
+
+    private static final String STATE_PREFIX = "java.lang.Thread.State: ";
+
+    private final ThreadPoolMatcher matcher;
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, PoolStats> stats = new TreeMap<>();
+    private int dumpCount;
+
+    public ThreadPoolUtilization(ThreadPoolMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    /**
+     * @return thread states per pool, sorted by pool name, pools without threads in the dump are absent
+     */
+    public static Map<String, PoolState> count(String threadDump, ThreadPoolMatcher matcher) {
+        Map<String, PoolState> pools = new TreeMap<>();
+        String pool = null;
+        for (String line : threadDump.split("\\R")) {
+            if (line.startsWith("\"")) {
+                int end = line.lastIndexOf('"');
+                pool = end > 0 ? matcher.poolOf(line.substring(1, end)) : null;
+            } else if (pool != null) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith(STATE_PREFIX)) {
+                    int space = trimmed.indexOf(' ', STATE_PREFIX.length());
+                    String state = space < 0 ? trimmed.substring(STATE_PREFIX.length()) : trimmed.substring(STATE_PREFIX.length(), space);
+                    pools.merge(pool, PoolState.EMPTY.plus(state), PoolState::plus);
+                    pool = null;
+                }
+            }
+        }
+        return pools;
+    }
+
+    @Override
+    public synchronized void onThreadDump(String name, long epochMillis, String text) {
+        dumpCount++;
+        count(text, matcher).forEach((pool, state) -> {
+            rows.add(new Row(epochMillis, name, pool, state));
+            stats.computeIfAbsent(pool, p -> new PoolStats()).add(state);
+        });
+    }
+
+    public synchronized int getDumpCount() {
+        return dumpCount;
+    }
+
+    /**
+     * @return states of the pool in each dump it was present in, in dump order
+     */
+    public synchronized List<PoolState> series(String pool) {
+        List<PoolState> series = new ArrayList<>();
+        rows.stream().filter(row -> row.pool.equals(pool)).forEach(row -> series.add(row.state));
+        return series;
+    }
+
+    /**
+     * @return per pool the average and peak utilization percentage, peak number of threads and of blocked threads,
+     * e.g. {@code <prefix>http-nio-8080-exec.utilization.peak}
+     */
+    public synchronized Map<String, String> toKeyValues(String prefix) {
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        stats.forEach((pool, s) -> {
+            String poolPrefix = prefix + pool + ".";
+            keyValues.put(poolPrefix + "utilization.avg", String.format(Locale.ROOT, "%.1f", s.utilizationSum / s.dumps));
+            keyValues.put(poolPrefix + "utilization.peak", String.format(Locale.ROOT, "%.1f", s.utilizationPeak));
+            keyValues.put(poolPrefix + "threads.peak", String.valueOf(s.threadsPeak));
+            keyValues.put(poolPrefix + "blocked.peak", String.valueOf(s.blockedPeak));
+            keyValues.put(poolPrefix + "dumps", String.valueOf(s.dumps));
+        });
+        return keyValues;
+    }
+
+    public synchronized void writeCsv(PrintWriter out) {
+        out.println("time,dump,pool,threads,runnable,blocked,waiting,timedWaiting,utilizationPercentage");
+        for (Row row : rows) {
+            PoolState state = row.state;
+            out.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%d,%.1f", Instant.ofEpochMilli(row.epochMillis), row.dump, row.pool,
+                    state.getThreads(), state.getRunnable(), state.getBlocked(), state.getWaiting(), state.getTimedWaiting(), state.getUtilization()));
+        }
+        out.flush();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ThreadPoolUtilization{" +
+                "globs=" + matcher.getGlobs() +
+                ", dumps=" + dumpCount +
+                ", pools=" + stats.keySet() +
+                '}';
+    }
+
+    private static class Row {
+        private final long epochMillis;
+        private final String dump;
+        private final String pool;
+        private final PoolState state;
+
+        Row(long epochMillis, String dump, String pool, PoolState state) {
+            this.epochMillis = epochMillis;
+            this.dump = dump;
+            this.pool = pool;
+            this.state = state;
+        }
+    }
+
+    private static class PoolStats {
+        private int dumps;
+        private double utilizationSum;
+        private double utilizationPeak;
+        private int threadsPeak;
+        private int blockedPeak;
+
+        void add(PoolState state) {
+            dumps++;
+            utilizationSum += state.getUtilization();
+            utilizationPeak = Math.max(utilizationPeak, state.getUtilization());
+            threadsPeak = Math.max(threadsPeak, state.getThreads());
+            blockedPeak = Math.max(blockedPeak, state.getBlocked());
+        }
+    }
+}
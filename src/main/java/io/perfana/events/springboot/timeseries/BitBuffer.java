@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Bits in a growable long array, written and read most significant bit first.
+ */
+final class BitBuffer {
+
+    private long[] words;
+    private int bitCount;
+
+    BitBuffer(int initialWords) {
+        this.words = new long[Math.max(1, initialWords)];
+    }
+
+    /**
+     * Write the lowest bits of the value.
+     */
+    void write(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        ensureCapacity(bitCount + bits);
+        long masked = value & mask(bits);
+        int index = bitCount >>> 6;
+        int free = 64 - (bitCount & 63);
+        if (bits <= free) {
+            words[index] |= masked << (free - bits);
+        } else {
+            int rest = bits - free;
+            words[index] |= masked >>> rest;
+            words[index + 1] |= masked << (64 - rest);
+        }
+        bitCount += bits;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    int bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Release the unused capacity, for buffers that are complete.
+     */
+    void trim() {
+        int used = (bitCount + 63) >>> 6;
+        if (used < words.length) {
+            words = Arrays.copyOf(words, Math.max(1, used));
+        }
+    }
+
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    Reader reader() {
+        return new Reader();
+    }
+
+    private void ensureCapacity(int bits) {
+        int needed = (bits + 63) >>> 6;
+        if (needed > words.length) {
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+        }
+    }
+
+    private static long mask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    final class Reader {
+        private int position;
+
+        long read(int bits) {
+            if (bits == 0) {
+                return 0;
+            }
+            if (position + bits > bitCount) {
+                throw new IllegalStateException("Read beyond the end of the bit buffer");
+            }
+            int index = position >>> 6;
+            int available = 64 - (position & 63);
+            long result;
+            if (bits <= available) {
+                result = (words[index] >>> (available - bits)) & mask(bits);
+            } else {
+                int rest = bits - available;
+                result = ((words[index] & mask(available)) << rest) | (words[index + 1] >>> (64 - rest));
+            }
+            position += bits;
+            return result;
+        }
+
+        boolean readBit() {
+            return read(1) == 1;
+        }
+    }
+}
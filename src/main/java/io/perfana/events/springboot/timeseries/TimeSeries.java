@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * One series in compressed blocks. Points older than the raw retention are downsampled to the average and
+ * the max per downsample interval, so memory grows with the run length divided by the interval, instead of
+ * with the number of samples.
+ * <p>
+ * Not thread safe, guarded by the {@link TimeSeriesStore}.
+ */
+final class TimeSeries {
+
+    static final int MAX_POINTS_PER_BLOCK = 512;
+
+    private final long rawRetentionMillis;
+    private final long downsampleMillis;
+
+    private final Deque<GorillaBlock> sealedRaw = new ArrayDeque<>();
+    private GorillaBlock openRaw;
+    private final List<GorillaBlock> averages = new ArrayList<>();
+    private final List<GorillaBlock> maxima = new ArrayList<>();
+    private GorillaBlock openAverage;
+    private GorillaBlock openMax;
+
+    // downsample bucket in progress
+    private long bucketStart = Long.MIN_VALUE;
+    private double bucketSum;
+    private int bucketCount;
+    private double bucketMax;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    TimeSeries(long rawRetentionMillis, long downsampleMillis) {
+        this.rawRetentionMillis = rawRetentionMillis;
+        this.downsampleMillis = downsampleMillis;
+    }
+
+    /**
+     * Timestamps before the last appended timestamp are moved forward to it.
+     */
+    void append(long timestamp, double value) {
+        long time = Math.max(timestamp, lastTimestamp);
+        if (openRaw == null) {
+            openRaw = new GorillaBlock();
+        }
+        openRaw.append(time, value);
+        lastTimestamp = time;
+        // seal on span as well, so downsampling does not wait for a full block of infrequent samples
+        if (openRaw.count() >= MAX_POINTS_PER_BLOCK || time - openRaw.firstTimestamp() >= rawRetentionMillis / 4) {
+            openRaw.seal();
+            sealedRaw.addLast(openRaw);
+            openRaw = null;
+        }
+        downsampleExpired(time - rawRetentionMillis);
+    }
+
+    private void downsampleExpired(long retainFrom) {
+        while (!sealedRaw.isEmpty() && sealedRaw.peekFirst().lastTimestamp() < retainFrom) {
+            sealedRaw.pollFirst().forEach(this::downsample);
+        }
+    }
+
+    private void downsample(long timestamp, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        long start = Math.floorDiv(timestamp, downsampleMillis) * downsampleMillis;
+        if (start != bucketStart && bucketCount > 0) {
+            flushBucket();
+        }
+        bucketStart = start;
+        bucketSum += value;
+        bucketMax = bucketCount == 0 ? value : Math.max(bucketMax, value);
+        bucketCount++;
+    }
+
+    private void flushBucket() {
+        if (openAverage == null) {
+            openAverage = new GorillaBlock();
+            openMax = new GorillaBlock();
+            averages.add(openAverage);
+            maxima.add(openMax);
+        }
+        openAverage.append(bucketStart, bucketSum / bucketCount);
+        openMax.append(bucketStart, bucketMax);
+        if (openAverage.count() >= MAX_POINTS_PER_BLOCK) {
+            openAverage.seal();
+            openMax.seal();
+            openAverage = null;
+            openMax = null;
+        }
+        bucketSum = 0;
+        bucketCount = 0;
+    }
+
+    /**
+     * @return raw points within the retention, and the downsampled averages before, from and to inclusive
+     */
+    TimeSeriesRange query(long from, long to) {
+        return query(from, to, averages, bucketCount == 0 ? Double.NaN : bucketSum / bucketCount);
+    }
+
+    /**
+     * @return raw points within the retention, and the downsampled maxima before, from and to inclusive
+     */
+    TimeSeriesRange queryMax(long from, long to) {
+        return query(from, to, maxima, bucketCount == 0 ? Double.NaN : bucketMax);
+    }
+
+    private TimeSeriesRange query(long from, long to, List<GorillaBlock> downsampled, double bucketValue) {
+        TimeSeriesRange.Collector collector = new TimeSeriesRange.Collector(from, to);
+        for (GorillaBlock block : downsampled) {
+            if (block.count() > 0 && block.lastTimestamp() >= from && block.firstTimestamp() <= to) {
+                block.forEach(collector);
+            }
+        }
+        if (bucketCount > 0) {
+            collector.accept(bucketStart, bucketValue);
+        }
+        for (GorillaBlock block : sealedRaw) {
+            if (block.lastTimestamp() >= from && block.firstTimestamp() <= to) {
+                block.forEach(collector);
+            }
+        }
+        if (openRaw != null) {
+            openRaw.forEach(collector);
+        }
+        return collector.toRange();
+    }
+
+    int pointCount() {
+        int count = bucketCount > 0 ? 1 : 0;
+        for (GorillaBlock block : averages) {
+            count += block.count();
+        }
+        for (GorillaBlock block : sealedRaw) {
+            count += block.count();
+        }
+        return count + (openRaw == null ? 0 : openRaw.count());
+    }
+
+    long sizeInBytes() {
+        long size = 128;
+        for (GorillaBlock block : averages) {
+            size += block.sizeInBytes();
+        }
+        for (GorillaBlock block : maxima) {
+            size += block.sizeInBytes();
+        }
+        for (GorillaBlock block : sealedRaw) {
+            size += block.sizeInBytes();
+        }
+        return size + (openRaw == null ? 0 : openRaw.sizeInBytes());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.Arrays;
+
+/**
+ * Points of one series in a time range, in time order. Timestamps are epoch millis.
+ */
+@Immutable
+public class TimeSeriesRange {
+
+    public static final TimeSeriesRange EMPTY = new TimeSeriesRange(new long[0], new double[0], 0);
+
+    private final long[] timestamps;
+    private final double[] values;
+
+    TimeSeriesRange(long[] timestamps, double[] values, int size) {
+        this.timestamps = Arrays.copyOf(timestamps, size);
+        this.values = Arrays.copyOf(values, size);
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public boolean isEmpty() {
+        return timestamps.length == 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesRange{" +
+                "size=" + size() +
+                (isEmpty() ? "" : ", from=" + timestamps[0] + ", to=" + timestamps[timestamps.length - 1]) +
+                '}';
+    }
+
+    /**
+     * Collects points in time order.
+     */
+    static class Collector implements GorillaBlock.PointConsumer {
+        private final long from;
+        private final long to;
+        private long[] timestamps = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        Collector(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            if (timestamp < from || timestamp > to) {
+                return;
+            }
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        TimeSeriesRange toRange() {
+            return size == 0 ? EMPTY : new TimeSeriesRange(timestamps, values, size);
+        }
+    }
+}
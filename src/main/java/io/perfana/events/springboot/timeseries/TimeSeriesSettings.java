@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the {@link TimeSeriesStore} and the sampling of its metrics.
+ */
+@Immutable
+public class TimeSeriesSettings {
+
+    public static final TimeSeriesSettings DISABLED = new TimeSeriesSettings(false, Collections.emptyList(), Duration.ofSeconds(10),
+            Duration.ofMinutes(60), Duration.ofSeconds(60));
+
+    private final boolean enabled;
+    private final List<String> metrics;
+    private final Duration interval;
+    private final Duration rawRetention;
+    private final Duration downsampleInterval;
+
+    public TimeSeriesSettings(boolean enabled, List<String> metrics, Duration interval, Duration rawRetention, Duration downsampleInterval) {
+        if (interval.isNegative() || interval.isZero() || downsampleInterval.isNegative() || downsampleInterval.isZero()) {
+            throw new IllegalArgumentException("interval and downsampleInterval should be positive: " + interval + ", " + downsampleInterval);
+        }
+        this.enabled = enabled;
+        this.metrics = List.copyOf(metrics);
+        this.interval = interval;
+        this.rawRetention = rawRetention;
+        this.downsampleInterval = downsampleInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return metrics to sample for the store, next to the metrics sampled by the summary and the triggers
+     */
+    public List<String> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return interval to sample the metrics, when adaptive sampling is disabled
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return points older than this are downsampled
+     */
+    public Duration getRawRetention() {
+        return rawRetention;
+    }
+
+    /**
+     * @return interval of the downsampled points
+     */
+    public Duration getDownsampleInterval() {
+        return downsampleInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesSettings{" +
+                "enabled=" + enabled +
+                ", metrics=" + metrics +
+                ", interval=" + interval +
+                ", rawRetention=" + rawRetention +
+                ", downsampleInterval=" + downsampleInterval +
+                '}';
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.MetricListener;
+import io.perfana.eventscheduler.api.EventLogger;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory store of all metric samples of a test run, per instance and meter, to keep the full detail of long
+ * soak runs without an external time series database.
+ * <p>
+ * Points are kept in Gorilla compressed blocks (delta of delta timestamps, XOR values), typically one to two
+ * bytes per point for regular samples. Points older than the raw retention are downsampled to the average and
+ * max per downsample interval. A meter is the series key of the metric and tags plus the lowercase statistic,
+ * e.g. {@code jvm.memory.used(area:heap).value}.
+ */
+@ThreadSafe
+public class TimeSeriesStore {
+
+    static final int MAX_SERIES = 10_000;
+
+    private final long rawRetentionMillis;
+    private final long downsampleMillis;
+    private final LongSupplier epochClock;
+    private final EventLogger logger;
+
+    private final Map<String, Map<String, TimeSeries>> instances = new TreeMap<>();
+    private int seriesCount;
+    private boolean seriesLimitLogged;
+
+    public TimeSeriesStore(Duration rawRetention, Duration downsampleInterval, EventLogger logger) {
+        this(rawRetention, downsampleInterval, System::currentTimeMillis, logger);
+    }
+
+    TimeSeriesStore(Duration rawRetention, Duration downsampleInterval, LongSupplier epochClock, EventLogger logger) {
+        if (downsampleInterval.toMillis() <= 0) {
+            throw new IllegalArgumentException("Downsample interval must be positive: " + downsampleInterval);
+        }
+        this.rawRetentionMillis = rawRetention.toMillis();
+        this.downsampleMillis = downsampleInterval.toMillis();
+        this.epochClock = epochClock;
+        this.logger = logger;
+    }
+
+    /**
+     * @return listener that appends all measurements of each metric sample, with the current time, to the given instance
+     */
+    public MetricListener listener(String instance) {
+        return (metricName, tags, metric) -> {
+            if (metric.measurements == null) {
+                return;
+            }
+            long now = epochClock.getAsLong();
+            String key = MetricListener.seriesKey(metricName, tags);
+            for (Measurement measurement : metric.measurements) {
+                if (measurement.statistic != null && measurement.value != null) {
+                    append(instance, key + "." + measurement.statistic.toLowerCase(Locale.ROOT), now, measurement.value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Timestamps before the last timestamp of the series are moved forward to it.
+     */
+    public synchronized void append(String instance, String meter, long epochMillis, double value) {
+        Map<String, TimeSeries> meters = instances.computeIfAbsent(instance, i -> new TreeMap<>());
+        TimeSeries series = meters.get(meter);
+        if (series == null) {
+            if (seriesCount >= MAX_SERIES) {
+                if (!seriesLimitLogged) {
+                    logger.warn("Time series store is limited to " + MAX_SERIES + " series, ignoring " + meter + " and others");
+                    seriesLimitLogged = true;
+                }
+                return;
+            }
+            series = new TimeSeries(rawRetentionMillis, downsampleMillis);
+            meters.put(meter, series);
+            seriesCount++;
+        }
+        series.append(epochMillis, value);
+    }
+
+    /**
+     * @return the points from and to inclusive, downsampled to averages before the raw retention
+     */
+    public synchronized TimeSeriesRange query(String instance, String meter, Instant from, Instant to) {
+        TimeSeries series = series(instance, meter);
+        return series == null ? TimeSeriesRange.EMPTY : series.query(from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    /**
+     * @return the points from and to inclusive, downsampled to maxima before the raw retention
+     */
+    public synchronized TimeSeriesRange queryMax(String instance, String meter, Instant from, Instant to) {
+        TimeSeries series = series(instance, meter);
+        return series == null ? TimeSeriesRange.EMPTY : series.queryMax(from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    private TimeSeries series(String instance, String meter) {
+        return instances.getOrDefault(instance, Collections.emptyMap()).get(meter);
+    }
+
+    public synchronized Set<String> instances() {
+        return new TreeSet<>(instances.keySet());
+    }
+
+    public synchronized Set<String> meters(String instance) {
+        return new TreeSet<>(instances.getOrDefault(instance, Collections.emptyMap()).keySet());
+    }
+
+    public synchronized int getSeriesCount() {
+        return seriesCount;
+    }
+
+    public synchronized long getPointCount() {
+        long count = 0;
+        for (Map<String, TimeSeries> meters : instances.values()) {
+            for (TimeSeries series : meters.values()) {
+                count += series.pointCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return estimated heap use of the compressed blocks
+     */
+    public synchronized long getSizeInBytes() {
+        long size = 0;
+        for (Map<String, TimeSeries> meters : instances.values()) {
+            for (TimeSeries series : meters.values()) {
+                size += series.sizeInBytes();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Write all points, downsampled averages before the raw retention.
+     */
+    public synchronized void writeCsv(PrintWriter out) {
+        out.println("time,instance,meter,value");
+        instances.forEach((instance, meters) -> meters.forEach((meter, series) -> {
+            TimeSeriesRange range = series.query(Long.MIN_VALUE, Long.MAX_VALUE);
+            for (int i = 0; i < range.size(); i++) {
+                out.println(Instant.ofEpochMilli(range.getTimestamp(i)) + "," + instance + ",\"" + meter + "\"," + range.getValue(i));
+            }
+        }));
+        out.flush();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TimeSeriesStore{" +
+                "rawRetentionMillis=" + rawRetentionMillis +
+                ", downsampleMillis=" + downsampleMillis +
+                ", instances=" + instances.keySet() +
+                ", series=" + seriesCount +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+/**
+ * Captures evidence, such as thread dumps, when a trigger fires.
+ */
+@FunctionalInterface
+public interface CaptureHandler {
+
+    /**
+     * @param trigger name of the trigger, e.g. pool-saturation, used in file names and messages
+     * @param reason human readable description of the breach
+     * @param heapDump also capture a heap dump after the thread dumps
+     */
+    void capture(String trigger, String reason, boolean heapDump);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Makes sure a trigger fires at most once per cooldown period.
+ */
+@ThreadSafe
+public class Cooldown {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong lastFired = new AtomicLong(NEVER);
+
+    public Cooldown(Duration cooldown) {
+        this(cooldown, System::nanoTime);
+    }
+
+    Cooldown(Duration cooldown, LongSupplier nanoClock) {
+        this.cooldownNanos = cooldown.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public boolean isActive() {
+        long last = lastFired.get();
+        return last != NEVER && nanoClock.getAsLong() - last < cooldownNanos;
+    }
+
+    /**
+     * @return true when not in cooldown, and then starts a new cooldown period
+     */
+    public boolean tryFire() {
+        long last = lastFired.get();
+        long now = nanoClock.getAsLong();
+        if (last != NEVER && now - last < cooldownNanos) {
+            return false;
+        }
+        return lastFired.compareAndSet(last, now);
+    }
+}
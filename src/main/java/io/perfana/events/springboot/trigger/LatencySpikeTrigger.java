@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples http.server.requests for the selected uris and captures thread dumps (and optionally a heap dump)
+ * when the max or the mean duration of the last interval exceeds a fixed threshold or a multiple of its
+ * rolling baseline. Fires at most once per cooldown and at most budget times per test run.
+ * <p>
+ * The mean per interval is calculated from the count and total time deltas between samples. The max is the
+ * max as reported by Micrometer, which decays over a couple of minutes: only a max above the previous reading
+ * can fire, so one spike fires once. Samples that exceed a threshold are not added to the baseline.
+ * Schedule with a fixed delay in a SafeRunnable, each run takes one sample.
+ */
+public class LatencySpikeTrigger implements Runnable {
+
+    public static final String TRIGGER_NAME = "latency-spike";
+
+    static final String METRIC_NAME = "http.server.requests";
+
+    private final ActuatorClient client;
+    private final LatencyTriggerSettings settings;
+    private final Cooldown cooldown;
+    private final CaptureHandler captureHandler;
+    private final EventLogger logger;
+
+    private final Map<String, UriState> states = new LinkedHashMap<>();
+    private int captures;
+
+    public LatencySpikeTrigger(ActuatorClient client, LatencyTriggerSettings settings, CaptureHandler captureHandler, EventLogger logger) {
+        this(client, settings, new Cooldown(settings.getCooldown()), captureHandler, logger);
+    }
+
+    LatencySpikeTrigger(ActuatorClient client, LatencyTriggerSettings settings, Cooldown cooldown, CaptureHandler captureHandler, EventLogger logger) {
+        this.client = client;
+        this.settings = settings;
+        this.cooldown = cooldown;
+        this.captureHandler = captureHandler;
+        this.logger = logger;
+        List<String> uris = settings.getUris().isEmpty() ? List.of("") : settings.getUris();
+        uris.forEach(uri -> states.put(uri, new UriState(settings.getBaselineSamples())));
+    }
+
+    @Override
+    public void run() {
+        if (captures >= settings.getBudget()) {
+            return;
+        }
+        // always sample all uris, also in cooldown, to keep the deltas and baselines up to date
+        String breach = null;
+        for (Map.Entry<String, UriState> entry : states.entrySet()) {
+            String uri = entry.getKey();
+            List<String> tags = uri.isEmpty() ? Collections.emptyList() : List.of("uri:" + uri);
+            Optional<Metric> metric = client.metric(METRIC_NAME, tags);
+            UriState state = entry.getValue();
+            if (metric.isPresent()) {
+                String reason = state.update(metric.get(), settings);
+                if (reason != null && breach == null) {
+                    breach = (uri.isEmpty() ? "all requests" : uri) + ": " + reason;
+                }
+            } else if (!state.missingReported) {
+                state.missingReported = true;
+                logger.warn("No " + METRIC_NAME + " metric for " + (uri.isEmpty() ? "all requests" : "uri " + uri)
+                        + ", the latency spike trigger keeps checking");
+            }
+        }
+        if (breach != null && cooldown.tryFire()) {
+            captures++;
+            logger.warn("Latency spike detected (" + captures + "/" + settings.getBudget() + "): " + breach);
+            captureHandler.capture(TRIGGER_NAME, breach, settings.isHeapDump());
+            if (captures >= settings.getBudget()) {
+                logger.info("Latency spike trigger budget of " + settings.getBudget() + " used, no more captures in this test run");
+            }
+        }
+    }
+
+    private static class UriState {
+        private final RollingAverage maxBaseline;
+        private final RollingAverage meanBaseline;
+        private double previousCount = -1;
+        private double previousTotalMillis;
+        private double previousMaxMillis = Double.NaN;
+        private boolean missingReported;
+
+        UriState(int baselineSamples) {
+            this.maxBaseline = new RollingAverage(baselineSamples);
+            this.meanBaseline = new RollingAverage(baselineSamples);
+        }
+
+        /**
+         * @return reason when a threshold is exceeded, null otherwise
+         */
+        String update(Metric metric, LatencyTriggerSettings settings) {
+            Optional<Double> count = metric.measurement("COUNT");
+            Optional<Double> totalMillis = metric.timeMeasurement("TOTAL_TIME", TimeUnit.MILLISECONDS);
+            Optional<Double> maxMillis = metric.timeMeasurement("MAX", TimeUnit.MILLISECONDS);
+
+            Double meanMillis = null;
+            if (count.isPresent() && totalMillis.isPresent()) {
+                // a lower count means the application restarted, start over
+                if (previousCount >= 0 && count.get() > previousCount) {
+                    meanMillis = (totalMillis.get() - previousTotalMillis) / (count.get() - previousCount);
+                }
+                previousCount = count.get();
+                previousTotalMillis = totalMillis.get();
+            }
+
+            String maxReason = null;
+            String reason = null;
+            if (maxMillis.isPresent()) {
+                maxReason = check("max", maxMillis.get(), settings.getMaxMillis(), maxBaseline, settings.getBaselineFactor());
+                // a max that is not above the previous reading is the same (decaying) spike
+                boolean newMax = Double.isNaN(previousMaxMillis) || maxMillis.get() > previousMaxMillis;
+                previousMaxMillis = maxMillis.get();
+                if (newMax) {
+                    reason = maxReason;
+                }
+            }
+            if (reason == null && meanMillis != null) {
+                reason = check("mean", meanMillis, settings.getMeanMillis(), meanBaseline, settings.getBaselineFactor());
+            }
+            if (reason == null) {
+                if (maxReason == null) {
+                    maxMillis.ifPresent(maxBaseline::add);
+                }
+                if (meanMillis != null) {
+                    meanBaseline.add(meanMillis);
+                }
+            }
+            return reason;
+        }
+
+        private static String check(String name, double millis, long thresholdMillis, RollingAverage baseline, double baselineFactor) {
+            if (thresholdMillis > 0 && millis > thresholdMillis) {
+                return String.format(Locale.ROOT, "%s %.1f ms > threshold %d ms", name, millis, thresholdMillis);
+            }
+            if (baselineFactor > 0 && baseline.isFull() && baseline.average() > 0 && millis > baselineFactor * baseline.average()) {
+                return String.format(Locale.ROOT, "%s %.1f ms > %.1f x baseline %.1f ms", name, millis, baselineFactor, baseline.average());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import net.jcip.annotations.Immutable;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings of the {@link LatencySpikeTrigger}. Thresholds of zero are disabled.
+ */
+@Immutable
+public class LatencyTriggerSettings {
+
+    public static final LatencyTriggerSettings DISABLED = new LatencyTriggerSettings(false, List.of(), 0, 0, 0, 1,
+            Duration.ofSeconds(5), Duration.ofMinutes(2), 0, false);
+
+    private final boolean enabled;
+    private final List<String> uris;
+    private final long maxMillis;
+    private final long meanMillis;
+    private final double baselineFactor;
+    private final int baselineSamples;
+    private final Duration interval;
+    private final Duration cooldown;
+    private final int budget;
+    private final boolean heapDump;
+
+    public LatencyTriggerSettings(boolean enabled, List<String> uris, long maxMillis, long meanMillis, double baselineFactor, int baselineSamples,
+                                  Duration interval, Duration cooldown, int budget, boolean heapDump) {
+        if (baselineSamples < 1) {
+            throw new IllegalArgumentException("baselineSamples should be at least 1: " + baselineSamples);
+        }
+        this.enabled = enabled;
+        this.uris = List.copyOf(uris);
+        this.maxMillis = maxMillis;
+        this.meanMillis = meanMillis;
+        this.baselineFactor = baselineFactor;
+        this.baselineSamples = baselineSamples;
+        this.interval = interval;
+        this.cooldown = cooldown;
+        this.budget = budget;
+        this.heapDump = heapDump;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return uri tag values to watch, empty for all requests together
+     */
+    public List<String> getUris() {
+        return uris;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMeanMillis() {
+        return meanMillis;
+    }
+
+    /**
+     * @return fire when max or mean exceeds this multiple of its rolling baseline, 0 to disable
+     */
+    public double getBaselineFactor() {
+        return baselineFactor;
+    }
+
+    /**
+     * @return number of samples in the rolling baseline
+     */
+    public int getBaselineSamples() {
+        return baselineSamples;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public Duration getCooldown() {
+        return cooldown;
+    }
+
+    /**
+     * @return max number of captures per test run
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    public boolean isHeapDump() {
+        return heapDump;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyTriggerSettings{" +
+                "enabled=" + enabled +
+                ", uris=" + uris +
+                ", maxMillis=" + maxMillis +
+                ", meanMillis=" + meanMillis +
+                ", baselineFactor=" + baselineFactor +
+                ", baselineSamples=" + baselineSamples +
+                ", interval=" + interval +
+                ", cooldown=" + cooldown +
+                ", budget=" + budget +
+                ", heapDump=" + heapDump +
+                '}';
+    }
+}
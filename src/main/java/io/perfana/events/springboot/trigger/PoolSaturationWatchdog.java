@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.eventscheduler.api.EventLogger;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Polls connection and thread pool gauges, such as hikaricp.connections.pending and tomcat.threads.busy,
+ * and captures thread dumps when a threshold is breached. The dumps then show which code holds
+ * the connections or threads at the moment the pool saturates.
+ * <p>
+ * Schedule with a fixed delay in a SafeRunnable, each run takes one sample. Metrics that are not available
+ * for a number of polls in a row, e.g. tomcat metrics on a jetty application, are no longer polled. A pool
+ * that registers its metrics late, or a failed request, does not stop the watching.
+ */
+public class PoolSaturationWatchdog implements Runnable {
+
+    public static final String TRIGGER_NAME = "pool-saturation";
+
+    static final int MAX_CONSECUTIVE_MISSES = 10;
+
+    private final ActuatorClient client;
+    private final List<Threshold> thresholds;
+    private final Cooldown cooldown;
+    private final CaptureHandler captureHandler;
+    private final EventLogger logger;
+
+    private final Map<String, Integer> consecutiveMisses = new HashMap<>();
+    private final Map<String, Double> maxValues = new HashMap<>();
+
+    public PoolSaturationWatchdog(ActuatorClient client, List<Threshold> thresholds, Duration cooldown, CaptureHandler captureHandler, EventLogger logger) {
+        this(client, thresholds, new Cooldown(cooldown), captureHandler, logger);
+    }
+
+    PoolSaturationWatchdog(ActuatorClient client, List<Threshold> thresholds, Cooldown cooldown, CaptureHandler captureHandler, EventLogger logger) {
+        this.client = client;
+        this.thresholds = thresholds;
+        this.cooldown = cooldown;
+        this.captureHandler = captureHandler;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        if (cooldown.isActive()) {
+            return;
+        }
+        for (Threshold threshold : thresholds) {
+            Optional<Double> value = gauge(threshold.getMetricName());
+            if (value.isEmpty()) {
+                continue;
+            }
+            double limit;
+            if (threshold.isPercentage()) {
+                Optional<Double> max = maxValue(threshold.getMaxMetricName());
+                if (max.isEmpty()) {
+                    continue;
+                }
+                limit = threshold.limit(max.get());
+            } else {
+                limit = threshold.limit(0);
+            }
+            if (value.get() >= limit && cooldown.tryFire()) {
+                String reason = threshold.getMetricName() + " is " + value.get() + " (threshold " + threshold + ", limit " + limit + ")";
+                logger.warn("Pool saturation detected: " + reason);
+                captureHandler.capture(TRIGGER_NAME, reason, false);
+                return;
+            }
+        }
+    }
+
+    private Optional<Double> maxValue(String maxMetricName) {
+        // pool max sizes are configuration, no need to poll
+        Double max = maxValues.get(maxMetricName);
+        if (max == null) {
+            Optional<Double> value = gauge(maxMetricName);
+            value.ifPresent(v -> maxValues.put(maxMetricName, v));
+            return value;
+        }
+        return Optional.of(max);
+    }
+
+    private Optional<Double> gauge(String metricName) {
+        int misses = consecutiveMisses.getOrDefault(metricName, 0);
+        if (misses >= MAX_CONSECUTIVE_MISSES) {
+            return Optional.empty();
+        }
+        Optional<Double> value = client.metric(metricName).flatMap(m -> m.measurement("VALUE"));
+        if (value.isPresent()) {
+            consecutiveMisses.remove(metricName);
+        } else {
+            consecutiveMisses.put(metricName, ++misses);
+            if (misses == MAX_CONSECUTIVE_MISSES) {
+                logger.info("Metric " + metricName + " not available in " + misses + " polls in a row, it is no longer watched");
+            }
+        }
+        return value;
+    }
+}
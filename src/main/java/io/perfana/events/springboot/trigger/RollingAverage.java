@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Average of the last n values.
+ */
+@NotThreadSafe
+class RollingAverage {
+
+    private final double[] values;
+    private int count;
+    private int next;
+    private double sum;
+
+    RollingAverage(int size) {
+        this.values = new double[size];
+    }
+
+    void add(double value) {
+        if (count == values.length) {
+            sum -= values[next];
+        } else {
+            count++;
+        }
+        values[next] = value;
+        sum += value;
+        next = (next + 1) % values.length;
+    }
+
+    /**
+     * @return true when the window is full, before that the average is not a stable baseline
+     */
+    boolean isFull() {
+        return count == values.length;
+    }
+
+    double average() {
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Threshold on a gauge metric, absolute or as percentage of the matching max metric,
+ * e.g. "hikaricp.connections.pending=1" or "tomcat.threads.busy=90%".
+ */
+@Immutable
+public class Threshold {
+
+    private static final Map<String, String> MAX_METRICS = Map.of(
+            "hikaricp.connections.active", "hikaricp.connections.max",
+            "hikaricp.connections.pending", "hikaricp.connections.max",
+            "hikaricp.connections", "hikaricp.connections.max",
+            "tomcat.threads.busy", "tomcat.threads.config.max",
+            "tomcat.threads.current", "tomcat.threads.config.max",
+            "jetty.threads.busy", "jetty.threads.config.max");
+
+    private final String metricName;
+    private final double value;
+    private final String maxMetricName;
+
+    Threshold(String metricName, double value, String maxMetricName) {
+        this.metricName = metricName;
+        this.value = value;
+        this.maxMetricName = maxMetricName;
+    }
+
+    /**
+     * @param thresholds comma separated list of metric=value or metric=percentage%
+     * @throws IllegalArgumentException for invalid thresholds, or percentages on metrics without a known max metric
+     */
+    public static List<Threshold> parse(String thresholds) {
+        if (thresholds == null || thresholds.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Threshold> result = new ArrayList<>();
+        for (String threshold : thresholds.split(",")) {
+            String[] nameValue = threshold.trim().split("=");
+            if (nameValue.length != 2) {
+                throw new IllegalArgumentException("Invalid threshold, use metric=value or metric=percentage%: " + threshold);
+            }
+            String name = nameValue[0].trim();
+            String value = nameValue[1].trim();
+            if (value.endsWith("%")) {
+                String maxMetric = MAX_METRICS.get(name);
+                if (maxMetric == null) {
+                    throw new IllegalArgumentException("No max metric known for percentage threshold, use an absolute value: " + threshold);
+                }
+                result.add(new Threshold(name, Double.parseDouble(value.substring(0, value.length() - 1)), maxMetric));
+            } else {
+                result.add(new Threshold(name, Double.parseDouble(value), null));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * @return null for absolute thresholds
+     */
+    public String getMaxMetricName() {
+        return maxMetricName;
+    }
+
+    public boolean isPercentage() {
+        return maxMetricName != null;
+    }
+
+    /**
+     * @param max current value of the max metric, ignored for absolute thresholds
+     * @return the value at or above which the threshold is breached
+     */
+    public double limit(double max) {
+        return isPercentage() ? max * value / 100.0 : value;
+    }
+
+    @Override
+    public String toString() {
+        return metricName + ">=" + value + (isPercentage() ? "% of " + maxMetricName : "");
+    }
+}
@@ -19,6 +19,8 @@ import com.squareup.okhttp.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -42,31 +44,49 @@ public class TestUtil {
         return okHttpClient;
     }
 
+    /**
+     * Mock that answers by request path and query, so it also works for calls in parallel.
+     * Unknown paths get a 404.
+     */
     public static OkHttpClient createOkHttpClientMock200() throws IOException {
         final OkHttpClient okHttpClient = mock(OkHttpClient.class);
-        final Call remoteCall = mock(Call.class);
 
         final String serializedBody = loadFileFromTestResources("actuator.env.response.json");
 
-        MediaType jsonMediaType = MediaType.parse("application/json");
-        ResponseBody body = ResponseBody.create(jsonMediaType, serializedBody);
+        Map<String, String> bodies = new HashMap<>();
+        bodies.put("/actuator/env", serializedBody);
+        bodies.put("/actuator/info", "{\"build\":{\"artifact\":\"afterburner-java\",\"name\":\"afterburner-java\",\"time\":\"2023-02-21T08:23:20.867Z\",\"version\":\"2.2.0-SNAPSHOT\",\"group\":\"io.perfana\"}}");
+        bodies.put("/actuator/configprops", loadFileFromTestResources("actuator.configprops.response.json"));
+        bodies.put("/actuator/beans", "{\"contexts\":{\"application\":{\"beans\":{\"a\":{\"scope\":\"singleton\",\"dependencies\":[]},\"b\":{\"scope\":\"singleton\",\"dependencies\":[\"a\"]}},\"parentId\":null}}}");
+        bodies.put("/actuator/metrics/jvm.threads.live", "{\"name\":\"jvm.threads.live\",\"measurements\":[{\"statistic\":\"VALUE\",\"value\":42.0}],\"availableTags\":[]}");
+        bodies.put("/actuator/metrics/system.cpu.count", "{\"name\":\"system.cpu.count\",\"measurements\":[{\"statistic\":\"VALUE\",\"value\":2.0}],\"availableTags\":[]}");
+        bodies.put("/actuator/metrics/jvm.gc.pause", "{\"name\":\"jvm.gc.pause\",\"baseUnit\":\"seconds\",\"measurements\":[{\"statistic\":\"COUNT\",\"value\":3.0},{\"statistic\":\"TOTAL_TIME\",\"value\":0.021},{\"statistic\":\"MAX\",\"value\":0.0}],"
+                + "\"availableTags\":[{\"tag\":\"gc\",\"values\":[\"G1 Young Generation\"]},{\"tag\":\"action\",\"values\":[\"end of minor GC\"]}]}");
+        bodies.put("/actuator/metrics/jvm.memory.max?tag=area:heap", "{\"name\":\"jvm.memory.max\",\"measurements\":[{\"statistic\":\"VALUE\",\"value\":5.36870910E8}],"
+                + "\"availableTags\":[{\"tag\":\"id\",\"values\":[\"G1 Eden Space\",\"G1 Old Gen\",\"G1 Survivor Space\"]}]}");
+        bodies.put("/actuator/metrics/jvm.memory.max?tag=area:heap&tag=id:G1 Old Gen", "{\"name\":\"jvm.memory.max\",\"measurements\":[{\"statistic\":\"VALUE\",\"value\":5.36870912E8}],\"availableTags\":[]}");
+        bodies.put("/actuator/metrics/jvm.memory.max?tag=area:heap&tag=id:G1 Eden Space", "{\"name\":\"jvm.memory.max\",\"measurements\":[{\"statistic\":\"VALUE\",\"value\":-1.0}],\"availableTags\":[]}");
 
-        final Response response = new Response.Builder()
-                .request(new Request.Builder().url("http://localhost:8080/actuator/env").build())
-                .protocol(Protocol.HTTP_1_1)
-                .code(200).body(body)
-                .build();
+        when(okHttpClient.newCall(any())).thenAnswer(invocation -> {
+            Request request = invocation.getArgument(0);
+            HttpUrl url = request.httpUrl();
+            String body = url.query() == null ? bodies.get(url.encodedPath()) : bodies.get(url.encodedPath() + "?" + url.query());
+            Call call = mock(Call.class);
+            when(call.execute()).thenReturn(body == null
+                    ? createResponse(request, 404, "Not Found", "")
+                    : createResponse(request, 200, "OK", body));
+            return call;
+        });
+
+        return okHttpClient;
+    }
 
-        final Response response2 = new Response.Builder()
-                .request(new Request.Builder().url("http://localhost:8080/actuator/info").build())
+    private static Response createResponse(Request request, int code, String message, String body) {
+        return new Response.Builder()
+                .request(request)
                 .protocol(Protocol.HTTP_1_1)
-                .code(200).body(ResponseBody.create(jsonMediaType, "{\"build\":{\"artifact\":\"afterburner-java\",\"name\":\"afterburner-java\",\"time\":\"2023-02-21T08:23:20.867Z\",\"version\":\"2.2.0-SNAPSHOT\",\"group\":\"io.perfana\"}}"))
+                .code(code).message(message).body(ResponseBody.create(MediaType.parse("application/json"), body))
                 .build();
-
-        when(okHttpClient.newCall(any())).thenReturn(remoteCall);
-        when(remoteCall.execute()).thenReturn(response).thenReturn(response2);
-
-        return okHttpClient;
     }
 
     public static String loadFileFromTestResources(String resource) throws IOException {
@@ -19,10 +19,17 @@ import com.squareup.okhttp.*;
 import io.perfana.events.springboot.TestUtil;
 import io.perfana.eventscheduler.log.EventLoggerStdOut;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -53,6 +60,38 @@ class ActuatorClientTest {
 
     }
 
+    @Test
+    void threadRequestCountOnlyCountsCallingThread() throws Exception {
+
+        final OkHttpClient okHttpClient = TestUtil.createOkHttpClientMock200();
+
+        ActuatorClient actuatorClient = new ActuatorClient("http://localhost:8080/actuator", okHttpClient, EventLoggerStdOut.INSTANCE);
+
+        assertTrue(actuatorClient.metric("jvm.threads.live").isPresent());
+        Thread other = new Thread(() -> {
+            actuatorClient.metric("jvm.threads.live");
+            actuatorClient.metric("system.cpu.count");
+        });
+        other.start();
+        other.join();
+
+        assertEquals(3, actuatorClient.getRequestCount());
+        assertEquals(1, actuatorClient.getThreadRequestCount());
+
+    }
+
+    @Test
+    void registeredMetricTellsNotRegisteredApart() throws Exception {
+
+        final OkHttpClient okHttpClient = TestUtil.createOkHttpClientMock200();
+
+        ActuatorClient actuatorClient = new ActuatorClient("http://localhost:8080/actuator", okHttpClient, EventLoggerStdOut.INSTANCE);
+
+        assertTrue(actuatorClient.registeredMetric("jvm.gc.pause").isPresent());
+        assertFalse(actuatorClient.registeredMetric("jvm.gc.overhead").isPresent());
+
+    }
+
     @Test
     void testRetryNon200() throws IOException {
 
@@ -89,4 +128,55 @@ class ActuatorClientTest {
 
     }
 
+    @Test
+    void heapdumpWritesFileAndManifest(@TempDir Path tempDir) throws IOException {
+        byte[] dump = "JAVA PROFILE 1.0.2 not really".getBytes(StandardCharsets.UTF_8);
+        final OkHttpClient okHttpClient = mock(OkHttpClient.class);
+        final Call remoteCall = mock(Call.class);
+        final Response response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost:8080/actuator/heapdump").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200).body(ResponseBody.create(MediaType.parse("application/octet-stream"), dump))
+                .build();
+        when(okHttpClient.newCall(any())).thenReturn(remoteCall);
+        when(remoteCall.execute()).thenReturn(response);
+
+        ActuatorClient actuatorClient = new ActuatorClient("http://localhost:8080/actuator", okHttpClient, EventLoggerStdOut.INSTANCE);
+        Optional<DumpManifest> manifest = actuatorClient.heapdump(tempDir.toFile(), "test");
+
+        assertTrue(manifest.isPresent());
+        File dumpFile = new File(tempDir.toFile(), manifest.get().file);
+        assertArrayEquals(dump, Files.readAllBytes(dumpFile.toPath()));
+        assertTrue(new File(dumpFile.getPath() + ".manifest.json").exists());
+        assertFalse(new File(dumpFile.getPath() + ".part").exists());
+
+        CRC32C crc = new CRC32C();
+        crc.update(dump);
+        assertEquals(String.format("%08x", crc.getValue()), manifest.get().checksum);
+        assertEquals(dump.length, manifest.get().sizeBytes);
+    }
+
+    @Test
+    void heapdumpErrorStatusLeavesNoFile(@TempDir Path tempDir) throws IOException {
+        final OkHttpClient okHttpClient = TestUtil.createOkHttpClientMock503();
+
+        ActuatorClient actuatorClient = new ActuatorClient("http://localhost:8080/actuator", okHttpClient, EventLoggerStdOut.INSTANCE);
+
+        assertFalse(actuatorClient.heapdump(tempDir.toFile(), "test").isPresent());
+        assertEquals(0, tempDir.toFile().list().length);
+    }
+
+    @Test
+    void heapdumpRuntimeExceptionLeavesNoFile(@TempDir Path tempDir) throws IOException {
+        final OkHttpClient okHttpClient = mock(OkHttpClient.class);
+        final Call remoteCall = mock(Call.class);
+        when(okHttpClient.newCall(any())).thenReturn(remoteCall);
+        when(remoteCall.execute()).thenThrow(new IllegalStateException("connection pool shut down"));
+
+        ActuatorClient actuatorClient = new ActuatorClient("http://localhost:8080/actuator", okHttpClient, EventLoggerStdOut.INSTANCE);
+
+        assertFalse(actuatorClient.heapdump(tempDir.toFile(), "test").isPresent());
+        assertEquals(0, tempDir.toFile().list().length);
+    }
+
 }
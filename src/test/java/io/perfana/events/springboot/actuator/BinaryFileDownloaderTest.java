@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import com.squareup.okhttp.OkHttpClient;
+import io.perfana.events.springboot.standin.ActuatorStandInServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFileDownloaderTest {
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMillis(500);
+    private static final OkHttpClient CLIENT = OkHttpClientFactory.instance(TimeoutProfile.streaming(Duration.ofSeconds(5), IDLE_TIMEOUT));
+
+    @Test
+    void slowFirstByteWithinTimeToFirstByte() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()
+                .heapDumpSize(1024 * 1024)
+                .latency(Duration.ofMillis(1500))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryFileDownloader downloader = new BinaryFileDownloader(CLIENT, new BinaryFileWriter(out), IDLE_TIMEOUT);
+
+            // the wait for the headers is longer than the idle timeout, but within the time to first byte
+            long bytes = downloader.download(standIn.actuatorUrl() + "/heapdump", Collections.emptyMap());
+
+            assertEquals(standIn.heapDumpLength(), bytes);
+            assertEquals(standIn.heapDumpLength(), out.size());
+        }
+    }
+
+    @Test
+    void stalledBodyAbortsWithinIdleTimeout() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()
+                .heapDumpSize(4 * 1024 * 1024)
+                .stallHeapDumpAt(1024 * 1024, Duration.ofSeconds(5))) {
+            BinaryFileDownloader downloader = new BinaryFileDownloader(CLIENT, new BinaryFileWriter(new ByteArrayOutputStream()), IDLE_TIMEOUT);
+
+            long start = System.nanoTime();
+            assertThrows(IOException.class, () -> downloader.download(standIn.actuatorUrl() + "/heapdump", Collections.emptyMap()));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(millis < 2500, "aborted after " + millis + " ms, the stall takes 5000 ms");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics as the actuator metrics endpoint returns them, for tests.
+ */
+public final class MetricFixtures {
+
+    private MetricFixtures() {
+    }
+
+    public static Measurement measurement(String statistic, double value) {
+        Measurement measurement = new Measurement();
+        measurement.statistic = statistic;
+        measurement.value = value;
+        return measurement;
+    }
+
+    public static Metric metric(Measurement... measurements) {
+        Metric metric = new Metric();
+        metric.measurements = List.of(measurements);
+        return metric;
+    }
+
+    public static Metric metric(String baseUnit, Measurement... measurements) {
+        Metric metric = metric(measurements);
+        metric.baseUnit = baseUnit;
+        return metric;
+    }
+
+    public static Optional<Metric> gauge(double value) {
+        return Optional.of(metric(measurement("VALUE", value)));
+    }
+
+    public static Optional<Metric> counter(double value) {
+        return Optional.of(metric(measurement("COUNT", value)));
+    }
+
+    public static Optional<Metric> timer(String baseUnit, double totalTime) {
+        return Optional.of(metric(baseUnit, measurement("TOTAL_TIME", totalTime)));
+    }
+
+    public static Optional<Metric> timer(String baseUnit, double count, double totalTime, double max) {
+        return Optional.of(metric(baseUnit, measurement("COUNT", count), measurement("TOTAL_TIME", totalTime), measurement("MAX", max)));
+    }
+
+    /**
+     * @return answer with the values one by one, the last one repeated
+     */
+    public static Answer<Optional<Metric>> sequence(List<Optional<Metric>> values) {
+        AtomicInteger next = new AtomicInteger();
+        return invocation -> values.get(Math.min(next.getAndIncrement(), values.size() - 1));
+    }
+}
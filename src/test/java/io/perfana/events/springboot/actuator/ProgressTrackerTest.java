@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.actuator;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressTrackerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void rateAndEta() {
+        DownloadProgress progress = new DownloadProgress("heapdump", 25 * MB, 100 * MB, Duration.ofSeconds(5), false);
+
+        assertEquals(25.0, progress.getPercentage(), 0.001);
+        assertEquals(5.0, progress.getMegaBytesPerSecond(), 0.001);
+        assertEquals(Duration.ofSeconds(15), progress.getEta());
+        assertEquals("heapdump: 25.0 MB of 100.0 MB (25%), 5.0 MB/s, ETA 15s", progress.toString());
+
+        DownloadProgress started = new DownloadProgress("heapdump", 0, 100 * MB, Duration.ZERO, false);
+        assertEquals(0.0, started.getMegaBytesPerSecond());
+        assertNull(started.getEta());
+    }
+
+    @Test
+    void unknownContentLength() {
+        DownloadProgress progress = new DownloadProgress("threaddump", 10 * MB, -1, Duration.ofSeconds(2), false);
+
+        assertEquals(-1, progress.getPercentage());
+        assertNull(progress.getEta());
+        assertEquals(5.0, progress.getMegaBytesPerSecond(), 0.001);
+        assertEquals("threaddump: 10.0 MB, 5.0 MB/s", progress.toString());
+
+        DownloadProgress done = new DownloadProgress("threaddump", 10 * MB, -1, Duration.ofMillis(2500), true);
+        assertEquals("threaddump: 10.0 MB, 4.0 MB/s, done in 2500 ms", done.toString());
+    }
+
+    @Test
+    void reportsAtMostOncePerInterval() {
+        AtomicLong now = new AtomicLong(0);
+        List<DownloadProgress> reports = new ArrayList<>();
+        ProgressTracker tracker = new ProgressTracker("heapdump", 100 * MB, Duration.ofSeconds(1), reports::add, now::get);
+
+        now.set(Duration.ofMillis(500).toNanos());
+        tracker.update(10 * MB);
+        assertTrue(reports.isEmpty(), "within first interval");
+
+        now.set(Duration.ofMillis(1000).toNanos());
+        tracker.update(20 * MB);
+        now.set(Duration.ofMillis(1900).toNanos());
+        tracker.update(38 * MB);
+        assertEquals(1, reports.size(), "one report per interval");
+        assertEquals(20 * MB, reports.get(0).getBytes());
+        assertEquals(Duration.ofSeconds(1), reports.get(0).getElapsed());
+        assertFalse(reports.get(0).isDone());
+
+        now.set(Duration.ofMillis(2000).toNanos());
+        tracker.update(40 * MB);
+        assertEquals(2, reports.size(), "interval counts from previous report");
+
+        now.set(Duration.ofMillis(2100).toNanos());
+        tracker.finish(100 * MB);
+        assertEquals(3, reports.size(), "finish always reports");
+        DownloadProgress last = reports.get(2);
+        assertTrue(last.isDone());
+        assertEquals(Duration.ofMillis(2100), last.getElapsed());
+    }
+
+    @Test
+    void zeroIntervalOnlyReportsFinish() {
+        AtomicLong now = new AtomicLong(0);
+        List<DownloadProgress> reports = new ArrayList<>();
+        ProgressTracker tracker = new ProgressTracker("heapdump", -1, Duration.ZERO, reports::add, now::get);
+
+        now.set(Duration.ofSeconds(10).toNanos());
+        tracker.update(10 * MB);
+        assertTrue(reports.isEmpty());
+
+        tracker.finish(10 * MB);
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).isDone());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static io.perfana.events.springboot.TestUtil.createOkHttpClientMock200;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectorBatchTest {
+
+    @Test
+    void collectAllEndpoints() throws IOException {
+        ActuatorClient client = new ActuatorClient("http://localhost:8080/actuator", createOkHttpClientMock200(), EventLoggerStdOut.INSTANCE);
+
+        List<EndpointCollector> collectors = List.of(
+                new EnvCollector(List.of("afterburner.remote.call.httpclient.connections.max")),
+                new InfoCollector(EventLoggerStdOut.INSTANCE),
+                new BeanCountCollector("beans"),
+                new ConfigPropsCollector(List.of("server.tomcat")),
+                new MetricBaselineCollector("jvm.threads.live"));
+
+        Map<String, String> values = toMap(new CollectorBatch(collectors, Duration.ofSeconds(10), EventLoggerStdOut.INSTANCE).collect(client));
+
+        assertEquals("2.2.0-SNAPSHOT", values.get("version"));
+        assertEquals("2", values.get("beans.count"));
+        assertEquals("42", values.get("metrics.jvm.threads.live.value"));
+        assertEquals("3", values.get("configprops.count"));
+        assertFalse(values.containsKey("metrics.jvm.memory.used.value"), "metric not available, no value expected");
+        assertTrue(values.keySet().stream().anyMatch(k -> k.endsWith("afterburner.remote.call.httpclient.connections.max")));
+    }
+
+    @Test
+    void slowCollectorIsSkippedAtDeadline() {
+        EndpointCollector slow = new TestCollector("slow", 10_000);
+        EndpointCollector fast1 = new TestCollector("fast1", 0);
+        EndpointCollector fast2 = new TestCollector("fast2", 0);
+
+        long start = System.nanoTime();
+        List<Variable> variables = new CollectorBatch(List.of(fast1, slow, fast2), Duration.ofMillis(500), EventLoggerStdOut.INSTANCE)
+                .collect(null);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(millis < 5_000, "deadline not honoured: " + millis);
+        assertEquals(List.of("fast1", "fast2"), variables.stream().map(Variable::getName).collect(Collectors.toList()));
+    }
+
+    private static Map<String, String> toMap(List<Variable> variables) {
+        return variables.stream().collect(Collectors.toMap(Variable::getName, Variable::getValue));
+    }
+
+    private static class TestCollector implements EndpointCollector {
+        private final String name;
+        private final long sleepMillis;
+
+        TestCollector(String name, long sleepMillis) {
+            this.name = name;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public List<Variable> collect(ActuatorClient client) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Variable(name, "done"));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static io.perfana.events.springboot.TestUtil.createOkHttpClientMock200;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigPropsCollectorTest {
+
+    @Test
+    void collectPrefixes() throws IOException {
+        ActuatorClient client = new ActuatorClient("http://localhost:8080/actuator", createOkHttpClientMock200(), EventLoggerStdOut.INSTANCE);
+
+        List<Variable> variables = new ConfigPropsCollector(List.of("spring.datasource.hikari", "server.tomcat", "spring.task.execution"))
+                .collect(client);
+        Map<String, String> values = variables.stream().collect(Collectors.toMap(Variable::getName, Variable::getValue));
+
+        assertEquals("3", values.get("configprops.count"));
+        assertEquals("10", values.get("configprops.spring.datasource.hikari.maximumPoolSize"));
+        assertEquals("30000", values.get("configprops.spring.datasource.hikari.connectionTimeout"));
+        assertEquals("true", values.get("configprops.spring.datasource.hikari.autoCommit"));
+        assertEquals("200", values.get("configprops.server.tomcat.threads.max"));
+        assertEquals("8192", values.get("configprops.server.tomcat.maxConnections"));
+        assertEquals("b*.jar", values.get("configprops.server.tomcat.additionalTldSkipPatterns[1]"));
+
+        assertFalse(values.containsKey("configprops.spring.datasource.hikari.password"), "sanitized values are skipped");
+        assertFalse(values.containsKey("configprops.server.port"), "not in requested prefixes");
+        assertFalse(values.containsKey("configprops.spring.datasource.hikari.catalog"), "null values are skipped");
+        assertFalse(values.keySet().stream().anyMatch(k -> k.startsWith("configprops.management.")));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.collector;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static io.perfana.events.springboot.TestUtil.createOkHttpClientMock200;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmProfileCollectorTest {
+
+    @Test
+    void collectProfile() throws IOException {
+        ActuatorClient client = new ActuatorClient("http://localhost:8080/actuator", createOkHttpClientMock200(), EventLoggerStdOut.INSTANCE);
+
+        Map<String, String> profile = new JvmProfileCollector().collect(client).stream()
+                .collect(Collectors.toMap(Variable::getName, Variable::getValue));
+
+        assertEquals("G1", profile.get("jvm.gc.collector"));
+        assertEquals("G1 Young Generation", profile.get("jvm.gc.names"));
+        assertEquals("536870912", profile.get("jvm.heap.max.bytes"));
+        assertEquals("Xmx", profile.get("jvm.heap.max.source"));
+        assertEquals("256m", profile.get("jvm.heap.initial"));
+        assertEquals("2", profile.get("jvm.cpu.count"));
+        assertEquals("ActiveProcessorCount", profile.get("jvm.cpu.count.source"));
+        assertFalse(profile.containsKey("jvm.version"), "jvm.info not available");
+    }
+
+    @Test
+    void javaOptionsLaterOverridesEarlier() {
+        Map<String, String> options = JvmProfileCollector.javaOptions(List.of(
+                new Variable("systemEnvironment:JAVA_OPTS", "-Xmx2g -XX:-UseG1GC -XX:+UseZGC"),
+                new Variable("systemEnvironment:JAVA_TOOL_OPTIONS", "-Xmx1g -XX:+UseG1GC -XX:MaxRAMPercentage=75.0")));
+
+        assertEquals("2g", options.get("Xmx"));
+        assertEquals("false", options.get("UseG1GC"));
+        assertEquals("true", options.get("UseZGC"));
+        assertEquals("75.0", options.get("MaxRAMPercentage"));
+    }
+
+    @Test
+    void collectorFromGcNames() {
+        assertEquals("Parallel", JvmProfileCollector.collectorFromGcNames(List.of("PS MarkSweep", "PS Scavenge")));
+        assertEquals("ZGC", JvmProfileCollector.collectorFromGcNames(List.of("ZGC Cycles", "ZGC Pauses")));
+        assertEquals("Serial", JvmProfileCollector.collectorFromGcNames(List.of("Copy", "MarkSweepCompact")));
+        assertNull(JvmProfileCollector.collectorFromGcNames(List.of()));
+    }
+}
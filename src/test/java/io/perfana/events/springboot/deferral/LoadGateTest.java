@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.deferral;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.sampling.TestPhase;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoadGateTest {
+
+    private static final DeferralSettings SETTINGS = new DeferralSettings(true, 0.7, 100, Duration.ofSeconds(60), Duration.ofSeconds(5));
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicReference<TestPhase> phase = new AtomicReference<>(TestPhase.STEADY);
+
+    @Test
+    void deferUntilLoadDrops() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric(LoadGate.CPU_METRIC)).thenReturn(gauge(0.95)).thenReturn(gauge(0.9)).thenReturn(gauge(0.5));
+        // 200 and then 50 requests per second
+        when(client.metric(LoadGate.REQUESTS_METRIC)).thenReturn(counter(1000.0)).thenReturn(counter(2000.0)).thenReturn(counter(2250.0));
+
+        Deferral deferral = gate(client, SETTINGS).await();
+
+        assertEquals(Deferral.Reason.LOW_LOAD, deferral.getReason());
+        assertEquals(Duration.ofSeconds(10), deferral.getDelay());
+        assertTrue(deferral.isDeferred());
+        assertNull(deferral.getCapturedAt());
+        assertEquals(50.0, deferral.getRequestsPerSecond(), 0.001);
+        assertFalse(deferral.toKeyValues("").containsKey("capturedAt"), "not captured yet");
+        Instant capturedAt = deferral.getRequestedAt().plusSeconds(25);
+        Map<String, String> keyValues = deferral.capturedAt(capturedAt).toKeyValues("heapdump.1.");
+        assertEquals(capturedAt.toString(), keyValues.get("heapdump.1.capturedAt"));
+        assertEquals("10000", keyValues.get("heapdump.1.deferralMillis"));
+        assertEquals("low_load", keyValues.get("heapdump.1.deferralReason"));
+        assertEquals("0.500", keyValues.get("heapdump.1.cpuUsage"));
+    }
+
+    @Test
+    void maxDelayAndPhaseBoundary() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric(LoadGate.CPU_METRIC)).thenReturn(gauge(0.95));
+        when(client.metric(LoadGate.REQUESTS_METRIC)).thenReturn(Optional.empty());
+
+        Deferral deferral = gate(client, new DeferralSettings(true, 0.7, 0, Duration.ofSeconds(12), Duration.ofSeconds(5))).await();
+        assertEquals(Deferral.Reason.MAX_DELAY, deferral.getReason());
+        assertEquals(Duration.ofSeconds(12), deferral.getDelay());
+        verify(client, never()).metric(LoadGate.REQUESTS_METRIC);
+
+        LoadGate gate = new LoadGate(client, SETTINGS, phase::get, now::get, d -> {
+            now.addAndGet(d.toNanos());
+            phase.set(TestPhase.RAMPDOWN);
+        }, EventLoggerStdOut.INSTANCE);
+        deferral = gate.await();
+        assertEquals(Deferral.Reason.PHASE_BOUNDARY, deferral.getReason());
+        assertEquals(Duration.ofSeconds(5), deferral.getDelay());
+    }
+
+    @Test
+    void captureWithoutDelay() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric(anyString())).thenReturn(Optional.empty());
+
+        Deferral noMetrics = gate(client, SETTINGS).await();
+        assertEquals(Deferral.Reason.NO_LOAD_METRICS, noMetrics.getReason());
+        assertFalse(noMetrics.isDeferred(), "no wait, nothing to report");
+        Deferral disabled = gate(client, DeferralSettings.DISABLED).await();
+        assertEquals(Deferral.Reason.NOT_DEFERRED, disabled.getReason());
+        assertTrue(disabled.isCapture());
+        assertFalse(disabled.isDeferred());
+
+        LoadGate interrupted = new LoadGate(client, new DeferralSettings(true, 0.1, 0, Duration.ofSeconds(60), Duration.ofSeconds(5)),
+                phase::get, now::get, d -> { throw new InterruptedException(); }, EventLoggerStdOut.INSTANCE);
+        when(client.metric(LoadGate.CPU_METRIC)).thenReturn(gauge(0.95));
+        Deferral deferral = interrupted.await();
+        assertFalse(deferral.isCapture());
+        assertTrue(deferral.isDeferred());
+        assertTrue(Thread.interrupted());
+    }
+
+    private LoadGate gate(ActuatorClient client, DeferralSettings settings) {
+        return new LoadGate(client, settings, phase::get, now::get, d -> now.addAndGet(d.toNanos()), EventLoggerStdOut.INSTANCE);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.DownloadProgress;
+import io.perfana.eventscheduler.EventMessageBusSimple;
+import io.perfana.eventscheduler.api.message.EventMessage;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DumpProgressReporterTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final EventMessageBusSimple messageBus = new EventMessageBusSimple();
+    private final List<EventMessage> messages = new ArrayList<>();
+    private final DumpProgressReporter reporter = new DumpProgressReporter("test-plugin", messageBus, EventLoggerStdOut.INSTANCE);
+
+    DumpProgressReporterTest() {
+        messageBus.addReceiver(messages::add);
+    }
+
+    @Test
+    void knownContentLength() {
+        reporter.onProgress(new DownloadProgress("heapdump", 25 * MB, 100 * MB, Duration.ofSeconds(5), false));
+
+        assertEquals(1, messages.size());
+        EventMessage message = messages.get(0);
+        assertEquals("test-plugin", message.getPluginName());
+        assertEquals(DumpProgressReporter.PROGRESS_MESSAGE, message.getMessage());
+        Map<String, String> variables = message.getVariables();
+        assertEquals("heapdump", variables.get("file"));
+        assertEquals(String.valueOf(25 * MB), variables.get("bytes"));
+        assertEquals("5000", variables.get("elapsedMillis"));
+        assertEquals("5.00", variables.get("megaBytesPerSecond"));
+        assertEquals("false", variables.get("done"));
+        assertEquals(String.valueOf(100 * MB), variables.get("contentLength"));
+        assertEquals("25.0", variables.get("percentage"));
+        assertEquals("15000", variables.get("etaMillis"));
+    }
+
+    @Test
+    void unknownContentLengthAndDone() {
+        reporter.onProgress(new DownloadProgress("threaddump", 10 * MB, -1, Duration.ofSeconds(2), false));
+        reporter.onProgress(new DownloadProgress("heapdump", 100 * MB, 100 * MB, Duration.ofSeconds(20), true));
+
+        Map<String, String> unknown = messages.get(0).getVariables();
+        assertEquals("5.00", unknown.get("megaBytesPerSecond"));
+        assertFalse(unknown.containsKey("contentLength"));
+        assertFalse(unknown.containsKey("percentage"));
+        assertFalse(unknown.containsKey("etaMillis"));
+
+        Map<String, String> done = messages.get(1).getVariables();
+        assertEquals("true", done.get("done"));
+        assertEquals("100.0", done.get("percentage"));
+        assertFalse(done.containsKey("etaMillis"));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.eventscheduler.api.EventLogger;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DumpSingleFlightTest {
+
+    private static final String INSTANCE = "http://localhost:8080/actuator";
+
+    @Test
+    void coalesceOverlappingDumps() throws Exception {
+        DumpSingleFlight singleFlight = new DumpSingleFlight();
+        AtomicInteger dumps = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DumpManifest manifest = new DumpManifest();
+        manifest.file = "heapdump.hprof";
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<DumpManifest>> first = executor.submit(() -> singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.COALESCE, () -> {
+                dumps.incrementAndGet();
+                started.countDown();
+                await(release);
+                return Optional.of(manifest);
+            }, EventLoggerStdOut.INSTANCE));
+            started.await();
+            CountDownLatch coalesced = new CountDownLatch(1);
+            EventLogger coalesceLogger = new EventLoggerStdOut(false) {
+                @Override
+                public void info(String message) {
+                    super.info(message);
+                    if (message.startsWith("Coalesced")) {
+                        coalesced.countDown();
+                    }
+                }
+            };
+            Future<Optional<DumpManifest>> second = executor.submit(() -> singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.COALESCE, () -> {
+                dumps.incrementAndGet();
+                return Optional.empty();
+            }, coalesceLogger));
+
+            assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+            assertFalse(singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT, () -> {
+                dumps.incrementAndGet();
+                return Optional.of(new DumpManifest());
+            }, EventLoggerStdOut.INSTANCE).isPresent(), "first dump is still running");
+            release.countDown();
+
+            assertSame(manifest, first.get(5, TimeUnit.SECONDS).orElseThrow());
+            assertSame(manifest, second.get(5, TimeUnit.SECONDS).orElseThrow());
+            assertEquals(1, dumps.get());
+
+            assertTrue(singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT, () -> {
+                dumps.incrementAndGet();
+                return Optional.of(new DumpManifest());
+            }, EventLoggerStdOut.INSTANCE).isPresent(), "next dump runs after the first completed");
+            assertEquals(2, dumps.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failingDumpReleasesCoalescedRequest() throws Exception {
+        DumpSingleFlight singleFlight = new DumpSingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch coalesced = new CountDownLatch(1);
+        EventLogger coalesceLogger = new EventLoggerStdOut(false) {
+            @Override
+            public void info(String message) {
+                super.info(message);
+                if (message.startsWith("Coalesced")) {
+                    coalesced.countDown();
+                }
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<DumpManifest>> first = executor.submit(() -> singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.COALESCE, () -> {
+                started.countDown();
+                await(release);
+                throw new OutOfMemoryError("Java heap space");
+            }, EventLoggerStdOut.INSTANCE));
+            started.await();
+            Future<Optional<DumpManifest>> second = executor.submit(() -> singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.COALESCE,
+                    () -> Optional.of(new DumpManifest()), coalesceLogger));
+
+            assertTrue(coalesced.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, failure.getCause());
+            assertFalse(second.get(5, TimeUnit.SECONDS).isPresent());
+            assertTrue(singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT,
+                    () -> Optional.of(new DumpManifest()), EventLoggerStdOut.INSTANCE).isPresent(), "next dump runs after the failed dump");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectOverlappingDumpButAllowOtherType() throws Exception {
+        DumpSingleFlight singleFlight = new DumpSingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<DumpManifest>> first = executor.submit(() -> singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT, () -> {
+                started.countDown();
+                await(release);
+                return Optional.of(new DumpManifest());
+            }, EventLoggerStdOut.INSTANCE));
+            started.await();
+
+            assertFalse(singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT,
+                    () -> Optional.of(new DumpManifest()), EventLoggerStdOut.INSTANCE).isPresent());
+            assertTrue(singleFlight.execute(INSTANCE, "threaddump", OverlappingDumpPolicy.REJECT,
+                    () -> Optional.of(new DumpManifest()), EventLoggerStdOut.INSTANCE).isPresent());
+
+            release.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS).isPresent());
+            assertTrue(singleFlight.execute(INSTANCE, "heapdump", OverlappingDumpPolicy.REJECT,
+                    () -> Optional.of(new DumpManifest()), EventLoggerStdOut.INSTANCE).isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.event;
+
+import io.perfana.events.springboot.actuator.Metric;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeapDumpStatsTest {
+
+    @Test
+    void deltasInBaseUnit() {
+        Optional<Metric> before = timer("seconds", 10, 1.5, 0.2);
+        Optional<Metric> after = timer("seconds", 12, 2.25, 0.5);
+
+        Map<String, String> keyValues = new HeapDumpStats(true, 3000, before, after).toKeyValues("heapdump.1.");
+
+        assertEquals("true", keyValues.get("heapdump.1.live"));
+        assertEquals("3000", keyValues.get("heapdump.1.durationMillis"));
+        assertEquals("2.0", keyValues.get("heapdump.1.gcPauseCount"));
+        assertEquals("750.0", keyValues.get("heapdump.1.gcPauseTimeMillis"));
+        assertEquals("500.0", keyValues.get("heapdump.1.gcPauseRecentMaxMillis"));
+
+        Map<String, String> millis = new HeapDumpStats(null, 3000, timer("milliseconds", 10, 1500, 200), timer("milliseconds", 12, 2250, 500))
+                .toKeyValues("");
+        assertEquals("default", millis.get("live"));
+        assertEquals("750.0", millis.get("gcPauseTimeMillis"));
+        assertEquals("500.0", millis.get("gcPauseRecentMaxMillis"));
+    }
+
+    @Test
+    void missingSideOmitsDeltas() {
+        Map<String, String> noBefore = new HeapDumpStats(false, 3000, Optional.empty(), timer("seconds", 12, 2.25, 0.5)).toKeyValues("");
+        assertFalse(noBefore.containsKey("gcPauseCount"));
+        assertFalse(noBefore.containsKey("gcPauseTimeMillis"));
+        assertEquals("500.0", noBefore.get("gcPauseRecentMaxMillis"));
+
+        Map<String, String> noAfter = new HeapDumpStats(false, 3000, timer("seconds", 10, 1.5, 0.2), Optional.empty()).toKeyValues("");
+        assertEquals(2, noAfter.size(), "only live and durationMillis: " + noAfter);
+    }
+
+    @Test
+    void notRegisteredBeforeCountsAsNoPauses() {
+        Map<String, String> keyValues = new HeapDumpStats(true, 3000, Optional.of(HeapDumpStats.noGcPausesYet()), timer("seconds", 1, 0.75, 0.75))
+                .toKeyValues("");
+
+        assertEquals("1.0", keyValues.get("gcPauseCount"));
+        assertEquals("750.0", keyValues.get("gcPauseTimeMillis"));
+        assertEquals("750.0", keyValues.get("gcPauseRecentMaxMillis"));
+    }
+}
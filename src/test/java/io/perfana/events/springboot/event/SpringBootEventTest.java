@@ -15,6 +15,8 @@
  */
 package io.perfana.events.springboot.event;
 
+import com.sun.net.httpserver.HttpServer;
+import io.perfana.events.springboot.actuator.ThreadDumpFormat;
 import io.perfana.events.springboot.actuator.Variable;
 import io.perfana.eventscheduler.EventMessageBusSimple;
 import io.perfana.eventscheduler.api.CustomEvent;
@@ -22,18 +24,30 @@ import io.perfana.eventscheduler.api.config.TestConfig;
 import io.perfana.eventscheduler.api.message.EventMessageBus;
 import io.perfana.eventscheduler.log.EventLoggerStdOut;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static io.perfana.events.springboot.TestUtil.createOkHttpClientMock200;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SpringBootEventTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     void beforeTest() throws IOException {
         SpringBootEventConfig eventConfig = new SpringBootEventConfig();
@@ -78,6 +92,44 @@ class SpringBootEventTest {
         event.beforeTest();
     }
 
+    @Test
+    void exportBypassesReplay() throws IOException {
+        // empty recording: every actuator call gets a 404 from the replay
+        File archiveDir = tempDir.resolve("archive").toFile();
+        Files.createDirectories(archiveDir.toPath().resolve("bodies"));
+        Files.createFile(archiveDir.toPath().resolve("index.jsonl"));
+
+        List<String> batches = new CopyOnWriteArrayList<>();
+        HttpServer tsdb = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        tsdb.createContext("/write", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                batches.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        tsdb.start();
+        try {
+            SpringBootEventConfig eventConfig = new SpringBootEventConfig();
+            eventConfig.setEventFactory(SpringBootEventFactory.class.getSimpleName());
+            eventConfig.setName("exportEvent");
+            eventConfig.setActuatorBaseUrl("http://localhost:8080/actuator");
+            eventConfig.setDumpPath(tempDir.toString());
+            eventConfig.setActuatorReplayPath(archiveDir.getPath());
+            eventConfig.setTelemetryExportEnabled(true);
+            eventConfig.setTelemetryExportUrl("http://localhost:" + tsdb.getAddress().getPort() + "/write");
+
+            SpringBootEvent event = new SpringBootEvent(eventConfig.toContext(), TestConfig.builder().build().toContext(), new EventMessageBusSimple(), EventLoggerStdOut.INSTANCE);
+            event.beforeTest();
+            event.afterTest();
+        } finally {
+            tsdb.stop(0);
+        }
+
+        assertFalse(batches.isEmpty(), "export should reach the database, not the replay");
+        assertTrue(batches.get(0).contains("springboot_event,"), batches.get(0));
+    }
+
     @Test
     void parseSettingsZero() {
         Map<String, String> settings = SpringBootEvent.parseSettings("");
@@ -114,6 +166,22 @@ class SpringBootEventTest {
         assertEquals("bar", settings.get("foo"));
     }
 
+    @Test
+    void parseDumpOptions() {
+        DumpOptions options = DumpOptions.parse(SpringBootEvent.parseSettings("count=10;interval=PT1S;format=json;live=false;debug=true"));
+        assertEquals(10, options.getCount());
+        assertEquals(Duration.ofSeconds(1), options.getInterval());
+        assertEquals(ThreadDumpFormat.JSON, options.getFormat());
+        assertEquals(Boolean.FALSE, options.getLive());
+        assertFalse(options.isCompress());
+        assertEquals(Set.of("debug"), options.getUnknownKeys());
+
+        assertNull(DumpOptions.parse(SpringBootEvent.parseSettings("")).getLive());
+        assertThrows(IllegalArgumentException.class, () -> DumpOptions.parse(SpringBootEvent.parseSettings("count=0")));
+        assertThrows(IllegalArgumentException.class, () -> DumpOptions.parse(SpringBootEvent.parseSettings("interval=1s")));
+        assertThrows(IllegalArgumentException.class, () -> DumpOptions.parse(SpringBootEvent.parseSettings("compress=yes")));
+    }
+
     @Test
     void parseJvmArgsVariables() {
         List<Variable> variables = new ArrayList<>();
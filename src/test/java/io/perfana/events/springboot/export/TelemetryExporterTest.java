@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.journal.JournalEventType;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelemetryExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void renderFormats() {
+        ExportPoint point = new ExportPoint("http.server.requests", Map.of("uri", "/api/a b,c", "instance", "app:8080"),
+                Map.of("count", 42.0), 1_700_000_000_123L);
+        ExportPoint nan = new ExportPoint("jvm.gc.pause", Map.of("instance", "app:8080"), Map.of("max", Double.NaN), 1_700_000_001_000L);
+
+        assertEquals("http.server.requests,instance=app:8080,uri=/api/a\\ b\\,c count=42.0 1700000000123000000\n",
+                ExportFormat.INFLUX.render(List.of(point, nan)));
+
+        ExportPoint second = new ExportPoint("http.server.requests", Map.of("uri", "say \"hi\""), Map.of("count", 43.0), 1_700_000_002_000L);
+        assertEquals("# TYPE http_server_requests_count unknown\n" +
+                        "http_server_requests_count{instance=\"app:8080\",uri=\"/api/a b,c\"} 42.0 1700000000.123\n" +
+                        "http_server_requests_count{uri=\"say \\\"hi\\\"\"} 43.0 1700000002.000\n" +
+                        "# TYPE jvm_gc_pause_max unknown\n" +
+                        "jvm_gc_pause_max{instance=\"app:8080\"} NaN 1700000001.000\n" +
+                        "# EOF\n",
+                ExportFormat.OPENMETRICS.render(List.of(point, nan, second)));
+    }
+
+    @Test
+    void rotatingFilesWithSamplesAndEvents() throws IOException {
+        RotatingFileTarget target = new RotatingFileTarget(tempDir.toFile(), "telemetry", "lp", 1000, 100);
+        ExportSettings settings = new ExportSettings(true, ExportFormat.INFLUX, null, 10, Duration.ofSeconds(60), 1000, 1000, 100);
+        try (TelemetryExporter exporter = new TelemetryExporter(settings, target, EventLoggerStdOut.INSTANCE)) {
+            for (int i = 0; i < 95; i++) {
+                exporter.listener("app:8080").onMetric("jvm.threads.live", List.of("state:runnable"), metric(measurement("VALUE", i)));
+            }
+            exporter.journal("app:8080").record(JournalEventType.SAMPLE, "jvm.threads.live", "[]");
+            exporter.journal("app:8080").record(JournalEventType.DUMP_END, "heapdump", "bytes=1234 durationMillis=56 checksum=crc32c:abc");
+        }
+
+        List<File> files = target.getFiles();
+        assertTrue(files.size() > 1, "files: " + files);
+        StringBuilder all = new StringBuilder();
+        for (File file : files) {
+            all.append(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        String[] lines = all.toString().split("\n");
+        assertEquals(96, lines.length);
+        assertTrue(lines[0].startsWith("jvm.threads.live,instance=app:8080,state=runnable value=0.0 "), lines[0]);
+        assertTrue(lines[95].startsWith("springboot_event,instance=app:8080,name=heapdump,type=dump_end count=1.0,bytes=1234.0,durationMillis=56.0 "), lines[95]);
+    }
+
+    @Test
+    void rotatingFilesKeepNewestFiles() throws IOException {
+        RotatingFileTarget target = new RotatingFileTarget(tempDir.toFile(), "keep", "lp", 10, 2);
+        try (target) {
+            for (int i = 1; i <= 5; i++) {
+                target.write("batch " + i + " of at least ten bytes\n");
+            }
+        }
+
+        List<File> files = target.getFiles();
+        assertEquals(List.of("keep-4.lp", "keep-5.lp"), files.stream().map(File::getName).collect(Collectors.toList()));
+        assertFalse(tempDir.resolve("keep-3.lp").toFile().exists());
+        assertEquals("batch 5 of at least ten bytes\n", Files.readString(files.get(1).toPath()));
+    }
+
+    @Test
+    void openMetricsFilesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExportSettings(true, ExportFormat.OPENMETRICS, null, 10, Duration.ofSeconds(5), 1000, 1000, 1));
+        assertFalse(new ExportSettings(false, ExportFormat.OPENMETRICS, null, 10, Duration.ofSeconds(5), 1000, 1000, 1).isEnabled());
+    }
+
+    @Test
+    void pushToTsdbWithoutBlockingWhenBehind() throws Exception {
+        try (TsdbStandInServer tsdb = TsdbStandInServer.start()) {
+            ExportSettings settings = new ExportSettings(true, ExportFormat.OPENMETRICS, tsdb.writeUrl(), 100, Duration.ofMillis(100), 1000, 0, 1);
+            try (TelemetryExporter exporter = new TelemetryExporter(settings,
+                    new HttpPushTarget(OkHttpClientFactory.instance(), settings.getUrl(), settings.getFormat().getContentType()), EventLoggerStdOut.INSTANCE)) {
+                for (int i = 0; i < 250; i++) {
+                    exporter.listener("app:8080").onMetric("process.cpu.usage", List.of(), metric(measurement("VALUE", i)));
+                }
+                waitFor(() -> exporter.getExportedCount() == 250);
+                tsdb.setUnavailable(true);
+                exporter.listener("app:8080").onMetric("process.cpu.usage", List.of(), metric(measurement("VALUE", 1)));
+                waitFor(() -> exporter.getFailedBatchCount() == 1);
+            }
+            assertTrue(tsdb.batches().size() >= 3, "batches: " + tsdb.batches().size());
+            assertTrue(tsdb.batches().stream().allMatch(b -> b.startsWith("# TYPE process_cpu_usage_value unknown\n") && b.endsWith("# EOF\n")));
+            assertTrue(tsdb.contentTypes().get(0).startsWith("application/openmetrics-text"), tsdb.contentTypes().get(0));
+        }
+
+        // a stalled target: the queue fills up and points are dropped, offering never waits
+        CountDownLatch stalled = new CountDownLatch(1);
+        ExportTarget stalledTarget = new ExportTarget() {
+            @Override
+            public void write(String batch) throws IOException {
+                try {
+                    stalled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExportSettings small = new ExportSettings(true, ExportFormat.INFLUX, null, 10, Duration.ofMillis(10), 50, 0, 1);
+        try (TelemetryExporter exporter = new TelemetryExporter(small, stalledTarget, EventLoggerStdOut.INSTANCE)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 10_000; i++) {
+                exporter.listener("app:8080").onMetric("process.cpu.usage", List.of(), metric(measurement("VALUE", i)));
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertTrue(exporter.getDroppedCount() > 9_000, "dropped: " + exporter.getDroppedCount());
+            stalled.countDown();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+}
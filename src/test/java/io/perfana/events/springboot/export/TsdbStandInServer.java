@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.export;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Embedded stand-in for the write endpoint of a time series database: accepts posted batches with 204,
+ * or fails them with 503 while unavailable.
+ */
+class TsdbStandInServer implements AutoCloseable {
+
+    static final String WRITE_PATH = "/api/v2/write";
+
+    private final HttpServer server;
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+    private volatile boolean unavailable;
+
+    private TsdbStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(WRITE_PATH, this::handle);
+    }
+
+    static TsdbStandInServer start() throws IOException {
+        TsdbStandInServer standIn = new TsdbStandInServer();
+        standIn.server.start();
+        return standIn;
+    }
+
+    String writeUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + WRITE_PATH + "?bucket=perf";
+    }
+
+    void setUnavailable(boolean unavailable) {
+        this.unavailable = unavailable;
+    }
+
+    List<String> batches() {
+        return new ArrayList<>(batches);
+    }
+
+    List<String> contentTypes() {
+        return new ArrayList<>(contentTypes);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if (!"POST".equals(exchange.getRequestMethod()) || unavailable) {
+                exchange.sendResponseHeaders(unavailable ? 503 : 405, -1);
+                return;
+            }
+            batches.add(body);
+            contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.sendResponseHeaders(204, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.gc;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.sampling.TestPhase;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GcAnalyzerTest {
+
+    private static final double MB = 1024 * 1024;
+
+    @Test
+    void ratesAndGcTimePerPhase() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        AtomicLong nanos = new AtomicLong();
+        GcAnalyzer analyzer = new GcAnalyzer(client, Duration.ofSeconds(10), Duration.ofSeconds(20), nanos::get, EventLoggerStdOut.INSTANCE);
+
+        // samples every 5 seconds, steady state from 10 to 30 seconds: allocation 10 MB/s in rampup, up to 200 MB/s
+        // in steady state, promotion 1 MB/s, 0.25 s GC pause per 5 seconds (5%) from 10 to 30 seconds
+        double[] allocatedMb = { 0, 50, 100, 600, 1600, 2100, 2600, 2650 };
+        double[] pauseSeconds = { 0, 0, 0, 0.25, 0.5, 0.75, 1.0, 1.0 };
+        when(client.metric(GcAnalyzer.ALLOCATED_METRIC)).thenAnswer(sequence(counters(allocatedMb, MB)));
+        when(client.metric(GcAnalyzer.PAUSE_METRIC)).thenAnswer(sequence(timers(pauseSeconds)));
+        when(client.metric(GcAnalyzer.PROMOTED_METRIC)).thenAnswer(sequence(counters(new double[] { 0, 5, 10, 15, 20, 25, 30, 35 }, MB)));
+        when(client.metric(GcAnalyzer.LIVE_DATA_METRIC)).thenReturn(gauge(100 * MB));
+
+        for (int i = 0; i < allocatedMb.length; i++) {
+            analyzer.run();
+            nanos.addAndGet(5_000_000_000L);
+        }
+
+        List<GcSample> samples = analyzer.getSamples();
+        assertEquals(7, samples.size());
+        assertEquals(TestPhase.RAMPUP, samples.get(0).getPhase());
+        assertEquals(10 * MB, samples.get(0).getAllocationRate(), 1);
+        assertEquals(TestPhase.STEADY, samples.get(2).getPhase());
+        assertEquals(200 * MB, samples.get(3).getAllocationRate(), 1);
+        assertEquals(5.0, samples.get(3).getGcTimePercentage(), 0.001);
+        assertEquals(TestPhase.RAMPDOWN, samples.get(6).getPhase());
+
+        Map<String, String> keyValues = analyzer.toKeyValues("event.test.gc.");
+        assertEquals("10.0", keyValues.get("event.test.gc.rampup.allocationRateMBps.avg"));
+        assertEquals("102.5", keyValues.get("event.test.gc.steady.allocationRateMBps.avg"));
+        assertEquals("200.0", keyValues.get("event.test.gc.steady.allocationRateMBps.peak"));
+        assertEquals("1.0", keyValues.get("event.test.gc.steady.promotionRateMBps.avg"));
+        assertEquals("3.75", keyValues.get("event.test.gc.steady.gcTimePercentage.avg"));
+        assertEquals("5.00", keyValues.get("event.test.gc.rampdown.gcTimePercentage.peak"));
+        assertEquals("100.0", keyValues.get("event.test.gc.all.liveDataSizeMB.peak"));
+
+        StringWriter csv = new StringWriter();
+        analyzer.writeCsv(new PrintWriter(csv));
+        String[] lines = csv.toString().split("\\R");
+        assertEquals(8, lines.length);
+        assertEquals("20.000,STEADY,209715200,1048576,5.000,104857600", lines[4]);
+    }
+
+    @Test
+    void restartAndMissingMeters() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        AtomicLong nanos = new AtomicLong();
+        GcAnalyzer analyzer = new GcAnalyzer(client, Duration.ZERO, Duration.ofMinutes(1), nanos::get, EventLoggerStdOut.INSTANCE);
+        // no promoted meter, e.g. ZGC, no GC pauses yet
+        when(client.metric(GcAnalyzer.ALLOCATED_METRIC)).thenAnswer(sequence(List.of(counter(100 * MB), counter(200 * MB), counter(10 * MB), counter(20 * MB))));
+
+        for (int i = 0; i < 4; i++) {
+            analyzer.run();
+            nanos.addAndGet(1_000_000_000L);
+        }
+
+        List<GcSample> samples = analyzer.getSamples();
+        assertEquals(2, samples.size(), "interval of the restart is skipped");
+        assertEquals(10 * MB, samples.get(1).getAllocationRate(), 1);
+        assertTrue(Double.isNaN(samples.get(1).getPromotionRate()));
+        assertEquals(0.0, samples.get(1).getGcTimePercentage());
+
+        Map<String, String> keyValues = analyzer.toKeyValues("");
+        assertEquals("55.0", keyValues.get("steady.allocationRateMBps.avg"));
+        assertFalse(keyValues.containsKey("steady.promotionRateMBps.avg"));
+        assertFalse(keyValues.containsKey("rampup.allocationRateMBps.avg"));
+    }
+
+    @Test
+    void failedFetchSkipsDeltas() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        AtomicLong nanos = new AtomicLong();
+        GcAnalyzer analyzer = new GcAnalyzer(client, Duration.ZERO, Duration.ofMinutes(1), nanos::get, EventLoggerStdOut.INSTANCE);
+        // GC pauses from the start, the third fetch of each meter fails
+        when(client.metric(GcAnalyzer.PAUSE_METRIC)).thenAnswer(sequence(List.of(
+                timer("seconds", 10), timer("seconds", 10.1), Optional.empty(), timer("seconds", 10.3), timer("seconds", 10.4))));
+        when(client.metric(GcAnalyzer.ALLOCATED_METRIC)).thenAnswer(sequence(List.of(
+                counter(1000 * MB), counter(1010 * MB), Optional.empty(), counter(1030 * MB), counter(1040 * MB))));
+
+        for (int i = 0; i < 5; i++) {
+            analyzer.run();
+            nanos.addAndGet(1_000_000_000L);
+        }
+
+        List<GcSample> samples = analyzer.getSamples();
+        assertEquals(4, samples.size());
+        for (int i : new int[] { 0, 3 }) {
+            assertEquals(10.0, samples.get(i).getGcTimePercentage(), 0.001);
+            assertEquals(10 * MB, samples.get(i).getAllocationRate(), 1);
+        }
+        for (int i : new int[] { 1, 2 }) {
+            assertTrue(Double.isNaN(samples.get(i).getGcTimePercentage()), "no pause delta around the failed fetch");
+            assertTrue(Double.isNaN(samples.get(i).getAllocationRate()), "no allocation delta around the failed fetch");
+        }
+
+        Map<String, String> keyValues = analyzer.toKeyValues("");
+        assertEquals("10.00", keyValues.get("steady.gcTimePercentage.peak"));
+        assertEquals("10.0", keyValues.get("steady.allocationRateMBps.peak"));
+    }
+
+    @Test
+    void firstPauseCountsInItsInterval() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        AtomicLong nanos = new AtomicLong();
+        GcAnalyzer analyzer = new GcAnalyzer(client, Duration.ZERO, Duration.ofMinutes(1), nanos::get, EventLoggerStdOut.INSTANCE);
+        // jvm.gc.pause is registered at the first GC
+        when(client.metric(GcAnalyzer.PAUSE_METRIC)).thenAnswer(sequence(List.of(
+                Optional.empty(), Optional.empty(), timer("seconds", 0.2), timer("seconds", 0.3))));
+
+        for (int i = 0; i < 4; i++) {
+            analyzer.run();
+            nanos.addAndGet(1_000_000_000L);
+        }
+
+        List<GcSample> samples = analyzer.getSamples();
+        assertEquals(3, samples.size());
+        assertEquals(0.0, samples.get(0).getGcTimePercentage());
+        assertEquals(20.0, samples.get(1).getGcTimePercentage(), 0.001, "first pause is not dropped");
+        assertEquals(10.0, samples.get(2).getGcTimePercentage(), 0.001);
+    }
+
+    private static List<Optional<Metric>> counters(double[] values, double factor) {
+        List<Optional<Metric>> metrics = new ArrayList<>();
+        for (double value : values) {
+            metrics.add(counter(value * factor));
+        }
+        return metrics;
+    }
+
+    private static List<Optional<Metric>> timers(double[] values) {
+        List<Optional<Metric>> metrics = new ArrayList<>();
+        for (double value : values) {
+            metrics.add(timer("seconds", value));
+        }
+        return metrics;
+    }
+}
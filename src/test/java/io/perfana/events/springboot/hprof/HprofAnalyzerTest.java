@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HprofAnalyzerTest {
+
+    private static final long NODE_CLASS = 100;
+    private static final long CLASS_NAME = 1000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void dominatorsAndRetainedSizes() throws IOException {
+        File hprof = tempDir.resolve("diamond.hprof").toFile();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(hprof))) {
+            HprofTestWriter writer = new HprofTestWriter(out)
+                    .string(CLASS_NAME, "com/example/Node")
+                    .loadClass(1, NODE_CLASS, CLASS_NAME);
+            writer.segment(new HprofTestWriter.Segment()
+                    .classDump(NODE_CLASS, 0, 2)
+                    .stickyClassRoot(NODE_CLASS)
+                    .threadObjectRoot(1)
+                    .instance(1, NODE_CLASS, 2, 3)
+                    .instance(2, NODE_CLASS, 4, 0)
+                    .instance(3, NODE_CLASS, 4, 0));
+            writer.segment(new HprofTestWriter.Segment()
+                    .instance(4, NODE_CLASS, 5, 0)
+                    .byteArray(5, 100)
+                    .instance(6, NODE_CLASS, 4, 0));
+            writer.flush();
+        }
+
+        HeapIndex index = HeapIndex.build(hprof, new MappedArrays(tempDir.toFile()));
+        DominatorTree tree = DominatorTree.compute(index);
+
+        assertEquals(7, index.objectCount());
+        int a = nodeOf(index, 1);
+        int d = nodeOf(index, 4);
+        int bytes = nodeOf(index, 5);
+        int unreachable = nodeOf(index, 6);
+
+        assertEquals(index.rootNode(), tree.immediateDominator(a));
+        assertEquals(a, tree.immediateDominator(nodeOf(index, 2)));
+        assertEquals(a, tree.immediateDominator(d));
+        assertEquals(d, tree.immediateDominator(bytes));
+        assertFalse(tree.isReachable(unreachable));
+
+        assertEquals(32 + 120, tree.retainedSize(d));
+        assertEquals(4 * 32 + 120, tree.retainedSize(a));
+
+        List<Integer> path = tree.pathToGcRoot(bytes, 10);
+        assertEquals(bytes, path.get(0));
+        assertEquals(a, path.get(path.size() - 1));
+
+        assertEquals("com.example.Node", index.className(a));
+        assertEquals("byte[]", index.className(bytes));
+    }
+
+    @Test
+    void deepChainAndReport() throws IOException {
+        int length = 100_000;
+        File hprof = tempDir.resolve("chain.hprof").toFile();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(hprof))) {
+            HprofTestWriter writer = new HprofTestWriter(out)
+                    .string(CLASS_NAME, "com/example/Link")
+                    .loadClass(1, NODE_CLASS, CLASS_NAME);
+            writer.segment(new HprofTestWriter.Segment().classDump(NODE_CLASS, 0, 1).threadObjectRoot(1));
+            HprofTestWriter.Segment segment = new HprofTestWriter.Segment();
+            for (int i = 1; i <= length; i++) {
+                segment.instance(i, NODE_CLASS, i < length ? i + 1 : 0);
+                if (segment.size() > 64 * 1024) {
+                    writer.segment(segment);
+                    segment = new HprofTestWriter.Segment();
+                }
+            }
+            writer.segment(segment);
+            writer.flush();
+        }
+
+        File reportFile = new HprofAnalyzer(tempDir.toFile(), 5, 50.0).analyzeAndWrite(hprof);
+        String report = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+
+        LeakSuspectReport result = new HprofAnalyzer(tempDir.toFile(), 5, 50.0).analyze(hprof);
+        LeakSuspectReport.Entry head = result.getTopRetained().get(0);
+        assertEquals(1, head.getObjectId());
+        assertEquals(length * 24L, head.getRetainedSize());
+        assertTrue(head.isSuspect());
+        assertTrue(report.contains("Suspect 1: com.example.Link @ 0x1"), report);
+    }
+
+    private static int nodeOf(HeapIndex index, long objectId) {
+        for (int node = 0; node < index.objectCount(); node++) {
+            if (index.objectId(node) == objectId) {
+                return node;
+            }
+        }
+        throw new AssertionError("object not found: " + objectId);
+    }
+}
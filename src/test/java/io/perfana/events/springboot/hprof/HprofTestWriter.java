@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.hprof;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes minimal hprof files (8 byte identifiers) for tests.
+ */
+public class HprofTestWriter {
+
+    public static final int HEADER_SIZE = 18 + 1 + 4 + 8;
+    public static final int BYTE_ARRAY_SEGMENT_OVERHEAD = 9 + 1 + 8 + 4 + 4 + 1;
+
+    private final DataOutputStream out;
+
+    public HprofTestWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write("JAVA PROFILE 1.0.2".getBytes(StandardCharsets.US_ASCII));
+        this.out.writeByte(0);
+        this.out.writeInt(8);
+        this.out.writeLong(System.currentTimeMillis());
+    }
+
+    public HprofTestWriter string(long id, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        recordHeader(HeapIndex.TAG_STRING, 8 + bytes.length);
+        out.writeLong(id);
+        out.write(bytes);
+        return this;
+    }
+
+    public HprofTestWriter loadClass(int serial, long classId, long nameId) throws IOException {
+        recordHeader(HeapIndex.TAG_LOAD_CLASS, 4 + 8 + 4 + 8);
+        out.writeInt(serial);
+        out.writeLong(classId);
+        out.writeInt(0);
+        out.writeLong(nameId);
+        return this;
+    }
+
+    public HprofTestWriter segment(Segment segment) throws IOException {
+        byte[] bytes = segment.bytes.toByteArray();
+        recordHeader(HeapIndex.TAG_HEAP_DUMP_SEGMENT, bytes.length);
+        out.write(bytes);
+        return this;
+    }
+
+    /**
+     * Heap dump segment with one byte array, written directly without buffering the segment,
+     * to stream large synthetic dumps.
+     */
+    public HprofTestWriter byteArraySegment(long id, byte[] content) throws IOException {
+        recordHeader(HeapIndex.TAG_HEAP_DUMP_SEGMENT, BYTE_ARRAY_SEGMENT_OVERHEAD - 9 + content.length);
+        out.writeByte(HeapIndex.PRIMITIVE_ARRAY_DUMP);
+        out.writeLong(id);
+        out.writeInt(0);
+        out.writeInt(content.length);
+        out.writeByte(8);
+        out.write(content);
+        return this;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void recordHeader(int tag, int length) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(0);
+        out.writeInt(length);
+    }
+
+    public static class Segment {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        public Segment stickyClassRoot(long id) throws IOException {
+            out.writeByte(HeapIndex.ROOT_STICKY_CLASS);
+            out.writeLong(id);
+            return this;
+        }
+
+        public Segment threadObjectRoot(long id) throws IOException {
+            out.writeByte(HeapIndex.ROOT_THREAD_OBJECT);
+            out.writeLong(id);
+            out.writeInt(1);
+            out.writeInt(0);
+            return this;
+        }
+
+        /**
+         * Class with only object reference instance fields and one static int.
+         */
+        public Segment classDump(long classId, long superId, int referenceFieldCount) throws IOException {
+            out.writeByte(HeapIndex.CLASS_DUMP);
+            out.writeLong(classId);
+            out.writeInt(0);
+            out.writeLong(superId);
+            for (int i = 0; i < 5; i++) {
+                out.writeLong(0); // loader, signers, protection domain, reserved
+            }
+            out.writeInt(referenceFieldCount * 8);
+            out.writeShort(0);
+            out.writeShort(1);
+            out.writeLong(0);
+            out.writeByte(10);
+            out.writeInt(42);
+            out.writeShort(referenceFieldCount);
+            for (int i = 0; i < referenceFieldCount; i++) {
+                out.writeLong(0);
+                out.writeByte(HeapIndex.TYPE_OBJECT);
+            }
+            return this;
+        }
+
+        public Segment instance(long id, long classId, long... references) throws IOException {
+            out.writeByte(HeapIndex.INSTANCE_DUMP);
+            out.writeLong(id);
+            out.writeInt(0);
+            out.writeLong(classId);
+            out.writeInt(references.length * 8);
+            for (long reference : references) {
+                out.writeLong(reference);
+            }
+            return this;
+        }
+
+        public Segment objectArray(long id, long arrayClassId, long... elements) throws IOException {
+            out.writeByte(HeapIndex.OBJECT_ARRAY_DUMP);
+            out.writeLong(id);
+            out.writeInt(0);
+            out.writeInt(elements.length);
+            out.writeLong(arrayClassId);
+            for (long element : elements) {
+                out.writeLong(element);
+            }
+            return this;
+        }
+
+        public Segment byteArray(long id, int length) throws IOException {
+            out.writeByte(HeapIndex.PRIMITIVE_ARRAY_DUMP);
+            out.writeLong(id);
+            out.writeInt(0);
+            out.writeInt(length);
+            out.writeByte(8);
+            out.write(new byte[length]);
+            return this;
+        }
+
+        public int size() {
+            return bytes.size();
+        }
+    }
+}
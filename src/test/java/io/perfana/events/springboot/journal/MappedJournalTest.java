@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeAcrossRegionsAndRead() throws IOException {
+        File file = tempDir.resolve("test.pfj").toFile();
+        int count = 5_000;
+        try (MappedJournal journal = MappedJournal.create(file, 4096)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(JournalEventType.SAMPLE, "jvm.threads.live", "[VALUE=" + i + "]");
+            }
+            journal.record(JournalEventType.DUMP_END, "heapdump-1.hprof", "bytes=1024, with \"quotes\"");
+            // readable while still open
+            assertEquals(count + 1, JournalReader.readAll(file).size());
+        }
+
+        List<JournalRecord> records = JournalReader.readAll(file);
+        assertEquals(count + 1, records.size());
+        assertEquals("[VALUE=4999]", records.get(count - 1).getDetail());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i).getEpochNanos() >= records.get(i - 1).getEpochNanos(), "timestamps should not go back");
+        }
+
+        StringWriter csv = new StringWriter();
+        JournalExporter.writeCsv(records.subList(count, count + 1), csv);
+        assertTrue(csv.toString().endsWith(",DUMP_END,heapdump-1.hprof,\"bytes=1024, with \"\"quotes\"\"\"\n"), csv.toString());
+
+        StringWriter json = new StringWriter();
+        JournalExporter.writeJson(records.subList(0, 1), json);
+        assertTrue(json.toString().contains("\"type\": \"SAMPLE\""), json.toString());
+    }
+
+    @Test
+    void rotateAtMaxFileSizeAndKeepNewestFiles() throws IOException {
+        File file = tempDir.resolve("rotate.pfj").toFile();
+        int count = 1_000;
+        List<File> files;
+        try (MappedJournal journal = MappedJournal.create(file, 1024, 8192, 2)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(JournalEventType.SAMPLE, "jvm.threads.live", "[VALUE=" + i + "]");
+            }
+            files = journal.getFiles();
+            assertEquals(2, files.size());
+            assertEquals(files.get(1), journal.getFile());
+        }
+
+        assertFalse(file.exists(), "oldest file is deleted");
+        List<JournalRecord> records = new ArrayList<>();
+        for (File kept : files) {
+            assertTrue(kept.getName().matches("rotate\\.\\d+\\.pfj"), kept.getName());
+            assertTrue(kept.length() <= 8192, kept + " is " + kept.length() + " bytes");
+            records.addAll(JournalReader.readAll(kept));
+        }
+        assertEquals(records.size(), JournalReader.readSequence(file).size(), "reads the kept files without the first");
+        assertTrue(records.size() > 100 && records.size() < count, "records: " + records.size());
+        int first = count - records.size();
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("[VALUE=" + (first + i) + "]", records.get(i).getDetail());
+        }
+    }
+
+    @Test
+    void readSequenceAcrossRotation() throws IOException {
+        File file = tempDir.resolve("sequence.pfj").toFile();
+        int count = 500;
+        List<File> files;
+        try (MappedJournal journal = MappedJournal.create(file, 1024, 8192, 10)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(JournalEventType.SAMPLE, "jvm.threads.live", "[VALUE=" + i + "]");
+            }
+            files = journal.getFiles();
+        }
+        assertTrue(files.size() > 2, "files: " + files);
+        assertEquals(files, JournalReader.sequence(file));
+
+        for (File start : List.of(file, files.get(files.size() - 1))) {
+            List<JournalRecord> records = JournalReader.readSequence(start);
+            assertEquals(count, records.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("[VALUE=" + i + "]", records.get(i).getDetail());
+            }
+        }
+    }
+
+    @Test
+    void readStopsAtCorruptRecord() throws IOException {
+        File file = tempDir.resolve("corrupt.pfj").toFile();
+        try (MappedJournal journal = MappedJournal.create(file, 4096)) {
+            journal.record(JournalEventType.TRIGGER, "latency-spike", "first");
+            journal.record(JournalEventType.TRIGGER, "latency-spike", "second");
+        }
+        // flip a byte in the detail of the second record, as in a torn write
+        int firstRecordSize = 4 + 8 + 1 + 2 + "latency-spike".length() + 2 + "first".length() + 4;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = MappedJournal.HEADER_SIZE + firstRecordSize + 20;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+
+        List<JournalRecord> records = JournalReader.readAll(file);
+        assertEquals(1, records.size());
+        assertEquals("first", records.get(0).getDetail());
+    }
+}
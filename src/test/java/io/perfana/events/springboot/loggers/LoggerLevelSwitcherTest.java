@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.loggers;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.event.SpringBootEvent;
+import io.perfana.events.springboot.event.SpringBootEventConfig;
+import io.perfana.events.springboot.event.SpringBootEventFactory;
+import io.perfana.events.springboot.standin.ActuatorStandInServer;
+import io.perfana.eventscheduler.EventMessageBusSimple;
+import io.perfana.eventscheduler.api.CustomEvent;
+import io.perfana.eventscheduler.api.config.TestConfig;
+import io.perfana.eventscheduler.api.message.EventMessage;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoggerLevelSwitcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void switchAndRestore() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+            LoggerLevelSwitcher switcher = new LoggerLevelSwitcher(client, EventLoggerStdOut.INSTANCE);
+
+            Map<String, String> levels = new LinkedHashMap<>();
+            levels.put("com.example", "debug");
+            levels.put("ROOT", "WARN");
+            assertEquals(Map.of("com.example", "DEBUG", "ROOT", "WARN"), switcher.apply(levels));
+            assertEquals("DEBUG", standIn.loggerLevel("com.example"));
+            assertEquals("WARN", standIn.loggerLevel("ROOT"));
+
+            // the original level is kept from the first switch
+            switcher.apply(Map.of("com.example", "TRACE"));
+            assertEquals("TRACE", standIn.loggerLevel("com.example"));
+            assertEquals(Map.of("com.example", LoggerLevelSwitcher.INHERIT, "ROOT", "INFO"), switcher.restore());
+            assertNull(standIn.loggerLevel("com.example"));
+            assertEquals("INFO", standIn.loggerLevel("ROOT"));
+            assertTrue(switcher.getOriginals().isEmpty());
+
+            assertThrows(IllegalArgumentException.class, () -> switcher.apply(Map.of("com.example", "LOUD")));
+            assertNull(standIn.loggerLevel("com.example"));
+        }
+    }
+
+    @Test
+    void unreadableLoggerIsNotSwitched() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            standIn.failNext("loggers", 404, 1);
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+            LoggerLevelSwitcher switcher = new LoggerLevelSwitcher(client, EventLoggerStdOut.INSTANCE);
+
+            assertTrue(switcher.apply(Map.of("com.example", "DEBUG")).isEmpty());
+            assertNull(standIn.loggerLevel("com.example"));
+            assertEquals(1, standIn.requestCount("loggers"));
+        }
+    }
+
+    @Test
+    void loglevelEventsRestoredAfterTest() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            SpringBootEventConfig eventConfig = new SpringBootEventConfig();
+            eventConfig.setEventFactory(SpringBootEventFactory.class.getSimpleName());
+            eventConfig.setName("standIn");
+            eventConfig.setEnabled(true);
+            eventConfig.setActuatorBaseUrl(standIn.actuatorUrl());
+            eventConfig.setDumpPath(tempDir.toString());
+
+            EventMessageBusSimple messageBus = new EventMessageBusSimple();
+            List<EventMessage> messages = new ArrayList<>();
+            messageBus.addReceiver(messages::add);
+            SpringBootEvent event = new SpringBootEvent(eventConfig.toContext(), TestConfig.builder().build().toContext(),
+                    messageBus, EventLoggerStdOut.INSTANCE);
+            event.beforeTest();
+            event.customEvent(CustomEvent.createFromLine("PT1M|loglevel|com.example=DEBUG;org.hibernate.SQL=TRACE"));
+            assertEquals("DEBUG", standIn.loggerLevel("com.example"));
+            assertEquals("TRACE", standIn.loggerLevel("org.hibernate.SQL"));
+            event.customEvent(CustomEvent.createFromLine("PT2M|loglevel|restore"));
+            assertNull(standIn.loggerLevel("com.example"));
+            event.customEvent(CustomEvent.createFromLine("PT3M|loglevel|ROOT=ERROR"));
+            assertEquals("ERROR", standIn.loggerLevel("ROOT"));
+            event.afterTest();
+
+            assertEquals("INFO", standIn.loggerLevel("ROOT"));
+            assertTrue(messages.stream().anyMatch(m -> "loglevel".equals(m.getMessage()) && "TRACE".equals(m.getVariables().get("org.hibernate.SQL"))));
+        }
+    }
+}
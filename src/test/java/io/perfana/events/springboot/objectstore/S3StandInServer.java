@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.objectstore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in for an S3-compatible object store such as MinIO, with the calls of {@link S3Client}:
+ * put object, and initiate, upload part, complete and abort multipart upload. Every request signature
+ * is verified. Tracks the max number of concurrent part uploads, parts can be slowed down or failed.
+ */
+class S3StandInServer implements AutoCloseable {
+
+    static final String ACCESS_KEY = "minio";
+    static final String SECRET_KEY = "minio-secret";
+    static final String REGION = "us-east-1";
+
+    private static final Pattern AUTHORIZATION = Pattern.compile(
+            "AWS4-HMAC-SHA256 Credential=([^/]+)/[^,]+, SignedHeaders=([^,]+), Signature=([0-9a-f]+)");
+    private static final Pattern PART = Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>([^<]+)</ETag>");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SigV4Signer signer = new SigV4Signer(ACCESS_KEY, SECRET_KEY, REGION);
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Set<String> abortedUploads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    private final AtomicInteger concurrentParts = new AtomicInteger();
+    private final AtomicInteger maxConcurrentParts = new AtomicInteger();
+    private final AtomicInteger partRequests = new AtomicInteger();
+
+    private volatile Duration partLatency = Duration.ZERO;
+    private volatile int failPartNumber = -1;
+    private final AtomicInteger failPartTimes = new AtomicInteger();
+
+    private S3StandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "s3-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    static S3StandInServer start() throws IOException {
+        S3StandInServer standIn = new S3StandInServer();
+        standIn.server.start();
+        return standIn;
+    }
+
+    String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    S3StandInServer partLatency(Duration latency) {
+        this.partLatency = latency;
+        return this;
+    }
+
+    /**
+     * Respond with a 500 to every upload of this part number.
+     */
+    S3StandInServer failPart(int partNumber) {
+        return failPart(partNumber, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Respond with a 500 to the first uploads of this part number.
+     */
+    S3StandInServer failPart(int partNumber, int times) {
+        this.failPartNumber = partNumber;
+        this.failPartTimes.set(times);
+        return this;
+    }
+
+    /**
+     * @param path bucket and key, e.g. "bucket/dumps/heapdump.hprof"
+     */
+    byte[] object(String path) {
+        return objects.get(path);
+    }
+
+    Set<String> objectPaths() {
+        return Collections.unmodifiableSet(objects.keySet());
+    }
+
+    int maxConcurrentParts() {
+        return maxConcurrentParts.get();
+    }
+
+    int partRequests() {
+        return partRequests.get();
+    }
+
+    int abortedUploads() {
+        return abortedUploads.size();
+    }
+
+    int openUploads() {
+        return uploads.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(1), StandardCharsets.UTF_8);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            String signatureError = verifySignature(exchange, query, body);
+            if (signatureError != null) {
+                send(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code><Message>" + signatureError + "</Message></Error>");
+                return;
+            }
+
+            if ("PUT".equals(method) && query.containsKey("partNumber")) {
+                uploadPart(exchange, query, body);
+            } else if ("PUT".equals(method)) {
+                objects.put(path, body);
+                exchange.getResponseHeaders().add("ETag", "\"" + SigV4Signer.sha256Hex(body) + "\"");
+                send(exchange, 200, "");
+            } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                String uploadId = "upload-" + uploadIds.incrementAndGet();
+                uploads.put(uploadId, new ConcurrentHashMap<>());
+                send(exchange, 200, "<InitiateMultipartUploadResult><Bucket>b</Bucket><Key>k</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                complete(exchange, path, query.get("uploadId"), new String(body, StandardCharsets.UTF_8));
+            } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                abortedUploads.add(query.get("uploadId"));
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                send(exchange, 400, "<Error><Code>NotImplemented</Code></Error>");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void uploadPart(HttpExchange exchange, Map<String, String> query, byte[] body) throws IOException {
+        partRequests.incrementAndGet();
+        int concurrent = concurrentParts.incrementAndGet();
+        maxConcurrentParts.accumulateAndGet(concurrent, Math::max);
+        try {
+            Thread.sleep(partLatency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrentParts.decrementAndGet();
+        }
+        int partNumber = Integer.parseInt(query.get("partNumber"));
+        Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+        if (parts == null) {
+            send(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        if (partNumber == failPartNumber && failPartTimes.getAndDecrement() > 0) {
+            send(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+            return;
+        }
+        parts.put(partNumber, body);
+        exchange.getResponseHeaders().add("ETag", "\"" + SigV4Signer.sha256Hex(body).substring(0, 32) + "\"");
+        send(exchange, 200, "");
+    }
+
+    private void complete(HttpExchange exchange, String path, String uploadId, String xml) throws IOException {
+        Map<Integer, byte[]> parts = uploads.remove(uploadId);
+        if (parts == null) {
+            send(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        Matcher matcher = PART.matcher(xml);
+        int expected = 1;
+        while (matcher.find()) {
+            int partNumber = Integer.parseInt(matcher.group(1));
+            byte[] part = parts.get(partNumber);
+            if (part == null || partNumber != expected++ || !matcher.group(2).contains(SigV4Signer.sha256Hex(part).substring(0, 32))) {
+                // S3 reports this in a 200 response
+                send(exchange, 200, "<Error><Code>InvalidPart</Code><Message>part " + partNumber + "</Message></Error>");
+                return;
+            }
+            object.write(part);
+        }
+        objects.put(path, object.toByteArray());
+        send(exchange, 200, "<CompleteMultipartUploadResult><Key>" + path + "</Key></CompleteMultipartUploadResult>");
+    }
+
+    private String verifySignature(HttpExchange exchange, Map<String, String> query, byte[] body) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) {
+            return "no authorization";
+        }
+        Matcher matcher = AUTHORIZATION.matcher(authorization);
+        if (!matcher.matches() || !ACCESS_KEY.equals(matcher.group(1))) {
+            return "invalid authorization " + authorization;
+        }
+        String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (!SigV4Signer.sha256Hex(body).equals(payloadHash)) {
+            return "payload hash mismatch";
+        }
+        Map<String, String> signedHeaders = new LinkedHashMap<>();
+        for (String name : matcher.group(2).split(";")) {
+            List<String> values = exchange.getRequestHeaders().get(name);
+            if (values == null) {
+                return "missing signed header " + name;
+            }
+            signedHeaders.put(name, String.join(",", values));
+        }
+        String expected = signer.authorization(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(), query, signedHeaders, payloadHash);
+        return expected.equals(authorization) ? null : "expected " + expected;
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        SortedMap<String, String> query = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
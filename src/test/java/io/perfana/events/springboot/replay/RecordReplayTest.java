@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.replay;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static io.perfana.events.springboot.TestUtil.loadFileFromTestResources;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordReplayTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordAndReplay() throws Exception {
+        byte[] dump = new byte[2 * 1024 * 1024];
+        new Random(42).nextBytes(dump);
+        byte[] env = loadFileFromTestResources("actuator.env.response.json").getBytes(StandardCharsets.UTF_8);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/actuator/env", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, env.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(env);
+            }
+        });
+        server.createContext("/actuator/heapdump", exchange -> {
+            exchange.sendResponseHeaders(200, dump.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                // about 400 ms in total
+                for (int offset = 0; offset < dump.length; offset += 256 * 1024) {
+                    out.write(dump, offset, 256 * 1024);
+                    out.flush();
+                    sleep(50);
+                }
+            }
+        });
+        server.start();
+
+        File archiveDir = tempDir.resolve("archive").toFile();
+        List<String> envKeys = List.of("java.runtime.version");
+        try {
+            OkHttpClient client = OkHttpClientFactory.instance();
+            client.interceptors().add(new RecordingInterceptor(ResponseArchive.create(archiveDir), EventLoggerStdOut.INSTANCE));
+            ActuatorClient actuatorClient = new ActuatorClient("http://localhost:" + server.getAddress().getPort() + "/actuator", client, EventLoggerStdOut.INSTANCE);
+
+            assertEquals(1, actuatorClient.queryActuator(envKeys).size());
+            assertTrue(actuatorClient.heapdump(tempDir.toFile(), "record").isPresent());
+        } finally {
+            server.stop(0);
+        }
+
+        List<RecordedExchange> exchanges = ResponseArchive.open(archiveDir).exchanges();
+        assertEquals(2, exchanges.size());
+        RecordedExchange recordedDump = exchanges.get(1);
+        assertEquals(dump.length, recordedDump.bodyLength);
+        assertTrue(recordedDump.bodyComplete);
+        assertTrue(recordedDump.timingMillis[recordedDump.timingMillis.length - 1] >= 300, "recorded duration");
+
+        String baseUrl = exchanges.get(0).url.replace("/env", "");
+        ActuatorClient fast = new ActuatorClient(baseUrl, ReplayInterceptor.replayClient(archiveDir, 0), EventLoggerStdOut.INSTANCE);
+        List<Variable> replayedEnv = fast.queryActuator(envKeys);
+        assertEquals("17.0.3+7-LTS", replayedEnv.get(0).getValue());
+        Optional<DumpManifest> manifest = fast.heapdump(tempDir.toFile(), "replay-fast");
+        assertTrue(manifest.isPresent());
+        assertArrayEquals(dump, Files.readAllBytes(tempDir.resolve(manifest.get().file)));
+        assertTrue(fast.info().equals("{}"), "not recorded, 404");
+
+        ActuatorClient recordedSpeed = new ActuatorClient(baseUrl, ReplayInterceptor.replayClient(archiveDir, 1.0), EventLoggerStdOut.INSTANCE);
+        long start = System.nanoTime();
+        assertTrue(recordedSpeed.heapdump(tempDir.toFile(), "replay-recorded-speed").isPresent());
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis >= 250, "replay should take about the recorded time: " + millis);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
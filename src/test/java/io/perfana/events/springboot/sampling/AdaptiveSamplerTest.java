@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.sampling;
+
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdaptiveSamplerTest {
+
+    private static final SamplingSettings SETTINGS = new SamplingSettings(true, Duration.ofSeconds(2), Duration.ofSeconds(5),
+            Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofSeconds(20), 2.0);
+
+    @Test
+    void intervalPerPhase() {
+        SamplingSchedule schedule = new SamplingSchedule(Duration.ofMinutes(2), Duration.ofMinutes(10), SETTINGS);
+
+        assertEquals(TestPhase.RAMPUP, schedule.phase(Duration.ofSeconds(30)));
+        assertEquals(TestPhase.STEADY, schedule.phase(Duration.ofMinutes(2)));
+        assertEquals(TestPhase.RAMPDOWN, schedule.phase(Duration.ofMinutes(12)));
+
+        // start of the test is a transition
+        assertEquals(Duration.ofSeconds(2), schedule.interval(Duration.ofSeconds(10)));
+        assertEquals(Duration.ofSeconds(5), schedule.interval(Duration.ofSeconds(30)));
+        // around the end of the rampup
+        assertEquals(Duration.ofSeconds(2), schedule.interval(Duration.ofSeconds(110)));
+        assertEquals(Duration.ofSeconds(2), schedule.interval(Duration.ofSeconds(135)));
+        assertEquals(Duration.ofSeconds(30), schedule.interval(Duration.ofMinutes(5)));
+        assertEquals(Duration.ofSeconds(10), schedule.interval(Duration.ofMinutes(13)));
+    }
+
+    @Test
+    void intervalDoesNotSkipTransitionWindow() {
+        SamplingSchedule schedule = new SamplingSchedule(Duration.ofMinutes(2), Duration.ofMinutes(10), SETTINGS);
+        // steady interval is 30s, the window before the end of the constant load starts at 11:40
+        assertEquals(Duration.ofSeconds(10), schedule.interval(Duration.ofSeconds(690)));
+        assertEquals(Duration.ofSeconds(2), schedule.interval(Duration.ofSeconds(700)));
+    }
+
+    @Test
+    void budgetStretchesInterval() {
+        AtomicLong clock = new AtomicLong();
+        SamplingSchedule schedule = new SamplingSchedule(Duration.ofMinutes(2), Duration.ofMinutes(10), SETTINGS);
+        AdaptiveSampler sampler = new AdaptiveSampler(schedule, SETTINGS, () -> 0, clock::get, EventLoggerStdOut.INSTANCE);
+
+        Duration inTransition = Duration.ofSeconds(5);
+        assertEquals(Duration.ofSeconds(2), sampler.nextInterval(inTransition, 4));
+        // 12 requests at 2 requests per second
+        assertEquals(Duration.ofSeconds(6), sampler.nextInterval(inTransition, 12));
+
+        Duration steady = Duration.ofMinutes(5);
+        assertEquals(Duration.ofSeconds(30), sampler.nextInterval(steady, 12));
+        sampler.boost(Duration.ofSeconds(20));
+        assertEquals(Duration.ofSeconds(2), sampler.nextInterval(steady, 1));
+        clock.addAndGet(Duration.ofSeconds(21).toNanos());
+        assertEquals(Duration.ofSeconds(30), sampler.nextInterval(steady, 1));
+    }
+
+    @Test
+    void denseAtTransitionsSparseInSteadyState() {
+        SamplingSettings settings = new SamplingSettings(true, Duration.ofMillis(10), Duration.ofMillis(50),
+                Duration.ofMillis(200), Duration.ofMillis(50), Duration.ofMillis(60), 1000);
+        SamplingSchedule schedule = new SamplingSchedule(Duration.ofMillis(200), Duration.ofMillis(1000), settings);
+        AtomicLong clock = new AtomicLong();
+        AtomicLong requests = new AtomicLong();
+        List<Long> sampleTimes = new ArrayList<>();
+        AdaptiveSampler sampler = new AdaptiveSampler(schedule, settings, requests::get, clock::get, EventLoggerStdOut.INSTANCE);
+        sampler.add(() -> {
+            requests.incrementAndGet();
+            sampleTimes.add(Duration.ofNanos(clock.get()).toMillis());
+        });
+
+        ManualScheduler scheduler = new ManualScheduler(clock);
+        sampler.start(scheduler.executor);
+        scheduler.runUntil(Duration.ofMillis(1400));
+
+        long aroundRampupEnd = sampleTimes.stream().filter(t -> t >= 150 && t <= 250).count();
+        long inSteadyState = sampleTimes.stream().filter(t -> t >= 350 && t <= 1050).count();
+        assertTrue(aroundRampupEnd >= 9, "dense around the end of the rampup: " + sampleTimes);
+        assertTrue(inSteadyState <= 4, "sparse in steady state: " + sampleTimes);
+        assertEquals(requests.get(), sampler.getRequests());
+        assertEquals(sampleTimes.size(), sampler.getRounds());
+    }
+
+    @Test
+    void expensiveRoundStretchesNextInterval() {
+        SamplingSchedule schedule = new SamplingSchedule(Duration.ofMinutes(2), Duration.ofMinutes(10), SETTINGS);
+        AtomicLong clock = new AtomicLong();
+        AtomicLong requests = new AtomicLong();
+        AdaptiveSampler sampler = new AdaptiveSampler(schedule, SETTINGS, requests::get, clock::get, EventLoggerStdOut.INSTANCE);
+        sampler.add(() -> requests.addAndGet(12));
+
+        ManualScheduler scheduler = new ManualScheduler(clock);
+        sampler.start(scheduler.executor);
+        scheduler.runNext();
+        // 12 requests at 2 requests per second instead of the 2 seconds transition interval
+        assertEquals(Duration.ofSeconds(6), scheduler.nextDelay());
+        assertEquals(12, sampler.getRequests());
+
+        sampler.stop();
+        scheduler.runNext();
+        assertTrue(scheduler.isIdle(), "no new round after stop");
+    }
+
+    /**
+     * Runs the scheduled rounds one by one and moves the clock forward by their delay.
+     */
+    private static class ManualScheduler {
+
+        private final AtomicLong clock;
+        private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        private final Deque<Runnable> rounds = new ArrayDeque<>();
+        private final Deque<Duration> delays = new ArrayDeque<>();
+
+        ManualScheduler(AtomicLong clock) {
+            this.clock = clock;
+            when(executor.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS))).thenAnswer(invocation -> {
+                rounds.add(invocation.getArgument(0));
+                delays.add(Duration.ofMillis(invocation.getArgument(1)));
+                return null;
+            });
+        }
+
+        Duration nextDelay() {
+            return delays.getFirst();
+        }
+
+        boolean isIdle() {
+            return rounds.isEmpty();
+        }
+
+        void runNext() {
+            clock.addAndGet(delays.removeFirst().toNanos());
+            rounds.removeFirst().run();
+        }
+
+        void runUntil(Duration end) {
+            while (!isIdle() && Duration.ofNanos(clock.get()).plus(nextDelay()).compareTo(end) <= 0) {
+                runNext();
+            }
+        }
+    }
+}
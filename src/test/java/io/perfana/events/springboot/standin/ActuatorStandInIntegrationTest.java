@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.standin;
+
+import com.squareup.okhttp.OkHttpClient;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.actuator.TimeoutProfile;
+import io.perfana.events.springboot.actuator.Variable;
+import io.perfana.events.springboot.event.SpringBootEvent;
+import io.perfana.events.springboot.event.SpringBootEventConfig;
+import io.perfana.events.springboot.event.SpringBootEventFactory;
+import io.perfana.eventscheduler.EventMessageBusSimple;
+import io.perfana.eventscheduler.api.CustomEvent;
+import io.perfana.eventscheduler.api.config.TestConfig;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plugin against the embedded actuator stand-in, over real sockets.
+ * Run with e.g. -Dstandin.heapdump.mb=4096 -Dstandin.heapdump.min.mbps=500 to check the throughput of multi-GB heap dumps.
+ */
+class ActuatorStandInIntegrationTest {
+
+    private static final TimeoutProfile DUMP_PROFILE = TimeoutProfile.streaming(Duration.ofSeconds(10), Duration.ofSeconds(10));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void queryEndpoints() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+
+            List<Variable> variables = client.queryActuator(List.of("java.runtime.version"));
+            assertEquals("17.0.3+7-LTS", variables.get(0).getValue());
+            assertTrue(client.info().contains("1.2.3"));
+            assertEquals("{\"status\":\"UP\"}", client.get("/health", body -> body.string()).orElse(""));
+
+            Optional<Metric> metric = client.metric("jvm.threads.live");
+            assertTrue(metric.isPresent());
+            assertEquals(42.0, metric.get().measurements.get(0).value);
+            assertFalse(client.metric("does.not.exist").isPresent());
+
+            Optional<DumpManifest> threadDump = client.threaddump(tempDir.toFile(), "standin");
+            assertTrue(threadDump.isPresent());
+            assertTrue(threadDump.get().sizeBytes > 10_000);
+        }
+    }
+
+    @Test
+    void retryOnInjectedErrors() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            standIn.failNext("env", 503, 1).failNext("env", 429, 1);
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+
+            assertEquals(1, client.queryActuator(List.of("java.runtime.version")).size());
+            assertEquals(3, standIn.requestCount("env"));
+
+            standIn.failNext("info", 503, 3);
+            assertEquals("{}", client.info(), "gives up after 2 retries");
+            assertEquals(3, standIn.requestCount("info"));
+        }
+    }
+
+    @Test
+    void heapDumpThroughput() throws IOException {
+        long size = Long.getLong("standin.heapdump.mb", 64) * 1024 * 1024;
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start().heapDumpSize(size)) {
+            OkHttpClient dumpClient = OkHttpClientFactory.instance(DUMP_PROFILE);
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), dumpClient, Duration.ofSeconds(10), EventLoggerStdOut.INSTANCE);
+
+            long start = System.nanoTime();
+            Optional<DumpManifest> manifest = client.heapdump(tempDir.toFile(), "throughput");
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+            assertTrue(manifest.isPresent());
+            assertEquals(standIn.heapDumpLength(), manifest.get().sizeBytes);
+            File dump = tempDir.resolve(manifest.get().file).toFile();
+            assertEquals(standIn.heapDumpLength(), dump.length());
+            assertEquals("JAVA PROFILE 1.0.2", readHprofVersion(dump));
+            double megabytesPerSecond = dump.length() / 1024.0 / 1024.0 * 1000.0 / millis;
+            long minMegabytesPerSecond = Long.getLong("standin.heapdump.min.mbps", 10);
+            assertTrue(megabytesPerSecond >= minMegabytesPerSecond, String.format(Locale.ROOT, "heap dump of %d MB in %d ms: %.1f MB/s",
+                    dump.length() / (1024 * 1024), millis, megabytesPerSecond));
+            assertTrue(new File(dump.getPath() + ".manifest.json").exists());
+        }
+    }
+
+    @Test
+    void slowAndLimitedHeapDump() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()
+                .heapDumpSize(2 * 1024 * 1024)
+                .latency(Duration.ofMillis(300))
+                .bandwidth(4 * 1024 * 1024)) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(DUMP_PROFILE), EventLoggerStdOut.INSTANCE);
+
+            long start = System.nanoTime();
+            Optional<DumpManifest> manifest = client.heapdump(tempDir.toFile(), "slow");
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(manifest.isPresent());
+            // 300 ms latency and about 500 ms for 2 MB at 4 MB/s
+            assertTrue(millis >= 700, "took " + millis + " ms");
+        }
+    }
+
+    @Test
+    void truncatedHeapDumpLeavesNoFile() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()
+                .heapDumpSize(4 * 1024 * 1024)
+                .truncateHeapDumpAt(1024 * 1024)) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(DUMP_PROFILE), EventLoggerStdOut.INSTANCE);
+
+            assertFalse(client.heapdump(tempDir.toFile(), "truncated").isPresent());
+            File[] files = tempDir.toFile().listFiles();
+            assertNotNull(files);
+            assertEquals(0, files.length, "no partial dump left behind");
+        }
+    }
+
+    @Test
+    void stalledHeapDumpAbortsOnIdleTimeout() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()
+                .heapDumpSize(4 * 1024 * 1024)
+                .stallHeapDumpAt(1024 * 1024, Duration.ofSeconds(5))) {
+            TimeoutProfile profile = TimeoutProfile.streaming(Duration.ofSeconds(10), Duration.ofMillis(500));
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), OkHttpClientFactory.instance(profile),
+                    profile.getIdleTimeout(), EventLoggerStdOut.INSTANCE);
+
+            long start = System.nanoTime();
+            Optional<DumpManifest> manifest = client.heapdump(tempDir.toFile(), "stalled");
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertFalse(manifest.isPresent());
+            assertTrue(millis < 5000, "aborted after " + millis + " ms, before the stall ended");
+        }
+    }
+
+    @Test
+    void springBootEventAgainstStandIn() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start().heapDumpSize(1024 * 1024)) {
+            SpringBootEventConfig eventConfig = new SpringBootEventConfig();
+            eventConfig.setEventFactory(SpringBootEventFactory.class.getSimpleName());
+            eventConfig.setName("standIn");
+            eventConfig.setEnabled(true);
+            eventConfig.setActuatorBaseUrl(standIn.actuatorUrl());
+            eventConfig.setDumpPath(tempDir.toString());
+            eventConfig.setActuatorEnvProperties("java.runtime.version");
+
+            SpringBootEvent event = new SpringBootEvent(eventConfig.toContext(), TestConfig.builder().build().toContext(),
+                    new EventMessageBusSimple(), EventLoggerStdOut.INSTANCE);
+            event.beforeTest();
+            event.customEvent(CustomEvent.createFromLine("PT1S|threaddump"));
+            event.customEvent(CustomEvent.createFromLine("PT2S|heapdump"));
+            event.afterTest();
+
+            assertTrue(standIn.requestCount("env") >= 1);
+            assertEquals(1, standIn.requestCount("threaddump"));
+            assertEquals(1, standIn.requestCount("heapdump"));
+        }
+    }
+
+    @Test
+    void dumpOptionsFromScheduleSettings() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start().heapDumpSize(1024 * 1024)) {
+            SpringBootEventConfig eventConfig = new SpringBootEventConfig();
+            eventConfig.setEventFactory(SpringBootEventFactory.class.getSimpleName());
+            eventConfig.setName("standIn");
+            eventConfig.setEnabled(true);
+            eventConfig.setActuatorBaseUrl(standIn.actuatorUrl());
+            eventConfig.setDumpPath(tempDir.toString());
+            eventConfig.setHeapDumpLive(true);
+
+            SpringBootEvent event = new SpringBootEvent(eventConfig.toContext(), TestConfig.builder().build().toContext(),
+                    new EventMessageBusSimple(), EventLoggerStdOut.INSTANCE);
+            event.beforeTest();
+            event.customEvent(CustomEvent.createFromLine("PT1S|threaddump|count=3;interval=PT0.1S;format=json"));
+            event.customEvent(CustomEvent.createFromLine("PT2S|heapdump|live=false;compress=true"));
+            event.afterTest();
+
+            assertEquals(3, standIn.requestCount("threaddump"));
+            File[] jsonDumps = tempDir.toFile().listFiles((dir, name) -> name.startsWith("threaddump-") && name.endsWith(".json") && !name.endsWith(".manifest.json"));
+            assertNotNull(jsonDumps);
+            assertEquals(3, jsonDumps.length);
+            assertTrue(Files.readString(jsonDumps[0].toPath()).startsWith("{\"threads\":["));
+
+            assertEquals("live=false", standIn.lastQuery("heapdump"));
+            File[] heapDumps = tempDir.toFile().listFiles((dir, name) -> name.startsWith("heapdump-") && name.endsWith(".hprof.gz"));
+            assertNotNull(heapDumps);
+            assertEquals(1, heapDumps.length);
+            assertTrue(heapDumps[0].length() < standIn.heapDumpLength() / 10, "compressed " + heapDumps[0].length());
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(heapDumps[0])))) {
+                assertEquals("JAVA PROFILE 1.0.2", readHprofVersion(in));
+                assertEquals(standIn.heapDumpLength() - 18, in.skip(Long.MAX_VALUE));
+            }
+            String manifest = Files.readString(Path.of(heapDumps[0].getPath() + ".manifest.json"));
+            assertTrue(manifest.contains("\"sizeBytes\":" + standIn.heapDumpLength()), manifest);
+            assertTrue(manifest.contains("\"compression\":\"gzip\""), manifest);
+        }
+    }
+
+    private static String readHprofVersion(File dump) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(dump))) {
+            return readHprofVersion(in);
+        }
+    }
+
+    private static String readHprofVersion(DataInputStream in) throws IOException {
+        byte[] version = new byte[18];
+        in.readFully(version);
+        return new String(version, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.perfana.events.springboot.hprof.HprofTestWriter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in for the actuator endpoints of a Spring Boot application, to test the
+ * plugin over real sockets: env, info, health, metrics, loggers, threaddump and heapdump.
+ * <p>
+ * The heap dump is a synthetic hprof stream of the configured size, generated while sending,
+ * so multi-GB dumps do not need memory or disk. Latency (time to first byte), a bandwidth limit
+ * for response bodies, error responses (e.g. 503 or 429), stalls and truncated heap dumps can be injected.
+ */
+public class ActuatorStandInServer implements AutoCloseable {
+
+    private static final int HEAP_DUMP_CHUNK = 1024 * 1024;
+    private static final int WRITE_CHUNK = 64 * 1024;
+    private static final Pattern CONFIGURED_LEVEL = Pattern.compile("\"configuredLevel\":\"(\\w+)\"");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Deque<Integer>> injectedErrors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Map<String, String> metrics = new ConcurrentHashMap<>();
+    private final Map<String, String> lastQueries = new ConcurrentHashMap<>();
+    private final Map<String, String> configuredLevels = new ConcurrentHashMap<>(Map.of("ROOT", "INFO"));
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile long bytesPerSecond = 0;
+    private volatile long heapDumpSize = 16 * 1024 * 1024;
+    private volatile long truncateHeapDumpAt = -1;
+    private volatile long stallHeapDumpAt = -1;
+    private volatile Duration stall = Duration.ZERO;
+
+    private ActuatorStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "actuator-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/actuator/env", endpoint("env", this::env));
+        server.createContext("/actuator/info", endpoint("info", exchange -> sendText(exchange, "application/json", "{\"app\":{\"version\":\"1.2.3\"}}")));
+        server.createContext("/actuator/health", endpoint("health", exchange -> sendText(exchange, "application/json", "{\"status\":\"UP\"}")));
+        server.createContext("/actuator/metrics", endpoint("metrics", this::metric));
+        server.createContext("/actuator/threaddump", endpoint("threaddump", this::threadDump));
+        server.createContext("/actuator/heapdump", endpoint("heapdump", this::heapDump));
+        server.createContext("/actuator/loggers", endpoint("loggers", this::loggers));
+        metric("jvm.threads.live", "VALUE", 42);
+    }
+
+    public static ActuatorStandInServer start() throws IOException {
+        ActuatorStandInServer standIn = new ActuatorStandInServer();
+        standIn.server.start();
+        return standIn;
+    }
+
+    public String actuatorUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/actuator";
+    }
+
+    /**
+     * Delay before the response headers are sent, for all endpoints.
+     */
+    public ActuatorStandInServer latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Limit the speed of response bodies, 0 for no limit.
+     */
+    public ActuatorStandInServer bandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Size of the synthetic heap dump, rounded up to whole segments, see {@link #heapDumpLength()}.
+     */
+    public ActuatorStandInServer heapDumpSize(long bytes) {
+        this.heapDumpSize = bytes;
+        return this;
+    }
+
+    /**
+     * Close the connection after the given number of heap dump bytes, -1 to send the complete dump.
+     */
+    public ActuatorStandInServer truncateHeapDumpAt(long bytes) {
+        this.truncateHeapDumpAt = bytes;
+        return this;
+    }
+
+    /**
+     * Stop sending for the given time after the given number of heap dump bytes, then send the rest.
+     */
+    public ActuatorStandInServer stallHeapDumpAt(long bytes, Duration stall) {
+        this.stall = stall;
+        this.stallHeapDumpAt = bytes;
+        return this;
+    }
+
+    /**
+     * Respond to the next times requests of the endpoint (e.g. "env" or "heapdump") with the status code.
+     */
+    public ActuatorStandInServer failNext(String endpoint, int statusCode, int times) {
+        Deque<Integer> errors = injectedErrors.computeIfAbsent(endpoint, key -> new ArrayDeque<>());
+        synchronized (errors) {
+            for (int i = 0; i < times; i++) {
+                errors.add(statusCode);
+            }
+        }
+        return this;
+    }
+
+    public ActuatorStandInServer metric(String name, String statistic, double value) {
+        metrics.put(name, "{\"name\":\"" + name + "\",\"measurements\":[{\"statistic\":\"" + statistic + "\",\"value\":" + value + "}],\"availableTags\":[]}");
+        return this;
+    }
+
+    /**
+     * @return number of requests received by the endpoint, including failed ones
+     */
+    public int requestCount(String endpoint) {
+        AtomicInteger count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return configured level of the logger, null when inherited
+     */
+    public String loggerLevel(String name) {
+        return configuredLevels.get(name);
+    }
+
+    /**
+     * @return query string of the last request of the endpoint, empty when it had none, null when not requested
+     */
+    public String lastQuery(String endpoint) {
+        return lastQueries.get(endpoint);
+    }
+
+    /**
+     * @return the exact length in bytes of the synthetic heap dump
+     */
+    public long heapDumpLength() {
+        return HprofTestWriter.HEADER_SIZE + heapDumpSegments() * (HprofTestWriter.BYTE_ARRAY_SEGMENT_OVERHEAD + (long) HEAP_DUMP_CHUNK);
+    }
+
+    private long heapDumpSegments() {
+        long segmentSize = HprofTestWriter.BYTE_ARRAY_SEGMENT_OVERHEAD + (long) HEAP_DUMP_CHUNK;
+        return Math.max(1, (heapDumpSize - HprofTestWriter.HEADER_SIZE + segmentSize - 1) / segmentSize);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private HttpHandler endpoint(String name, HttpHandler handler) {
+        return exchange -> {
+            requestCounts.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+            String query = exchange.getRequestURI().getRawQuery();
+            lastQueries.put(name, query == null ? "" : query);
+            try {
+                sleep(latency);
+                Integer error = nextError(name);
+                if (error != null) {
+                    if (error == 429 || error == 503) {
+                        exchange.getResponseHeaders().add("Retry-After", "1");
+                    }
+                    exchange.sendResponseHeaders(error, -1);
+                    return;
+                }
+                handler.handle(exchange);
+            } finally {
+                exchange.getRequestBody().close();
+                exchange.close();
+            }
+        };
+    }
+
+    private Integer nextError(String endpoint) {
+        Deque<Integer> errors = injectedErrors.get(endpoint);
+        if (errors == null) {
+            return null;
+        }
+        synchronized (errors) {
+            return errors.poll();
+        }
+    }
+
+    private void env(HttpExchange exchange) throws IOException {
+        try (InputStream in = ActuatorStandInServer.class.getClassLoader().getResourceAsStream("actuator.env.response.json")) {
+            if (in == null) {
+                throw new IOException("actuator.env.response.json not found on classpath");
+            }
+            sendText(exchange, "application/json", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Loggers without a configured level inherit from ROOT, parent packages are ignored.
+     */
+    private void loggers(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring("/actuator/loggers/".length());
+        if ("POST".equals(exchange.getRequestMethod())) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher level = CONFIGURED_LEVEL.matcher(body);
+            if (level.find()) {
+                configuredLevels.put(name, level.group(1));
+            } else {
+                configuredLevels.remove(name);
+            }
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        String configured = configuredLevels.get(name);
+        String effective = configured != null ? configured : configuredLevels.getOrDefault("ROOT", "INFO");
+        sendText(exchange, "application/json", "{\"configuredLevel\":" + (configured == null ? "null" : "\"" + configured + "\"")
+                + ",\"effectiveLevel\":\"" + effective + "\"}");
+    }
+
+    private void metric(HttpExchange exchange) throws IOException {
+        // /actuator/metrics/jvm.threads.live?tag=..., tags are ignored
+        String path = exchange.getRequestURI().getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        String metric = metrics.get(name);
+        if (metric == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        sendText(exchange, "application/json", metric);
+    }
+
+    private void threadDump(HttpExchange exchange) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains("application/json")) {
+            StringBuilder threads = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                threads.append(i == 0 ? "" : ",").append("{\"threadName\":\"http-nio-8080-exec-").append(i)
+                        .append("\",\"threadId\":").append(30 + i).append(",\"threadState\":\"WAITING\"}");
+            }
+            sendText(exchange, "application/json", "{\"threads\":[" + threads + "]}");
+            return;
+        }
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            dump.append("\"http-nio-8080-exec-").append(i).append("\" #").append(30 + i)
+                    .append(" daemon prio=5 tid=0x").append(Integer.toHexString(0x1000 + i)).append(" nid=0x").append(Integer.toHexString(i))
+                    .append(" waiting on condition\n   java.lang.Thread.State: WAITING (parking)\n")
+                    .append("\tat java.base@17.0.3/jdk.internal.misc.Unsafe.park(Native Method)\n")
+                    .append("\tat java.base@17.0.3/java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n")
+                    .append("\tat org.apache.tomcat.util.threads.TaskThread$WrappingRunnable.run(TaskThread.java:61)\n\n");
+        }
+        sendText(exchange, "text/plain;charset=UTF-8", dump.toString());
+    }
+
+    private void heapDump(HttpExchange exchange) throws IOException {
+        long length = heapDumpLength();
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, length);
+        long truncateAt = truncateHeapDumpAt;
+        long stallAt = stallHeapDumpAt;
+        OutputStream body = throttled(exchange.getResponseBody());
+        if (truncateAt >= 0) {
+            body = new TruncatingOutputStream(body, truncateAt);
+        }
+        if (stallAt >= 0) {
+            body = new StallingOutputStream(body, stallAt, stall);
+        }
+        HprofTestWriter writer = new HprofTestWriter(body);
+        byte[] content = new byte[HEAP_DUMP_CHUNK];
+        long segments = heapDumpSegments();
+        for (long i = 0; i < segments; i++) {
+            content[0] = (byte) i;
+            writer.byteArraySegment(i + 1, content);
+        }
+        writer.flush();
+    }
+
+    private void sendText(HttpExchange exchange, String contentType, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = throttled(exchange.getResponseBody())) {
+            out.write(bytes);
+        }
+    }
+
+    private OutputStream throttled(OutputStream out) {
+        long limit = bytesPerSecond;
+        return limit <= 0 ? out : new ThrottledOutputStream(out, limit);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sleeps as needed to keep the average speed since the first write under the limit.
+     */
+    private static class ThrottledOutputStream extends FilterOutputStream {
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long written;
+
+        ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            int position = offset;
+            int end = offset + length;
+            while (position < end) {
+                int chunk = Math.min(WRITE_CHUNK, end - position);
+                out.write(bytes, position, chunk);
+                position += chunk;
+                written += chunk;
+                long aheadNanos = written * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - startNanos);
+                if (aheadNanos > 0) {
+                    out.flush();
+                    sleep(Duration.ofNanos(aheadNanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes and sleeps once when the writes pass the given position.
+     */
+    private static class StallingOutputStream extends FilterOutputStream {
+        private final Duration stall;
+        private long remaining;
+
+        StallingOutputStream(OutputStream out, long stallAt, Duration stall) {
+            super(out);
+            this.remaining = stallAt;
+            this.stall = stall;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining < 0 || remaining >= length) {
+                out.write(bytes, offset, length);
+                remaining = remaining < 0 ? remaining : remaining - length;
+                return;
+            }
+            int before = (int) remaining;
+            out.write(bytes, offset, before);
+            out.flush();
+            sleep(stall);
+            remaining = -1;
+            out.write(bytes, offset + before, length - before);
+        }
+    }
+
+    /**
+     * Fails the write that passes the limit, the server then closes the connection mid-body.
+     */
+    private static class TruncatingOutputStream extends FilterOutputStream {
+        private long remaining;
+
+        TruncatingOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            int allowed = (int) Math.min(length, remaining);
+            out.write(bytes, offset, allowed);
+            remaining -= allowed;
+            if (allowed < length) {
+                out.flush();
+                throw new IOException("stand-in truncated heap dump");
+            }
+        }
+    }
+}
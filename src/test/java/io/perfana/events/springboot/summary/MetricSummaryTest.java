@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.summary;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class MetricSummaryTest {
+
+    @Test
+    void percentilesWithinRelativeError() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 0.001);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5.0, histogram.percentile(50), 5.0 * 0.04);
+        assertEquals(9.0, histogram.percentile(90), 9.0 * 0.04);
+        assertEquals(9.9, histogram.percentile(99), 9.9 * 0.04);
+        assertEquals(10.0, histogram.percentile(100));
+        assertEquals(0.001, histogram.percentile(0));
+        assertEquals(5.0005, histogram.getMean(), 0.000001);
+    }
+
+    @Test
+    void encodeRoundTrip() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(0);
+        histogram.record(1e-12);
+        histogram.record(42);
+        histogram.record(42.5);
+        histogram.record(3e15);
+
+        String encoded = histogram.encode();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+        LogLinearHistogram decoded = LogLinearHistogram.decode(encoded);
+
+        assertEquals(histogram.getCount(), decoded.getCount());
+        assertEquals(histogram.getMin(), decoded.getMin());
+        assertEquals(histogram.getMax(), decoded.getMax());
+        assertEquals(histogram.getMean(), decoded.getMean());
+        for (double p : new double[] { 10, 30, 50, 70, 90 }) {
+            assertEquals(histogram.percentile(p), decoded.percentile(p));
+        }
+        assertEquals(0.0, decoded.percentile(20));
+        assertEquals(3e15, decoded.percentile(100));
+    }
+
+    @Test
+    void gaugesAndTimerDeltas() {
+        AtomicLong nanos = new AtomicLong();
+        MetricSummary summary = new MetricSummary(mock(ActuatorClient.class), Collections.emptyList(), nanos::get, EventLoggerStdOut.INSTANCE);
+
+        for (int i = 1; i <= 10; i++) {
+            summary.onMetric("jvm.threads.live", Collections.emptyList(), metric(measurement("VALUE", 10 * i)));
+            // 100 requests per second with a mean of 20 ms
+            summary.onMetric("http.server.requests", List.of("uri:/api", "method:GET"),
+                    metric(measurement("COUNT", 100 * i), measurement("TOTAL_TIME", 2.0 * i), measurement("MAX", 0.05)));
+            nanos.addAndGet(1_000_000_000L);
+        }
+
+        Map<String, String> keyValues = summary.toKeyValues("event.test.summary.");
+
+        assertEquals(2, summary.getSeriesCount());
+        // upper bound of the bucket
+        assertEquals(50, Double.parseDouble(keyValues.get("event.test.summary.jvm.threads.live.value.p50")), 50 * 0.04);
+        assertEquals("100", keyValues.get("event.test.summary.jvm.threads.live.value.max"));
+        assertEquals("10", keyValues.get("event.test.summary.jvm.threads.live.value.count"));
+        String timer = "event.test.summary.http.server.requests(method:GET,uri:/api).";
+        assertEquals("100", keyValues.get(timer + "rate.p99"));
+        assertEquals("9", keyValues.get(timer + "rate.count"));
+        assertEquals("0.02", keyValues.get(timer + "mean.p50"));
+        assertEquals("0.05", keyValues.get(timer + "max.max"));
+        assertNotNull(LogLinearHistogram.decode(keyValues.get(timer + "mean.histogram")));
+        assertFalse(keyValues.containsKey(timer + "count.p50"));
+    }
+
+    @Test
+    void restartAndSeriesLimit() {
+        AtomicLong nanos = new AtomicLong();
+        MetricSummary summary = new MetricSummary(mock(ActuatorClient.class), Collections.emptyList(), nanos::get, EventLoggerStdOut.INSTANCE);
+        for (double count : new double[] { 100, 200, 10, 20 }) {
+            nanos.addAndGet(1_000_000_000L);
+            summary.onMetric("http.server.requests", Collections.emptyList(), metric(measurement("COUNT", count)));
+        }
+        assertEquals("2", summary.toKeyValues("").get("http.server.requests.rate.count"));
+
+        for (int i = 0; i < MetricSummary.MAX_SERIES + 10; i++) {
+            summary.onMetric("jvm.memory.used", List.of("id:pool-" + i), metric(measurement("VALUE", i)));
+        }
+        assertEquals(MetricSummary.MAX_SERIES, summary.getSeriesCount());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import com.squareup.okhttp.OkHttpClient;
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.ChecksumAlgorithm;
+import io.perfana.events.springboot.actuator.DownloadProgress;
+import io.perfana.events.springboot.actuator.DumpManifest;
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.standin.ActuatorStandInServer;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ThreadDumpArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reconstructSeriesOfDumps() throws IOException {
+        File file = tempDir.resolve("series.pftd").toFile();
+        Random random = new Random(7);
+        List<String> dumps = new ArrayList<>();
+        try (ThreadDumpArchive archive = ThreadDumpArchive.create(file)) {
+            for (int i = 0; i < 30; i++) {
+                String dump = threadDump(i, random);
+                dumps.add(dump);
+                archive.append("dump-" + i, 1_600_000_000_000L + i * 1000L, dump);
+            }
+            assertEquals(30, archive.getDumpCount());
+            assertEquals(file.length(), archive.getWrittenBytes());
+            assertTrue(archive.getRawBytes() > 10 * archive.getWrittenBytes(),
+                    "expected at least 10x smaller: " + archive);
+        }
+
+        ThreadDumpArchiveReader reader = ThreadDumpArchiveReader.read(file);
+        assertEquals(30, reader.dumps().size());
+        for (int i = 0; i < dumps.size(); i++) {
+            assertEquals(dumps.get(i), reader.dump(i), "dump " + i);
+            assertEquals("dump-" + i, reader.dumps().get(i).getLabel());
+            assertEquals(1_600_000_000_000L + i * 1000L, reader.dumps().get(i).getEpochMillis());
+        }
+    }
+
+    @Test
+    void truncatedArchiveKeepsCompleteDumps() throws IOException {
+        File file = tempDir.resolve("truncated.pftd").toFile();
+        Random random = new Random(11);
+        String first = threadDump(0, random);
+        try (ThreadDumpArchive archive = ThreadDumpArchive.create(file)) {
+            archive.append("first", 1, first);
+            archive.append("second", 2, threadDump(1, random));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        ThreadDumpArchiveReader reader = ThreadDumpArchiveReader.read(file);
+        assertEquals(1, reader.dumps().size());
+        assertEquals(first, reader.dump(0));
+    }
+
+    @Test
+    void edgeCases() throws IOException {
+        File file = tempDir.resolve("edge.pftd").toFile();
+        String[] dumps = { "", "\n", "no newline at end", "a\n\n\nb\r\nc\n", "\"ünïcode\" thread\n   state\n\n" };
+        try (ThreadDumpArchive archive = ThreadDumpArchive.create(file)) {
+            for (String dump : dumps) {
+                archive.append("edge", 0, dump);
+            }
+        }
+        assertThrows(IOException.class, () -> ThreadDumpArchive.create(file));
+
+        ThreadDumpArchiveReader reader = ThreadDumpArchiveReader.read(file);
+        for (int i = 0; i < dumps.length; i++) {
+            assertEquals(dumps[i], reader.dump(i));
+        }
+    }
+
+    @Test
+    void threadDumpsFromActuator() throws IOException {
+        File file = tempDir.resolve("actuator.pftd").toFile();
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start();
+             ThreadDumpArchive archive = ThreadDumpArchive.create(file)) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+            Optional<DumpManifest> first = client.threaddump(archive, "run-1");
+            Optional<DumpManifest> second = client.threaddump(archive, "run-1");
+            assertTrue(first.isPresent());
+            assertTrue(second.isPresent());
+            assertEquals("actuator.pftd", first.get().file);
+            assertTrue(second.get().sizeBytes < first.get().sizeBytes, "second dump only references the first");
+            assertTrue(archive.getWrittenBytes() * 10 < archive.getRawBytes(), archive.toString());
+        }
+        ThreadDumpArchiveReader reader = ThreadDumpArchiveReader.read(file);
+        assertEquals(2, reader.dumps().size());
+        assertEquals(reader.dump(0), reader.dump(1));
+        assertTrue(reader.dump(0).contains("http-nio-8080-exec-199"));
+    }
+
+    @Test
+    void archivedThreadDumpUsesDumpClientWithChecksum() throws IOException {
+        File file = tempDir.resolve("checksum.pftd").toFile();
+        OkHttpClient fastClient = mock(OkHttpClient.class);
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start();
+             ThreadDumpArchive archive = ThreadDumpArchive.create(file)) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), fastClient, OkHttpClientFactory.instance(), Duration.ofSeconds(10), EventLoggerStdOut.INSTANCE);
+            List<DownloadProgress> progress = new ArrayList<>();
+            client.setProgressListener(progress::add, Duration.ZERO);
+
+            Optional<DumpManifest> manifest = client.threaddump(archive, "run-1");
+
+            assertTrue(manifest.isPresent());
+            assertEquals(ChecksumAlgorithm.CRC32C.name(), manifest.get().checksumAlgorithm);
+            assertNotNull(manifest.get().checksum);
+            assertEquals(1, progress.size(), "finish is reported");
+            assertEquals(0, client.getRequestCount(), "dumps are not counted as actuator requests");
+        }
+        verify(fastClient, never()).newCall(any());
+    }
+
+    /**
+     * JDK 17 style dump: the cpu and elapsed times in the thread headers change every dump,
+     * and a few threads move to another stack.
+     */
+    private static String threadDump(int sequence, Random random) {
+        StringBuilder dump = new StringBuilder();
+        dump.append("2022-06-0").append(sequence % 9).append(" 12:00:00\nFull thread dump OpenJDK 64-Bit Server VM (17.0.3+7-LTS mixed mode):\n\n");
+        for (int thread = 0; thread < 100; thread++) {
+            dump.append("\"http-nio-8080-exec-").append(thread).append("\" #").append(40 + thread)
+                    .append(" daemon prio=5 os_prio=0 cpu=").append(sequence * 10 + random.nextInt(10)).append(".12ms elapsed=")
+                    .append(100 + sequence).append(".50s tid=0x00007f").append(Integer.toHexString(thread)).append(" nid=0x").append(Integer.toHexString(thread))
+                    .append(" waiting on condition  [0x00007f]\n");
+            boolean busy = random.nextInt(10) == 0;
+            dump.append(busy ? "   java.lang.Thread.State: RUNNABLE\n" : "   java.lang.Thread.State: WAITING (parking)\n");
+            if (busy) {
+                dump.append("\tat com.example.order.OrderRepository.findAll(OrderRepository.java:").append(random.nextInt(3) + 40).append(")\n")
+                        .append("\tat com.example.order.OrderController.list(OrderController.java:21)\n");
+            }
+            dump.append("\tat java.base@17.0.3/jdk.internal.misc.Unsafe.park(Native Method)\n")
+                    .append("\t- parking to wait for  <0x00000000c2a5e4f8> (a java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject)\n")
+                    .append("\tat java.base@17.0.3/java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n")
+                    .append("\tat java.base@17.0.3/java.util.concurrent.LinkedBlockingQueue.take(LinkedBlockingQueue.java:435)\n")
+                    .append("\tat org.apache.tomcat.util.threads.TaskQueue.take(TaskQueue.java:117)\n")
+                    .append("\tat org.apache.tomcat.util.threads.ThreadPoolExecutor.getTask(ThreadPoolExecutor.java:1114)\n")
+                    .append("\tat org.apache.tomcat.util.threads.ThreadPoolExecutor$Worker.run(ThreadPoolExecutor.java:659)\n")
+                    .append("\tat org.apache.tomcat.util.threads.TaskThread$WrappingRunnable.run(TaskThread.java:61)\n")
+                    .append("\tat java.base@17.0.3/java.lang.Thread.run(Thread.java:833)\n\n")
+                    .append("   Locked ownable synchronizers:\n\t- None\n\n");
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.threaddump;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.events.springboot.actuator.OkHttpClientFactory;
+import io.perfana.events.springboot.standin.ActuatorStandInServer;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadPoolUtilizationTest {
+
+    private static final ThreadPoolMatcher MATCHER = new ThreadPoolMatcher(List.of("http-nio-*-exec-*", "task-*", "HikariPool-*"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void poolNames() {
+        assertEquals("http-nio-8080-exec", MATCHER.poolOf("http-nio-8080-exec-12"));
+        assertEquals("task", MATCHER.poolOf("task-3"));
+        assertEquals("HikariPool", MATCHER.poolOf("HikariPool-1 housekeeper"));
+        assertNull(MATCHER.poolOf("main"));
+        assertEquals("worker.pool", new ThreadPoolMatcher(List.of("worker.pool")).poolOf("worker.pool"));
+        assertNull(new ThreadPoolMatcher(List.of("worker.pool")).poolOf("workerXpool"));
+    }
+
+    @Test
+    void countStatesInBothFormats() {
+        String jstack = thread("\"http-nio-8080-exec-1\" #30 daemon prio=5 tid=0x1 nid=0x1 runnable", "RUNNABLE")
+                + thread("\"http-nio-8080-exec-2\" #31 daemon prio=5 tid=0x2 nid=0x2 waiting for monitor entry", "BLOCKED (on object monitor)")
+                + thread("\"http-nio-8080-exec-3\" #32 daemon prio=5 tid=0x3 nid=0x3 waiting on condition", "WAITING (parking)")
+                + thread("\"main\" #1 prio=5 tid=0x4 nid=0x4 runnable", "RUNNABLE");
+        String springBoot = thread("\"task-1\" - Thread t@40", "TIMED_WAITING")
+                + thread("\"task-2\" - Thread t@41", "RUNNABLE");
+
+        Map<String, PoolState> pools = ThreadPoolUtilization.count(jstack + springBoot, MATCHER);
+
+        assertEquals(List.of("http-nio-8080-exec", "task"), List.copyOf(pools.keySet()));
+        PoolState http = pools.get("http-nio-8080-exec");
+        assertEquals(3, http.getThreads());
+        assertEquals(1, http.getRunnable());
+        assertEquals(1, http.getBlocked());
+        assertEquals(1, http.getWaiting());
+        assertEquals(200.0 / 3, http.getUtilization(), 0.001);
+        assertEquals(1, pools.get("task").getTimedWaiting());
+        assertEquals(50.0, pools.get("task").getUtilization());
+    }
+
+    @Test
+    void timeSeriesAndKeyValues() {
+        ThreadPoolUtilization utilization = new ThreadPoolUtilization(MATCHER);
+        utilization.onThreadDump("dump-1", 1_000, dump(10, 2));
+        utilization.onThreadDump("dump-2", 2_000, dump(10, 10));
+        utilization.onThreadDump("dump-3", 3_000, thread("\"main\" #1", "RUNNABLE"));
+
+        assertEquals(3, utilization.getDumpCount());
+        List<PoolState> series = utilization.series("http-nio-8080-exec");
+        assertEquals(2, series.size());
+        assertEquals(20.0, series.get(0).getUtilization());
+        assertEquals(100.0, series.get(1).getUtilization());
+
+        Map<String, String> keyValues = utilization.toKeyValues("event.test.threadpool.");
+        assertEquals("60.0", keyValues.get("event.test.threadpool.http-nio-8080-exec.utilization.avg"));
+        assertEquals("100.0", keyValues.get("event.test.threadpool.http-nio-8080-exec.utilization.peak"));
+        assertEquals("10", keyValues.get("event.test.threadpool.http-nio-8080-exec.threads.peak"));
+        assertEquals("2", keyValues.get("event.test.threadpool.http-nio-8080-exec.dumps"));
+
+        StringWriter csv = new StringWriter();
+        utilization.writeCsv(new PrintWriter(csv));
+        String[] lines = csv.toString().split("\\R");
+        assertEquals(3, lines.length);
+        assertEquals("1970-01-01T00:00:01Z,dump-1,http-nio-8080-exec,10,2,0,8,0,20.0", lines[1]);
+    }
+
+    @Test
+    void listensToActuatorClientThreadDumps() throws IOException {
+        try (ActuatorStandInServer standIn = ActuatorStandInServer.start()) {
+            ActuatorClient client = new ActuatorClient(standIn.actuatorUrl(), OkHttpClientFactory.instance(), EventLoggerStdOut.INSTANCE);
+            ThreadPoolUtilization utilization = new ThreadPoolUtilization(MATCHER);
+            client.setThreadDumpListener(utilization);
+
+            assertTrue(client.threaddump(tempDir.toFile(), "file").isPresent());
+            try (ThreadDumpArchive archive = ThreadDumpArchive.create(tempDir.resolve("dumps.pftd").toFile())) {
+                assertTrue(client.threaddump(archive, "archived").isPresent());
+            }
+
+            assertEquals(2, utilization.getDumpCount());
+            List<PoolState> series = utilization.series("http-nio-8080-exec");
+            assertEquals(2, series.size());
+            assertEquals(200, series.get(0).getWaiting());
+            assertEquals(0.0, series.get(1).getUtilization());
+        }
+    }
+
+    private static String dump(int threads, int busy) {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < threads; i++) {
+            dump.append(thread("\"http-nio-8080-exec-" + i + "\" #" + (30 + i), i < busy ? "RUNNABLE" : "WAITING (parking)"));
+        }
+        return dump.toString();
+    }
+
+    private static String thread(String header, String state) {
+        return header + "\n   java.lang.Thread.State: " + state + "\n\tat java.lang.Object.wait(Native Method)\n\n";
+    }
+}
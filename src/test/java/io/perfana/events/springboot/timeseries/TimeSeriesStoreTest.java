@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.timeseries;
+
+import io.perfana.events.springboot.actuator.Measurement;
+import io.perfana.events.springboot.actuator.Metric;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesStoreTest {
+
+    // minute aligned, the start of the first downsample bucket
+    private static final long START = 1_700_006_400_000L;
+
+    @Test
+    void blockRoundTrip() {
+        long[] timestamps = { START, START + 10_000, START + 20_000, START + 30_003, START + 30_003, START + 31_000,
+                START + 100_000, START + 10_000_000_000L, START + 10_000_000_001L };
+        double[] values = { 1.0, 1.0, -2.5, Double.NaN, 0.0, -0.0, Double.MAX_VALUE, Double.MIN_VALUE, 123456.789 };
+        GorillaBlock block = new GorillaBlock();
+        for (int i = 0; i < timestamps.length; i++) {
+            block.append(timestamps[i], values[i]);
+        }
+        block.seal();
+
+        List<Long> decodedTimestamps = new ArrayList<>();
+        List<Double> decodedValues = new ArrayList<>();
+        block.forEach((t, v) -> {
+            decodedTimestamps.add(t);
+            decodedValues.add(v);
+        });
+        assertEquals(timestamps.length, decodedTimestamps.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], decodedTimestamps.get(i));
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues.get(i)), "value " + i);
+        }
+    }
+
+    @Test
+    void regularSamplesCompress() {
+        Random random = new Random(42);
+        GorillaBlock block = new GorillaBlock();
+        double heap = 200_000_000;
+        for (int i = 0; i < TimeSeries.MAX_POINTS_PER_BLOCK; i++) {
+            // scheduling jitter of a few millis, heap in whole bytes
+            heap += random.nextInt(1_000_000) - 400_000;
+            block.append(START + i * 10_000L + random.nextInt(5), Math.floor(heap));
+        }
+        block.seal();
+        double bytesPerPoint = (double) block.sizeInBytes() / block.count();
+        assertTrue(bytesPerPoint < 5.5, "bytes per point: " + bytesPerPoint);
+
+        GorillaBlock gauge = new GorillaBlock();
+        for (int i = 0; i < TimeSeries.MAX_POINTS_PER_BLOCK; i++) {
+            gauge.append(START + i * 10_000L, 42 + (i / 100));
+        }
+        gauge.seal();
+        assertTrue(gauge.sizeInBytes() < TimeSeries.MAX_POINTS_PER_BLOCK * 0.6, "bytes: " + gauge.sizeInBytes());
+    }
+
+    @Test
+    void downsampleAndQueryRange() {
+        AtomicLong clock = new AtomicLong(START);
+        TimeSeriesStore store = new TimeSeriesStore(Duration.ofMinutes(10), Duration.ofMinutes(1), clock::get, EventLoggerStdOut.INSTANCE);
+        Metric metric = new Metric();
+        Measurement value = new Measurement();
+        value.statistic = "VALUE";
+        metric.measurements = List.of(value);
+
+        // one hour, every 10 seconds: value is the minute, 0..59, peak 100 in the last sample of each minute
+        for (int i = 0; i < 360; i++) {
+            clock.set(START + i * 10_000L);
+            value.value = i % 6 == 5 ? 100.0 : i / 6;
+            store.listener("app:8080").onMetric("jvm.threads.live", List.of(), metric);
+        }
+
+        assertEquals(List.of("app:8080"), new ArrayList<>(store.instances()));
+        assertEquals(List.of("jvm.threads.live.value"), new ArrayList<>(store.meters("app:8080")));
+
+        TimeSeriesRange all = store.query("app:8080", "jvm.threads.live.value", Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 3_600_000));
+        assertTrue(all.size() < 150, "size: " + all.size());
+        // first minute downsampled: average of five times 0 and 100
+        assertEquals(START, all.getTimestamp(0));
+        assertEquals(100.0 / 6, all.getValue(0), 1e-9);
+        // last points raw
+        assertEquals(START + 359 * 10_000L, all.getTimestamp(all.size() - 1));
+        assertEquals(100.0, all.getValue(all.size() - 1));
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.getTimestamp(i) >= all.getTimestamp(i - 1));
+        }
+
+        TimeSeriesRange peaks = store.queryMax("app:8080", "jvm.threads.live.value", Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 59_999));
+        assertEquals(1, peaks.size());
+        assertEquals(100.0, peaks.getValue(0));
+
+        TimeSeriesRange recent = store.query("app:8080", "jvm.threads.live.value", Instant.ofEpochMilli(START + 3_590_000), Instant.ofEpochMilli(START + 3_600_000));
+        assertEquals(1, recent.size());
+        assertTrue(store.query("other:8080", "jvm.threads.live.value", Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 3_600_000)).isEmpty());
+    }
+
+    @Test
+    void fullDaySoakFitsInTwoMegabytes() {
+        TimeSeriesStore store = new TimeSeriesStore(Duration.ofMinutes(60), Duration.ofMinutes(1), () -> START, EventLoggerStdOut.INSTANCE);
+        Random random = new Random(7);
+        int seriesCount = 50;
+        double[] levels = new double[seriesCount];
+        // every 10 seconds for 24 hours
+        for (long t = START; t < START + Duration.ofHours(24).toMillis(); t += 10_000) {
+            for (int s = 0; s < seriesCount; s++) {
+                levels[s] += random.nextGaussian();
+                store.append("app:8080", "meter" + s, t + random.nextInt(3), Math.round(levels[s] * 100) / 100.0);
+            }
+        }
+        long bytes = store.getSizeInBytes();
+        assertEquals(seriesCount, store.getSeriesCount());
+        assertTrue(bytes < 2 * 1024 * 1024, "bytes: " + bytes);
+        // raw hour plus a point per minute for the rest of the day
+        long points = store.getPointCount();
+        assertTrue(points > seriesCount * (360 + 23 * 60 - 10) && points < seriesCount * (500 + 24 * 60), "points: " + points);
+    }
+}
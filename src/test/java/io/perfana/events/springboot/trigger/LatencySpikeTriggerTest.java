@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.eventscheduler.api.EventLogger;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LatencySpikeTriggerTest {
+
+    private static final List<String> URI_TAG = List.of("uri:/api/orders");
+
+    @Test
+    void meanAboveBaselineFires() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        // count, total seconds, max seconds: mean per interval 10 ms, 10 ms, 10 ms, then 100 ms
+        when(client.metric(eq(LatencySpikeTrigger.METRIC_NAME), eq(URI_TAG))).thenReturn(timer("seconds", 100, 1.0, 0.02))
+                .thenReturn(timer("seconds", 200, 2.0, 0.02))
+                .thenReturn(timer("seconds", 300, 3.0, 0.02))
+                .thenReturn(timer("seconds", 400, 4.0, 0.02))
+                .thenReturn(timer("seconds", 500, 14.0, 0.02));
+
+        List<String> captures = new ArrayList<>();
+        LatencySpikeTrigger trigger = new LatencySpikeTrigger(client, settings(0, 0, 3.0, 3), new Cooldown(Duration.ofMinutes(1)),
+                (name, reason, heapDump) -> captures.add(reason), EventLoggerStdOut.INSTANCE);
+
+        for (int i = 0; i < 5; i++) {
+            trigger.run();
+        }
+
+        assertEquals(1, captures.size());
+        assertTrue(captures.get(0).startsWith("/api/orders: mean 100.0 ms > 3.0 x baseline 10.0 ms"), captures.get(0));
+    }
+
+    @Test
+    void maxThresholdWithBudget() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric(eq(LatencySpikeTrigger.METRIC_NAME), eq(URI_TAG))).thenReturn(timer("seconds", 100, 1.0, 2.5))
+                .thenReturn(timer("seconds", 200, 2.0, 2.6))
+                .thenReturn(timer("seconds", 300, 3.0, 2.7))
+                .thenReturn(timer("seconds", 400, 4.0, 2.8))
+                .thenReturn(timer("seconds", 500, 5.0, 2.9));
+
+        List<String> captures = new ArrayList<>();
+        // no cooldown, budget of 2
+        LatencySpikeTrigger trigger = new LatencySpikeTrigger(client, settings(1000, 0, 0, 3), new Cooldown(Duration.ZERO),
+                (name, reason, heapDump) -> captures.add(reason), EventLoggerStdOut.INSTANCE);
+
+        for (int i = 0; i < 5; i++) {
+            trigger.run();
+        }
+
+        assertEquals(2, captures.size());
+        assertEquals("/api/orders: max 2500.0 ms > threshold 1000 ms", captures.get(0));
+    }
+
+    @Test
+    void decayingMaxFiresOnce() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        // one spike of 2.5 seconds that stays in the reported max, then decays
+        when(client.metric(eq(LatencySpikeTrigger.METRIC_NAME), eq(URI_TAG))).thenReturn(timer("seconds", 100, 1.0, 2.5))
+                .thenReturn(timer("seconds", 200, 2.0, 2.5))
+                .thenReturn(timer("seconds", 300, 3.0, 2.5))
+                .thenReturn(timer("seconds", 400, 4.0, 0.02))
+                .thenReturn(timer("seconds", 500, 5.0, 0.02));
+
+        List<String> captures = new ArrayList<>();
+        LatencySpikeTrigger trigger = new LatencySpikeTrigger(client, settings(1000, 0, 0, 3), new Cooldown(Duration.ZERO),
+                (name, reason, heapDump) -> captures.add(reason), EventLoggerStdOut.INSTANCE);
+
+        for (int i = 0; i < 5; i++) {
+            trigger.run();
+        }
+
+        assertEquals(1, captures.size());
+    }
+
+    @Test
+    void missingMetricLoggedOnce() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric(eq(LatencySpikeTrigger.METRIC_NAME), eq(URI_TAG))).thenReturn(Optional.empty());
+        EventLogger logger = mock(EventLogger.class);
+
+        LatencySpikeTrigger trigger = new LatencySpikeTrigger(client, settings(1000, 0, 0, 3), new Cooldown(Duration.ZERO),
+                (name, reason, heapDump) -> fail("no capture expected"), logger);
+
+        for (int i = 0; i < 3; i++) {
+            trigger.run();
+        }
+
+        verify(client, times(3)).metric(eq(LatencySpikeTrigger.METRIC_NAME), eq(URI_TAG));
+        verify(logger, times(1)).warn(contains("/api/orders"));
+    }
+
+    private static LatencyTriggerSettings settings(long maxMillis, long meanMillis, double factor, int baselineSamples) {
+        return new LatencyTriggerSettings(true, List.of("/api/orders"), maxMillis, meanMillis, factor, baselineSamples,
+                Duration.ofSeconds(5), Duration.ofMinutes(1), 2, true);
+    }
+}
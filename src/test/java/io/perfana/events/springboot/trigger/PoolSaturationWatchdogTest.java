@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020-2022 Peter Paul Bakker - Perfana
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.perfana.events.springboot.trigger;
+
+import io.perfana.events.springboot.actuator.ActuatorClient;
+import io.perfana.eventscheduler.log.EventLoggerStdOut;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.perfana.events.springboot.actuator.MetricFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PoolSaturationWatchdogTest {
+
+    @Test
+    void breachCapturesOnceWithinCooldown() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric("hikaricp.connections.pending")).thenReturn(gauge(0.0)).thenReturn(gauge(3.0)).thenReturn(gauge(5.0)).thenReturn(gauge(4.0));
+        when(client.metric("tomcat.threads.busy")).thenReturn(Optional.empty());
+
+        AtomicLong now = new AtomicLong();
+        Cooldown cooldown = new Cooldown(Duration.ofSeconds(60), now::get);
+        List<String> captures = new ArrayList<>();
+        PoolSaturationWatchdog watchdog = new PoolSaturationWatchdog(client,
+                Threshold.parse("hikaricp.connections.pending=1,tomcat.threads.busy=90%"), cooldown,
+                (trigger, reason, heapDump) -> captures.add(reason), EventLoggerStdOut.INSTANCE);
+
+        watchdog.run();
+        assertTrue(captures.isEmpty());
+
+        watchdog.run();
+        assertEquals(1, captures.size());
+        assertTrue(captures.get(0).startsWith("hikaricp.connections.pending is 3.0"), captures.get(0));
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        watchdog.run();
+        assertEquals(1, captures.size(), "in cooldown");
+
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        watchdog.run();
+        assertEquals(2, captures.size());
+
+        // tomcat metric not available: only asked in the one run without an earlier breach
+        verify(client, times(1)).metric("tomcat.threads.busy");
+    }
+
+    @Test
+    void percentageOfMax() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        when(client.metric("tomcat.threads.busy")).thenReturn(gauge(150.0)).thenReturn(gauge(180.0));
+        when(client.metric("tomcat.threads.config.max")).thenReturn(gauge(200.0));
+
+        List<String> captures = new ArrayList<>();
+        PoolSaturationWatchdog watchdog = new PoolSaturationWatchdog(client, Threshold.parse("tomcat.threads.busy=90%"),
+                Duration.ofMinutes(1), (trigger, reason, heapDump) -> captures.add(trigger), EventLoggerStdOut.INSTANCE);
+
+        watchdog.run();
+        watchdog.run();
+
+        assertEquals(List.of(PoolSaturationWatchdog.TRIGGER_NAME), captures);
+        verify(client, times(1)).metric("tomcat.threads.config.max");
+        verify(client, never()).metric(anyString(), anyList());
+    }
+
+    @Test
+    void lateMetricIsWatchedMissingMetricIsDropped() {
+        ActuatorClient client = mock(ActuatorClient.class);
+        // the pool registers its metrics after the first polls
+        when(client.metric("hikaricp.connections.pending")).thenReturn(Optional.empty()).thenReturn(Optional.empty()).thenReturn(gauge(2.0));
+        when(client.metric("tomcat.threads.busy")).thenReturn(Optional.empty());
+
+        List<String> captures = new ArrayList<>();
+        PoolSaturationWatchdog watchdog = new PoolSaturationWatchdog(client, Threshold.parse("tomcat.threads.busy=5,hikaricp.connections.pending=1"),
+                Duration.ZERO, (trigger, reason, heapDump) -> captures.add(reason), EventLoggerStdOut.INSTANCE);
+
+        for (int i = 0; i < PoolSaturationWatchdog.MAX_CONSECUTIVE_MISSES + 5; i++) {
+            watchdog.run();
+        }
+
+        assertEquals(PoolSaturationWatchdog.MAX_CONSECUTIVE_MISSES + 3, captures.size());
+        verify(client, times(PoolSaturationWatchdog.MAX_CONSECUTIVE_MISSES)).metric("tomcat.threads.busy");
+    }
+
+    @Test
+    void parseThresholds() {
+        List<Threshold> thresholds = Threshold.parse("hikaricp.connections.pending=1, hikaricp.connections.active=100%");
+        assertEquals(2, thresholds.size());
+        assertFalse(thresholds.get(0).isPercentage());
+        assertEquals(10.0, thresholds.get(1).limit(10.0));
+        assertTrue(Threshold.parse(null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> Threshold.parse("my.gauge=50%"));
+        assertThrows(IllegalArgumentException.class, () -> Threshold.parse("my.gauge"));
+    }
+}